@@ -74,8 +74,12 @@ abstract class BaseCompile {
     log("    compile time: " + stats.compileTimeMs() + "ms");
     log("  disk wait time: " + stats.diskWaitTimeMs() + "ms");
     log("    import count: " + stats.importCount());
+    log("      cache hits: " + stats.importCacheHits());
+    log("    cache misses: " + stats.importCacheMisses());
     log("max import depth: " + stats.maxImportDepth());
     log(" max mixin depth: " + stats.maxMixinDepth());
+    log("       memo hits: " + stats.mixinMemoHits());
+    log("     memo misses: " + stats.mixinMemoMisses());
     log("\n");
   }
 
@@ -18,16 +18,22 @@ package com.squarespace.less.cli;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import com.squarespace.less.ImportCache;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
+import com.squarespace.less.MappedFilesystemLessLoader;
 import com.squarespace.less.cli.LessC.Args;
 import com.squarespace.less.core.ErrorUtils;
 import com.squarespace.less.core.LessUtils;
@@ -35,10 +41,19 @@ import com.squarespace.less.model.Stylesheet;
 
 
 /**
- * Compiles a batch of files.
+ * Compiles a batch of files.  All files are parsed, then all are rendered, each
+ * phase running on a work-stealing pool of {@link Args#jobs()} threads.  Every
+ * task uses its own {@link LessContext}, sharing the compiler's function table
+ * and the import cache.  Output files are written as each one completes, while
+ * progress and errors are reported in input order.
  */
 class CompileBatch extends BaseCompile {
 
+  /**
+   * Parsed imports shared by all stylesheets in the batch.
+   */
+  private final ImportCache importCache = new ImportCache();
+
   CompileBatch(Args args, PrintStream out, PrintStream err) {
     super(args, out, err, System.in);
   }
@@ -69,55 +84,55 @@ class CompileBatch extends BaseCompile {
       return ERR;
     }
 
-    Map<Path, Stylesheet> cache = new HashMap<>();
+    int jobs = Math.max(1, args.jobs());
+    ForkJoinPool pool = new ForkJoinPool(jobs);
+    List<Result> parsed = new ArrayList<>();
     boolean error = false;
+    int files = 0;
+    long bytes = 0;
+    long parseElapsed = 0;
+    long compileElapsed = 0;
 
     try {
       log("Parsing and caching stylesheets:\n");
-      List<Path> lessPaths = LessUtils.getMatchingFiles(input, "glob:*.less", true);
-      for (Path path : lessPaths) {
-        try {
-          path = input.resolve(path).toAbsolutePath().normalize();
-          Stylesheet sheet = parse(path);
-          cache.put(path, sheet);
-
-        } catch (LessException e) {
-          error = true;
+      long phaseStart = System.nanoTime();
+      List<Future<Result>> futures = new ArrayList<>();
+      for (Path path : LessUtils.getMatchingFiles(input, "glob:*.less", true)) {
+        futures.add(pool.submit(new ParseTask(input.resolve(path).toAbsolutePath().normalize())));
+      }
+      for (Future<Result> future : futures) {
+        Result result = await(future);
+        log("parsing " + result.path + " ");
+        error |= report(result);
+        files++;
+        bytes += result.size;
+        if (result.stylesheet != null) {
+          parsed.add(result);
         }
       }
+      parseElapsed = System.nanoTime() - phaseStart;
       if (args.verbose()) {
         emitMemory("post-parse");
+        log("import cache: " + importCache.hits() + " hits, " + importCache.misses() + " misses, "
+            + importCache.size() + " entries\n");
       }
 
       log("Compiling stylesheets:\n");
       Files.createDirectories(output);
-      for (Path path : lessPaths) {
-        path = input.resolve(path).toAbsolutePath().normalize();
-        Stylesheet stylesheet = cache.get(path);
-        if (stylesheet == null) {
-          log("ERROR: '" + path + "' was not cached.\n");
-          continue;
-        }
-
-        Path fileName = path.getFileName();
+      phaseStart = System.nanoTime();
+      futures.clear();
+      for (Result result : parsed) {
+        Path fileName = result.path.getFileName();
         String[] fileParts = fileName.toString().split("\\.(?=[^\\.]+$)");
         Path cssPath = output.resolve(fileParts[0] + ".css").normalize();
-
-        log("compiling " + fileName + " to " + cssPath);
-        LessContext ctx = new LessContext(args.compilerOptions());
-        ctx.setFunctionTable(compiler.functionTable());
-        try {
-
-          long compileStart = System.nanoTime();
-          String css = compiler.render(stylesheet.copy(), ctx);
-          LessUtils.writeFile(cssPath, css);
-          logElapsed(" ", compileStart, System.nanoTime());
-
-        } catch (LessException e) {
-          standardErr.println("\n\n" + ErrorUtils.formatError(ctx, path, e, 4) + SEPARATOR + "\n");
-          error = true;
-        }
+        futures.add(pool.submit(new CompileTask(result.path, result.stylesheet, cssPath)));
+      }
+      for (Future<Result> future : futures) {
+        Result result = await(future);
+        log("compiling " + result.path.getFileName() + " to " + result.outputPath);
+        error |= report(result);
       }
+      compileElapsed = System.nanoTime() - phaseStart;
 
     } catch (NoSuchFileException e) {
       log("ERROR: cannot locate path " + e.getMessage());
@@ -126,12 +141,16 @@ class CompileBatch extends BaseCompile {
     } catch (IOException e) {
       log("ERROR: " + e.getMessage());
       error = true;
+
+    } finally {
+      pool.shutdown();
     }
 
     if (args.verbose()) {
       emitMemory("post-compiler");
     }
 
+    emitSummary(jobs, files, bytes, parseElapsed, compileElapsed, System.nanoTime() - start);
     if (error) {
       return ERR;
     }
@@ -141,25 +160,147 @@ class CompileBatch extends BaseCompile {
   }
 
   /**
-   * Read and parse the stylesheet.
+   * Logs the throughput of the batch and the wall time of each phase.
    */
-  private Stylesheet parse(Path path) throws LessException, IOException {
-    LessContext ctx = new LessContext(args.compilerOptions());
-    ctx.setFunctionTable(compiler.functionTable());
+  private void emitSummary(int jobs, int files, long bytes, long parseElapsed, long compileElapsed,
+      long totalElapsed) {
+    double seconds = totalElapsed / 1000000000.0;
+    log(" Summary:\n");
+    log("            jobs: " + jobs);
+    log("           files: " + files);
+    log("      parse wall: " + String.format("%.3fms", parseElapsed / 1000000.0));
+    log("    compile wall: " + String.format("%.3fms", compileElapsed / 1000000.0));
+    log("      throughput: " + String.format("%.1f files/sec, %.3f MB/sec",
+        files / seconds, (bytes / (double)MEGABYTE) / seconds));
+  }
+
+  /**
+   * Logs the elapsed time of a completed task, or prints its error.
+   * Returns true if the task failed.
+   */
+  private boolean report(Result result) {
+    if (result.error != null) {
+      standardErr.println("\n\n" + result.error + SEPARATOR + "\n");
+      return true;
+    }
+    standardErr.printf(" %.3fms\n", result.elapsed / 1000000.0);
+    return false;
+  }
+
+  /**
+   * Waits for a task to complete.  Unexpected failures are recorded as errors.
+   */
+  private static Result await(Future<Result> future) throws IOException {
     try {
-      String data = LessUtils.readFile(path);
-      Stylesheet result = null;
-      log("parsing " + path + " ");
-      long start = System.nanoTime();
-      result = compiler.parse(data, ctx, path);
-      double elapsed = (System.nanoTime() - start) / 1000000.0;
-      standardErr.printf(" %.3fms\n", elapsed);
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while waiting for tasks", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException)cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private LessContext newContext() {
+    LessContext ctx = new LessContext(args.compilerOptions(), new MappedFilesystemLessLoader());
+    ctx.setFunctionTable(compiler.functionTable());
+    ctx.setImportCache(importCache);
+    return ctx;
+  }
+
+  /**
+   * Outcome of a parse or compile task.
+   */
+  private static class Result {
+
+    private final Path path;
+
+    private Path outputPath;
+
+    private Stylesheet stylesheet;
+
+    private String error;
+
+    private long size;
+
+    private long elapsed;
+
+    Result(Path path) {
+      this.path = path;
+    }
+
+  }
+
+  /**
+   * Reads and parses a stylesheet.
+   */
+  private class ParseTask implements Callable<Result> {
+
+    private final Path path;
+
+    ParseTask(Path path) {
+      this.path = path;
+    }
+
+    @Override
+    public Result call() throws IOException {
+      Result result = new Result(path);
+      LessContext ctx = newContext();
+      try {
+        String data = LessUtils.readFile(path);
+        result.size = Files.size(path);
+        long start = System.nanoTime();
+        result.stylesheet = compiler.parse(data, ctx, path);
+        result.elapsed = System.nanoTime() - start;
+
+      } catch (LessException e) {
+        result.error = ErrorUtils.formatError(ctx, path, e, 4);
+      }
       return result;
+    }
+
+  }
+
+  /**
+   * Renders a parsed stylesheet and writes the output file.
+   */
+  private class CompileTask implements Callable<Result> {
+
+    private final Path path;
+
+    private final Stylesheet stylesheet;
 
-    } catch (LessException e) {
-      standardErr.println("\n\n" + ErrorUtils.formatError(ctx, path, e, 4) + SEPARATOR + "\n");
-      return null;
+    private final Path cssPath;
+
+    CompileTask(Path path, Stylesheet stylesheet, Path cssPath) {
+      this.path = path;
+      this.stylesheet = stylesheet;
+      this.cssPath = cssPath;
+    }
+
+    @Override
+    public Result call() throws IOException {
+      Result result = new Result(path);
+      result.outputPath = cssPath;
+      LessContext ctx = newContext();
+      try {
+        long start = System.nanoTime();
+        try (Writer writer = LessUtils.newFileWriter(cssPath)) {
+          compiler.render(stylesheet, ctx, writer);
+        }
+        result.elapsed = System.nanoTime() - start;
+
+      } catch (LessException e) {
+        Files.deleteIfExists(cssPath);
+        result.error = ErrorUtils.formatError(ctx, path, e, 4);
+      }
+      return result;
     }
+
   }
 
 }
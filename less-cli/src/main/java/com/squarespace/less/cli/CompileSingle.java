@@ -19,11 +19,15 @@ package com.squarespace.less.cli;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
+import com.squarespace.less.LessMetricsCollector;
+import com.squarespace.less.MappedFilesystemLessLoader;
 import com.squarespace.less.cli.LessC.Args;
 import com.squarespace.less.core.ErrorUtils;
 import com.squarespace.less.core.LessUtils;
@@ -65,24 +69,32 @@ class CompileSingle extends BaseCompile {
     }
 
     int code = OK;
-    LessContext ctx = new LessContext(args.compilerOptions());
+    LessContext ctx = new LessContext(args.compilerOptions(), new MappedFilesystemLessLoader());
     ctx.setFunctionTable(compiler.functionTable());
+    LessMetricsCollector metrics = null;
+    if (args.statsEnabled()) {
+      metrics = new LessMetricsCollector();
+      ctx.setMetrics(metrics);
+    }
     try {
       if (args.debugMode() == null) {
         // Normal compile
-        String result = compiler.compile(source, ctx, input);
         if (args.lintOnly()) {
+          compiler.compile(source, ctx, input);
           return OK;
         }
         String output = args.output();
         if (output != null) {
-          try {
-            LessUtils.writeFile(Paths.get(output), result);
-          } catch (IOException e) {
-            return fail(e.getMessage());
+          Path outputPath = Paths.get(output);
+          try (Writer writer = LessUtils.newFileWriter(outputPath)) {
+            compiler.compile(source, ctx, input, writer);
+          } catch (LessException e) {
+            // Remove the partial output.
+            Files.deleteIfExists(outputPath);
+            throw e;
           }
         } else {
-          standardOut.print(result);
+          compiler.compile(source, ctx, input, standardOut);
         }
 
       } else {
@@ -115,10 +127,17 @@ class CompileSingle extends BaseCompile {
     } catch (LessException e) {
       standardErr.println("\n\n" + ErrorUtils.formatError(ctx, input, e, 4) + "\n");
       code = ERR;
+
+    } catch (IOException e) {
+      return fail(e.getMessage());
     }
 
-    if (args.statsEnabled()) {
+    if (metrics != null) {
       emitStats(ctx.stats());
+      log(" Metrics:\n");
+      for (String line : metrics.format().split("\n")) {
+        log(line);
+      }
     }
 
     if (args.verbose()) {
@@ -0,0 +1,337 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.cli;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.squarespace.less.ImportCache;
+import com.squarespace.less.ImportGraph;
+import com.squarespace.less.IncrementalCompiler;
+import com.squarespace.less.LessException;
+import com.squarespace.less.cli.LessC.Args;
+import com.squarespace.less.core.ErrorUtils;
+import com.squarespace.less.core.LessUtils;
+
+
+/**
+ * Compiles a file, or a directory in batch mode, then watches the inputs and
+ * recompiles the affected outputs each time a file changes.  The compiler, its
+ * parsed stylesheets and the import cache stay resident between rebuilds.
+ * Runs until interrupted.
+ */
+class CompileWatch extends BaseCompile {
+
+  /**
+   * Time to wait for further events after a change, so that a burst of
+   * changes is handled by a single rebuild.
+   */
+  private static final long SETTLE_MS = 50;
+
+  private static final String GLOB_LESS = "glob:*.less";
+
+  /**
+   * Output path for each root, or null to write to standard out.
+   */
+  private final Map<Path, Path> outputs = new LinkedHashMap<>();
+
+  /**
+   * Directory associated with each registered watch key.
+   */
+  private final Map<WatchKey, Path> keys = new HashMap<>();
+
+  private final Set<Path> watched = new HashSet<>();
+
+  private IncrementalCompiler incremental;
+
+  private WatchService watcher;
+
+  private Path inputDir;
+
+  private Path outputDir;
+
+  CompileWatch(Args args, PrintStream out, PrintStream err) {
+    super(args, out, err, System.in);
+  }
+
+  @Override
+  public int process() {
+    if (args.lintOnly() || args.debugMode() != null) {
+      log("ERROR: watch mode does not support lint-only or debug modes.\n");
+      return ERR;
+    }
+
+    Path input = Paths.get(args.input()).toAbsolutePath().normalize();
+    try {
+      if (args.batchMode()) {
+        if (!input.toFile().isDirectory()) {
+          return fail("the path '" + input + "' cannot be read.\n");
+        }
+        inputDir = input;
+        outputDir = args.output() == null ? input : Paths.get(args.output()).toAbsolutePath().normalize();
+        Files.createDirectories(outputDir);
+        for (Path path : LessUtils.getMatchingFiles(inputDir, GLOB_LESS, true)) {
+          addRoot(inputDir.resolve(path));
+        }
+
+      } else {
+        if (!input.toFile().isFile()) {
+          return fail("the path '" + input + "' cannot be read.");
+        }
+        outputs.put(input, args.output() == null ? null : Paths.get(args.output()).toAbsolutePath());
+      }
+
+    } catch (IOException e) {
+      return fail("ERROR: " + e.getMessage());
+    }
+
+    incremental = new IncrementalCompiler(compiler, args.compilerOptions(), null, new ImportCache());
+    try (WatchService service = FileSystems.getDefault().newWatchService()) {
+      watcher = service;
+
+      // Watch the input and include directories before the first compile, so
+      // changes made while it runs are not missed.
+      watchDirectories();
+      build(outputs.keySet(), "Compiled");
+      log("Watching for changes.\n");
+
+      while (true) {
+        Set<Path> changed = new LinkedHashSet<>();
+        WatchKey key = watcher.take();
+        boolean overflow = drain(key, changed);
+        while ((key = watcher.poll(SETTLE_MS, TimeUnit.MILLISECONDS)) != null) {
+          overflow |= drain(key, changed);
+        }
+        rebuild(changed, overflow);
+      }
+
+    } catch (IOException e) {
+      return fail("ERROR: " + e.getMessage());
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return OK;
+    }
+  }
+
+  /**
+   * Compiles the given roots, then watches any new directories they depend on.
+   */
+  private void build(Set<Path> roots, String verb) throws IOException {
+    long start = System.nanoTime();
+    int errors = 0;
+    for (Path root : roots) {
+      if (!compile(root)) {
+        errors++;
+      }
+    }
+    long end = System.nanoTime();
+    String summary = String.format("%s %d of %d files (%d errors) in %.3fms", verb, roots.size(),
+        outputs.size(), errors, (end - start) / 1000000.0);
+    log(summary);
+    if (args.statsEnabled() && incremental.lastStats() != null) {
+      emitStats(incremental.lastStats());
+    }
+    watchDirectories();
+  }
+
+  /**
+   * Finds the roots affected by the changed files and compiles them again.
+   */
+  private void rebuild(Set<Path> changed, boolean overflow) throws IOException {
+    Set<Path> roots = new LinkedHashSet<>();
+    Set<Path> candidates = new LinkedHashSet<>();
+    ImportGraph graph = incremental.graph();
+
+    if (overflow) {
+      // Events were lost, so check every file the roots depend on.
+      for (Path root : graph.roots()) {
+        candidates.add(root);
+        candidates.addAll(graph.imports(root));
+      }
+    }
+
+    // Map the changed files to the paths recorded by the compiler, which
+    // may not be normalized.
+    Map<Path, List<Path>> aliases = aliases(graph);
+    for (Path path : changed) {
+      candidates.add(path);
+      List<Path> recorded = aliases.get(path);
+      if (recorded != null) {
+        candidates.addAll(recorded);
+      }
+
+      // In batch mode, start compiling new stylesheets and stop compiling
+      // deleted ones.
+      if (inputDir != null && path.startsWith(inputDir) && path.getFileName().toString().endsWith(".less")) {
+        if (Files.isRegularFile(path) && !outputs.containsKey(path)) {
+          addRoot(path);
+          roots.add(path);
+        } else if (!Files.exists(path) && outputs.containsKey(path)) {
+          outputs.remove(path);
+          incremental.remove(path);
+          log("removed " + path);
+        }
+      }
+    }
+
+    try {
+      roots.addAll(incremental.changed(candidates));
+    } catch (LessException e) {
+      standardErr.println("\n\n" + ErrorUtils.formatError(changed.iterator().next(), e, 4) + SEPARATOR);
+    }
+    roots.retainAll(outputs.keySet());
+    if (!roots.isEmpty()) {
+      build(roots, "Rebuilt");
+    }
+  }
+
+  /**
+   * Compiles a root and writes its output.  Returns false if an error occurred.
+   */
+  private boolean compile(Path root) throws IOException {
+    Path output = outputs.get(root);
+    log("compiling " + root + (output == null ? "" : " to " + output));
+    long start = System.nanoTime();
+    try {
+      if (output == null) {
+        incremental.compile(root, standardOut);
+        standardOut.flush();
+      } else {
+        try (Writer writer = LessUtils.newFileWriter(output)) {
+          incremental.compile(root, writer);
+        } catch (LessException e) {
+          Files.deleteIfExists(output);
+          throw e;
+        }
+      }
+
+    } catch (LessException e) {
+      standardErr.println("\n\n" + ErrorUtils.formatError(root, e, 4) + SEPARATOR);
+      return false;
+    }
+    logElapsed("  ", start, System.nanoTime());
+    return true;
+  }
+
+  /**
+   * Adds a root in batch mode, named as in {@link CompileBatch}.
+   */
+  private void addRoot(Path path) {
+    path = path.toAbsolutePath().normalize();
+    String[] fileParts = path.getFileName().toString().split("\\.(?=[^\\.]+$)");
+    outputs.put(path, outputDir.resolve(fileParts[0] + ".css").normalize());
+  }
+
+  /**
+   * Registers the directories containing the inputs, all of their imports, and
+   * the include paths.
+   */
+  private void watchDirectories() throws IOException {
+    List<Path> dirs = new ArrayList<>();
+    if (inputDir != null) {
+      dirs.add(inputDir);
+      for (Path path : LessUtils.getMatchingFiles(inputDir, GLOB_LESS, true)) {
+        dirs.add(inputDir.resolve(path).getParent());
+      }
+    }
+    for (Path importPath : args.compilerOptions().importPaths()) {
+      dirs.add(importPath);
+    }
+    ImportGraph graph = incremental.graph();
+    for (Path root : outputs.keySet()) {
+      dirs.add(root.getParent());
+      for (Path path : graph.imports(root)) {
+        dirs.add(path.getParent());
+      }
+    }
+
+    for (Path dir : dirs) {
+      dir = dir.toAbsolutePath().normalize();
+      if (!watched.contains(dir) && Files.isDirectory(dir)) {
+        keys.put(dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+        watched.add(dir);
+      }
+    }
+  }
+
+  /**
+   * Collects the paths of changed files from a watch key.  Returns true if
+   * events were lost.
+   */
+  private boolean drain(WatchKey key, Set<Path> changed) {
+    boolean overflow = false;
+    Path dir = keys.get(key);
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        overflow = true;
+      } else if (dir != null) {
+        changed.add(dir.resolve((Path)event.context()));
+      }
+    }
+    if (!key.reset()) {
+      keys.remove(key);
+      watched.remove(dir);
+    }
+    return overflow;
+  }
+
+  /**
+   * Maps the normalized form of each path in the graph to the paths recorded
+   * by the compiler.
+   */
+  private static Map<Path, List<Path>> aliases(ImportGraph graph) {
+    Map<Path, List<Path>> result = new HashMap<>();
+    for (Path root : graph.roots()) {
+      for (Path path : graph.imports(root)) {
+        Path key = path.toAbsolutePath().normalize();
+        List<Path> recorded = result.get(key);
+        if (recorded == null) {
+          recorded = new ArrayList<>();
+          result.put(key, recorded);
+        }
+        if (!recorded.contains(path)) {
+          recorded.add(path);
+        }
+      }
+    }
+    return result;
+  }
+
+}
@@ -84,7 +84,9 @@ public class LessC {
 
     // Select the implementation based on the parsed arguments.
     BaseCompile impl = null;
-    if (args.batchMode()) {
+    if (args.watch()) {
+      impl = new CompileWatch(args, out, err);
+    } else if (args.batchMode()) {
       impl = new CompileBatch(args, out, err);
     } else {
       impl = new CompileSingle(args, out, err, in);
@@ -114,6 +116,10 @@ public class LessC {
       .choices(LessDebugMode.values())
       .help("Enables debug mode.");
 
+    parser.addArgument("--fold-constants")
+      .action(Arguments.storeTrue())
+      .help("Evaluates constant operations and pure function calls once, after parsing.");
+
     parser.addArgument("--indent", "-i")
       .metavar("SPACES")
       .type(Integer.class)
@@ -128,10 +134,20 @@ public class LessC {
       .type(String.class)
       .help("Set include paths. Separated by ':'. Use ';' on Windows");
 
+    parser.addArgument("--jobs", "-j")
+      .metavar("N")
+      .type(Integer.class)
+      .setDefault(1)
+      .help("Number of threads used to compile in batch mode.");
+
     parser.addArgument("--lint", "-l")
       .action(Arguments.storeTrue())
       .help("Syntax check only (lint).");
 
+    parser.addArgument("--memoize-mixins")
+      .action(Arguments.storeTrue())
+      .help("Reuses the results of pure mixin calls with identical arguments.");
+
     parser.addArgument("--mixin-recursion-limit", "-r")
       .metavar("LIMIT")
       .type(Integer.class)
@@ -168,6 +184,10 @@ public class LessC {
       .action(Arguments.storeTrue())
       .help("Waits for user input before executing. For profiling purposes.");
 
+    parser.addArgument("--watch")
+      .action(Arguments.storeTrue())
+      .help("Watches the inputs and their imports, recompiling outputs as files change.");
+
     parser.addArgument("--compress", "-x")
       .action(Arguments.storeTrue())
       .help("Enables compressing whitespace (minification)");
@@ -187,9 +207,11 @@ public class LessC {
       // Options used by the compiler.
       LessOptions opts = new LessOptions();
       opts.compress(res.getBoolean("compress"));
+      opts.foldConstants(res.getBoolean("fold_constants"));
       opts.importOnce(res.getBoolean("import_once"));
       opts.importPaths(parseImportPaths(res));
       opts.indent(res.getInt("indent"));
+      opts.memoizeMixins(res.getBoolean("memoize_mixins"));
       opts.mixinRecursionLimit(res.getInt("mixin_recursion_limit"));
       opts.importRecursionLimit(res.getInt("import_recursion_limit"));
       opts.strict(res.getBoolean("strict"));
@@ -204,10 +226,12 @@ public class LessC {
       cmdArgs.batchMode = res.getBoolean("batch");
       cmdArgs.compilerOptions = opts;
       cmdArgs.debugMode = res.<LessDebugMode>get("debug");
+      cmdArgs.jobs = res.getInt("jobs");
       cmdArgs.lintOnly = res.getBoolean("lint");
       cmdArgs.statistics = res.getBoolean("statistics");
       cmdArgs.verbose = res.getBoolean("verbose");
       cmdArgs.waitForUser = res.getBoolean("wait");
+      cmdArgs.watch = res.getBoolean("watch");
 
       if (cmdArgs.verbose() && cmdArgs.debugMode() != null) {
         dumpArguments(res);
@@ -273,6 +297,8 @@ public class LessC {
 
     private LessDebugMode debugMode;
 
+    private int jobs;
+
     private boolean lintOnly;
 
     private boolean statistics;
@@ -281,6 +307,7 @@ public class LessC {
 
     private boolean waitForUser;
 
+    private boolean watch;
 
     private Args() {
     }
@@ -309,6 +336,10 @@ public class LessC {
       return debugMode;
     }
 
+    public int jobs() {
+      return jobs;
+    }
+
     public boolean lintOnly() {
       return lintOnly;
     }
@@ -325,6 +356,10 @@ public class LessC {
       return waitForUser;
     }
 
+    public boolean watch() {
+      return watch;
+    }
+
   }
 
 }
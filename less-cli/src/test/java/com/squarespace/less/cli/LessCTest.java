@@ -27,8 +27,11 @@ import java.io.InputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.PrintStream;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -43,6 +46,8 @@ public class LessCTest extends LessSuiteBase {
 
   private File tempFile;
 
+  private Path tempDir;
+
   private ByteArrayOutputStream standardOut;
 
   private ByteArrayOutputStream standardErr;
@@ -78,8 +83,12 @@ public class LessCTest extends LessSuiteBase {
   }
 
   @AfterMethod
-  private void tearDown() {
+  private void tearDown() throws IOException {
     restoreStreams();
+    if (tempDir != null) {
+      deleteRecursively(tempDir);
+      tempDir = null;
+    }
   }
 
   private void restoreStreams() {
@@ -151,6 +160,58 @@ public class LessCTest extends LessSuiteBase {
     }
   }
 
+  @Test
+  public void testParallelBatchCompile() throws LessException, IOException {
+    Path lessPath = testSuiteRoot().resolve("less");
+    tempFile = Files.createTempDirectory("lessc-batch-unit-test").toFile();
+    compile("--batch", "--jobs", "4", lessPath.toString(), tempFile.toString());
+
+    Path cssPath = testSuiteRoot().resolve("css");
+    String pattern = "glob:*.css";
+    for (Path expectedPath : LessUtils.getMatchingFiles(cssPath, pattern)) {
+      Path actualPath = tempFile.toPath().resolve(expectedPath.getFileName());
+      assertFilesEqual(expectedPath, actualPath);
+    }
+    assertTrue(standardErr.toString().contains("files/sec"));
+  }
+
+  @Test
+  public void testWatch() throws Exception {
+    Path inputDir = Files.createTempDirectory("lessc-watch-unit-test");
+    tempDir = inputDir;
+    Path outputDir = inputDir.resolve("out");
+    Path basePath = inputDir.resolve("base.less");
+    LessUtils.writeFile(basePath, "@color: red;");
+    LessUtils.writeFile(inputDir.resolve("main.less"), "@import 'base.less';\n.a { color: @color; }");
+
+    final String[] args = new String[] { "--watch", "--batch", "--compress", inputDir.toString(),
+        outputDir.toString() };
+    Thread watcher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        compile(args);
+      }
+    });
+    watcher.start();
+    try {
+      Path mainCss = outputDir.resolve("main.css");
+      waitForContents(mainCss, ".a{color:red}");
+
+      // Changing an import rebuilds the stylesheets that depend on it.
+      LessUtils.writeFile(basePath, "@color: blue;");
+      waitForContents(mainCss, ".a{color:blue}");
+
+      // New stylesheets are compiled as they appear.
+      LessUtils.writeFile(inputDir.resolve("other.less"), ".b { color: @color; } @import 'base';");
+      waitForContents(outputDir.resolve("other.css"), ".b{color:blue}");
+      assertTrue(standardErr.toString().contains("Rebuilt 1 of"));
+
+    } finally {
+      watcher.interrupt();
+      watcher.join(5000);
+    }
+  }
+
   @Test
   public void testVersion() throws LessException {
     try {
@@ -172,6 +233,37 @@ public class LessCTest extends LessSuiteBase {
     }
   }
 
+  private static void deleteRecursively(Path root) throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static void waitForContents(Path path, String expected) throws Exception {
+    String actual = null;
+    long deadline = System.currentTimeMillis() + 10000;
+    while (System.currentTimeMillis() < deadline) {
+      if (Files.exists(path)) {
+        actual = LessUtils.readFile(path);
+        if (expected.equals(actual)) {
+          return;
+        }
+      }
+      Thread.sleep(20);
+    }
+    assertEquals(actual, expected, "Timed out waiting for " + path);
+  }
+
   private void assertFilesEqual(Path expectedPath, Path actualPath) throws IOException {
     String srcData = LessUtils.readFile(expectedPath);
     String dstData = LessUtils.readFile(actualPath);
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.squarespace.less.StylesheetGenerator.Scenario;
+import com.squarespace.less.exec.LessEvaluator;
+import com.squarespace.less.exec.LessRenderer;
+import com.squarespace.less.model.Stylesheet;
+
+
+/**
+ * Measures each stage of the compiler against generated stylesheets of varying
+ * size and feature mix.  Run with {@code -prof gc} to include allocation rates.
+ */
+@Fork(1)
+@Measurement(iterations = 5, time = 5)
+@Warmup(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CompilerBenchmark {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  /**
+   * Parse, evaluate and render.
+   */
+  @Benchmark
+  public String compile(GeneratedState state) throws LessException {
+    return COMPILER.compile(state.source, state.newContext(), StylesheetGenerator.mainPath());
+  }
+
+  /**
+   * Evaluate a parsed stylesheet.
+   */
+  @Benchmark
+  public Stylesheet evaluate(GeneratedState state) throws LessException {
+    LessEvaluator evaluator = new LessEvaluator(state.newContext());
+    return evaluator.evaluate(state.parsed);
+  }
+
+  /**
+   * Render an evaluated stylesheet.
+   */
+  @Benchmark
+  public String render(EvaluatedState state) throws LessException {
+    return LessRenderer.render(state.context, state.evaluated);
+  }
+
+  @State(Scope.Benchmark)
+  public static class GeneratedState {
+
+    @Param({ "100", "1000" })
+    private int rulesets;
+
+    @Param({ "1", "3" })
+    private int depth;
+
+    @Param({ "4" })
+    private int fanout;
+
+    @Param({ "MIXINS", "EXTEND", "IMPORTS", "FUNCTIONS", "MIXED" })
+    private Scenario scenario;
+
+    private StylesheetGenerator generator;
+
+    private String source;
+
+    private Stylesheet parsed;
+
+    @Setup
+    public void generate() throws LessException {
+      generator = new StylesheetGenerator(rulesets, depth, fanout);
+      source = generator.generate(scenario);
+      parsed = COMPILER.parse(source, newContext(), StylesheetGenerator.mainPath());
+    }
+
+    LessContext newContext() {
+      LessContext ctx = new LessContext(new LessOptions(), generator.loader());
+      ctx.setFunctionTable(COMPILER.functionTable());
+      return ctx;
+    }
+
+  }
+
+  /**
+   * Evaluates a fresh copy of the stylesheet before each render, since rendering
+   * indexes extends into the evaluated tree.
+   */
+  @State(Scope.Thread)
+  public static class EvaluatedState {
+
+    private LessContext context;
+
+    private Stylesheet evaluated;
+
+    @Setup(Level.Invocation)
+    public void evaluate(GeneratedState state) throws LessException {
+      context = state.newContext();
+      evaluated = new LessEvaluator(context).evaluate(state.parsed);
+    }
+
+  }
+
+}
@@ -0,0 +1,384 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.squarespace.less.StylesheetGenerator.Scenario;
+import com.squarespace.less.exec.CssModel;
+import com.squarespace.less.model.NodeType;
+
+
+/**
+ * Compares the arena-backed {@link CssModel} with the set-based model it replaced,
+ * which kept each block's headers and values in {@link LinkedHashSet}s.  The output
+ * of a large generated stylesheet is split back into the calls the renderer made,
+ * which are replayed into each model, creating each string as the renderer would.
+ *
+ * Run with {@code -prof gc} to compare allocations.  Run {@link #main(String[])}
+ * to compare the heap retained by each model once built.
+ */
+@Fork(1)
+@Measurement(iterations = 5, time = 5)
+@Warmup(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CssModelBenchmark {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  private static final int PUSH_RULESET = 0;
+  private static final int PUSH_MEDIA = 1;
+  private static final int PUSH_DIRECTIVE = 2;
+  private static final int HEADER = 3;
+  private static final int VALUE = 4;
+  private static final int POP = 5;
+
+  @Benchmark
+  public Object arenaModel(OutputState state) {
+    return state.replay(new CssModel(state.context)).render();
+  }
+
+  @Benchmark
+  public Object setModel(OutputState state) {
+    return state.replay(new SetModel()).render();
+  }
+
+  /**
+   * Builds each model from the largest output and prints the heap it retains.
+   */
+  public static void main(String[] args) throws Exception {
+    OutputState state = new OutputState();
+    state.rulesets = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    state.generate();
+    System.out.printf("output: %d chars, %d calls\n", state.output.length(), state.count);
+    System.out.printf("  set model: %,d bytes retained\n", retained(state, false));
+    System.out.printf("arena model: %,d bytes retained\n", retained(state, true));
+  }
+
+  private static long retained(OutputState state, boolean arena) throws Exception {
+    long before = usedHeap();
+    Object model = arena ? state.replay(new CssModel(state.context)) : state.replay(new SetModel());
+    long after = usedHeap();
+    if (model.hashCode() == 0) {
+      System.out.print("");
+    }
+    return after - before;
+  }
+
+  private static long usedHeap() throws Exception {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  @State(Scope.Benchmark)
+  public static class OutputState {
+
+    @Param({ "1000", "10000" })
+    private int rulesets;
+
+    private LessContext context;
+
+    private String output;
+
+    /**
+     * Replayed calls, as triples of operation, start and end offsets into the output.
+     */
+    private int[] calls;
+
+    private int count;
+
+    @Setup
+    public void generate() throws LessException {
+      StylesheetGenerator generator = new StylesheetGenerator(rulesets, 3, 4);
+      String source = generator.generate(Scenario.MIXED);
+      LessOptions opts = new LessOptions(true);
+      LessContext ctx = new LessContext(opts, generator.loader());
+      ctx.setFunctionTable(COMPILER.functionTable());
+      output = COMPILER.compile(source, ctx, StylesheetGenerator.mainPath());
+      context = new LessContext(opts);
+      split();
+    }
+
+    /**
+     * Splits the compressed output back into the model calls that produced it.
+     */
+    private void split() {
+      calls = new int[64];
+      count = 0;
+      int start = 0;
+      int depth = 0;
+      char quote = 0;
+      for (int i = 0; i < output.length(); i++) {
+        char ch = output.charAt(i);
+        if (quote != 0) {
+          if (ch == quote) {
+            quote = 0;
+          }
+          continue;
+        }
+        switch (ch) {
+          case '"':
+          case '\'':
+            quote = ch;
+            break;
+
+          case '(':
+          case '[':
+            depth++;
+            break;
+
+          case ')':
+          case ']':
+            depth--;
+            break;
+
+          case '{':
+            push(start, i);
+            start = i + 1;
+            break;
+
+          case ';':
+          case '}':
+            if (depth == 0) {
+              if (i > start) {
+                call(VALUE, start, i);
+              }
+              if (ch == '}') {
+                call(POP, i, i);
+              }
+              start = i + 1;
+            }
+            break;
+
+          default:
+            break;
+        }
+      }
+      if (output.length() > start) {
+        call(VALUE, start, output.length());
+      }
+    }
+
+    private void push(int start, int end) {
+      if (output.startsWith("@media", start)) {
+        call(PUSH_MEDIA, start, end);
+        call(HEADER, start, end);
+      } else if (output.charAt(start) == '@') {
+        call(PUSH_DIRECTIVE, start, end);
+        call(HEADER, start, end);
+      } else {
+        call(PUSH_RULESET, start, end);
+        int depth = 0;
+        int from = start;
+        for (int i = start; i < end; i++) {
+          char ch = output.charAt(i);
+          if (ch == '(') {
+            depth++;
+          } else if (ch == ')') {
+            depth--;
+          } else if (ch == ',' && depth == 0) {
+            call(HEADER, from, i);
+            from = i + 1;
+          }
+        }
+        call(HEADER, from, end);
+      }
+    }
+
+    private void call(int op, int start, int end) {
+      if (count + 3 > calls.length) {
+        calls = Arrays.copyOf(calls, calls.length * 2);
+      }
+      calls[count++] = op;
+      calls[count++] = start;
+      calls[count++] = end;
+    }
+
+    CssModel replay(CssModel model) {
+      for (int i = 0; i < count; i += 3) {
+        int start = calls[i + 1];
+        int end = calls[i + 2];
+        switch (calls[i]) {
+          case PUSH_RULESET:
+            model.push(NodeType.RULESET);
+            break;
+          case PUSH_MEDIA:
+            model.push(NodeType.MEDIA);
+            break;
+          case PUSH_DIRECTIVE:
+            model.push(NodeType.BLOCK_DIRECTIVE);
+            break;
+          case HEADER:
+            model.header(output.substring(start, end));
+            break;
+          case VALUE:
+            model.value(output.substring(start, end));
+            break;
+          default:
+            model.pop();
+            break;
+        }
+      }
+      return model;
+    }
+
+    SetModel replay(SetModel model) {
+      for (int i = 0; i < count; i += 3) {
+        int start = calls[i + 1];
+        int end = calls[i + 2];
+        switch (calls[i]) {
+          case PUSH_RULESET:
+          case PUSH_MEDIA:
+          case PUSH_DIRECTIVE:
+            model.push();
+            break;
+          case HEADER:
+            model.current.headers.add(output.substring(start, end));
+            break;
+          case VALUE:
+            model.current.add(new SetValue(output.substring(start, end)));
+            break;
+          default:
+            model.pop();
+            break;
+        }
+      }
+      return model;
+    }
+
+  }
+
+  /**
+   * The set-based model, reduced to its storage and rendering.  Blocks are
+   * nested as pushed, since the generated output needs no deferral.
+   */
+  static class SetModel {
+
+    private final SetBlock root = new SetBlock(null);
+
+    private SetBlock current = root;
+
+    void push() {
+      SetBlock child = new SetBlock(current);
+      current.add(child);
+      current = child;
+    }
+
+    void pop() {
+      current = current.parent;
+    }
+
+    String render() {
+      StringBuilder buf = new StringBuilder();
+      root.render(buf);
+      return buf.toString();
+    }
+
+  }
+
+  static class SetBlock {
+
+    private final Set<String> headers = new LinkedHashSet<>();
+
+    private final Set<Object> nodes = new LinkedHashSet<>();
+
+    private final SetBlock parent;
+
+    SetBlock(SetBlock parent) {
+      this.parent = parent;
+    }
+
+    void add(Object node) {
+      if (nodes.contains(node)) {
+        nodes.remove(node);
+      }
+      nodes.add(node);
+    }
+
+    void render(StringBuilder buf) {
+      if (!headers.isEmpty()) {
+        int count = 0;
+        for (String header : headers) {
+          if (count++ > 0) {
+            buf.append(',');
+          }
+          buf.append(header);
+        }
+        buf.append('{');
+      }
+      Iterator<Object> iter = nodes.iterator();
+      while (iter.hasNext()) {
+        Object node = iter.next();
+        if (node instanceof SetBlock) {
+          ((SetBlock)node).render(buf);
+        } else {
+          buf.append(((SetValue)node).value);
+          if (iter.hasNext()) {
+            buf.append(';');
+          }
+        }
+      }
+      if (!headers.isEmpty()) {
+        buf.append('}');
+      }
+    }
+
+  }
+
+  static class SetValue {
+
+    private final String value;
+
+    SetValue(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof SetValue) ? value.equals(((SetValue)obj).value) : false;
+    }
+
+    @Override
+    public int hashCode() {
+      return value.hashCode();
+    }
+
+  }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.squarespace.less.core.HashPrefixTree.HPTMatch;
+import com.squarespace.less.core.IntSet;
+import com.squarespace.less.exec.ExtendIndex;
+import com.squarespace.less.model.Combinator;
+import com.squarespace.less.model.CombinatorType;
+import com.squarespace.less.model.Extend;
+import com.squarespace.less.model.ExtendList;
+import com.squarespace.less.model.Selector;
+import com.squarespace.less.model.TextElement;
+
+
+/**
+ * Measures partial matching of selectors against an index of thousands of
+ * {@code :extend(... all)} expressions.  Each invocation queries every selector
+ * in a fixed set, reusing one duplicate filter as the extend matcher does.
+ */
+@Fork(1)
+@Measurement(iterations = 5, time = 5)
+@Warmup(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExtendIndexBenchmark {
+
+  @Benchmark
+  public int findPartialMatch(IndexState state) {
+    IntSet dupeFilter = state.dupeFilter;
+    int matched = 0;
+    for (Selector query : state.queries) {
+      dupeFilter.clear();
+      List<HPTMatch<Selector>> matches = state.index.findPartialMatch(query, dupeFilter);
+      if (matches != null) {
+        for (HPTMatch<Selector> match : matches) {
+          dupeFilter.add(match.keyId());
+          matched += match.values().size();
+        }
+      }
+    }
+    return matched;
+  }
+
+  @State(Scope.Benchmark)
+  public static class IndexState {
+
+    @Param({ "1000", "5000" })
+    private int extendCount;
+
+    @Param({ "1000" })
+    private int queryCount;
+
+    private final IntSet dupeFilter = new IntSet();
+
+    private ExtendIndex index;
+
+    private Selector[] queries;
+
+    @Setup
+    public void generate() {
+      // Class names are drawn from a vocabulary small enough that queries
+      // share many prefixes with the indexed targets.
+      Random random = new Random(1309);
+      int vocabulary = Math.max(16, extendCount / 8);
+
+      index = new ExtendIndex();
+      for (int i = 0; i < extendCount; i++) {
+        ExtendList extendList = new ExtendList(false);
+        extendList.add(new Extend(selector(random, vocabulary, 1 + random.nextInt(3)), true));
+        Selector selector = selector(random, vocabulary, 1 + random.nextInt(2));
+        selector.extendList(extendList);
+        index.index(selector);
+      }
+
+      queries = new Selector[queryCount];
+      for (int i = 0; i < queryCount; i++) {
+        queries[i] = selector(random, vocabulary, 3 + random.nextInt(5));
+      }
+    }
+
+    private static Selector selector(Random random, int vocabulary, int elements) {
+      Selector selector = new Selector();
+      for (int i = 0; i < elements; i++) {
+        if (i > 0) {
+          selector.add(new Combinator(CombinatorType.DESC));
+        }
+        selector.add(new TextElement(".c" + random.nextInt(vocabulary)));
+      }
+      return selector;
+    }
+
+  }
+
+}
@@ -25,13 +25,16 @@ import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import org.openjdk.jmh.runner.RunnerException;
 
+import com.squarespace.less.StylesheetGenerator.Scenario;
 import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.model.Stylesheet;
 import com.squarespace.less.parse.LessParser;
 import com.squarespace.less.parse.LessStream;
 import com.squarespace.less.parse.Parselets;
@@ -44,11 +47,24 @@ import com.squarespace.less.parse.Parselets;
 @OutputTimeUnit(TimeUnit.SECONDS)
 public class ParserBenchmark {
 
+  private static final LessCompiler COMPILER = new LessCompiler();
+
   @Benchmark
   public void parseSelector(BenchmarkState state) throws LessException {
     state.streamExample().parse(Parselets.STYLESHEET);
   }
 
+  /**
+   * Parses a generated stylesheet and its imports.  Run with {@code -prof gc}
+   * and divide the normalized allocation rate by the source size to compare
+   * allocations per KB of input.
+   */
+  @Benchmark
+  public Stylesheet parseGenerated(GeneratedState state) throws LessException {
+    LessContext ctx = new LessContext(new LessOptions(), state.generator.loader());
+    return COMPILER.parse(state.source, ctx, StylesheetGenerator.mainPath());
+  }
+
   @State(Scope.Benchmark)
   public static class BenchmarkState {
 
@@ -78,4 +94,22 @@ public class ParserBenchmark {
     }
   }
 
+  @State(Scope.Benchmark)
+  public static class GeneratedState {
+
+    @Param({ "100", "1000" })
+    private int rulesets;
+
+    private StylesheetGenerator generator;
+
+    private String source;
+
+    @Setup
+    public void generate() {
+      generator = new StylesheetGenerator(rulesets, 2, 4);
+      source = generator.generate(Scenario.MIXED);
+    }
+
+  }
+
 }
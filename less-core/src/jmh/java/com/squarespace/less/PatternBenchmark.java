@@ -0,0 +1,153 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.squarespace.compiler.match.Recognizers.Recognizer;
+import com.squarespace.less.StylesheetGenerator.Scenario;
+import com.squarespace.less.parse.Patterns;
+import com.squarespace.less.parse.RecognizerPatterns;
+
+
+/**
+ * Compares the regular expressions the parser's stream used to match tokens
+ * against the recognizers that replaced them.  Each invocation tries every
+ * pattern at every line of a generated stylesheet, and the regular expression
+ * variant creates its matchers once per invocation, as each stream did.  Run
+ * with {@code -prof gc} and divide the normalized allocation rate by the size
+ * of the source to compare allocations per KB of input.
+ */
+@Fork(1)
+@Measurement(iterations = 5, time = 5)
+@Warmup(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatternBenchmark {
+
+  private static final Pattern[] PATTERNS = new Pattern[] {
+    Patterns.ATTRIBUTE_KEY,
+    Patterns.ATTRIBUTE_OP,
+    Patterns.DIRECTIVE,
+    Patterns.KEYWORD,
+    Patterns.MIXIN_NAME,
+    Patterns.OPACITY,
+    Patterns.PROPERTY,
+    Patterns.RATIO,
+    Patterns.SHORTHAND,
+    Patterns.UNICODE_DESCRIPTOR
+  };
+
+  private static final Recognizer[] RECOGNIZERS = new Recognizer[] {
+    RecognizerPatterns.ATTRIBUTE_KEY,
+    RecognizerPatterns.ATTRIBUTE_OP,
+    RecognizerPatterns.DIRECTIVE,
+    RecognizerPatterns.KEYWORD,
+    RecognizerPatterns.MIXIN_NAME,
+    RecognizerPatterns.OPACITY,
+    RecognizerPatterns.PROPERTY,
+    RecognizerPatterns.RATIO,
+    RecognizerPatterns.SHORTHAND,
+    RecognizerPatterns.UNICODE_RANGE
+  };
+
+  @Benchmark
+  public int regex(SourceState state) {
+    String source = state.source;
+    int length = source.length();
+    Matcher[] matchers = new Matcher[PATTERNS.length];
+    for (int i = 0; i < PATTERNS.length; i++) {
+      matchers[i] = PATTERNS[i].matcher(source);
+    }
+    int matched = 0;
+    for (int offset : state.offsets) {
+      for (Matcher matcher : matchers) {
+        matcher.region(offset, length);
+        if (matcher.lookingAt()) {
+          matched += matcher.end() - offset;
+        }
+      }
+    }
+    return matched;
+  }
+
+  @Benchmark
+  public int recognizer(SourceState state) {
+    String source = state.source;
+    int length = source.length();
+    int matched = 0;
+    for (int offset : state.offsets) {
+      for (Recognizer recognizer : RECOGNIZERS) {
+        int end = recognizer.match(source, offset, length);
+        if (end > offset) {
+          matched += end - offset;
+        }
+      }
+    }
+    return matched;
+  }
+
+  @State(Scope.Benchmark)
+  public static class SourceState {
+
+    @Param({ "100", "1000" })
+    private int rulesets;
+
+    private String source;
+
+    /**
+     * Offset of the first non-whitespace character on each line.
+     */
+    private int[] offsets;
+
+    @Setup
+    public void generate() {
+      source = new StylesheetGenerator(rulesets, 2, 4).generate(Scenario.MIXED);
+      int count = 0;
+      int[] found = new int[source.length()];
+      boolean start = true;
+      for (int i = 0; i < source.length(); i++) {
+        char ch = source.charAt(i);
+        if (ch == '\n') {
+          start = true;
+        } else if (start && ch != ' ') {
+          found[count++] = i;
+          start = false;
+        }
+      }
+      offsets = new int[count];
+      System.arraycopy(found, 0, offsets, 0, count);
+    }
+
+  }
+
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Generates synthetic stylesheets for benchmarks.  The output is deterministic
+ * for a given set of parameters, so results can be compared between runs.
+ *
+ * Each stylesheet contains {@code rulesets} top-level rulesets, each of which
+ * nests two child rulesets per level down to {@code depth} levels.  The scenario determines the
+ * features exercised by every ruleset, with {@code fanout} controlling how many
+ * mixins, extend targets or imports are involved.
+ */
+public class StylesheetGenerator {
+
+  /**
+   * Feature mix of the generated stylesheet.
+   */
+  public enum Scenario {
+    /** Parameterized and guarded mixin calls */
+    MIXINS,
+    /** Selectors extending a set of base rulesets */
+    EXTEND,
+    /** Variables, mixins and rulesets spread across imported files */
+    IMPORTS,
+    /** Color, math and string function calls */
+    FUNCTIONS,
+    /** All of the above */
+    MIXED
+  }
+
+  private static final int VARIABLES = 16;
+
+  private final int rulesets;
+
+  private final int depth;
+
+  private final int fanout;
+
+  private final Map<Path, String> imports = new LinkedHashMap<>();
+
+  public StylesheetGenerator(int rulesets, int depth, int fanout) {
+    this.rulesets = rulesets;
+    this.depth = Math.max(1, depth);
+    this.fanout = Math.max(1, fanout);
+  }
+
+  /**
+   * Path of the generated main stylesheet.  Imports are resolved relative to it.
+   */
+  public static Path mainPath() {
+    return path("main.less");
+  }
+
+  /**
+   * Generates the main stylesheet for the scenario.  Any imported files it
+   * references are available from {@link #imports()} afterwards.
+   */
+  public String generate(Scenario scenario) {
+    imports.clear();
+    StringBuilder buf = new StringBuilder();
+    boolean all = scenario == Scenario.MIXED;
+
+    if (scenario == Scenario.IMPORTS || all) {
+      // Variables and mixins are defined by imported files.
+      generateImports(buf);
+    } else {
+      variables(buf);
+      if (scenario == Scenario.MIXINS) {
+        mixins(buf);
+      }
+    }
+    if (scenario == Scenario.EXTEND || all) {
+      extendTargets(buf);
+    }
+
+    for (int i = 0; i < rulesets; i++) {
+      ruleset(buf, scenario, ".r" + i, i, 1);
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Imported files referenced by the last generated stylesheet, keyed by path.
+   */
+  public Map<Path, String> imports() {
+    return imports;
+  }
+
+  /**
+   * Returns a loader which serves the last generated stylesheet's imports.
+   */
+  public LessLoader loader() {
+    return new HashMapLessLoader(imports);
+  }
+
+  private void generateImports(StringBuilder buf) {
+    StringBuilder vars = new StringBuilder();
+    variables(vars);
+    imports.put(path("variables.less"), vars.toString());
+    buf.append("@import 'variables.less';\n");
+
+    StringBuilder mixins = new StringBuilder();
+    mixins(mixins);
+    imports.put(path("mixins.less"), mixins.toString());
+    buf.append("@import 'mixins.less';\n");
+
+    // Each partial is imported by the main stylesheet and also imports the
+    // shared variables, exercising nested and repeated imports.
+    int perPartial = Math.max(1, rulesets / fanout);
+    for (int k = 0; k < fanout; k++) {
+      StringBuilder partial = new StringBuilder();
+      partial.append("@import 'variables.less';\n");
+      for (int i = 0; i < perPartial; i++) {
+        ruleset(partial, Scenario.IMPORTS, ".p" + k + "-" + i, i, 1);
+      }
+      String name = "partial-" + k + ".less";
+      imports.put(path(name), partial.toString());
+      buf.append("@import '").append(name).append("';\n");
+    }
+  }
+
+  private void variables(StringBuilder buf) {
+    for (int i = 0; i < VARIABLES; i++) {
+      buf.append("@color-").append(i).append(": ").append(color(i)).append(";\n");
+      buf.append("@size-").append(i).append(": ").append(i + 1).append("px;\n");
+    }
+    buf.append("@base: @size-3 * 2;\n");
+  }
+
+  private void mixins(StringBuilder buf) {
+    for (int k = 0; k < fanout; k++) {
+      buf.append(".mixin-").append(k).append("(@a; @b: @size-").append(k % VARIABLES).append(") {\n");
+      buf.append("  width: @a;\n");
+      buf.append("  margin: @b @a;\n");
+      buf.append("  .inner-").append(k).append(" { color: @color-").append(k % VARIABLES).append("; }\n");
+      buf.append("}\n");
+      buf.append(".guarded-").append(k).append("(@n) when (@n > ").append(k).append(") { z-index: @n; }\n");
+      buf.append(".guarded-").append(k).append("(@n) when (@n <= ").append(k).append(") { z-index: 0; }\n");
+    }
+  }
+
+  private void extendTargets(StringBuilder buf) {
+    for (int k = 0; k < fanout; k++) {
+      buf.append(".base-").append(k).append(" { color: @color-").append(k % VARIABLES)
+          .append("; padding: @size-").append(k % VARIABLES).append("; }\n");
+      buf.append(".base-").append(k).append(":hover { color: @color-").append((k + 1) % VARIABLES)
+          .append("; }\n");
+    }
+  }
+
+  private void ruleset(StringBuilder buf, Scenario scenario, String selector, int index, int level) {
+    boolean all = scenario == Scenario.MIXED;
+    indent(buf, level - 1);
+    buf.append(selector);
+    if (level == 1) {
+      buf.append(", ").append(selector).append("-alt > a");
+    }
+    buf.append(" {\n");
+
+    int var = (index + level) % VARIABLES;
+    indent(buf, level);
+    buf.append("color: @color-").append(var).append(";\n");
+    indent(buf, level);
+    buf.append("font-size: @size-").append(var).append(" + 1;\n");
+
+    if (scenario == Scenario.MIXINS || scenario == Scenario.IMPORTS || all) {
+      for (int k = 0; k < fanout; k++) {
+        int m = (index + k) % fanout;
+        indent(buf, level);
+        buf.append(".mixin-").append(m).append("(").append(k + level).append("px);\n");
+      }
+      indent(buf, level);
+      buf.append(".guarded-").append(index % fanout).append("(").append(index % 8).append(");\n");
+    }
+    if (scenario == Scenario.EXTEND || all) {
+      indent(buf, level);
+      buf.append("&:extend(.base-").append(index % fanout).append(" all);\n");
+    }
+    if (scenario == Scenario.FUNCTIONS || all) {
+      indent(buf, level);
+      buf.append("background: darken(@color-").append(var).append(", ").append(level * 5).append("%);\n");
+      indent(buf, level);
+      buf.append("border-color: mix(@color-").append(var).append(", @color-").append((var + 1) % VARIABLES)
+          .append(", 50%);\n");
+      indent(buf, level);
+      buf.append("width: percentage(").append(index % 10).append(" / 10);\n");
+      indent(buf, level);
+      buf.append("height: ceil(@base / 3) + round(2.5px);\n");
+      indent(buf, level);
+      buf.append("box-shadow: 0 1px 2px fade(@color-").append(var).append(", 30%);\n");
+      indent(buf, level);
+      buf.append("content: ~\"").append(selector.substring(1)).append("-@{size-").append(var).append("}\";\n");
+    }
+
+    if (level < depth) {
+      ruleset(buf, scenario, "&.n" + level, index, level + 1);
+      ruleset(buf, scenario, "> .c" + level, index + 1, level + 1);
+    }
+    indent(buf, level - 1);
+    buf.append("}\n");
+  }
+
+  private static String color(int i) {
+    int r = (i * 37) & 0xff;
+    int g = (i * 91 + 64) & 0xff;
+    int b = (i * 53 + 128) & 0xff;
+    return String.format("#%02x%02x%02x", r, g, b);
+  }
+
+  private static void indent(StringBuilder buf, int level) {
+    for (int i = 0; i < level; i++) {
+      buf.append("  ");
+    }
+  }
+
+  private static Path path(String name) {
+    return Paths.get(name).toAbsolutePath().normalize();
+  }
+
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.squarespace.less.exec.FunctionTable;
+
+
+/**
+ * Caches the output of {@link LessCompiler#compile(CharSequence, LessContext, Path)},
+ * and is safe for concurrent use.
+ *
+ * Each output is keyed by a fingerprint of the root source, its path, the options
+ * and the function table, and is stored with the fingerprints of every file the
+ * compile in-lined.  A cached output is only returned if all of those files are
+ * unchanged, as read by the context's loader.  Concurrent requests for the same
+ * key wait for a single compile rather than each compiling, and receive its
+ * output.  If that compile fails, each waiter compiles for itself, since the
+ * error may come from the first caller's deadline, budget or loader.  Errors
+ * are never cached.
+ *
+ * Entries are evicted in least-recently-used order once either the number of
+ * entries or their total size exceeds its maximum.
+ */
+public class CachingLessCompiler {
+
+  /**
+   * Default maximum number of entries.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+  /**
+   * Default maximum weight, in number of output characters.
+   */
+  public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+  private final LessCompiler compiler;
+
+  private final int maxEntries;
+
+  private final long maxWeight;
+
+  /**
+   * Entries in access order, least-recently used first.
+   */
+  private final Map<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+  /**
+   * Compiles in progress, completed when each compile finishes.
+   */
+  private final ConcurrentMap<Key, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+  private long weight;
+
+  private long hits;
+
+  private long misses;
+
+  private long coalesced;
+
+  private long evictions;
+
+  public CachingLessCompiler(LessCompiler compiler) {
+    this(compiler, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+  }
+
+  public CachingLessCompiler(LessCompiler compiler, int maxEntries, long maxWeight) {
+    this.compiler = compiler;
+    this.maxEntries = maxEntries;
+    this.maxWeight = maxWeight;
+  }
+
+  public LessCompiler compiler() {
+    return compiler;
+  }
+
+  public String compile(CharSequence raw, LessContext ctx) throws LessException {
+    return compile(raw, ctx, null);
+  }
+
+  /**
+   * Returns the cached output for the source if it is still valid, otherwise
+   * compiles it, or waits for an identical compile already in progress.  The
+   * context's statistics are only populated by a compile.
+   */
+  public String compile(CharSequence raw, LessContext ctx, Path filePath) throws LessException {
+    Key key = new Key(raw, filePath, ctx);
+    Entry entry = get(key, ctx, true);
+    if (entry != null) {
+      return entry.output;
+    }
+
+    CompletableFuture<Entry> future = new CompletableFuture<>();
+    CompletableFuture<Entry> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      entry = await(existing);
+
+      // The compile may have failed or read different files through another loader.
+      if (entry != null && entry.valid(ctx.importer().loader())) {
+        return entry.output;
+      }
+      return compiler.compile(raw, ctx, filePath);
+    }
+
+    try {
+      // Another compile may have finished since the lookup above.
+      entry = get(key, ctx, false);
+      if (entry == null) {
+        String output = compiler.compile(raw, ctx, filePath);
+        entry = new Entry(key, output, ctx.importer().dependencies());
+        put(entry);
+      }
+      future.complete(entry);
+      return entry.output;
+
+    } catch (LessException | RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /** Number of entries in the cache */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** Total weight of all entries, in number of output characters */
+  public synchronized long weight() {
+    return weight;
+  }
+
+  /** Number of compiles answered by a valid entry */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /** Number of compiles which found no valid entry */
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /** Number of compiles which waited for an identical compile in progress */
+  public synchronized long coalesced() {
+    return coalesced;
+  }
+
+  /** Number of entries evicted to stay under the maximum size or weight */
+  public synchronized long evictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns the entry for the key if the files it in-lined are unchanged,
+   * otherwise null.  Stale entries are discarded.
+   */
+  private Entry get(Key key, LessContext ctx, boolean count) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    // Read the dependencies outside the lock, since it may touch the disk.
+    if (entry != null && !entry.valid(ctx.importer().loader())) {
+      synchronized (this) {
+        remove(entry);
+      }
+      entry = null;
+    }
+    if (count) {
+      synchronized (this) {
+        if (entry == null) {
+          misses++;
+        } else {
+          hits++;
+        }
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Adds an entry, evicting least-recently used entries if the maximum size or
+   * weight is exceeded.  Entries heavier than the maximum weight are not cached.
+   */
+  private synchronized void put(Entry entry) {
+    if (entry.weight > maxWeight) {
+      return;
+    }
+    Entry old = entries.put(entry.key, entry);
+    if (old != null) {
+      weight -= old.weight;
+    }
+    weight += entry.weight;
+
+    Iterator<Entry> iter = entries.values().iterator();
+    while ((weight > maxWeight || entries.size() > maxEntries) && iter.hasNext()) {
+      Entry eldest = iter.next();
+      iter.remove();
+      weight -= eldest.weight;
+      evictions++;
+    }
+  }
+
+  private void remove(Entry entry) {
+    if (entries.remove(entry.key, entry)) {
+      weight -= entry.weight;
+    }
+  }
+
+  /**
+   * Waits for a compile in progress, returning null if it failed.
+   */
+  private Entry await(CompletableFuture<Entry> future) {
+    synchronized (this) {
+      coalesced++;
+    }
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Identifies a compile by its root source and everything that affects how
+   * it is compiled, other than the files it imports.
+   */
+  private static class Key {
+
+    private final long fingerprint;
+
+    private final int length;
+
+    private final Path path;
+
+    private final LessOptions options;
+
+    private final FunctionTable functionTable;
+
+    private final int hashCode;
+
+    Key(CharSequence raw, Path path, LessContext ctx) {
+      this.fingerprint = ImportCache.fingerprint(raw);
+      this.length = raw.length();
+      this.path = path;
+      this.options = new LessOptions(ctx.options());
+      this.functionTable = ctx.functionTable();
+      this.hashCode = Objects.hash(fingerprint, length, path, options, System.identityHashCode(functionTable));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof Key) {
+        Key other = (Key) obj;
+        return fingerprint == other.fingerprint
+            && length == other.length
+            && Objects.equals(path, other.path)
+            && options.equals(other.options)
+            && functionTable == other.functionTable;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+  }
+
+  /**
+   * A compiled output, along with the files that were in-lined to produce it.
+   */
+  private static class Entry {
+
+    private final Key key;
+
+    private final String output;
+
+    private final Map<Path, Long> dependencies;
+
+    private final long weight;
+
+    Entry(Key key, String output, Map<Path, Long> dependencies) {
+      this.key = key;
+      this.output = output;
+      this.dependencies = dependencies.isEmpty()
+          ? Collections.<Path, Long>emptyMap()
+          : new LinkedHashMap<>(dependencies);
+      this.weight = output.length();
+    }
+
+    /**
+     * Indicates whether every in-lined file still has the same content.
+     */
+    boolean valid(LessLoader loader) {
+      for (Map.Entry<Path, Long> dependency : dependencies.entrySet()) {
+        Path path = dependency.getKey();
+        try {
+          if (!loader.exists(path) || ImportCache.fingerprint(loader.loadChars(path)) != dependency.getValue()) {
+            return false;
+          }
+        } catch (LessException e) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+}
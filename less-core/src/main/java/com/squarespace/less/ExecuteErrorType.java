@@ -40,6 +40,15 @@ public enum ExecuteErrorType implements LessErrorType {
   BAD_COLOR_MATH
   ("A color cannot %(arg0)s %(arg1)s"),
 
+  BUDGET_EXCEEDED
+  ("The compile exceeded its budget of %(arg1)s %(arg0)s"),
+
+  COMPILE_CANCELLED
+  ("The compile was cancelled"),
+
+  DEADLINE_EXCEEDED
+  ("The compile exceeded its deadline of %(arg0)s ms"),
+
   DIVIDE_BY_ZERO
   ("Attempt to divide %(arg0)s by zero."),
 
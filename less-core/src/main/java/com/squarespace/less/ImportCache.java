@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.squarespace.less.exec.FunctionTable;
+import com.squarespace.less.model.Block;
+
+
+/**
+ * Process-wide cache of parsed imports, shared by many {@link LessContext} instances
+ * and safe for concurrent use.  Each entry holds the parsed block for an imported
+ * file, keyed by its normalized path and validated against a fingerprint of the
+ * file's content.  Entries are evicted in least-recently-used order once the total
+ * size of the cached sources exceeds the configured maximum weight.
+ *
+ * Parsed blocks are never modified once cached, so the same nodes can be spliced
+ * into any number of stylesheets.
+ */
+public class ImportCache {
+
+  /**
+   * Default maximum weight, in number of source characters.
+   */
+  public static final long DEFAULT_MAX_WEIGHT = 16L * 1024 * 1024;
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * Entries in access order, least-recently used first.
+   */
+  private final Map<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+  private final long maxWeight;
+
+  private long weight;
+
+  private long hits;
+
+  private long misses;
+
+  private long evictions;
+
+  public ImportCache() {
+    this(DEFAULT_MAX_WEIGHT);
+  }
+
+  public ImportCache(long maxWeight) {
+    this.maxWeight = maxWeight;
+  }
+
+  /**
+   * Returns the entry for the given path if its content fingerprint matches,
+   * otherwise null. Stale entries are discarded.
+   */
+  public synchronized Entry get(Path path, long fingerprint) {
+    Entry entry = entries.get(path);
+    if (entry != null && entry.fingerprint != fingerprint) {
+      remove(path);
+      entry = null;
+    }
+    if (entry == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return entry;
+  }
+
+  /**
+   * Adds an entry to the cache, evicting least-recently used entries if the
+   * maximum weight is exceeded.  Entries heavier than the maximum weight are
+   * not cached.
+   */
+  public synchronized void put(Entry entry) {
+    if (entry.weight > maxWeight) {
+      return;
+    }
+    remove(entry.path);
+    entries.put(entry.path, entry);
+    weight += entry.weight;
+
+    Iterator<Entry> iter = entries.values().iterator();
+    while (weight > maxWeight && iter.hasNext()) {
+      Entry eldest = iter.next();
+      iter.remove();
+      weight -= eldest.weight;
+      evictions++;
+    }
+  }
+
+  /**
+   * Removes the entry for the given path, along with any entries that in-lined
+   * it, returning the number of entries removed.
+   */
+  public synchronized int invalidate(Path path) {
+    int removed = 0;
+    Iterator<Entry> iter = entries.values().iterator();
+    while (iter.hasNext()) {
+      Entry entry = iter.next();
+      if (entry.path.equals(path) || entry.dependsOn(path)) {
+        iter.remove();
+        weight -= entry.weight;
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    weight = 0;
+  }
+
+  /** Number of entries in the cache */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /** Total weight of all entries, in number of source characters */
+  public synchronized long weight() {
+    return weight;
+  }
+
+  /** Number of lookups which found a valid entry */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /** Number of lookups which found no valid entry */
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /** Number of entries evicted to stay under the maximum weight */
+  public synchronized long evictions() {
+    return evictions;
+  }
+
+  /**
+   * Computes a 64-bit FNV-1a fingerprint of the source.
+   */
+  public static long fingerprint(CharSequence source) {
+    long hash = FNV_OFFSET;
+    int len = source.length();
+    for (int i = 0; i < len; i++) {
+      hash ^= source.charAt(i);
+      hash *= FNV_PRIME;
+    }
+    return hash;
+  }
+
+  private void remove(Path path) {
+    Entry old = entries.remove(path);
+    if (old != null) {
+      weight -= old.weight;
+    }
+  }
+
+  /**
+   * A parsed import, along with the nested imports that were in-lined into it.
+   */
+  public static class Entry {
+
+    private final Path path;
+
+    private final long fingerprint;
+
+    private final Block block;
+
+    private final List<Dependency> dependencies;
+
+    private final int depth;
+
+    private final long weight;
+
+    private final boolean strict;
+
+    private final boolean importOnce;
+
+    private final boolean foldConstants;
+
+    private final List<Path> importPaths;
+
+    /**
+     * Table used to fold pure function calls, if constants were folded.
+     */
+    private final FunctionTable functionTable;
+
+    public Entry(Path path, long fingerprint, Block block, List<Dependency> dependencies, int depth,
+        long weight, LessOptions opts) {
+      this(path, fingerprint, block, dependencies, depth, weight, opts, null);
+    }
+
+    public Entry(Path path, long fingerprint, Block block, List<Dependency> dependencies, int depth,
+        long weight, LessOptions opts, FunctionTable functionTable) {
+      this.path = path;
+      this.fingerprint = fingerprint;
+      this.block = block;
+      this.dependencies = Collections.unmodifiableList(new ArrayList<>(dependencies));
+      this.depth = depth;
+      this.weight = weight;
+      this.strict = opts.strict();
+      this.importOnce = opts.importOnce();
+      this.foldConstants = opts.foldConstants();
+      this.importPaths = new ArrayList<>(opts.importPaths());
+      this.functionTable = opts.foldConstants() ? functionTable : null;
+    }
+
+    public Path path() {
+      return path;
+    }
+
+    public long fingerprint() {
+      return fingerprint;
+    }
+
+    /**
+     * Parsed rules of the imported file.  Must not be modified.
+     */
+    public Block block() {
+      return block;
+    }
+
+    /**
+     * Nested imports in the order they were in-lined during the parse.
+     */
+    public List<Dependency> dependencies() {
+      return dependencies;
+    }
+
+    /**
+     * Depth of nested imports below this one.
+     */
+    public int depth() {
+      return depth;
+    }
+
+    /**
+     * Indicates whether the file at the given path was in-lined into this entry.
+     */
+    public boolean dependsOn(Path path) {
+      for (Dependency dependency : dependencies) {
+        if (dependency.path.equals(path)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Indicates whether the entry was parsed with options and, if constants
+     * were folded, a function table that produce the same tree as these.
+     */
+    public boolean compatible(LessOptions opts, FunctionTable functionTable) {
+      return strict == opts.strict()
+          && importOnce == opts.importOnce()
+          && foldConstants == opts.foldConstants()
+          && importPaths.equals(opts.importPaths())
+          && (!foldConstants || this.functionTable == functionTable);
+    }
+
+  }
+
+  /**
+   * A nested import in-lined into a cached entry.
+   */
+  public static class Dependency {
+
+    private final Path path;
+
+    private final long fingerprint;
+
+    private final boolean onlyOnce;
+
+    public Dependency(Path path, long fingerprint, boolean onlyOnce) {
+      this.path = path;
+      this.fingerprint = fingerprint;
+      this.onlyOnce = onlyOnce;
+    }
+
+    public Path path() {
+      return path;
+    }
+
+    public long fingerprint() {
+      return fingerprint;
+    }
+
+    public boolean onlyOnce() {
+      return onlyOnce;
+    }
+
+  }
+
+}
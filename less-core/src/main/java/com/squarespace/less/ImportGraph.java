@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Records which files were in-lined into each compiled root stylesheet, along
+ * with fingerprints of their content, so the roots affected by a change can be
+ * found.  Imports are in-lined transitively, so each root maps directly to every
+ * file it depends on.  Not safe for concurrent use.
+ */
+public class ImportGraph {
+
+  /**
+   * Files in-lined into each root, in import order.
+   */
+  private final Map<Path, Set<Path>> imports = new LinkedHashMap<>();
+
+  /**
+   * Roots which in-line each file.
+   */
+  private final Map<Path, Set<Path>> dependents = new HashMap<>();
+
+  /**
+   * Fingerprint of each root and imported file when it was last compiled.
+   */
+  private final Map<Path, Long> fingerprints = new HashMap<>();
+
+  /**
+   * Replaces the dependencies of the given root, as recorded by the
+   * {@link com.squarespace.less.parse.Importer} of the compile.
+   */
+  public void record(Path root, long fingerprint, Map<Path, Long> dependencies) {
+    remove(root);
+    imports.put(root, new LinkedHashSet<Path>());
+    fingerprints.put(root, fingerprint);
+    add(root, dependencies);
+  }
+
+  /**
+   * Adds dependencies to the given root, such as imports which were deferred
+   * until evaluation.
+   */
+  public void add(Path root, Map<Path, Long> dependencies) {
+    Set<Path> files = imports.get(root);
+    if (files == null) {
+      throw new IllegalArgumentException("root " + root + " has not been recorded");
+    }
+    for (Map.Entry<Path, Long> entry : dependencies.entrySet()) {
+      Path path = entry.getKey();
+      files.add(path);
+      fingerprints.put(path, entry.getValue());
+      Set<Path> roots = dependents.get(path);
+      if (roots == null) {
+        roots = new LinkedHashSet<>();
+        dependents.put(path, roots);
+      }
+      roots.add(root);
+    }
+  }
+
+  /**
+   * Forgets the given root and its dependencies.
+   */
+  public void remove(Path root) {
+    Set<Path> files = imports.remove(root);
+    if (files == null) {
+      return;
+    }
+    for (Path path : files) {
+      Set<Path> roots = dependents.get(path);
+      roots.remove(root);
+      if (roots.isEmpty()) {
+        dependents.remove(path);
+        if (!imports.containsKey(path)) {
+          fingerprints.remove(path);
+        }
+      }
+    }
+    if (!dependents.containsKey(root)) {
+      fingerprints.remove(root);
+    }
+  }
+
+  /**
+   * Returns the recorded roots, in the order they were first recorded.
+   */
+  public Set<Path> roots() {
+    return Collections.unmodifiableSet(imports.keySet());
+  }
+
+  /**
+   * Returns the files in-lined into the given root, or an empty set if the
+   * root has not been recorded.
+   */
+  public Set<Path> imports(Path root) {
+    Set<Path> files = imports.get(root);
+    return files == null ? Collections.<Path>emptySet() : Collections.unmodifiableSet(files);
+  }
+
+  /**
+   * Returns the roots which in-line the given file, or an empty set if none do.
+   */
+  public Set<Path> dependents(Path path) {
+    Set<Path> roots = dependents.get(path);
+    return roots == null ? Collections.<Path>emptySet() : Collections.unmodifiableSet(roots);
+  }
+
+  /**
+   * Returns the fingerprint of the file when it was last compiled, or null if
+   * the file is not part of the graph.
+   */
+  public Long fingerprint(Path path) {
+    return fingerprints.get(path);
+  }
+
+  /**
+   * Returns the roots which must be compiled again after the given files changed:
+   * changed roots themselves, and roots which in-line any of the changed files.
+   */
+  public Set<Path> affected(Collection<Path> changed) {
+    Set<Path> result = new LinkedHashSet<>();
+    for (Path path : changed) {
+      if (imports.containsKey(path)) {
+        result.add(path);
+      }
+      Set<Path> roots = dependents.get(path);
+      if (roots != null) {
+        result.addAll(roots);
+      }
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.squarespace.less.model.Stylesheet;
+
+
+/**
+ * Compiles a set of root stylesheets, and recompiles only the affected roots as
+ * files change.
+ *
+ * Each compile records the files it in-lines in an {@link ImportGraph}.  Parsed
+ * roots are kept, and parsed imports are shared through an {@link ImportCache}.
+ * When files change, {@link #changed(Collection)} discards the parses which
+ * in-lined them and returns the roots to compile again.  Those roots are parsed
+ * again, splicing in the cached parse of every import that did not change.
+ *
+ * Not safe for concurrent use.
+ */
+public class IncrementalCompiler {
+
+  private final LessCompiler compiler;
+
+  private final LessOptions options;
+
+  private final LessLoader loader;
+
+  private final ImportCache importCache;
+
+  private final ImportGraph graph = new ImportGraph();
+
+  private final Map<Path, Stylesheet> parsed = new HashMap<>();
+
+  private LessStats lastStats;
+
+  public IncrementalCompiler(LessCompiler compiler, LessOptions options) {
+    this(compiler, options, null, new ImportCache());
+  }
+
+  public IncrementalCompiler(LessCompiler compiler, LessOptions options, LessLoader loader, ImportCache importCache) {
+    this.compiler = compiler;
+    this.options = options;
+    this.loader = (loader == null) ? new FilesystemLessLoader() : loader;
+    this.importCache = importCache;
+  }
+
+  public ImportGraph graph() {
+    return graph;
+  }
+
+  public ImportCache importCache() {
+    return importCache;
+  }
+
+  /**
+   * Statistics for the most recent compile.
+   */
+  public LessStats lastStats() {
+    return lastStats;
+  }
+
+  /**
+   * Compiles the root stylesheet, reusing its parse if none of the files it
+   * in-lines have changed.
+   */
+  public String compile(Path root) throws LessException {
+    root = loader.normalize(root);
+    LessContext ctx = newContext();
+    Stylesheet sheet = parse(root, ctx);
+    LessStats stats = ctx.stats();
+    long started = stats.now();
+    String result = compiler.render(sheet, ctx);
+    stats.compileDone(started);
+    renderDone(root, ctx);
+    return result;
+  }
+
+  /**
+   * Compiles the root stylesheet, writing the output to the sink as each
+   * top-level block is completed.
+   */
+  public void compile(Path root, Appendable out) throws LessException, IOException {
+    root = loader.normalize(root);
+    LessContext ctx = newContext();
+    Stylesheet sheet = parse(root, ctx);
+    LessStats stats = ctx.stats();
+    long started = stats.now();
+    compiler.render(sheet, ctx, out);
+    stats.compileDone(started);
+    renderDone(root, ctx);
+  }
+
+  /**
+   * Notifies the compiler that the given files have changed, been created or
+   * been deleted.  Files whose content matches the fingerprint recorded by the
+   * last compile are ignored.  Returns the roots whose output must be generated
+   * again, which includes changed roots and roots which in-line a changed file.
+   */
+  public Set<Path> changed(Collection<Path> paths) throws LessException {
+    Set<Path> changed = new LinkedHashSet<>();
+    for (Path path : paths) {
+      path = loader.normalize(path);
+      if (modified(path)) {
+        changed.add(path);
+      }
+    }
+
+    Set<Path> affected = graph.affected(changed);
+    for (Path path : changed) {
+      importCache.invalidate(path);
+    }
+    for (Path root : affected) {
+      parsed.remove(root);
+    }
+    return affected;
+  }
+
+  /**
+   * Forgets the given root, for example after it has been deleted.
+   */
+  public void remove(Path root) {
+    root = loader.normalize(root);
+    parsed.remove(root);
+    graph.remove(root);
+  }
+
+  private Stylesheet parse(Path root, LessContext ctx) throws LessException {
+    Stylesheet sheet = parsed.get(root);
+    if (sheet != null) {
+      return sheet;
+    }
+    CharSequence source = loader.loadChars(root);
+    try {
+      sheet = compiler.parse(source, ctx, root);
+      parsed.put(root, sheet);
+      return sheet;
+
+    } finally {
+      // Record the imports even if the parse failed, so that fixing any of
+      // them marks the root as affected.
+      graph.record(root, ImportCache.fingerprint(source), ctx.importer().dependencies());
+    }
+  }
+
+  /**
+   * Records imports which were deferred until evaluation.
+   */
+  private void renderDone(Path root, LessContext ctx) {
+    graph.add(root, ctx.importer().dependencies());
+    lastStats = ctx.stats();
+  }
+
+  /**
+   * Indicates whether the file's content differs from the last compile.
+   */
+  private boolean modified(Path path) throws LessException {
+    Long fingerprint = graph.fingerprint(path);
+    if (fingerprint == null || !loader.exists(path)) {
+      return true;
+    }
+    return ImportCache.fingerprint(loader.loadChars(path)) != fingerprint;
+  }
+
+  private LessContext newContext() {
+    LessContext ctx = new LessContext(options, loader);
+    ctx.setFunctionTable(compiler.functionTable());
+    ctx.setImportCache(importCache);
+    return ctx;
+  }
+
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import com.squarespace.less.core.ExecuteErrorMaker;
+
+
+/**
+ * Limits on the work a single compile may do, along with the amount of work done
+ * so far.  Each limit is checked where that work happens, and the compile fails
+ * with {@link ExecuteErrorType#BUDGET_EXCEEDED} once a limit is passed.  A limit
+ * of zero or less means unlimited, which is the default.
+ */
+public class LessBudget {
+
+  private long mixinCallLimit = Long.MAX_VALUE;
+
+  private long evaluatedNodeLimit = Long.MAX_VALUE;
+
+  private long selectorLimit = Long.MAX_VALUE;
+
+  private long outputLimit = Long.MAX_VALUE;
+
+  private long importLimit = Long.MAX_VALUE;
+
+  private long mixinCalls;
+
+  private long evaluatedNodes;
+
+  private long selectors;
+
+  private long imported;
+
+  /** Maximum number of mixin calls executed */
+  public long mixinCallLimit() {
+    return unlimited(mixinCallLimit);
+  }
+
+  public void mixinCallLimit(long limit) {
+    this.mixinCallLimit = limit(limit);
+  }
+
+  /** Maximum number of rules evaluated */
+  public long evaluatedNodeLimit() {
+    return unlimited(evaluatedNodeLimit);
+  }
+
+  public void evaluatedNodeLimit(long limit) {
+    this.evaluatedNodeLimit = limit(limit);
+  }
+
+  /** Maximum number of selectors generated by combining nested rulesets */
+  public long selectorLimit() {
+    return unlimited(selectorLimit);
+  }
+
+  public void selectorLimit(long limit) {
+    this.selectorLimit = limit(limit);
+  }
+
+  /** Maximum number of characters added to the output */
+  public long outputLimit() {
+    return unlimited(outputLimit);
+  }
+
+  public void outputLimit(long limit) {
+    this.outputLimit = limit(limit);
+  }
+
+  /** Maximum number of characters loaded from imported files */
+  public long importLimit() {
+    return unlimited(importLimit);
+  }
+
+  public void importLimit(long limit) {
+    this.importLimit = limit(limit);
+  }
+
+  public long mixinCalls() {
+    return mixinCalls;
+  }
+
+  public long evaluatedNodes() {
+    return evaluatedNodes;
+  }
+
+  public long selectors() {
+    return selectors;
+  }
+
+  public long imported() {
+    return imported;
+  }
+
+  /**
+   * Clears the amounts of work done, keeping the limits.
+   */
+  public void reset() {
+    mixinCalls = 0;
+    evaluatedNodes = 0;
+    selectors = 0;
+    imported = 0;
+  }
+
+  public void mixinCall() throws LessException {
+    if (++mixinCalls > mixinCallLimit) {
+      throw exceeded("mixin calls", mixinCallLimit);
+    }
+  }
+
+  public void evaluatedNode() throws LessException {
+    if (++evaluatedNodes > evaluatedNodeLimit) {
+      throw exceeded("evaluated rules", evaluatedNodeLimit);
+    }
+  }
+
+  /**
+   * Charges for selectors about to be generated, before any are built.
+   */
+  public void selectors(long count) throws LessException {
+    selectors = add(selectors, count);
+    if (selectors > selectorLimit) {
+      throw exceeded("generated selectors", selectorLimit);
+    }
+  }
+
+  public void imported(long chars) throws LessException {
+    imported = add(imported, chars);
+    if (imported > importLimit) {
+      throw exceeded("imported characters", importLimit);
+    }
+  }
+
+  /**
+   * Checks the total number of characters added to the output so far.
+   */
+  public void output(long chars) throws LessException {
+    if (chars > outputLimit) {
+      throw exceeded("output characters", outputLimit);
+    }
+  }
+
+  private static LessException exceeded(String resource, long limit) {
+    return new LessException(ExecuteErrorMaker.budgetExceeded(resource, limit));
+  }
+
+  private static long add(long total, long count) {
+    long result = total + count;
+    return result < total ? Long.MAX_VALUE : result;
+  }
+
+  private static long limit(long limit) {
+    return limit <= 0 ? Long.MAX_VALUE : limit;
+  }
+
+  private static long unlimited(long limit) {
+    return limit == Long.MAX_VALUE ? 0 : limit;
+  }
+
+}
@@ -16,11 +16,15 @@
 
 package com.squarespace.less;
 
+import java.io.IOException;
 import java.nio.file.Path;
 
+import com.squarespace.less.LessMetrics.Phase;
+import com.squarespace.less.exec.ConstantFolder;
 import com.squarespace.less.exec.FunctionTable;
 import com.squarespace.less.exec.LessEvaluator;
 import com.squarespace.less.exec.LessRenderer;
+import com.squarespace.less.exec.ScopeResolver;
 import com.squarespace.less.model.Stylesheet;
 import com.squarespace.less.parse.LessParser;
 import com.squarespace.less.plugins.ColorBlendingFunctions;
@@ -64,36 +68,60 @@ public class LessCompiler {
     return functionTable;
   }
 
-  public Stylesheet parse(String raw, LessContext ctx) throws LessException {
+  public Stylesheet parse(CharSequence raw, LessContext ctx) throws LessException {
     return parse(raw, ctx, null);
   }
 
-  public Stylesheet parse(String raw, LessContext ctx, Path filePath) throws LessException {
+  public Stylesheet parse(CharSequence raw, LessContext ctx, Path filePath) throws LessException {
     LessStats stats = ctx.stats();
     long started = stats.now();
     LessParser parser = new LessParser(ctx);
     parser.parse(raw, filePath);
     Stylesheet sheet = parser.stylesheet();
+    ScopeResolver.resolve(sheet);
+    if (ctx.options().foldConstants()) {
+      ConstantFolder.fold(sheet.block(), ctx);
+    }
     stats.parseDone(raw.length(), started);
+    LessMetrics metrics = ctx.metrics();
+    if (metrics != null) {
+      metrics.phaseDone(Phase.PARSE, stats.now() - started);
+    }
     return sheet;
   }
 
+  /**
+   * Evaluates and renders a parsed stylesheet.  The parsed tree is treated as
+   * read-only: all per-compile state is held by the {@link LessContext}, so the
+   * same {@link Stylesheet} can be rendered by many threads at once, each with
+   * its own context.
+   */
   public String render(Stylesheet stylesheet, LessContext ctx) throws LessException {
-    LessEvaluator engine = new LessEvaluator(ctx);
+    LessEvaluator engine = ctx.evaluator();
     Stylesheet expanded = engine.evaluate(stylesheet);
     return LessRenderer.render(ctx, expanded);
   }
 
+  /**
+   * Evaluates and renders a parsed stylesheet, writing the output to the sink as
+   * each top-level block is completed rather than building it in memory.
+   */
+  public void render(Stylesheet stylesheet, LessContext ctx, Appendable out) throws LessException, IOException {
+    LessEvaluator engine = ctx.evaluator();
+    Stylesheet expanded = engine.evaluate(stylesheet);
+    LessRenderer.render(ctx, expanded, out);
+  }
+
   public Stylesheet expand(Stylesheet stylesheet, LessContext ctx) throws LessException {
-    LessEvaluator engine = new LessEvaluator(ctx);
+    LessEvaluator engine = ctx.evaluator();
     return engine.evaluate(stylesheet);
   }
 
-  public String compile(String raw, LessContext ctx) throws LessException {
+  public String compile(CharSequence raw, LessContext ctx) throws LessException {
     return compile(raw, ctx, null);
   }
 
-  public String compile(String raw, LessContext ctx, Path filePath) throws LessException {
+  public String compile(CharSequence raw, LessContext ctx, Path filePath) throws LessException {
     Stylesheet sheet = parse(raw, ctx, filePath);
     LessStats stats = ctx.stats();
     long started = stats.now();
@@ -102,6 +130,19 @@ public class LessCompiler {
     return result;
   }
 
+  /**
+   * Compiles the source, writing the output to the sink as each top-level block
+   * is completed.  If an error occurs, partial output may have been written.
+   */
+  public void compile(CharSequence raw, LessContext ctx, Path filePath, Appendable out)
+      throws LessException, IOException {
+    Stylesheet sheet = parse(raw, ctx, filePath);
+    LessStats stats = ctx.stats();
+    long started = stats.now();
+    render(sheet, ctx, out);
+    stats.compileDone(started);
+  }
+
   /**
    * Builds the default function table.  Functions are stateless so this table
    * can be shared among many instances of the compiler.  This method provides
@@ -16,17 +16,29 @@
 
 package com.squarespace.less;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 import com.squarespace.less.core.Buffer;
+import com.squarespace.less.core.ExecuteErrorMaker;
 import com.squarespace.less.exec.BufferStack;
 import com.squarespace.less.exec.Comparison;
+import com.squarespace.less.exec.CssModel;
 import com.squarespace.less.exec.ExecEnv;
 import com.squarespace.less.exec.Function;
 import com.squarespace.less.exec.FunctionTable;
+import com.squarespace.less.exec.LessEvaluator;
+import com.squarespace.less.exec.MixinMemo;
 import com.squarespace.less.exec.MixinResolver;
 import com.squarespace.less.exec.NodeComparator;
 import com.squarespace.less.exec.NodeRenderer;
 import com.squarespace.less.exec.RenderEnv;
 import com.squarespace.less.exec.SelectorUtils;
+import com.squarespace.less.model.MutableDimension;
 import com.squarespace.less.model.Node;
 import com.squarespace.less.model.Selector;
 import com.squarespace.less.parse.Importer;
@@ -48,8 +60,17 @@ public class LessContext {
 
   private static final NodeBuilder DEFAULT_NODE_BUILDER = new DefaultNodeBuilder();
 
+  /**
+   * Number of back-edge checks between reads of the clock.
+   */
+  private static final int DEADLINE_CHECK_INTERVAL = 64;
+
   private final BufferStack bufferStack = new BufferStack(this);
 
+  private final LessBudget budget = new LessBudget();
+
+  private final MutableDimension mutableDimension = new MutableDimension();
+
   private final MixinResolver mixinResolver = new MixinResolver();
 
   private final NodeComparator comparator;
@@ -65,14 +86,65 @@ public class LessContext {
    */
   private final Importer importer;
 
+  /**
+   * Closures captured during this compile, keyed by the node in the parsed tree
+   * they were captured for.  The parsed tree itself is never modified during
+   * evaluation, so a single parsed stylesheet can be compiled by many contexts
+   * concurrently.
+   */
+  private final Map<Node, ExecEnv> closures = new IdentityHashMap<>();
+
+  /**
+   * Nodes from the parsed tree which are currently being evaluated. Used to detect
+   * recursion and circular references.
+   */
+  private final Set<Node> evaluating = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+
   private FunctionTable functionTable;
 
+  /**
+   * Optional cache of parsed imports, shared with other contexts.
+   */
+  private ImportCache importCache;
+
+  private Executor importExecutor;
+
+  /**
+   * Optional listener for detailed timings and counters.
+   */
+  private LessMetrics metrics;
+
+  /**
+   * Memoized results of pure mixin calls, created when enabled by the options.
+   */
+  private MixinMemo mixinMemo;
+
   private NodeBuilder nodeBuilder = DEFAULT_NODE_BUILDER;
 
+  /**
+   * Evaluation and rendering state, created on first use and reused by
+   * later compiles with this context.
+   */
+  private LessEvaluator evaluator;
+
+  private ExecEnv rootEnv;
+
+  private RenderEnv renderEnv;
+
+  private CssModel cssModel;
+
   private int importDepth;
 
   private int mixinDepth;
 
+  private volatile boolean cancelled;
+
+  private long deadline;
+
+  private long timeoutMillis;
+
+  private int checks;
+
   public LessContext() {
     this(DEFAULT_OPTS, null);
   }
@@ -104,10 +176,57 @@ public class LessContext {
     this.nodeBuilder = builder;
   }
 
+  public FunctionTable functionTable() {
+    return functionTable;
+  }
+
   public void setFunctionTable(FunctionTable table) {
     this.functionTable = table;
   }
 
+  public ImportCache importCache() {
+    return importCache;
+  }
+
+  public void setImportCache(ImportCache cache) {
+    this.importCache = cache;
+  }
+
+  /**
+   * Returns the executor used to prefetch imports, or null if imports are
+   * loaded when they are reached.
+   */
+  public Executor importExecutor() {
+    return importExecutor;
+  }
+
+  /**
+   * Sets an executor on which statically-known imports are resolved and loaded
+   * ahead of the parse, through {@link LessLoader#loadAsync(java.nio.file.Path, Executor)}.
+   * Any executor can be used, such as a pool of virtual threads where available.
+   */
+  public void setImportExecutor(Executor executor) {
+    this.importExecutor = executor;
+  }
+
+  public LessMetrics metrics() {
+    return metrics;
+  }
+
+  public void setMetrics(LessMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Returns the mixin memo for this compile, or null if memoization is disabled.
+   */
+  public MixinMemo mixinMemo() {
+    if (mixinMemo == null && opts.memoizeMixins() && !opts.tracing()) {
+      mixinMemo = new MixinMemo();
+    }
+    return mixinMemo;
+  }
+
   public MixinResolver mixinResolver() {
     return mixinResolver;
   }
@@ -148,6 +267,91 @@ public class LessContext {
     return new RenderEnv(this);
   }
 
+  /**
+   * Returns the scratch result used to evaluate operations on primitive doubles.
+   */
+  public MutableDimension mutableDimension() {
+    return mutableDimension;
+  }
+
+  public LessEvaluator evaluator() {
+    if (evaluator == null) {
+      evaluator = new LessEvaluator(this);
+    }
+    return evaluator;
+  }
+
+  /**
+   * Returns the environment used to evaluate a stylesheet, cleared for a new
+   * evaluation. The same instance is returned for every compile with this context.
+   */
+  public ExecEnv rootEnv() {
+    if (rootEnv == null) {
+      rootEnv = newEnv();
+    } else {
+      rootEnv.reset();
+    }
+    return rootEnv;
+  }
+
+  /**
+   * Returns the environment used to render a stylesheet, cleared for a new
+   * render. The same instance is returned for every compile with this context.
+   */
+  public RenderEnv renderEnv() {
+    if (renderEnv == null) {
+      renderEnv = newRenderEnv();
+    } else {
+      renderEnv.reset();
+    }
+    return renderEnv;
+  }
+
+  /**
+   * Returns the model that collects the rendered output, cleared for a new
+   * render which optionally streams to the given sink.
+   */
+  public CssModel cssModel(Appendable out) {
+    if (cssModel == null) {
+      cssModel = new CssModel(this, out);
+    } else {
+      cssModel.reset(out);
+    }
+    return cssModel;
+  }
+
+  /**
+   * Clears all state left by the last compile, so the context can be reused
+   * for another compile with the same options and loader.  Settings such as the
+   * function table, import cache, metrics and budget limits are kept, while the
+   * deadline and cancellation are cleared.  The buffers and evaluation state
+   * allocated by earlier compiles are kept for reuse.
+   */
+  public void reset() {
+    bufferStack.reset();
+    budget.reset();
+    stats.reset();
+    importer.reset();
+    closures.clear();
+    evaluating.clear();
+    mixinMemo = null;
+    importDepth = 0;
+    mixinDepth = 0;
+    cancelled = false;
+    deadline = 0;
+    timeoutMillis = 0;
+    checks = 0;
+    if (rootEnv != null) {
+      rootEnv.reset();
+    }
+    if (renderEnv != null) {
+      renderEnv.reset();
+    }
+    if (cssModel != null) {
+      cssModel.reset(null);
+    }
+  }
+
   public LessErrorInfo newError(LessErrorType type) {
     return new LessErrorInfo(type);
   }
@@ -168,6 +372,13 @@ public class LessContext {
     return result;
   }
 
+  /**
+   * Returns the limits on the work this compile may do.
+   */
+  public LessBudget budget() {
+    return budget;
+  }
+
   public void enterImport() {
     this.importDepth++;
     stats.importDepth(this.importDepth);
@@ -194,6 +405,81 @@ public class LessContext {
     return this.mixinDepth;
   }
 
+  /**
+   * Sets a deadline for the compile, measured from now. A timeout of zero
+   * or less clears the deadline.
+   */
+  public void setDeadline(long timeout, TimeUnit unit) {
+    this.timeoutMillis = timeout <= 0 ? 0 : Math.max(1, unit.toMillis(timeout));
+    this.deadline = timeout <= 0 ? 0 : System.nanoTime() + unit.toNanos(timeout);
+    this.checks = 0;
+  }
+
+  /**
+   * Requests that the compile using this context stop as soon as possible.
+   * Safe to call from any thread.
+   */
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  public boolean cancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Called at loop back-edges during evaluation and rendering. Throws if the
+   * compile has been cancelled or has run past its deadline. The clock is only
+   * read every few calls to keep the check cheap.
+   */
+  public void checkCancelled() throws LessException {
+    if (cancelled) {
+      throw new LessException(ExecuteErrorMaker.compileCancelled());
+    }
+    if (timeoutMillis != 0 && ++checks >= DEADLINE_CHECK_INTERVAL) {
+      checks = 0;
+      if (System.nanoTime() - deadline > 0) {
+        throw new LessException(ExecuteErrorMaker.deadlineExceeded(timeoutMillis));
+      }
+    }
+  }
+
+  /**
+   * Returns the closure captured for the given node during this compile, if any.
+   */
+  public ExecEnv closure(Node node) {
+    return closures.get(node);
+  }
+
+  /**
+   * Captures a copy of the environment as the closure for the given node.
+   */
+  public void closure(Node node, ExecEnv env) {
+    closures.put(node, env.copy());
+  }
+
+  /**
+   * Marks the node as being evaluated. Returns false if the node was
+   * already being evaluated.
+   */
+  public boolean enter(Node node) {
+    return evaluating.add(node);
+  }
+
+  /**
+   * Clears the node's evaluation mark.
+   */
+  public void exit(Node node) {
+    evaluating.remove(node);
+  }
+
+  /**
+   * Indicates if the node is currently being evaluated.
+   */
+  public boolean evaluating(Node node) {
+    return evaluating.contains(node);
+  }
+
   public Comparison compare(Node left, Node right) throws LessException {
     return this.comparator.compare(left, right);
   }
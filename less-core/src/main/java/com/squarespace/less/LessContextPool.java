@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.squarespace.less.exec.FunctionTable;
+
+
+/**
+ * Thread-confined pool of {@link LessContext} instances sharing the same options,
+ * loader and function table.  Each thread keeps a small stack of idle contexts, so
+ * a context along with the buffers and evaluation state it allocated is reused by
+ * later compiles on the same thread without any synchronization.
+ *
+ * Contexts are reset when released.  A context acquired on one thread should be
+ * released on the same thread, otherwise it simply moves to the other thread's
+ * pool.  Since each thread has its own pool, this is best used with a fixed set
+ * of long-lived worker threads rather than a thread per compile.
+ */
+public class LessContextPool {
+
+  /**
+   * Default maximum number of idle contexts kept by each thread.
+   */
+  public static final int DEFAULT_MAX_IDLE = 2;
+
+  private final ThreadLocal<Deque<LessContext>> idle = new ThreadLocal<Deque<LessContext>>() {
+    @Override
+    protected Deque<LessContext> initialValue() {
+      return new ArrayDeque<>(maxIdle);
+    }
+  };
+
+  private final LessOptions opts;
+
+  private final LessLoader loader;
+
+  private final FunctionTable functionTable;
+
+  private final int maxIdle;
+
+  public LessContextPool(LessOptions opts, LessLoader loader, FunctionTable functionTable) {
+    this(opts, loader, functionTable, DEFAULT_MAX_IDLE);
+  }
+
+  public LessContextPool(LessOptions opts, LessLoader loader, FunctionTable functionTable, int maxIdle) {
+    this.opts = opts;
+    this.loader = loader;
+    this.functionTable = functionTable;
+    this.maxIdle = maxIdle;
+  }
+
+  /**
+   * Returns an idle context for the calling thread, or a new one if none are idle.
+   */
+  public LessContext acquire() {
+    LessContext ctx = idle.get().pollLast();
+    return ctx == null ? create() : ctx;
+  }
+
+  /**
+   * Resets the context and returns it to the calling thread's pool. It must
+   * not be used again until it is acquired.
+   */
+  public void release(LessContext ctx) {
+    ctx.reset();
+    Deque<LessContext> contexts = idle.get();
+    if (contexts.size() < maxIdle) {
+      contexts.addLast(ctx);
+    }
+  }
+
+  /**
+   * Number of idle contexts kept by the calling thread.
+   */
+  public int idle() {
+    return idle.get().size();
+  }
+
+  /**
+   * Creates a new context. Subclasses can override this to configure the
+   * context further, for example to share an {@link ImportCache}.
+   */
+  protected LessContext create() {
+    LessContext ctx = new LessContext(opts, loader);
+    ctx.setFunctionTable(functionTable);
+    return ctx;
+  }
+
+}
@@ -17,6 +17,10 @@
 package com.squarespace.less;
 
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 
 /**
@@ -34,6 +38,33 @@ public interface LessLoader {
    */
   String load(Path path) throws LessException;
 
+  /**
+   * Load the target file as a sequence of characters, which the parser reads
+   * without copying it into a String.  Defaults to {@link #load(Path)}.
+   */
+  default CharSequence loadChars(Path path) throws LessException {
+    return load(path);
+  }
+
+  /**
+   * Load the target file asynchronously.  A failed load completes the future
+   * exceptionally with a {@link CompletionException} wrapping the cause.  Defaults
+   * to calling {@link #loadChars(Path)} on the executor, so loaders backed by an
+   * asynchronous store can override it to avoid holding a thread for each read.
+   */
+  default CompletableFuture<CharSequence> loadAsync(Path path, Executor executor) {
+    return CompletableFuture.supplyAsync(new Supplier<CharSequence>() {
+      @Override
+      public CharSequence get() {
+        try {
+          return loadChars(path);
+        } catch (LessException e) {
+          throw new CompletionException(e);
+        }
+      }
+    }, executor);
+  }
+
   /**
    * Ensure the path is normalized for comparisons.
    */
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+
+/**
+ * Listener for detailed timings and counters of a compile.  A listener is
+ * installed with {@link LessContext#setMetrics(LessMetrics)}; when none is
+ * installed the compiler skips all measurement.  A listener shared by several
+ * contexts must be thread-safe.
+ */
+public interface LessMetrics {
+
+  /**
+   * Phases of a compile which are timed.  Phases may nest: mixin resolution is
+   * part of evaluation, and import I/O is part of parsing.
+   */
+  enum Phase {
+
+    /** Parsing, including imports */
+    PARSE,
+
+    /** Loading the source of imported files */
+    IMPORT_IO,
+
+    /** Searching for the mixins matching a mixin call */
+    MIXIN_RESOLUTION,
+
+    /** Evaluating the parsed tree */
+    EVALUATION,
+
+    /** Indexing extend expressions before rendering */
+    EXTEND_INDEX,
+
+    /** Matching selectors against extend expressions while rendering */
+    EXTEND_MATCH,
+
+    /** Emitting the CSS model as text */
+    RENDER
+
+  }
+
+  /**
+   * Called when one occurrence of a phase completes, with its elapsed time.
+   */
+  void phaseDone(Phase phase, long elapsedNanos);
+
+  /**
+   * Called for each mixin call executed.
+   */
+  void mixinCall();
+
+  /**
+   * Called for each invocation of a built-in function.
+   */
+  void functionCall(String name);
+
+  /**
+   * Called for each variable lookup, with the number of stack frames scanned.
+   */
+  void variableLookup(int framesScanned);
+
+}
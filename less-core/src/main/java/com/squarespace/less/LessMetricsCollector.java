@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.squarespace.less.core.Buffer;
+
+
+/**
+ * Thread-safe {@link LessMetrics} which accumulates totals, and can be shared
+ * by all compiles in a process.
+ */
+public class LessMetricsCollector implements LessMetrics {
+
+  private static final double FACTOR = 1000000.0;
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final LongAdder[] phaseNanos = new LongAdder[PHASES.length];
+
+  private final LongAdder[] phaseCounts = new LongAdder[PHASES.length];
+
+  private final LongAdder mixinCalls = new LongAdder();
+
+  private final LongAdder variableLookups = new LongAdder();
+
+  private final LongAdder framesScanned = new LongAdder();
+
+  private final Map<String, LongAdder> functionCalls = new ConcurrentHashMap<>();
+
+  public LessMetricsCollector() {
+    for (int i = 0; i < PHASES.length; i++) {
+      phaseNanos[i] = new LongAdder();
+      phaseCounts[i] = new LongAdder();
+    }
+  }
+
+  @Override
+  public void phaseDone(Phase phase, long elapsedNanos) {
+    phaseNanos[phase.ordinal()].add(elapsedNanos);
+    phaseCounts[phase.ordinal()].increment();
+  }
+
+  @Override
+  public void mixinCall() {
+    mixinCalls.increment();
+  }
+
+  @Override
+  public void functionCall(String name) {
+    LongAdder count = functionCalls.get(name);
+    if (count == null) {
+      count = new LongAdder();
+      LongAdder existing = functionCalls.putIfAbsent(name, count);
+      if (existing != null) {
+        count = existing;
+      }
+    }
+    count.increment();
+  }
+
+  @Override
+  public void variableLookup(int frames) {
+    variableLookups.increment();
+    framesScanned.add(frames);
+  }
+
+  /** Total time spent in the given phase */
+  public double timeMs(Phase phase) {
+    return phaseNanos[phase.ordinal()].sum() / FACTOR;
+  }
+
+  /** Number of times the given phase completed */
+  public long count(Phase phase) {
+    return phaseCounts[phase.ordinal()].sum();
+  }
+
+  /** Number of mixin calls executed */
+  public long mixinCalls() {
+    return mixinCalls.sum();
+  }
+
+  /** Number of variable lookups */
+  public long variableLookups() {
+    return variableLookups.sum();
+  }
+
+  /** Number of stack frames scanned by variable lookups */
+  public long framesScanned() {
+    return framesScanned.sum();
+  }
+
+  /** Number of invocations of each built-in function, sorted by name */
+  public Map<String, Long> functionCalls() {
+    Map<String, Long> result = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> entry : functionCalls.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().sum());
+    }
+    return result;
+  }
+
+  /**
+   * Clears all totals.
+   */
+  public void reset() {
+    for (int i = 0; i < PHASES.length; i++) {
+      phaseNanos[i].reset();
+      phaseCounts[i].reset();
+    }
+    mixinCalls.reset();
+    variableLookups.reset();
+    framesScanned.reset();
+    functionCalls.clear();
+  }
+
+  /**
+   * Formats all totals, one per line.
+   */
+  public String format() {
+    Buffer buf = new Buffer(0);
+    for (Phase phase : PHASES) {
+      buf.append(String.format("%16s: %.3fms (%d)\n", phase.name().toLowerCase(), timeMs(phase), count(phase)));
+    }
+    buf.append(String.format("%16s: %d\n", "mixin calls", mixinCalls()));
+    buf.append(String.format("%16s: %d\n", "variable lookups", variableLookups()));
+    buf.append(String.format("%16s: %d\n", "frames scanned", framesScanned()));
+    for (Map.Entry<String, Long> entry : functionCalls().entrySet()) {
+      buf.append(String.format("%16s: %d\n", entry.getKey() + "()", entry.getValue()));
+    }
+    return buf.toString();
+  }
+
+}
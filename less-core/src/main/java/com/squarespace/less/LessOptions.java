@@ -21,6 +21,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 
@@ -57,6 +58,18 @@ public class LessOptions {
     compress(compress);
   }
 
+  /**
+   * Constructs a copy of the given options.
+   */
+  public LessOptions(LessOptions other) {
+    flags.clear();
+    flags.addAll(other.flags);
+    importPaths.addAll(other.importPaths);
+    indent = other.indent;
+    mixinRecursionLimit = other.mixinRecursionLimit;
+    importRecursionLimit = other.importRecursionLimit;
+  }
+
   public boolean compress() {
     return flags.contains(Option.COMPRESS);
   }
@@ -65,6 +78,10 @@ public class LessOptions {
     return flags.contains(Option.DEBUG);
   }
 
+  public boolean foldConstants() {
+    return flags.contains(Option.FOLD_CONSTANTS);
+  }
+
   public boolean hideWarnings() {
     return flags.contains(Option.HIDE_WARNINGS);
   }
@@ -93,6 +110,10 @@ public class LessOptions {
     return mixinRecursionLimit;
   }
 
+  public boolean memoizeMixins() {
+    return flags.contains(Option.MEMOIZE_MIXINS);
+  }
+
   public boolean strict() {
     return flags.contains(Option.STRICT);
   }
@@ -113,6 +134,10 @@ public class LessOptions {
     set(flag, Option.DEBUG);
   }
 
+  public void foldConstants(boolean flag) {
+    set(flag, Option.FOLD_CONSTANTS);
+  }
+
   public void indent(int size) {
     this.indent = size;
   }
@@ -149,6 +174,10 @@ public class LessOptions {
     this.mixinRecursionLimit = limit;
   }
 
+  public void memoizeMixins(boolean flag) {
+    set(flag, Option.MEMOIZE_MIXINS);
+  }
+
   public void strict(boolean flag) {
     set(flag, Option.STRICT);
   }
@@ -161,6 +190,24 @@ public class LessOptions {
     set(flag, Option.TRACING);
   }
 
+  @Override
+  public boolean equals(Object obj) {
+    if (obj instanceof LessOptions) {
+      LessOptions other = (LessOptions) obj;
+      return flags.equals(other.flags)
+          && importPaths.equals(other.importPaths)
+          && indent == other.indent
+          && mixinRecursionLimit == other.mixinRecursionLimit
+          && importRecursionLimit == other.importRecursionLimit;
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(flags, importPaths, indent, mixinRecursionLimit, importRecursionLimit);
+  }
+
   private void set(boolean flag, Option opt) {
     if (flag) {
       flags.add(opt);
@@ -172,9 +219,11 @@ public class LessOptions {
   private enum Option {
     COMPRESS,
     DEBUG,
+    FOLD_CONSTANTS,
     HIDE_WARNINGS,
     IMPORT_ONCE,
     LINE_NUMBERS,
+    MEMOIZE_MIXINS,
     STRICT,
     TABS,
     TRACING
@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.squarespace.less.model.Node;
+import com.squarespace.less.parse.SnapshotReader;
+import com.squarespace.less.parse.SnapshotWriter;
+
+
+/**
+ * Read-only file of parsed trees, keyed by the path of their source and validated
+ * against a fingerprint of the source's content, as computed by
+ * {@link ImportCache#fingerprint(CharSequence)}.  The file is memory-mapped, so several
+ * processes can load the same snapshot and share its pages, and trees are only
+ * decoded when requested.
+ *
+ * Snapshots are written with {@link Builder}, which replaces the file atomically
+ * so processes which have the old file mapped are unaffected.  Files written by
+ * another version of the format are rejected when opened.
+ */
+public class LessSnapshot {
+
+  /**
+   * Magic number identifying a snapshot file, "LESF".
+   */
+  private static final int MAGIC = 0x4c455346;
+
+  /**
+   * Version of the file layout.  The encoding of each tree is versioned separately.
+   */
+  private static final int VERSION = 1;
+
+  private final Path file;
+
+  private final ByteBuffer buffer;
+
+  private final Map<Path, Entry> entries;
+
+  private LessSnapshot(Path file, ByteBuffer buffer, Map<Path, Entry> entries) {
+    this.file = file;
+    this.buffer = buffer;
+    this.entries = entries;
+  }
+
+  /**
+   * Maps the snapshot file and reads its directory.
+   *
+   * @throws IOException if the file cannot be read, is not a snapshot, or was
+   *     written by another version of the format.
+   */
+  public static LessSnapshot open(Path file) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    try {
+      if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+        throw new IOException("File " + file + " is not a snapshot");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Snapshot " + file + " has version " + version + ", expected " + VERSION);
+      }
+
+      int count = buffer.getInt();
+      Map<Path, Entry> entries = new LinkedHashMap<>(count * 2);
+      for (int i = 0; i < count; i++) {
+        byte[] raw = new byte[buffer.getInt()];
+        buffer.get(raw);
+        Path path = Paths.get(new String(raw, StandardCharsets.UTF_8));
+        long fingerprint = buffer.getLong();
+        int offset = buffer.getInt();
+        int length = buffer.getInt();
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+          throw new IOException("Snapshot " + file + " is corrupt");
+        }
+        entries.put(path, new Entry(fingerprint, offset, length));
+      }
+      return new LessSnapshot(file, buffer, entries);
+
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      throw new IOException("Snapshot " + file + " is corrupt", e);
+    }
+  }
+
+  /**
+   * Path of the snapshot file.
+   */
+  public Path file() {
+    return file;
+  }
+
+  /**
+   * Paths of all sources in the snapshot.
+   */
+  public Set<Path> paths() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  /**
+   * Returns the fingerprint of the source the tree for the path was parsed
+   * from, or null if the path is not in the snapshot.
+   */
+  public Long fingerprint(Path path) {
+    Entry entry = entries.get(path);
+    return entry == null ? null : entry.fingerprint;
+  }
+
+  /**
+   * Rebuilds the tree parsed from the source at the given path, constructing
+   * nodes with the builder.  Returns null if the path is not in the snapshot,
+   * or the tree was parsed from a source with a different fingerprint.  Safe
+   * for concurrent use.
+   */
+  public Node get(Path path, long fingerprint, NodeBuilder builder) throws IOException {
+    Entry entry = entries.get(path);
+    if (entry == null || entry.fingerprint != fingerprint) {
+      return null;
+    }
+    ByteBuffer data = buffer.duplicate();
+    data.limit(entry.offset + entry.length);
+    data.position(entry.offset);
+    return SnapshotReader.read(data, builder);
+  }
+
+  /**
+   * Collects parsed trees and writes them to a snapshot file.
+   */
+  public static class Builder {
+
+    private final Map<Path, Long> fingerprints = new LinkedHashMap<>();
+
+    private final Map<Path, byte[]> trees = new LinkedHashMap<>();
+
+    /**
+     * Adds the tree parsed from the source at the given path, replacing any
+     * tree previously added for the path.
+     */
+    public Builder add(Path path, long fingerprint, Node root) {
+      fingerprints.put(path, fingerprint);
+      trees.put(path, SnapshotWriter.write(root));
+      return this;
+    }
+
+    /**
+     * Number of trees added.
+     */
+    public int size() {
+      return trees.size();
+    }
+
+    /**
+     * Writes the snapshot, atomically replacing the file if it exists.
+     */
+    public void write(Path file) throws IOException {
+      Path dir = file.toAbsolutePath().getParent();
+      Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+      try {
+        try (OutputStream out = Files.newOutputStream(temp)) {
+          write(out);
+        }
+        Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    }
+
+    private void write(OutputStream stream) throws IOException {
+      List<byte[]> paths = new ArrayList<>(trees.size());
+      int offset = 12;
+      for (Path path : trees.keySet()) {
+        byte[] raw = path.toString().getBytes(StandardCharsets.UTF_8);
+        paths.add(raw);
+        offset += 4 + raw.length + 16;
+      }
+
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(trees.size());
+      int i = 0;
+      for (Map.Entry<Path, byte[]> tree : trees.entrySet()) {
+        byte[] raw = paths.get(i++);
+        out.writeInt(raw.length);
+        out.write(raw);
+        out.writeLong(fingerprints.get(tree.getKey()));
+        out.writeInt(offset);
+        out.writeInt(tree.getValue().length);
+        offset += tree.getValue().length;
+      }
+      for (byte[] data : trees.values()) {
+        out.write(data);
+      }
+      out.flush();
+    }
+
+  }
+
+  /**
+   * Location of a tree in the snapshot file.
+   */
+  private static class Entry {
+
+    private final long fingerprint;
+
+    private final int offset;
+
+    private final int length;
+
+    Entry(long fingerprint, int offset, int length) {
+      this.fingerprint = fingerprint;
+      this.offset = offset;
+      this.length = length;
+    }
+
+  }
+
+}
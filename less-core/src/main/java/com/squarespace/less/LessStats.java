@@ -40,6 +40,14 @@ public class LessStats {
 
   private int maxMixinDepth;
 
+  private int importCacheHits;
+
+  private int importCacheMisses;
+
+  private int mixinMemoHits;
+
+  private int mixinMemoMisses;
+
   /** Time spent parsing (including imports) */
   public double parseTimeMs() {
     return parseTimeMs;
@@ -80,6 +88,44 @@ public class LessStats {
     return maxMixinDepth;
   }
 
+  /** Number of imports whose parse was found in the import cache */
+  public int importCacheHits() {
+    return importCacheHits;
+  }
+
+  /** Number of imports which were parsed and offered to the import cache */
+  public int importCacheMisses() {
+    return importCacheMisses;
+  }
+
+  /** Number of mixin calls whose result was reused from the mixin memo */
+  public int mixinMemoHits() {
+    return mixinMemoHits;
+  }
+
+  /** Number of mixin calls which were executed and offered to the mixin memo */
+  public int mixinMemoMisses() {
+    return mixinMemoMisses;
+  }
+
+  /**
+   * Clears all timings and counters.
+   */
+  public void reset() {
+    parseTimeMs = 0;
+    compileTimeMs = 0;
+    diskWaitTimeMs = 0;
+    importCount = 0;
+    fileReads = 0;
+    totalSize = 0;
+    maxImportDepth = 0;
+    maxMixinDepth = 0;
+    importCacheHits = 0;
+    importCacheMisses = 0;
+    mixinMemoHits = 0;
+    mixinMemoMisses = 0;
+  }
+
   /** Time in nanoseconds */
   public long now() {
     return System.nanoTime();
@@ -98,6 +144,7 @@ public class LessStats {
   /** Indicate that a parse operation is complete. */
   public void parseDone(int size, long started) {
     parseTimeMs += deltaMs(started);
+    totalSize += size;
   }
 
   /** Indicate that a compile operation is complete. */
@@ -121,6 +168,26 @@ public class LessStats {
     }
   }
 
+  /** Indicate that an import's parse was found in the import cache */
+  public void importCacheHit() {
+    importCacheHits++;
+  }
+
+  /** Indicate that an import's parse was not found in the import cache */
+  public void importCacheMiss() {
+    importCacheMisses++;
+  }
+
+  /** Indicate that a mixin call's result was reused from the mixin memo */
+  public void mixinMemoHit() {
+    mixinMemoHits++;
+  }
+
+  /** Indicate that a mixin call's result was not found in the mixin memo */
+  public void mixinMemoMiss() {
+    mixinMemoMisses++;
+  }
+
   private double deltaMs(long started) {
     return (now() - started) / FACTOR;
   }
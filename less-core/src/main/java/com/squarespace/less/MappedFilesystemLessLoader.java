@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import static com.squarespace.less.core.SyntaxErrorMaker.importError;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.squarespace.less.core.ByteCharSequence;
+
+
+/**
+ * Loader which memory-maps files rather than reading them onto the heap.
+ * Files containing only ASCII are parsed directly from the mapping, decoding
+ * each character on access.  Other files are decoded from the mapping in a
+ * single pass, avoiding the intermediate copies made by a {@link java.io.Reader}.
+ *
+ * Files smaller than the threshold are read by {@link FilesystemLessLoader},
+ * since mapping has a fixed cost that only pays off for larger files.  A mapping
+ * is released once the source is garbage collected; on some platforms the file
+ * cannot be deleted until then.  Files must not be truncated while being parsed.
+ */
+public class MappedFilesystemLessLoader extends FilesystemLessLoader {
+
+  /**
+   * Default minimum size of a file, in bytes, to memory-map.
+   */
+  public static final long DEFAULT_MAP_THRESHOLD = 64 * 1024;
+
+  private final long mapThreshold;
+
+  public MappedFilesystemLessLoader() {
+    this(DEFAULT_MAP_THRESHOLD);
+  }
+
+  public MappedFilesystemLessLoader(long mapThreshold) {
+    this.mapThreshold = mapThreshold;
+  }
+
+  @Override
+  public String load(Path path) throws LessException {
+    return loadChars(path).toString();
+  }
+
+  @Override
+  public CharSequence loadChars(Path path) throws LessException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < mapThreshold) {
+        return super.load(path);
+      }
+      if (size > Integer.MAX_VALUE) {
+        throw new LessException(importError(path, "File is too large: " + size + " bytes"));
+      }
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size);
+      if (ByteCharSequence.isAscii(buffer)) {
+        return new ByteCharSequence(buffer);
+      }
+      return StandardCharsets.UTF_8.newDecoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE)
+          .decode(buffer);
+
+    } catch (NoSuchFileException e) {
+      throw new LessException(importError(path, "File cannot be found"));
+
+    } catch (IOException e) {
+      throw new LessException(importError(path, e.getMessage()));
+    }
+  }
+
+}
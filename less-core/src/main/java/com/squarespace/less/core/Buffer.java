@@ -213,6 +213,18 @@ public class Buffer {
     return this;
   }
 
+  /**
+   * Appends a range of a {@code char} array to the buffer.
+   */
+  public Buffer append(char[] chars, int offset, int len) {
+    if (len == 0) {
+      return this;
+    }
+    buf.append(chars, offset, len);
+    prev = chars[offset + len - 1];
+    return this;
+  }
+
   /**
    * Opens a nested block (left curly bracket) with optional whitespace suppression.
    */
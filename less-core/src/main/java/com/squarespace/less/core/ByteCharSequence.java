@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Read-only view of a buffer of 7-bit ASCII bytes as a sequence of characters.
+ * Characters are decoded on access, so a memory-mapped file can be parsed
+ * without copying it onto the heap.
+ */
+public final class ByteCharSequence implements CharSequence {
+
+  private final ByteBuffer buffer;
+
+  private final int offset;
+
+  private final int length;
+
+  /**
+   * Constructs a view over the remaining bytes of the buffer, all of which
+   * must be ASCII. See {@link #isAscii(ByteBuffer)}.
+   */
+  public ByteCharSequence(ByteBuffer buffer) {
+    this(buffer, buffer.position(), buffer.remaining());
+  }
+
+  private ByteCharSequence(ByteBuffer buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Indicates whether all remaining bytes in the buffer are 7-bit ASCII.
+   */
+  public static boolean isAscii(ByteBuffer buffer) {
+    int limit = buffer.limit();
+    for (int i = buffer.position(); i < limit; i++) {
+      if (buffer.get(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + " out of range [0, " + length + ")");
+    }
+    return (char)buffer.get(offset + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException("range [" + start + ", " + end + ") out of range [0, " + length + ")");
+    }
+    return new ByteCharSequence(buffer, offset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    byte[] bytes = new byte[length];
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    view.get(bytes);
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+}
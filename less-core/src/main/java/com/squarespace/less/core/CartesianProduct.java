@@ -81,6 +81,23 @@ public class CartesianProduct<T> implements Iterator<List<T>> {
     }
   }
 
+  /**
+   * Total number of permutations this iterator produces, saturating at
+   * {@link Long#MAX_VALUE}.
+   */
+  public long size() {
+    if (!hasNext) {
+      return 0;
+    }
+    long size = 1;
+    for (int length : lengths) {
+      if (length > 0) {
+        size = size > Long.MAX_VALUE / length ? Long.MAX_VALUE : size * length;
+      }
+    }
+    return size;
+  }
+
   @Override
   public boolean hasNext() {
     return hasNext;
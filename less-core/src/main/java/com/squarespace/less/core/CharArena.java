@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Append-only storage for many short strings, held end to end in fixed-size
+ * chunks of chars and addressed by offset and length.  This avoids the
+ * per-object overhead of retaining each string separately, and growing never
+ * copies the chars already appended.
+ *
+ * An offset holds the chunk index in its upper bits and the position within
+ * the chunk in its lower 16 bits.  Chunks start small and double in size up
+ * to 64K chars, and a string longer than that is given a chunk of its own.
+ */
+public class CharArena {
+
+  private static final int CHUNK_BITS = 16;
+
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  private static final int FIRST_CHUNK_SIZE = 1024;
+
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private char[][] chunks = new char[4][];
+
+  private int chunkCount;
+
+  private int position;
+
+  private long length;
+
+  /**
+   * Number of chars appended to the arena.
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Appends the string to the arena, returning its offset.
+   */
+  public int append(String str) {
+    int len = str.length();
+    if (chunkCount == 0 || position + len > chunks[chunkCount - 1].length) {
+      int size = chunkCount == 0 ? FIRST_CHUNK_SIZE : Math.min(chunks[chunkCount - 1].length * 2, CHUNK_SIZE);
+      addChunk(Math.max(len, size));
+    }
+    int index = chunkCount - 1;
+    int offset = (index << CHUNK_BITS) | position;
+    str.getChars(0, len, chunks[index], position);
+    position += len;
+    length += len;
+    return offset;
+  }
+
+  /**
+   * Indicates whether the string is equal to the region of the arena
+   * starting at the given offset.  The caller must ensure the region has
+   * the same length as the string.
+   */
+  public boolean regionEquals(int offset, String str) {
+    char[] chunk = chunks[offset >>> CHUNK_BITS];
+    int start = offset & CHUNK_MASK;
+    int len = str.length();
+    for (int i = 0; i < len; i++) {
+      if (chunk[start + i] != str.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Indicates whether two regions of the arena of the given length are equal.
+   */
+  public boolean regionEquals(int offset, int other, int len) {
+    char[] chunk = chunks[offset >>> CHUNK_BITS];
+    char[] otherChunk = chunks[other >>> CHUNK_BITS];
+    int start = offset & CHUNK_MASK;
+    int otherStart = other & CHUNK_MASK;
+    for (int i = 0; i < len; i++) {
+      if (chunk[start + i] != otherChunk[otherStart + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the given region of the arena as a string.
+   */
+  public String substring(int offset, int len) {
+    return new String(chunks[offset >>> CHUNK_BITS], offset & CHUNK_MASK, len);
+  }
+
+  /**
+   * Appends the given region of the arena to the buffer.
+   */
+  public void appendTo(Buffer buf, int offset, int len) {
+    buf.append(chunks[offset >>> CHUNK_BITS], offset & CHUNK_MASK, len);
+  }
+
+  /**
+   * Discards the contents of the arena, retaining only its first chunk.
+   */
+  public void reset() {
+    if (chunkCount > 0) {
+      Arrays.fill(chunks, 1, chunkCount, null);
+      chunkCount = chunks[0].length <= CHUNK_SIZE ? 1 : 0;
+    }
+    position = 0;
+    length = 0;
+  }
+
+  private void addChunk(int size) {
+    if (chunkCount == chunks.length) {
+      chunks = Arrays.copyOf(chunks, chunkCount * 2);
+    }
+    chunks[chunkCount++] = new char[size];
+    position = 0;
+  }
+
+}
@@ -49,6 +49,18 @@ public class ExecuteErrorMaker {
     return error(ExecuteErrorType.BAD_COLOR_MATH).arg0(msg).arg1(arg.repr());
   }
 
+  public static LessErrorInfo budgetExceeded(String resource, long limit) {
+    return error(ExecuteErrorType.BUDGET_EXCEEDED).arg0(resource).arg1(limit);
+  }
+
+  public static LessErrorInfo compileCancelled() {
+    return error(ExecuteErrorType.COMPILE_CANCELLED);
+  }
+
+  public static LessErrorInfo deadlineExceeded(long millis) {
+    return error(ExecuteErrorType.DEADLINE_EXCEEDED).arg0(millis);
+  }
+
   public static LessErrorInfo divideByZero(Node arg) {
     return error(ExecuteErrorType.DIVIDE_BY_ZERO).arg0(arg);
   }
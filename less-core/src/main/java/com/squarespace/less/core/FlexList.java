@@ -74,6 +74,15 @@ public class FlexList<E> {
     size = 0;
   }
 
+  /**
+   * Clears the list and releases all references to its elements, keeping
+   * the allocated capacity.
+   */
+  public void reset() {
+    Arrays.fill(elems, null);
+    size = 0;
+  }
+
   /**
    * Constructs a list with {@code objs} as the initial contents.
    */
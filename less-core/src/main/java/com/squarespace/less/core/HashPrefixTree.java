@@ -18,7 +18,6 @@ package com.squarespace.less.core;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 
 /**
@@ -29,8 +28,10 @@ import java.util.Set;
  *
  * Additionally, each key can have one or more values associated with it.
  *
- * Each level in the tree uses a simple hash table that uses chaining
- * for hash collision overflow.
+ * Each level in the tree uses an open-addressing hash table with linear
+ * probing.  The mixed hash of each child's key part is stored alongside it,
+ * so probes compare ints and only call the comparator when the hashes match,
+ * and each part of a query key is hashed once per search.
  *
  * Keys can only be added to the HashPrefixTree, not removed. Removal is currently
  * not a requirement.
@@ -105,7 +106,8 @@ public class HashPrefixTree<K, V> {
     int size = key.size();
     HPTNode<K, V> current = root;
     for (int i = 0; i < size; i++) {
-      HPTNode<K, V> result = find(current, i, key.get(i), true);
+      K keyPart = key.get(i);
+      HPTNode<K, V> result = find(current, i, keyPart, hashKey(keyPart), true);
       current.maxDepth = Math.max(current.maxDepth, size - i);
       current = result;
     }
@@ -129,7 +131,8 @@ public class HashPrefixTree<K, V> {
       if (current == null || (size - i) > current.maxDepth()) {
         return null;
       }
-      current = find(current, i, key.get(i), false);
+      K keyPart = key.get(i);
+      current = find(current, i, keyPart, hashKey(keyPart), false);
     }
     if (current == null || current.values == null) {
       return null;
@@ -165,18 +168,31 @@ public class HashPrefixTree<K, V> {
    * will fail fast.  For example, if the root does not contain "a" searching would
    * skip to step 5 above.
    */
-
   public List<HPTMatch<V>> searchSubsequences(List<K> key) {
     return searchSubsequences(key, null);
   }
 
-  public List<HPTMatch<V>> searchSubsequences(List<K> key, Set<Integer> dupeFilter) {
+  /**
+   * Match all subsequences of the given key, skipping keys whose ids are
+   * in the duplicate filter.
+   */
+  public List<HPTMatch<V>> searchSubsequences(List<K> key, IntSet dupeFilter) {
     check(key);
 
     // List of matches initialized on first match
     List<HPTMatch<V>> matches = null;
 
+    if (root == null) {
+      return matches;
+    }
+
+    // Each part is visited once per start index, so hash them up front.
     int size = key.size();
+    int[] hashes = new int[size];
+    for (int i = 0; i < size; i++) {
+      hashes[i] = hashKey(key.get(i));
+    }
+
     int start = 0;
 
     // Outer loop moves the start index towards the end of the key.
@@ -186,8 +202,7 @@ public class HashPrefixTree<K, V> {
       HPTNode<K, V> current = root;
       for (int i = start; i < size; i++) {
 
-        K keyPart = key.get(i);
-        current = find(current, start - i, keyPart, false);
+        current = find(current, i - start, key.get(i), hashes[i], false);
 
         // Nothing found, move to next start index.
         if (current == null) {
@@ -233,10 +248,10 @@ public class HashPrefixTree<K, V> {
   }
 
   /**
-   * Locate a node in the {@code node}'s hash table. If the {@code create} parameter
-   * is true we create missing nodes.
+   * Locate a node in the {@code node}'s hash table, given the mixed hash of the
+   * key part. If the {@code create} parameter is true we create missing nodes.
    */
-  private HPTNode<K, V> find(HPTNode<K, V> node, int keyIndex, K keyPart, boolean create) {
+  private HPTNode<K, V> find(HPTNode<K, V> node, int keyIndex, K keyPart, int hash, boolean create) {
 
     // Ensure the table is initialized and properly sized
     if (create) {
@@ -248,31 +263,32 @@ public class HashPrefixTree<K, V> {
       return null;
     }
 
-    // Hash the key to obtain its index in the hash table, then search the
-    // chain to find the first match.
-    int index = hashKey(keyPart) & (node.children.length - 1);
-
-    // Search the table and overflow chain.
-    HPTNode<K, V> result = node.children[index];
+    // Probe from the hash's home slot until we find the part or an empty slot,
+    // only comparing keys whose hashes match.
+    HPTNode<K, V>[] children = node.children;
+    int[] hashes = node.hashes;
+    int mask = children.length - 1;
+    int index = hash & mask;
+    HPTNode<K, V> result = children[index];
     while (result != null) {
-      if (comparator.keysEqual(keyIndex, keyPart, result.keyPart)) {
+      if (hashes[index] == hash && comparator.keysEqual(keyIndex, keyPart, result.keyPart)) {
         return result;
       }
-      result = result.next;
+      index = (index + 1) & mask;
+      result = children[index];
     }
 
-    // Create the missing node if requested, and move it to the head of the
-    // collision overflow chain.
+    // Create the missing node in the empty slot if requested.
     if (create) {
-      return create(node, index, keyPart);
+      return create(node, index, keyPart, hash);
     }
-    return result;
+    return null;
   }
 
-  private HPTNode<K, V> create(HPTNode<K, V> parent, int index, K keyPart) {
+  private HPTNode<K, V> create(HPTNode<K, V> parent, int index, K keyPart, int hash) {
     HPTNode<K, V> result = new HPTNode<>(keyIdSequence++, keyPart);
-    result.next = parent.children[index];
     parent.children[index] = result;
+    parent.hashes[index] = hash;
     parent.size++;
     return result;
   }
@@ -284,6 +300,7 @@ public class HashPrefixTree<K, V> {
   private void expand(HPTNode<K, V> node, float loadFactor) {
     if (node.children == null) {
       node.children = reallocate(INTERIOR_CAPACITY);
+      node.hashes = new int[INTERIOR_CAPACITY];
       return;
     } else {
       double threshold = Math.floor(node.children.length * loadFactor) - 1;
@@ -292,22 +309,27 @@ public class HashPrefixTree<K, V> {
       }
     }
 
-    // Resize the array
+    // Resize the arrays
     HPTNode<K, V>[] original = node.children;
-    int capacity = node.children.length * 2;
+    int[] originalHashes = node.hashes;
+    int capacity = original.length * 2;
     node.children = reallocate(capacity);
+    node.hashes = new int[capacity];
 
-    // Recompute the hashes of all members and add them to the new array.
+    // Re-insert all members using their stored hashes.
     int mask = capacity - 1;
-    for (int i = original.length - 1; i >= 0; i--) {
+    for (int i = 0; i < original.length; i++) {
       HPTNode<K, V> elem = original[i];
-      while (elem != null) {
-        int index = hashKey(elem.keyPart) & mask;
-        HPTNode<K, V> next = elem.next;
-        elem.next = node.children[index];
-        node.children[index] = elem;
-        elem = next;
+      if (elem == null) {
+        continue;
+      }
+      int hash = originalHashes[i];
+      int index = hash & mask;
+      while (node.children[index] != null) {
+        index = (index + 1) & mask;
       }
+      node.children[index] = elem;
+      node.hashes[index] = hash;
     }
   }
 
@@ -340,6 +362,7 @@ public class HashPrefixTree<K, V> {
   private HPTNode<K, V> buildRoot() {
     HPTNode<K, V> node = new HPTNode<K, V>(keyIdSequence++, null);
     node.children = reallocate(ROOT_CAPACITY);
+    node.hashes = new int[ROOT_CAPACITY];
     return node;
   }
 
@@ -374,15 +397,14 @@ public class HashPrefixTree<K, V> {
     private HPTNode<K, V>[] children;
 
     /**
-     * Size of the child node hash table.
+     * Mixed hashes of the children's key parts, parallel to {@link #children}.
      */
-    private int size;
+    private int[] hashes;
 
     /**
-     * Link to the next node which hashes to the same value. Used for
-     * hash collision overflow.
+     * Size of the child node hash table.
      */
-    private HPTNode<K, V> next;
+    private int size;
 
     /**
      * Maximum depth of the tree below this point.  We track this as an
@@ -411,7 +433,7 @@ public class HashPrefixTree<K, V> {
     }
 
     /**
-     * Returns the size of this node's child hash table.
+     * Returns the number of children in this node's hash table.
      */
     public int size() {
       return size;
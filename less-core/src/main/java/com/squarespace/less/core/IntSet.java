@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.core;
+
+import java.util.Arrays;
+
+
+/**
+ * Set of non-negative ints stored in an open-addressing table with linear
+ * probing, avoiding the boxing and per-entry allocation of a {@code Set<Integer>}.
+ * Clearing an empty set costs nothing, so instances can be reused cheaply.
+ */
+public class IntSet {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private static final int EMPTY = -1;
+
+  private int[] slots;
+
+  private int size;
+
+  /**
+   * Constructs a set with the default initial capacity.
+   */
+  public IntSet() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a set which can hold {@code expected} values before resizing.
+   */
+  public IntSet(int expected) {
+    int capacity = DEFAULT_CAPACITY;
+    while (capacity * 3 < expected * 4) {
+      capacity <<= 1;
+    }
+    slots = new int[capacity];
+    Arrays.fill(slots, EMPTY);
+  }
+
+  /**
+   * Returns the number of values in the set.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Indicates whether the set is empty.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Indicates whether the value is a member of the set.
+   */
+  public boolean contains(int value) {
+    int mask = slots.length - 1;
+    int index = mix(value) & mask;
+    while (true) {
+      int slot = slots[index];
+      if (slot == value) {
+        return true;
+      }
+      if (slot == EMPTY) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+
+  /**
+   * Adds the value to the set, returning true if it was not already a member.
+   */
+  public boolean add(int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("value must be >= 0");
+    }
+    int mask = slots.length - 1;
+    int index = mix(value) & mask;
+    while (true) {
+      int slot = slots[index];
+      if (slot == value) {
+        return false;
+      }
+      if (slot == EMPTY) {
+        break;
+      }
+      index = (index + 1) & mask;
+    }
+    slots[index] = value;
+    size++;
+    if (size * 4 > slots.length * 3) {
+      resize();
+    }
+    return true;
+  }
+
+  /**
+   * Removes all values from the set, retaining its capacity.
+   */
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(slots, EMPTY);
+      size = 0;
+    }
+  }
+
+  private void resize() {
+    int[] original = slots;
+    slots = new int[original.length * 2];
+    Arrays.fill(slots, EMPTY);
+    int mask = slots.length - 1;
+    for (int value : original) {
+      if (value != EMPTY) {
+        int index = mix(value) & mask;
+        while (slots[index] != EMPTY) {
+          index = (index + 1) & mask;
+        }
+        slots[index] = value;
+      }
+    }
+  }
+
+  /**
+   * Spreads sequential values across the table.
+   */
+  private static int mix(int value) {
+    int h = value * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+}
@@ -19,12 +19,15 @@ package com.squarespace.less.core;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
 
+import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.Writer;
 import java.net.URL;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystems;
@@ -119,6 +122,14 @@ public class LessUtils {
     }
   }
 
+  /**
+   * Opens a buffered writer on a file using UTF8 encoding.
+   */
+  public static Writer newFileWriter(Path outPath) throws IOException {
+    OutputStream output = Files.newOutputStream(outPath, CREATE, TRUNCATE_EXISTING);
+    return new BufferedWriter(new OutputStreamWriter(output, Constants.UTF8));
+  }
+
   /**
    * Flattens the list types {@link Expression} and {@link ExpressionList} of length 1
    * by returning their first value
@@ -178,7 +178,44 @@ public class ArgSpec {
    * Validates the arguments.
    */
   public boolean validate(ExecEnv env, Function func, List<Node> args) throws LessException {
-    int size = args.size();
+    int size = validateCount(env, func, args.size());
+    for (int i = 0; i < size; i++) {
+      validators.get(i).validate(i, args.get(i));
+    }
+    return true;
+  }
+
+  /**
+   * Validates up to three arguments without building a list. Arguments at or
+   * past {@code size} are ignored.
+   */
+  public boolean validate(ExecEnv env, Function func, int size, Node arg0, Node arg1, Node arg2)
+      throws LessException {
+    size = validateCount(env, func, size);
+    if (size > 0) {
+      validators.get(0).validate(0, arg0);
+    }
+    if (size > 1) {
+      validators.get(1).validate(1, arg1);
+    }
+    if (size > 2) {
+      validators.get(2).validate(2, arg2);
+    }
+    return true;
+  }
+
+  /**
+   * Indicates whether this many arguments are accepted without an error or warning,
+   * in which case validating arguments of known types always has the same outcome.
+   */
+  public boolean accepts(int size) {
+    return size >= minArgs && (size <= validators.size() || variadic);
+  }
+
+  /**
+   * Checks the number of arguments, returning the number to be validated.
+   */
+  private int validateCount(ExecEnv env, Function func, int size) throws LessException {
     if (size < minArgs) {
       throw new LessException(argCount(func.name(), minArgs, size));
 
@@ -197,10 +234,7 @@ public class ArgSpec {
     if (variadic) {
       size = validators.size();
     }
-    for (int i = 0; i < size; i++) {
-      validators.get(i).validate(i, args.get(i));
-    }
-    return true;
+    return size;
   }
 
   /**
@@ -83,6 +83,13 @@ public class BufferStack {
     index--;
   }
 
+  /**
+   * Returns all buffers to the stack, such as after a compile was aborted.
+   */
+  public void reset() {
+    index = 0;
+  }
+
   /**
    * Asserts that the internal stack's state is valid.
    */
@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.exec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.core.FlexList;
+import com.squarespace.less.model.BaseNode;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.BlockNode;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.Expression;
+import com.squarespace.less.model.ExpressionList;
+import com.squarespace.less.model.FunctionCall;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Operation;
+import com.squarespace.less.model.Paren;
+import com.squarespace.less.model.Rule;
+
+
+/**
+ * Evaluates the constant parts of rule and definition values once, after parsing,
+ * so they are not evaluated again on every compile of the tree.  Operations whose
+ * operands are constant and calls to {@link Function#pure() pure} functions with
+ * constant arguments are replaced by their results.
+ *
+ * Nodes are folded using default options, and only if evaluating them raises no
+ * error or warning, so the folded tree produces the same output under any options.
+ * Anything else is left for the evaluator, which reports errors and warnings with
+ * the full context of the compile.
+ */
+public class ConstantFolder {
+
+  /**
+   * Context used to look up functions.
+   */
+  private final LessContext ctx;
+
+  /**
+   * Environment in which constant nodes are evaluated.
+   */
+  private final ExecEnv env;
+
+  /**
+   * Number of nodes replaced by their values.
+   */
+  private int folded;
+
+  public ConstantFolder(LessContext ctx) {
+    this.ctx = ctx;
+    this.env = new LessContext(new LessOptions()).newEnv();
+  }
+
+  /**
+   * Folds the constant values in the block and its nested blocks, returning
+   * the number of nodes replaced.
+   */
+  public static int fold(Block block, LessContext ctx) {
+    ConstantFolder folder = new ConstantFolder(ctx);
+    folder.foldBlock(block);
+    return folder.folded;
+  }
+
+  private void foldBlock(Block block) {
+    FlexList<Node> rules = block.rules();
+    int size = rules.size();
+    for (int i = 0; i < size; i++) {
+      Node node = rules.get(i);
+      if (node instanceof BlockNode) {
+        foldBlock(((BlockNode)node).block());
+
+      } else if (node instanceof Rule) {
+        Rule rule = (Rule)node;
+        Node value = foldValue(rule.value());
+        if (value != rule.value()) {
+          rule.value(value);
+        }
+
+      } else if (node instanceof Definition) {
+        Definition def = (Definition)node;
+        Node value = def.value();
+        if (value instanceof BlockNode) {
+          foldBlock(((BlockNode)value).block());
+          continue;
+        }
+        value = foldValue(value);
+        if (value != def.value()) {
+          rules.set(i, def.copy(value));
+          block.resetVariableCache();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the value with its constant parts folded, or the value itself if
+   * nothing could be folded.
+   */
+  private Node foldValue(Node node) {
+    if (node == null || !node.needsEval()) {
+      return node;
+    }
+    switch (node.type()) {
+
+      case EXPRESSION:
+      {
+        List<Node> values = foldValues(((Expression)node).values());
+        if (values == null) {
+          return node;
+        }
+        if (values.size() == 1 && !values.get(0).needsEval()) {
+          return values.get(0);
+        }
+        return copyBase(new Expression(values), node);
+      }
+
+      case EXPRESSION_LIST:
+      {
+        List<Node> values = foldValues(((ExpressionList)node).expressions());
+        return values == null ? node : copyBase(new ExpressionList(values), node);
+      }
+
+      case FUNCTION_CALL:
+        return foldCall((FunctionCall)node);
+
+      case OPERATION:
+        return foldOperation((Operation)node);
+
+      case PAREN:
+      {
+        Node value = foldValue(((Paren)node).value());
+        return value == ((Paren)node).value() ? node : copyBase(new Paren(value), node);
+      }
+
+      default:
+        return node;
+    }
+  }
+
+  /**
+   * Folds each of the values, returning null if none changed.
+   */
+  private List<Node> foldValues(List<Node> nodes) {
+    List<Node> result = null;
+    int size = nodes.size();
+    for (int i = 0; i < size; i++) {
+      Node node = nodes.get(i);
+      Node value = foldValue(node);
+      if (value != node && result == null) {
+        result = new ArrayList<>(nodes.subList(0, i));
+      }
+      if (result != null) {
+        result.add(value);
+      }
+    }
+    return result;
+  }
+
+  private Node foldCall(FunctionCall call) {
+    List<Node> args = foldValues(call.args());
+    if (args == null) {
+      args = call.args();
+    }
+
+    Function func = call.noImplementation() ? null : ctx.findFunction(call.name());
+    if (func != null && func.pure() && constant(args)) {
+      try {
+        func.spec().validate(env, func, args);
+        Node result = func.invoke(env, args);
+        if (accept(result)) {
+          return result;
+        }
+      } catch (LessException e) {
+        // Leave the call for the evaluator to report.
+      }
+    }
+
+    if (args == call.args()) {
+      return call;
+    }
+    return copyBase(new FunctionCall(call.name(), args, call.noImplementation()), call);
+  }
+
+  private Node foldOperation(Operation operation) {
+    Node left = foldValue(operation.left());
+    Node right = foldValue(operation.right());
+
+    // With strict math, whether the operation is evaluated depends on the rule
+    // it is used in.
+    boolean strict = operation.requiresStrictMath() && !operation.isSubExpression();
+    if (!strict && !left.needsEval() && !right.needsEval()) {
+      Operation constant = operation;
+      if (left != operation.left() || right != operation.right()) {
+        constant = copy(operation, left, right);
+      }
+      try {
+        Node result = constant.eval(env);
+        if (accept(result)) {
+          return result;
+        }
+      } catch (LessException e) {
+        // Leave the operation for the evaluator to report.
+      }
+    }
+
+    if (left == operation.left() && right == operation.right()) {
+      return operation;
+    }
+    return copy(operation, left, right);
+  }
+
+  /**
+   * Indicates whether a result can replace the node it was evaluated from,
+   * clearing any warnings raised evaluating it.
+   */
+  private boolean accept(Node result) {
+    if (env.warnings() != null) {
+      return false;
+    }
+    if (result == null || result.needsEval() || result instanceof BlockNode) {
+      return false;
+    }
+    folded++;
+    return true;
+  }
+
+  private static boolean constant(List<Node> nodes) {
+    int size = nodes.size();
+    for (int i = 0; i < size; i++) {
+      if (nodes.get(i).needsEval()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Operation copy(Operation operation, Node left, Node right) {
+    Operation result = new Operation(operation.operator(), left, right, operation.isSubExpression());
+    result.setRequireStrictMath(operation.requiresStrictMath());
+    return copyBase(result, operation);
+  }
+
+  private static <T extends BaseNode> T copyBase(T node, Node from) {
+    if (from instanceof BaseNode) {
+      node.copyBase((BaseNode)from);
+    }
+    return node;
+  }
+
+}
@@ -21,17 +21,22 @@ import static com.squarespace.less.model.NodeType.MEDIA;
 import static com.squarespace.less.model.NodeType.RULESET;
 import static com.squarespace.less.model.NodeType.STYLESHEET;
 
+import java.io.IOException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 
+import com.squarespace.less.ImportCache;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.core.Buffer;
+import com.squarespace.less.core.CharArena;
 import com.squarespace.less.core.LessInternalException;
-import com.squarespace.less.core.LessUtils;
 import com.squarespace.less.model.BlockDirective;
 import com.squarespace.less.model.Media;
 import com.squarespace.less.model.NodeType;
@@ -45,6 +50,29 @@ import com.squarespace.less.model.Stylesheet;
  * suppress empty blocks, and eliminate duplicate rules.  It also
  * ensures that each nested block is emitted in the output model
  * at the correct scope.
+ *
+ * When constructed with a sink, top-level blocks are rendered and
+ * written to the sink as soon as the renderer returns to the top
+ * level, since they can no longer change.  Top-level values are
+ * deduplicated with the help of the renderer, which announces the
+ * values it will emit before rendering begins.
+ *
+ * Rendered headers, values and comments are copied into a single
+ * {@link CharArena}, and described by entries in parallel arrays shared
+ * by all blocks.  Each block keeps the indices of its entries in insertion
+ * order.  Duplicates within a block are found through a table of 64-bit
+ * fingerprints, confirming each fingerprint match against the text in
+ * the arena.
+ *
+ * When compressing, the model is optimized before it is rendered:
+ * declarations overridden later in the same ruleset are dropped, and
+ * adjacent rulesets with identical declarations are merged into one
+ * with a list of selectors.  At the top level, the last ruleset or media
+ * block is held back until the next entry is known, so a following
+ * ruleset with the same declarations, or media block with the same
+ * features, can be merged into it.  Top-level blocks are compared in
+ * rendered form, so the output is the same whether or not it is written
+ * to a sink as blocks are completed.
  */
 public class CssModel {
 
@@ -84,17 +112,105 @@ public class CssModel {
    */
   private final Buffer buffer;
 
+  /**
+   * Storage for all headers, values and comments in the model.
+   */
+  private final Fragments fragments = new Fragments();
+
+  /**
+   * Top-level block.
+   */
+  private final CssBlock root;
+
+  /**
+   * Last top-level block when compressing, held back to merge it with the next.
+   */
+  private final PendingBlock pending = new PendingBlock();
+
+  /**
+   * Buffer used to render top-level blocks before they are merged.
+   */
+  private Buffer scratch;
+
+  /**
+   * Optional sink to write top-level blocks to as they are completed.
+   */
+  private Appendable out;
+
+  /**
+   * Number of times each top-level value and comment is expected to be added,
+   * indexed by entry kind. A value is only emitted by its final occurrence,
+   * since the last unique value wins.
+   */
+  private List<Map<String, Integer>> expected;
+
   /**
    * Current block being operated on.
    */
   private CssBlock current;
 
+  /**
+   * Indicates a top-level value was written without its terminator, since
+   * the terminator is omitted after the last value when compressing.
+   */
+  private boolean ruleEndPending;
+
+  /**
+   * First error raised writing to the sink.
+   */
+  private IOException error;
+
+  /**
+   * Time spent writing to the sink, in nanoseconds.
+   */
+  private long flushTime;
+
+  /**
+   * Number of characters added to the model.
+   */
+  private long length;
+
   /**
    * Constructs a CSS model with the given context.
    */
   public CssModel(LessContext ctx) {
-    buffer = ctx.newBuffer();
-    current = new CssBlock(STYLESHEET);
+    this(ctx, null);
+  }
+
+  /**
+   * Constructs a CSS model with the given context, which writes top-level
+   * blocks to the sink as they are completed.
+   */
+  public CssModel(LessContext ctx, Appendable out) {
+    this.buffer = ctx.newBuffer();
+    this.root = new CssBlock(STYLESHEET, fragments);
+    reset(out);
+  }
+
+  /**
+   * Clears the model so it can be reused for another render, keeping the
+   * storage it has allocated.
+   */
+  public void reset(Appendable out) {
+    stack.clear();
+    root.clear();
+    root.populated = false;
+    fragments.clear();
+    this.out = out;
+    if (expected != null) {
+      expected.get(0).clear();
+      expected.get(1).clear();
+    } else if (out != null) {
+      expected = new ArrayList<>(2);
+      expected.add(new HashMap<String, Integer>());
+      expected.add(new HashMap<String, Integer>());
+    }
+    pending.clear();
+    current = root;
+    ruleEndPending = false;
+    error = null;
+    flushTime = 0;
+    length = 0;
   }
 
   /**
@@ -105,15 +221,67 @@ public class CssModel {
       throw new LessInternalException("Serious error: stack was not fully popped.");
     }
     buffer.reset();
-    current.render(buffer);
+    if (buffer.compress()) {
+      ruleEndPending = false;
+      renderRoot(buffer);
+      pending.render(buffer);
+    } else {
+      current.render(buffer);
+    }
     return buffer.toString();
   }
 
+  /**
+   * Writes the remainder of the CSS model to the sink, throwing the first
+   * error raised while writing.
+   */
+  public void finish() throws IOException {
+    if (current != root) {
+      throw new LessInternalException("Serious error: stack was not fully popped.");
+    }
+    flush(true);
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Time spent rendering completed blocks and writing them to the sink, in
+   * nanoseconds.
+   */
+  public long flushTime() {
+    return flushTime;
+  }
+
+  /**
+   * Number of characters of headers, values and comments added to the model,
+   * including any later discarded as duplicates.
+   */
+  public long length() {
+    return length;
+  }
+
+  /**
+   * Announces that a value will be added to the top-level block.
+   */
+  public CssModel expectValue(String value) {
+    expect(Fragments.VALUE, value);
+    return this;
+  }
+
+  /**
+   * Announces that a comment will be added to the top-level block.
+   */
+  public CssModel expectComment(String value) {
+    expect(Fragments.COMMENT, value);
+    return this;
+  }
+
   /**
    * Appends a value to the current block.
    */
   public CssModel value(String value) {
-    current.add(new CssValue(value));
+    add(Fragments.VALUE, value);
     return this;
   }
 
@@ -121,7 +289,7 @@ public class CssModel {
    * Appends a comment to the current block.
    */
   public CssModel comment(String value) {
-    current.add(new CssComment(value));
+    add(Fragments.COMMENT, value);
     return this;
   }
 
@@ -130,6 +298,7 @@ public class CssModel {
    */
   public CssModel header(String ... strings) {
     for (String raw : strings) {
+      length += raw.length();
       current.add(raw);
     }
     return this;
@@ -140,7 +309,7 @@ public class CssModel {
    */
   public CssModel push(NodeType type) {
     stack.push(current);
-    CssBlock child = new CssBlock(type);
+    CssBlock child = new CssBlock(type, fragments);
     defer(child);
     current = child;
     return this;
@@ -154,9 +323,132 @@ public class CssModel {
     CssBlock parent = current.parent();
     parent.populated |= current.populated;
     current = stack.pop();
+    if (out != null && current == root) {
+      flush(false);
+    }
     return this;
   }
 
+  private void expect(byte kind, String value) {
+    Map<String, Integer> counts = expected.get(kind);
+    Integer count = counts.get(value);
+    counts.put(value, count == null ? 1 : count + 1);
+  }
+
+  /**
+   * Appends a value or comment to the current block.  When streaming, a top-level
+   * entry is written immediately, unless it will be superseded by a later equal entry.
+   */
+  private void add(byte kind, String value) {
+    length += value.length();
+    if (out == null || current != root) {
+      current.add(kind, value);
+      return;
+    }
+    Map<String, Integer> counts = expected.get(kind);
+    Integer count = counts.get(value);
+    if (count != null) {
+      if (count > 1) {
+        counts.put(value, count - 1);
+        return;
+      }
+      counts.remove(value);
+    }
+    current.add(kind, value);
+    flush(false);
+  }
+
+  /**
+   * Renders the completed top-level entries and writes them to the sink. Since
+   * nothing else is open, all entries are discarded along with their text. When
+   * finishing, the block held back for merging is written too.
+   */
+  private void flush(boolean finishing) {
+    if (root.nodeCount == 0 && !(finishing && pending.type != null)) {
+      return;
+    }
+    long started = System.nanoTime();
+    if (error == null) {
+      buffer.reset();
+      renderRoot(buffer);
+      if (finishing) {
+        pending.render(buffer);
+      }
+      try {
+        out.append(buffer.toString());
+      } catch (IOException e) {
+        error = e;
+      }
+    }
+    root.clear();
+    fragments.clear();
+    flushTime += System.nanoTime() - started;
+  }
+
+  /**
+   * Renders the top-level entries.  When compressing, rulesets and media blocks
+   * are passed through the pending block to merge them with their neighbors.
+   */
+  private void renderRoot(Buffer buf) {
+    boolean optimize = buf.compress();
+    if (optimize) {
+      root.optimize();
+    }
+    for (int i = 0; i < root.nodeCount; i++) {
+      int entry = root.nodes[i];
+      byte kind = fragments.kinds[entry];
+      if (kind == Fragments.DEAD) {
+        continue;
+      }
+      if (optimize && kind == Fragments.BLOCK) {
+        // Empty blocks render nothing, so they must not keep their neighbors apart.
+        CssBlock block = fragments.block(entry);
+        if (!block.populated) {
+          continue;
+        }
+        if (block.headerCount > 0 && (block.type == RULESET || block.type == MEDIA)) {
+          if (ruleEndPending) {
+            buf.ruleEnd();
+            ruleEndPending = false;
+          }
+          hold(buf, block);
+          continue;
+        }
+      }
+      pending.render(buf);
+      if (ruleEndPending) {
+        buf.ruleEnd();
+        ruleEndPending = false;
+      }
+      fragments.render(buf, entry);
+      if (kind == Fragments.VALUE) {
+        if (buf.compress()) {
+          ruleEndPending = true;
+        } else {
+          buf.ruleEnd();
+        }
+      }
+    }
+  }
+
+  /**
+   * Merges the block into the pending block, or renders the pending block and
+   * replaces it with this one.
+   */
+  private void hold(Buffer buf, CssBlock block) {
+    if (scratch == null) {
+      scratch = buffer.newBuffer();
+    }
+    scratch.reset();
+    boolean endsWithValue = block.renderBody(scratch);
+    List<String> headers = block.headerTexts();
+    String body = scratch.toString();
+    if (!pending.merge(block.type, headers, body, endsWithValue)) {
+      pending.render(buf);
+      pending.set(block.type, headers, body, endsWithValue);
+    }
+  }
+
   /**
    * Push this block up the stack until it finds its proper parent.
    */
@@ -177,25 +469,38 @@ public class CssModel {
   /**
    * Represents a CSS block that can contain other nodes and blocks.
    */
-  static class CssBlock extends CssNode {
+  static class CssBlock {
 
-    // Adding an element to a LinkedHashSet is about 1/2 as fast as adding it to
-    // an ArrayList, but maintains original insertion order while removing duplicates.
+    private final Fragments fragments;
 
-    private final Set<String> headers = new LinkedHashSet<>();
-
-    private final Set<CssNode> nodes = new LinkedHashSet<>();
+    private final int id;
 
     private final NodeType type;
 
     private final EnumSet<NodeType> acceptFilter;
 
+    /**
+     * Entries for the block's headers, in order.
+     */
+    private int[] headers;
+
+    private int headerCount;
+
+    /**
+     * Entries for the block's values, comments and child blocks, in order.
+     */
+    private int[] nodes;
+
+    private int nodeCount;
+
     private CssBlock parent;
 
     private boolean populated = false;
 
-    CssBlock(NodeType type) {
+    CssBlock(NodeType type, Fragments fragments) {
       this.type = type;
+      this.fragments = fragments;
+      this.id = fragments.register(this);
       switch (type) {
 
         case BLOCK_DIRECTIVE:
@@ -248,133 +553,542 @@ public class CssModel {
       return populated;
     }
 
+    /**
+     * Adds a header, keeping the first occurrence of duplicates.
+     */
     public void add(String header) {
-      headers.add(header);
+      int entry = fragments.add(id, Fragments.HEADER, header, false);
+      if (entry != -1) {
+        if (headers == null) {
+          headers = new int[2];
+        } else if (headerCount == headers.length) {
+          headers = Arrays.copyOf(headers, headerCount * 2);
+        }
+        headers[headerCount++] = entry;
+      }
     }
 
-    public void add(CssNode node) {
-      // Ensure that the last unique rule (key + value) wins.
-      if (nodes.contains(node)) {
-        nodes.remove(node);
-      }
-      nodes.add(node);
-      populated |= node.populated();
+    /**
+     * Adds a value or comment, ensuring the last unique occurrence wins.
+     */
+    public void add(byte kind, String value) {
+      addNode(fragments.add(id, kind, value, true));
+      populated = true;
     }
 
-    @Override
-    public boolean isValue() {
-      return false;
+    public void add(CssBlock block) {
+      addNode(fragments.addBlock(block.id));
+      populated |= block.populated;
+    }
+
+    /**
+     * Removes all headers and entries from this block.
+     */
+    public void clear() {
+      headerCount = 0;
+      nodeCount = 0;
     }
 
-    @Override
     public void render(Buffer buf) {
       if (!populated) {
         return;
       }
 
-      if (!headers.isEmpty()) {
-        int count = 0;
-        for (String header : headers) {
-          if (count > 0) {
+      if (headerCount > 0) {
+        for (int i = 0; i < headerCount; i++) {
+          if (i > 0) {
             buf.selectorSep();
           }
           buf.indent();
-          buf.append(header);
-          count++;
+          fragments.appendTo(buf, headers[i]);
         }
         buf.blockOpen();
       }
+      renderBody(buf);
+      if (headerCount > 0) {
+        buf.blockClose();
+        if (!buf.compress()) {
+          buf.append('\n');
+        }
+      }
+    }
+
+    /**
+     * Renders the values, comments and child blocks, returning true if the last
+     * entry rendered was a value, whose terminator is omitted when compressing.
+     */
+    boolean renderBody(Buffer buf) {
+      // Find the last live entry, since a superseded entry may follow it.
+      int last = nodeCount - 1;
+      while (last >= 0 && fragments.kinds[nodes[last]] == Fragments.DEAD) {
+        last--;
+      }
 
-      Iterator<CssNode> iter = nodes.iterator();
-      while (iter.hasNext()) {
-        CssNode node = iter.next();
-        node.render(buf);
-        // If we're adding a rule, and we're not compressed or this is not the last
-        // rule in the ruleset, append the semicolon.
-        if (node instanceof CssValue && (!buf.compress() || iter.hasNext())) {
+      // If we're adding a rule, and we're not compressed or this is not the last
+      // entry in the block, append the semicolon.
+      for (int i = 0; i <= last; i++) {
+        int entry = nodes[i];
+        byte kind = fragments.kinds[entry];
+        if (kind == Fragments.DEAD) {
+          continue;
+        }
+        fragments.render(buf, entry);
+        if (kind == Fragments.VALUE && (!buf.compress() || i < last)) {
           buf.ruleEnd();
         }
       }
-      if (!headers.isEmpty()) {
-        buf.blockClose();
-        if (!buf.compress()) {
-          buf.append('\n');
+      return last >= 0 && fragments.kinds[nodes[last]] == Fragments.VALUE;
+    }
+
+    /**
+     * Returns the text of the block's headers.
+     */
+    List<String> headerTexts() {
+      List<String> result = new ArrayList<>(headerCount);
+      for (int i = 0; i < headerCount; i++) {
+        result.add(fragments.text(headers[i]));
+      }
+      return result;
+    }
+
+    /**
+     * Shrinks this block and the blocks nested in it before compressed output
+     * is rendered.  See {@link CssOptimizer} for the rules applied.
+     */
+    void optimize() {
+      if (!populated) {
+        return;
+      }
+      if (type == RULESET) {
+        dropOverridden();
+        return;
+      }
+      for (int i = 0; i < nodeCount; i++) {
+        int entry = nodes[i];
+        if (fragments.kinds[entry] == Fragments.BLOCK) {
+          fragments.block(entry).optimize();
         }
       }
+      if (type != STYLESHEET) {
+        mergeRulesets();
+      }
     }
-  }
 
-  /**
-   * Represents a simple value in a CSS model.
-   */
-  static class CssValue extends CssNode {
+    /**
+     * Marks dead each declaration overridden by a later one with the same
+     * property and value shape, unless it is important and the later one is not.
+     */
+    private void dropOverridden() {
+      Map<String, Boolean> later = null;
+      for (int i = nodeCount - 1; i >= 0; i--) {
+        int entry = nodes[i];
+        if (fragments.kinds[entry] != Fragments.VALUE) {
+          continue;
+        }
+        String declaration = fragments.text(entry);
+        String key = CssOptimizer.overrideKey(declaration);
+        if (key == null) {
+          continue;
+        }
+        if (later == null) {
+          later = new HashMap<>();
+        }
+        boolean important = CssOptimizer.important(declaration);
+        Boolean laterImportant = later.get(key);
+        if (laterImportant != null && (laterImportant || !important)) {
+          fragments.kinds[entry] = Fragments.DEAD;
+        } else {
+          later.put(key, important);
+        }
+      }
+    }
 
-    private final String value;
+    /**
+     * Merges each ruleset into the adjacent ruleset before it when both have
+     * the same declarations.
+     */
+    private void mergeRulesets() {
+      CssBlock target = null;
+      for (int i = 0; i < nodeCount; i++) {
+        int entry = nodes[i];
+        byte kind = fragments.kinds[entry];
+        if (kind == Fragments.DEAD) {
+          continue;
+        }
+        if (kind == Fragments.BLOCK) {
+          CssBlock block = fragments.block(entry);
+          if (!block.populated) {
+            continue;
+          }
+          if (block.type == RULESET && block.mergeable()) {
+            if (target != null && target.sameBody(block)) {
+              target.addHeaders(block);
+              fragments.kinds[entry] = Fragments.DEAD;
+            } else {
+              target = block;
+            }
+            continue;
+          }
+        }
+        target = null;
+      }
+    }
 
-    CssValue(String value) {
-      this.value = value;
+    private boolean mergeable() {
+      if (headerCount == 0) {
+        return false;
+      }
+      for (int i = 0; i < headerCount; i++) {
+        if (!CssOptimizer.mergeable(fragments.text(headers[i]))) {
+          return false;
+        }
+      }
+      return true;
     }
 
-    @Override
-    public boolean equals(Object obj) {
-      return (obj instanceof CssValue) ? LessUtils.safeEquals(value, ((CssValue)obj).value) : false;
+    private boolean sameBody(CssBlock other) {
+      int i = nextLive(0);
+      int j = other.nextLive(0);
+      while (i < nodeCount && j < other.nodeCount) {
+        if (!fragments.textEquals(nodes[i], other.nodes[j])) {
+          return false;
+        }
+        i = nextLive(i + 1);
+        j = other.nextLive(j + 1);
+      }
+      return i == nodeCount && j == other.nodeCount;
     }
 
-    @Override
-    public int hashCode() {
-      return value.hashCode();
+    private int nextLive(int i) {
+      while (i < nodeCount && fragments.kinds[nodes[i]] == Fragments.DEAD) {
+        i++;
+      }
+      return i;
     }
 
-    @Override
-    public void render(Buffer buf) {
-      buf.indent();
-      buf.append(value);
+    /**
+     * Adds the other block's headers which this block does not already have.
+     */
+    private void addHeaders(CssBlock other) {
+      for (int i = 0; i < other.headerCount; i++) {
+        int entry = other.headers[i];
+        boolean found = false;
+        for (int j = 0; j < headerCount && !found; j++) {
+          found = fragments.textEquals(headers[j], entry);
+        }
+        if (!found) {
+          if (headerCount == headers.length) {
+            headers = Arrays.copyOf(headers, headerCount * 2);
+          }
+          headers[headerCount++] = entry;
+        }
+      }
     }
 
+    private void addNode(int entry) {
+      if (nodes == null) {
+        nodes = new int[4];
+      } else if (nodeCount == nodes.length) {
+        nodes = Arrays.copyOf(nodes, nodeCount * 2);
+      }
+      nodes[nodeCount++] = entry;
+    }
   }
 
   /**
-   * Represents a comment in a CSS model.
+   * A top-level ruleset or media block in rendered form, held back when
+   * compressing so that following blocks can be merged into it.
    */
-  static class CssComment extends CssNode {
+  static class PendingBlock {
+
+    private final List<String> headers = new ArrayList<>();
+
+    private final StringBuilder body = new StringBuilder();
+
+    private NodeType type;
+
+    private boolean mergeable;
+
+    private boolean endsWithValue;
+
+    /**
+     * Merges the block into this one, returning false if they cannot be merged.
+     * Rulesets are merged when they have the same declarations, and media
+     * blocks when they have the same features.
+     */
+    boolean merge(NodeType type, List<String> headers, String body, boolean endsWithValue) {
+      if (type != this.type) {
+        return false;
+      }
+      if (type == RULESET) {
+        if (!mergeable || !body.contentEquals(this.body) || !mergeable(headers)) {
+          return false;
+        }
+        for (String header : headers) {
+          if (!this.headers.contains(header)) {
+            this.headers.add(header);
+          }
+        }
+        return true;
+      }
 
-    private final String value;
+      if (!headers.equals(this.headers)) {
+        return false;
+      }
+      if (!body.isEmpty()) {
+        if (this.endsWithValue) {
+          this.body.append(';');
+        }
+        this.body.append(body);
+        this.endsWithValue = endsWithValue;
+      }
+      return true;
+    }
 
-    CssComment(String value) {
-      this.value = value;
+    void set(NodeType type, List<String> headers, String body, boolean endsWithValue) {
+      this.type = type;
+      this.headers.addAll(headers);
+      this.body.append(body);
+      this.endsWithValue = endsWithValue;
+      this.mergeable = type == RULESET && mergeable(headers);
     }
 
-    @Override
-    public boolean equals(Object obj) {
-      return (obj instanceof CssComment) ? LessUtils.safeEquals(value, ((CssComment)obj).value) : false;
+    /**
+     * Renders the block, if any, and clears it.
+     */
+    void render(Buffer buf) {
+      if (type == null) {
+        return;
+      }
+      int size = headers.size();
+      for (int i = 0; i < size; i++) {
+        if (i > 0) {
+          buf.selectorSep();
+        }
+        buf.append(headers.get(i));
+      }
+      buf.blockOpen();
+      buf.append(body.toString());
+      buf.blockClose();
+      clear();
     }
 
-    @Override
-    public int hashCode() {
-      return value.hashCode();
+    void clear() {
+      type = null;
+      headers.clear();
+      body.setLength(0);
     }
 
-    @Override
-    public void render(Buffer buf) {
-      buf.indent().append(value);
+    private static boolean mergeable(List<String> headers) {
+      for (String header : headers) {
+        if (!CssOptimizer.mergeable(header)) {
+          return false;
+        }
+      }
+      return true;
     }
 
   }
 
   /**
-   * Abstract node in a CSS model.
+   * Entries of all blocks in the model, held in parallel arrays. The text of
+   * each entry is stored in the arena and indexed by its block and fingerprint
+   * in an open-addressing table. Entries superseded by a later duplicate are
+   * marked dead rather than removed, so indices remain stable.
    */
-  abstract static class CssNode {
+  static class Fragments {
 
-    public boolean isValue() {
-      return true;
+    static final byte VALUE = 0;
+
+    static final byte COMMENT = 1;
+
+    static final byte HEADER = 2;
+
+    static final byte BLOCK = 3;
+
+    static final byte DEAD = 4;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final CharArena arena = new CharArena();
+
+    private final List<CssBlock> blocks = new ArrayList<>();
+
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Block each entry belongs to.
+     */
+    private int[] owners = new int[INITIAL_CAPACITY];
+
+    /**
+     * Offset of each entry's text in the arena, or for a block entry the id of
+     * the child block.
+     */
+    private int[] offsets = new int[INITIAL_CAPACITY];
+
+    private int[] lengths = new int[INITIAL_CAPACITY];
+
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+
+    /**
+     * Open-addressing table holding entry index + 1, or zero for an empty slot.
+     */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Number of entries in the table.
+     */
+    private int indexed;
+
+    private int size;
+
+    /**
+     * Assigns an id to the block.
+     */
+    int register(CssBlock block) {
+      blocks.add(block);
+      return blocks.size() - 1;
     }
 
-    public boolean populated() {
-      return true;
+    /**
+     * Adds a text entry to the block, returning its index. If an equal entry of
+     * the same kind exists in the block, it is kept in place and -1 is returned,
+     * or when {@code lastWins} is set it is marked dead and a new entry reusing
+     * its text is returned.
+     */
+    int add(int owner, byte kind, String text, boolean lastWins) {
+      long fingerprint = ImportCache.fingerprint(text);
+      int length = text.length();
+      int mask = table.length - 1;
+      int slot = hash(owner, fingerprint) & mask;
+      while (table[slot] != 0) {
+        int index = table[slot] - 1;
+        if (fingerprints[index] == fingerprint && owners[index] == owner && kinds[index] == kind
+            && lengths[index] == length && arena.regionEquals(offsets[index], text)) {
+          if (!lastWins) {
+            return -1;
+          }
+          kinds[index] = DEAD;
+          int entry = append(owner, kind, offsets[index], length, fingerprint);
+          table[slot] = entry + 1;
+          return entry;
+        }
+        slot = (slot + 1) & mask;
+      }
+      int entry = append(owner, kind, arena.append(text), length, fingerprint);
+      table[slot] = entry + 1;
+      indexed++;
+      if (indexed * 2 > table.length) {
+        rehash();
+      }
+      return entry;
     }
 
-    public abstract void render(Buffer buf);
+    /**
+     * Adds an entry for the child block with the given id, returning its index.
+     */
+    int addBlock(int child) {
+      return append(-1, BLOCK, child, 0, 0L);
+    }
+
+    /**
+     * Renders the entry at the given index.
+     */
+    void render(Buffer buf, int entry) {
+      if (kinds[entry] == BLOCK) {
+        block(entry).render(buf);
+      } else {
+        buf.indent();
+        appendTo(buf, entry);
+      }
+    }
+
+    void appendTo(Buffer buf, int entry) {
+      arena.appendTo(buf, offsets[entry], lengths[entry]);
+    }
+
+    /**
+     * Returns the child block of a block entry.
+     */
+    CssBlock block(int entry) {
+      return blocks.get(offsets[entry]);
+    }
+
+    /**
+     * Returns the text of a header, value or comment entry.
+     */
+    String text(int entry) {
+      return arena.substring(offsets[entry], lengths[entry]);
+    }
+
+    /**
+     * Indicates whether two text entries are of the same kind and have equal text.
+     */
+    boolean textEquals(int entry, int other) {
+      return kinds[entry] == kinds[other]
+          && lengths[entry] == lengths[other]
+          && fingerprints[entry] == fingerprints[other]
+          && arena.regionEquals(offsets[entry], offsets[other], lengths[entry]);
+    }
+
+    /**
+     * Discards all entries, their text and all blocks but the root.
+     */
+    void clear() {
+      size = 0;
+      if (indexed > 0) {
+        if (table.length > INITIAL_CAPACITY * 2) {
+          table = new int[INITIAL_CAPACITY * 2];
+        } else {
+          Arrays.fill(table, 0);
+        }
+        indexed = 0;
+      }
+      arena.reset();
+      blocks.subList(1, blocks.size()).clear();
+    }
+
+    private int append(int owner, byte kind, int offset, int length, long fingerprint) {
+      if (size == kinds.length) {
+        int capacity = size * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        fingerprints = Arrays.copyOf(fingerprints, capacity);
+      }
+      kinds[size] = kind;
+      owners[size] = owner;
+      offsets[size] = offset;
+      lengths[size] = length;
+      fingerprints[size] = fingerprint;
+      return size++;
+    }
+
+    /**
+     * Doubles the table, re-indexing the live text entries.
+     */
+    private void rehash() {
+      table = new int[table.length * 2];
+      int mask = table.length - 1;
+      for (int i = 0; i < size; i++) {
+        byte kind = kinds[i];
+        if (kind == DEAD || kind == BLOCK) {
+          continue;
+        }
+        int slot = hash(owners[i], fingerprints[i]) & mask;
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = i + 1;
+      }
+    }
+
+    private static int hash(int owner, long fingerprint) {
+      int h = (int)(fingerprint ^ (fingerprint >>> 32)) ^ (owner * 0x9e3779b9);
+      return h ^ (h >>> 16);
+    }
 
   }
 
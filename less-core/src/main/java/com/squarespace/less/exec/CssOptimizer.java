@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.exec;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import com.squarespace.less.model.Colors;
+
+
+/**
+ * Rules used to shrink compressed output without changing how browsers
+ * interpret it.  Both rules are conservative: when a selector or value has
+ * any feature a browser might not understand, it is left alone.
+ */
+public class CssOptimizer {
+
+  private static final String IMPORTANT = "!important";
+
+  /**
+   * Pseudo-classes and pseudo-elements understood by every browser we target.
+   * A browser drops a whole rule if any selector in it is unknown, so rulesets
+   * using anything else are never merged.
+   */
+  private static final Set<String> SAFE_PSEUDOS = new HashSet<>(Arrays.asList(
+      "active", "after", "before", "checked", "disabled", "empty", "enabled",
+      "first-child", "first-letter", "first-line", "first-of-type", "focus",
+      "hover", "lang", "last-child", "last-of-type", "link", "not", "nth-child",
+      "nth-last-child", "nth-last-of-type", "nth-of-type", "only-child",
+      "only-of-type", "root", "target", "visited"
+      ));
+
+  /**
+   * Length units understood by every browser we target.
+   */
+  private static final Set<String> SAFE_LENGTHS = new HashSet<>(Arrays.asList(
+      "cm", "em", "ex", "in", "mm", "pc", "pt", "px"
+      ));
+
+  private CssOptimizer() {
+  }
+
+  /**
+   * Indicates whether a ruleset with this selector can share a rule with the
+   * selectors of another ruleset.
+   */
+  public static boolean mergeable(String selector) {
+    int len = selector.length();
+    int brackets = 0;
+    for (int i = 0; i < len; i++) {
+      char ch = selector.charAt(i);
+      switch (ch) {
+        case '\\':
+          i++;
+          break;
+
+        case '[':
+          brackets++;
+          break;
+
+        case ']':
+          brackets--;
+          break;
+
+        case ':':
+          if (brackets > 0) {
+            break;
+          }
+          int start = i + 1;
+          if (start < len && selector.charAt(start) == ':') {
+            start++;
+          }
+          int end = start;
+          while (end < len && (Character.isLetter(selector.charAt(end)) || selector.charAt(end) == '-')) {
+            end++;
+          }
+          if (!SAFE_PSEUDOS.contains(selector.substring(start, end).toLowerCase(Locale.ROOT))) {
+            return false;
+          }
+          i = end - 1;
+          break;
+
+        default:
+          break;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Indicates whether the declaration is marked important.
+   */
+  public static boolean important(String declaration) {
+    return declaration.endsWith(IMPORTANT);
+  }
+
+  /**
+   * Returns a key made of the property of a declaration and the shape of its
+   * value, or null if the declaration is not a simple property and value.
+   * Declarations with equal keys are understood by exactly the same browsers,
+   * so an earlier one is always overridden by a later one, subject to
+   * importance.  Values are reduced to their shape by replacing colors and
+   * lengths with a placeholder. Keywords, other units, and separators are kept
+   * as they are. Values containing functions, strings, escapes or vendor
+   * prefixes have no key, since these are how fallbacks are usually written.
+   */
+  public static String overrideKey(String declaration) {
+    int colon = declaration.indexOf(':');
+    if (colon <= 0) {
+      return null;
+    }
+    for (int i = 0; i < colon; i++) {
+      char ch = declaration.charAt(i);
+      if (!Character.isLetterOrDigit(ch) && ch != '-' && ch != '_') {
+        return null;
+      }
+    }
+
+    int end = declaration.length();
+    if (important(declaration)) {
+      end -= IMPORTANT.length();
+    }
+    while (end > colon && declaration.charAt(end - 1) == ' ') {
+      end--;
+    }
+    int i = colon + 1;
+    while (i < end && declaration.charAt(i) == ' ') {
+      i++;
+    }
+    if (i == end) {
+      return null;
+    }
+
+    StringBuilder key = new StringBuilder(end);
+    key.append(declaration, 0, colon + 1);
+    while (i < end) {
+      char ch = declaration.charAt(i);
+      if (separator(ch)) {
+        key.append(ch);
+        i++;
+        continue;
+      }
+      int start = i;
+      while (i < end && !separator(ch = declaration.charAt(i))) {
+        if (ch == '(' || ch == '"' || ch == '\'' || ch == '\\' || ch == '!') {
+          return null;
+        }
+        i++;
+      }
+      String shape = shape(declaration.substring(start, i));
+      if (shape == null) {
+        return null;
+      }
+      key.append(shape);
+    }
+    return key.toString();
+  }
+
+  /**
+   * Reduces a single token of a value to its shape.
+   */
+  private static String shape(String token) {
+    char first = token.charAt(0);
+    if (first == '#') {
+      // 4 and 8 digit hex colors are not understood by older browsers.
+      int digits = token.length() - 1;
+      return (digits == 3 || digits == 6) ? "#" : token;
+    }
+
+    int len = token.length();
+    int i = (first == '+' || first == '-') ? 1 : 0;
+    int start = i;
+    while (i < len && (Character.isDigit(token.charAt(i)) || token.charAt(i) == '.')) {
+      i++;
+    }
+    if (i > start) {
+      String unit = token.substring(i).toLowerCase(Locale.ROOT);
+      return SAFE_LENGTHS.contains(unit) ? "<length>" : "<number>" + unit;
+    }
+
+    if (first == '-') {
+      return null;
+    }
+    String keyword = token.toLowerCase(Locale.ROOT);
+    return Colors.nameToRGB(keyword) != null ? "#" : keyword;
+  }
+
+  private static boolean separator(char ch) {
+    return ch == ' ' || ch == ',' || ch == '/';
+  }
+
+}
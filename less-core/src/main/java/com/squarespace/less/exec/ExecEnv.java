@@ -18,11 +18,13 @@ package com.squarespace.less.exec;
 
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
+import com.squarespace.less.LessMetrics;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.FlexList;
 import com.squarespace.less.model.Block;
 import com.squarespace.less.model.BlockNode;
 import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.VariableSlot;
 
 
 /**
@@ -87,6 +89,18 @@ public class ExecEnv {
     this.warnings = warnings;
   }
 
+  /**
+   * Clears the stack, warnings and error so the environment can be reused
+   * for another evaluation.
+   */
+  public void reset() {
+    frames.reset();
+    warnings = null;
+    error = null;
+    strictMath = false;
+    importantFlagged = false;
+  }
+
   /**
    * Returns the context associated with this compile.
    */
@@ -212,17 +226,71 @@ public class ExecEnv {
       // Future: pragma to skip over circular references, looking in a higher stack frame.
       // To do that we check if the definition is evaluating (circular) and skip it:
       //
-      // if (def != null && pragmaSkipCircular() && !def.evaluating()) {
+      // if (def != null && pragmaSkipCircular() && !ctx.evaluating(def)) {
       // ...
 
       // If definition exists, return it
       if (def != null) {
+        lookupDone(name, i, def);
         return def;
       }
     }
+    lookupDone(name, -1, null);
     return null;
   }
 
+  /**
+   * Resolves a variable using its lexical address, if any.  When the top frames
+   * are copies of the blocks enclosing the reference, only those which contain
+   * mixin calls, and so may have gained definitions, are searched by name.
+   * Otherwise, or if rules were inserted into the defining block, this falls
+   * back to searching every frame.
+   */
+  public Definition resolveDefinition(String name, VariableSlot slot) throws LessException {
+    if (slot == null) {
+      return resolveDefinition(name);
+    }
+    int top = frames.size() - 1;
+    int depth = slot.depth();
+    if (depth > top) {
+      return resolveDefinition(name);
+    }
+    for (int i = 0; i <= depth; i++) {
+      if (frames.get(top - i).original() != slot.scope(i)) {
+        return resolveDefinition(name);
+      }
+    }
+    for (int i = 0; i <= depth; i++) {
+      Definition def = null;
+      Block frame = frames.get(top - i);
+      if (slot.scope(i).hasMixinCalls()) {
+        def = frame.resolveDefinition(name);
+      } else if (i == depth && !frame.rulesShifted()) {
+        def = frame.resolveDefinition(slot.index());
+      }
+      if (def != null) {
+        lookupDone(name, top - i, def);
+        return def;
+      }
+    }
+    return resolveDefinition(name);
+  }
+
+  /**
+   * Reports a variable lookup to the metrics listener and mixin memo, if any.
+   * The frame index is -1 if the lookup failed.
+   */
+  private void lookupDone(String name, int frame, Definition def) {
+    LessMetrics metrics = ctx.metrics();
+    if (metrics != null) {
+      metrics.variableLookup(frame == -1 ? frames.size() : frames.size() - frame);
+    }
+    MixinMemo memo = ctx.mixinMemo();
+    if (memo != null) {
+      memo.lookup(this, name, frame, def);
+    }
+  }
+
   /**
    * Iterate up the stack, trying to resolve the mixin against each block.
    */
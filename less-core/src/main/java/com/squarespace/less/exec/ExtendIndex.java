@@ -18,12 +18,12 @@ package com.squarespace.less.exec;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import com.squarespace.less.core.HashPrefixTree;
 import com.squarespace.less.core.HashPrefixTree.HPTKeyComparator;
 import com.squarespace.less.core.HashPrefixTree.HPTMatch;
 import com.squarespace.less.core.HashPrefixTree.HPTNode;
+import com.squarespace.less.core.IntSet;
 import com.squarespace.less.model.Extend;
 import com.squarespace.less.model.ExtendList;
 import com.squarespace.less.model.Selector;
@@ -43,12 +43,13 @@ import com.squarespace.less.model.Selectors;
 public class ExtendIndex {
 
   /**
-   * Compares the hashCode before the key part, to fail faster on average.
+   * Compares the key parts. The tree has already matched their hashes, which
+   * each part caches after the first call to hashCode().
    */
   private final static HPTKeyComparator<SelectorPart> COMPARATOR = new HPTKeyComparator<SelectorPart>() {
     @Override
     public boolean keysEqual(int queryKeyIndex, SelectorPart queryKey, SelectorPart treeKey) {
-      return queryKey.hashCode() == treeKey.hashCode() && queryKey.equals(treeKey);
+      return queryKey.equals(treeKey);
     }
   };
 
@@ -174,7 +175,7 @@ public class ExtendIndex {
    * selector as the query. Also pass in a duplicate filter to avoid
    * pulling in results we fetched on a previous query.
    */
-  public List<HPTMatch<Selector>> findPartialMatch(Selector selector, Set<Integer> dupeFilter) {
+  public List<HPTMatch<Selector>> findPartialMatch(Selector selector, IntSet dupeFilter) {
     return partialTree.searchSubsequences(selector.parts(), dupeFilter);
   }
 
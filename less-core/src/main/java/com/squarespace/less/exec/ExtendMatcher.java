@@ -23,8 +23,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import com.squarespace.less.LessException;
 import com.squarespace.less.core.HashPrefixTree.HPTMatch;
 import com.squarespace.less.core.HashPrefixTree.HPTNode;
+import com.squarespace.less.core.IntSet;
 import com.squarespace.less.model.Selector;
 import com.squarespace.less.model.SelectorPart;
 import com.squarespace.less.model.Selectors;
@@ -63,17 +65,23 @@ import com.squarespace.less.model.Selectors;
  */
 public class ExtendMatcher {
 
+  /**
+   * Render environment checked for cancellation while cascading, or null
+   * to skip the check.
+   */
+  private final RenderEnv env;
+
   /**
    * Collects all unique key ids seen during exact matching, ensuring we
    * can detect circular references.
    */
-  private final Set<Integer> exactIndexIds = new HashSet<>();
+  private final IntSet exactIndexIds = new IntSet();
 
   /**
    * Collects all unique key ids seen during search/replace matching,
    * ensuring we can detect circular references.
    */
-  private final Set<Integer> partialIndexIds = new HashSet<>();
+  private final IntSet partialIndexIds = new IntSet();
 
   /**
    * Scratch list of selectors we're currently working on.
@@ -88,11 +96,20 @@ public class ExtendMatcher {
    */
   private final Set<List<SelectorPart>> dupeCheck = new HashSet<>();
 
+  public ExtendMatcher() {
+    this(null);
+  }
+
+  public ExtendMatcher(RenderEnv env) {
+    this.env = env;
+  }
+
   /**
    * Extend the selector group against the given index. Collect the generated
    * selectors in the given list and return it.
    */
-  public List<Selector> extend(ExtendIndex index, Selectors selectors, List<Selector> collector) {
+  public List<Selector> extend(ExtendIndex index, Selectors selectors, List<Selector> collector)
+      throws LessException {
     // Match all of the selectors in the group, resetting the internal state for
     // each selector.
     dupeCheck.clear();
@@ -107,7 +124,8 @@ public class ExtendMatcher {
    * Perform both an exact match and a search/replace on the given selector, and
    * then cascade to process all generated selectors.
    */
-  public List<Selector> extend(ExtendIndex index, Selector selector, List<Selector> collector) {
+  public List<Selector> extend(ExtendIndex index, Selector selector, List<Selector> collector)
+      throws LessException {
     exactMatch(index, selector);
     partialMatch(index, selector);
     return extendCascade(index, collector);
@@ -116,10 +134,13 @@ public class ExtendMatcher {
   /**
    * Drain the deque of all selectors, matching each against the indexes.
    */
-  private List<Selector> extendCascade(ExtendIndex index, List<Selector> collector) {
+  private List<Selector> extendCascade(ExtendIndex index, List<Selector> collector) throws LessException {
     // Drain the queue until its empty. Once empty we're ensured that
     // all cascading selectors have been generated and captured.
     while (!selectorDeque.isEmpty()) {
+      if (env != null) {
+        env.checkCancelled();
+      }
       Selector selector = selectorDeque.pollFirst();
 
       // Avoid generating duplicate selectors to reduce unnecessary queries.
@@ -16,6 +16,7 @@
 
 package com.squarespace.less.exec;
 
+import java.util.Arrays;
 import java.util.List;
 
 import com.squarespace.less.LessException;
@@ -44,20 +45,41 @@ public abstract class Function {
    */
   protected final ArgSpec spec;
 
+  /**
+   * Indicates the result depends only on the arguments.
+   */
+  protected final boolean pure;
+
   /**
    * Construct a function named {@code name} with the raw argument specification.
    */
   public Function(String name, String spec) {
-    this.name = name;
-    this.spec = ArgSpec.fromString(spec);
+    this(name, spec, false);
+  }
+
+  /**
+   * Construct a function named {@code name} with the raw argument specification,
+   * indicating whether it is pure.
+   */
+  public Function(String name, String spec, boolean pure) {
+    this(name, ArgSpec.fromString(spec), pure);
   }
 
   /**
    * Construct a function named {@code name} with the parsed argument specification.
    */
   public Function(String name, ArgSpec spec) {
+    this(name, spec, false);
+  }
+
+  /**
+   * Construct a function named {@code name} with the parsed argument specification,
+   * indicating whether it is pure.
+   */
+  public Function(String name, ArgSpec spec, boolean pure) {
     this.name = name;
     this.spec = spec;
+    this.pure = pure;
   }
 
   /**
@@ -74,11 +96,42 @@ public abstract class Function {
     return spec;
   }
 
+  /**
+   * Indicates whether the result depends only on the arguments, and not on the
+   * options or the state of the compile.  Calls to pure functions with constant
+   * arguments may be evaluated once, before the stylesheet is evaluated.
+   */
+  public boolean pure() {
+    return pure;
+  }
+
   /**
    * Invokes the functions with the given execution environment and arguments.
    */
   public abstract Node invoke(ExecEnv env, List<Node> args) throws LessException;
 
+  /**
+   * Invokes the function with a single argument.  Functions called often can
+   * override this and the other fixed-arity methods to avoid building a list.
+   */
+  public Node invoke1(ExecEnv env, Node arg0) throws LessException {
+    return invoke(env, Arrays.asList(arg0));
+  }
+
+  /**
+   * Invokes the function with two arguments.
+   */
+  public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+    return invoke(env, Arrays.asList(arg0, arg1));
+  }
+
+  /**
+   * Invokes the function with three arguments.
+   */
+  public Node invoke3(ExecEnv env, Node arg0, Node arg1, Node arg2) throws LessException {
+    return invoke(env, Arrays.asList(arg0, arg1, arg2));
+  }
+
   /**
    * Converts a {@link Dimension} value to a percentage.
    */
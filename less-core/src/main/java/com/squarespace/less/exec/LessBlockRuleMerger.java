@@ -17,9 +17,12 @@
 package com.squarespace.less.exec;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
@@ -52,6 +55,12 @@ public class LessBlockRuleMerger {
    */
   private final List<Rule> rules = new ArrayList<>(4);
 
+  /**
+   * Rules and values created by this merger, which are safe to modify. Rules that
+   * came from the input may be shared with the parsed tree and are never mutated.
+   */
+  private final Set<Node> owned = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+
   /**
    * Constructs an object to merge rules based on properties and
    * merge modes.
@@ -92,33 +101,52 @@ public class LessBlockRuleMerger {
 
     // Merge the important flag.
     boolean important = mapped.important() || rule.important();
-    mapped.markImportant(important);
 
     // Merge the source value to the destination using the source's
     // merge mode.
     Node dst = mapped.value();
     Node src = rule.value();
+    Node value = dst;
     if (mergeable.mergeMode() == PropertyMergeMode.COMMA) {
-      mapped.value(mergeComma(dst, src));
+      value = mergeComma(dst, src);
 
     } else if (mergeable.mergeMode() == PropertyMergeMode.SPACE) {
-      mapped.value(mergeSpace(dst, src));
+      value = mergeSpace(dst, src);
     }
+
+    if (owned.contains(mapped)) {
+      mapped.markImportant(important);
+      mapped.value(value);
+      return;
+    }
+
+    // Replace the input rule with a private copy holding the merged value.
+    Rule merged = mapped.copy(value, important);
+    owned.add(merged);
+    ruleMap.put(name, merged);
+    rules.set(rules.indexOf(mapped), merged);
   }
 
   /**
    * Combine values into a comma-separated list.
    */
   private Node mergeComma(Node dst, Node src) {
-    if (dst instanceof ExpressionList) {
+    if (dst instanceof ExpressionList && owned.contains(dst)) {
       ExpressionList list = (ExpressionList)dst;
       list.add(src);
       return dst;
     }
 
     ExpressionList list = new ExpressionList();
-    list.add(dst);
+    if (dst instanceof ExpressionList) {
+      for (Node node : ((ExpressionList)dst).expressions()) {
+        list.add(node);
+      }
+    } else {
+      list.add(dst);
+    }
     list.add(src);
+    owned.add(list);
     return list;
   }
 
@@ -126,15 +154,22 @@ public class LessBlockRuleMerger {
    * Combine values into a space-separated list.
    */
   private Node mergeSpace(Node dst, Node src) {
-    if (dst instanceof Expression) {
+    if (dst instanceof Expression && owned.contains(dst)) {
       Expression expn = (Expression)dst;
       expn.add(src);
       return dst;
     }
 
     Expression expn = new Expression();
-    expn.add(dst);
+    if (dst instanceof Expression) {
+      for (Node node : ((Expression)dst).values()) {
+        expn.add(node);
+      }
+    } else {
+      expn.add(dst);
+    }
     expn.add(src);
+    owned.add(expn);
     return expn;
   }
 
@@ -25,6 +25,8 @@ import java.util.List;
 
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
+import com.squarespace.less.LessMetrics;
+import com.squarespace.less.LessMetrics.Phase;
 import com.squarespace.less.LessOptions;
 import com.squarespace.less.core.FlexList;
 import com.squarespace.less.core.LessInternalException;
@@ -77,11 +79,16 @@ public class LessEvaluator {
    * mixins, imports, etc have been evaluated and expanded.
    */
   public Stylesheet evaluate(Stylesheet sheet) throws LessException {
-    ExecEnv env = ctx.newEnv();
+    LessMetrics metrics = ctx.metrics();
+    long started = metrics == null ? 0 : System.nanoTime();
+    ExecEnv env = ctx.rootEnv();
     Stylesheet result = evaluateStylesheet(env, sheet);
     if (env.hasError()) {
       throw env.error();
     }
+    if (metrics != null) {
+      metrics.phaseDone(Phase.EVALUATION, System.nanoTime() - started);
+    }
     return result;
   }
 
@@ -124,13 +131,13 @@ public class LessEvaluator {
     Ruleset ruleset = input.copy(env);
 
     env.push(ruleset);
-    original.enter();
+    ctx.enter(original);
 
     Block block = ruleset.block();
     expandMixins(env, block);
     evaluateRules(env, block, forceImportant);
 
-    original.exit();
+    ctx.exit(original);
     env.pop();
     ruleset.evaluated(true);
     return ruleset;
@@ -142,7 +149,8 @@ public class LessEvaluator {
   public DetachedRuleset evaluateDetachedRuleset(ExecEnv env, DetachedRuleset input, boolean forceImportant)
       throws LessException {
 
-    ExecEnv closure = input.closure();
+    impure();
+    ExecEnv closure = ctx.closure(input);
     if (closure != null) {
       env = env.copy();
       env.append(closure.frames());
@@ -189,6 +197,8 @@ public class LessEvaluator {
       Node node = rules.get(i);
 
       try {
+        ctx.checkCancelled();
+        ctx.budget().evaluatedNode();
         switch (node.type()) {
 
           case BLOCK_DIRECTIVE:
@@ -204,8 +214,8 @@ public class LessEvaluator {
             // when they are referenced.  Set the closure for the environment
             // in which the detached ruleset is defined.
             if (value instanceof DetachedRuleset) {
-              DetachedRuleset ruleset = (DetachedRuleset)value;
-              ruleset.closure(env);
+              impure();
+              ctx.closure(value, env);
 
             } else {
               // Definitions has a non-BlockNode value.
@@ -241,10 +251,11 @@ public class LessEvaluator {
 
           case MIXIN:
           {
-            // Register the closure on the original MIXIN.
-            Mixin mixin = (Mixin) ((Mixin)node).original();
-            if (mixin.closure() == null) {
-              mixin.closure(env);
+            // Register the closure for the original MIXIN.
+            impure();
+            Node mixin = ((Mixin)node).original();
+            if (ctx.closure(mixin) == null) {
+              ctx.closure(mixin, env);
             }
             break;
           }
@@ -275,7 +286,15 @@ public class LessEvaluator {
             } else {
               newRule = (Rule)rule.eval(env);
             }
-            newRule.warnings(env.warnings());
+            String warnings = env.warnings();
+            if (warnings != null) {
+              // Rules that need no evaluation are returned as-is, and must not be
+              // modified since they belong to the parsed tree.
+              if (newRule == rule) {
+                newRule = rule.copy(rule.value(), rule.important());
+              }
+              newRule.warnings(warnings);
+            }
             node = newRule;
             break;
           }
@@ -332,6 +351,7 @@ public class LessEvaluator {
       if (node instanceof MixinCall) {
         Block mixinResult = null;
         try {
+          ctx.checkCancelled();
           mixinResult = executeMixinCall(env, (MixinCall)node);
 
         } catch (LessException e) {
@@ -359,10 +379,20 @@ public class LessEvaluator {
    * the mixin's guard to FALSE.
    */
   private Block executeMixinCall(ExecEnv env, MixinCall call) throws LessException {
+    ctx.budget().mixinCall();
+    impure();
     MixinMatcher matcher = new MixinMatcher(env, call);
     MixinResolver resolver = ctx.mixinResolver();
     resolver.reset(matcher);
-    env.resolveMixins(resolver);
+    LessMetrics metrics = ctx.metrics();
+    if (metrics == null) {
+      env.resolveMixins(resolver);
+    } else {
+      long started = System.nanoTime();
+      env.resolveMixins(resolver);
+      metrics.phaseDone(Phase.MIXIN_RESOLUTION, System.nanoTime() - started);
+      metrics.mixinCall();
+    }
     List<MixinMatch> matches = resolver.matches();
     if (matches.isEmpty()) {
       throw new LessException(mixinUndefined(call.repr()));
@@ -371,6 +401,7 @@ public class LessEvaluator {
     Block results = new Block();
     int calls = 0;
     for (MixinMatch match : matches) {
+      ctx.checkCancelled();
       Node node = match.mixin();
       if (node instanceof Mixin) {
         if (executeMixin(env, results, matcher, match)) {
@@ -414,10 +445,29 @@ public class LessEvaluator {
       return false;
     }
 
+    // Reuse the result of an identical call to a pure mixin.
+    Mixin original = (Mixin) mixin.original();
+    MixinMemo memo = ctx.mixinMemo();
+    MixinMemo.Key key = null;
+    if (memo != null) {
+      key = memo.key(original, matcher.mixinArgs(), params, call.important());
+      MixinMemo.Entry entry = memo.get(key, env);
+      if (entry != null) {
+        ctx.stats().mixinMemoHit();
+        if (entry.result() != null) {
+          if (ctx.mixinDepth() >= opts.mixinRecursionLimit()) {
+            throw new LessException(mixinRecurse(call.path(), opts.mixinRecursionLimit()));
+          }
+          collector.appendBlock(entry.result());
+        }
+        return true;
+      }
+      ctx.stats().mixinMemoMiss();
+    }
+
     // If the closure has been set on this mixin, use it.
     env = env.copy();
-    Mixin original = (Mixin) mixin.original();
-    ExecEnv closureEnv = original.closure();
+    ExecEnv closureEnv = ctx.closure(original);
     if (closureEnv != null) {
       env.append(closureEnv.frames());
     }
@@ -426,12 +476,26 @@ public class LessEvaluator {
     // We can resolve variables against the closure + argument scope or the scope which
     // called the mixin.
     env.push(bindings);
+    if (memo != null) {
+      memo.begin(key, env);
+    }
 
     // Evaluate the guard conditions. If FALSE, bail out.
     Guard guard = mixin.guard();
     if (guard != null) {
-      Node result = guard.eval(env);
+      Node result;
+      try {
+        result = guard.eval(env);
+      } catch (LessException e) {
+        if (memo != null) {
+          memo.abort();
+        }
+        throw e;
+      }
       if (FALSE.equals(result)) {
+        if (memo != null) {
+          memo.end(null);
+        }
         return true;
       }
     }
@@ -439,11 +503,13 @@ public class LessEvaluator {
     // Limits the overall depth if the mixin call stack.
     LessContext ctx = env.context();
     if (ctx.mixinDepth() >= opts.mixinRecursionLimit()) {
+      if (memo != null) {
+        memo.abort();
+      }
       throw new LessException(mixinRecurse(call.path(), opts.mixinRecursionLimit()));
     }
 
     // Enter the mixin body and execute it.
-    original.enter();
     ctx.enterMixin();
 
     env.push(mixin);
@@ -464,6 +530,9 @@ public class LessEvaluator {
       evaluateRules(env, block, call.important());
       exception = env.error();
       collector.appendBlock(block);
+      if (memo != null && exception == null) {
+        memo.end(block);
+      }
 
     } catch (LessException e) {
       exception = e;
@@ -472,6 +541,9 @@ public class LessEvaluator {
     // If any errors occur inside a mixin call, we want to show the actual
     // arguments passed to the call.
     if (exception != null) {
+      if (memo != null) {
+        memo.abort();
+      }
       MixinCall actualCall = call.copy();
       actualCall.args(matcher.mixinArgs());
       exception.push(actualCall);
@@ -479,10 +551,19 @@ public class LessEvaluator {
     }
 
     ctx.exitMixin();
-    original.exit();
     return true;
   }
 
+  /**
+   * Prevents the mixin calls currently being evaluated from being memoized.
+   */
+  private void impure() {
+    MixinMemo memo = ctx.mixinMemo();
+    if (memo != null) {
+      memo.impure();
+    }
+  }
+
   /**
    * Executes a RULESET as a mixin.
    */
@@ -16,11 +16,15 @@
 
 package com.squarespace.less.exec;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 
+import com.squarespace.less.LessBudget;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
+import com.squarespace.less.LessMetrics;
+import com.squarespace.less.LessMetrics.Phase;
 import com.squarespace.less.LessOptions;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.FlexList;
@@ -87,11 +91,15 @@ public class LessRenderer {
   private int warningId;
 
   protected LessRenderer(LessContext context, Stylesheet stylesheet) {
+    this(context, stylesheet, null);
+  }
+
+  protected LessRenderer(LessContext context, Stylesheet stylesheet, Appendable out) {
     this.ctx = context;
     this.stylesheet = stylesheet;
-    this.env = context.newRenderEnv();
+    this.env = context.renderEnv();
     this.opts = context.options();
-    this.model = new CssModel(context);
+    this.model = context.cssModel(out);
   }
 
   /**
@@ -99,16 +107,38 @@ public class LessRenderer {
    */
   public static String render(LessContext context, Stylesheet sheet) throws LessException {
     LessRenderer renderer = new LessRenderer(context, sheet);
+    renderer.build();
     return renderer.render();
   }
 
   /**
-   * Render the {@link Stylesheet} to the {@link CssModel} and return the
-   * rendered output.
+   * Shortcut to render a stylesheet against the given context, writing the output
+   * to the sink as each top-level block is completed.
    */
-  private String render() throws LessException {
+  public static void render(LessContext context, Stylesheet sheet, Appendable out)
+      throws LessException, IOException {
+    LessRenderer renderer = new LessRenderer(context, sheet, out);
+    renderer.expectValues();
+    renderer.build();
+    renderer.model.finish();
+
+    LessMetrics metrics = context.metrics();
+    if (metrics != null) {
+      metrics.phaseDone(Phase.RENDER, renderer.model.flushTime());
+    }
+  }
+
+  /**
+   * Render the {@link Stylesheet} to the {@link CssModel}.
+   */
+  private void build() throws LessException {
+    LessMetrics metrics = ctx.metrics();
+    long started = metrics == null ? 0 : System.nanoTime();
     LessIndexer indexer = new LessIndexer(env);
     indexer.index(stylesheet);
+    if (metrics != null) {
+      metrics.phaseDone(Phase.EXTEND_INDEX, System.nanoTime() - started);
+    }
 
     env.push(stylesheet);
     Block block = stylesheet.block();
@@ -119,8 +149,102 @@ public class LessRenderer {
     renderImports(block);
     renderBlock(block, false);
     env.pop();
+  }
+
+  /**
+   * Return the rendered output of the {@link CssModel}.
+   */
+  private String render() {
+    LessMetrics metrics = ctx.metrics();
+    if (metrics == null) {
+      return model.render();
+    }
+    long started = System.nanoTime();
+    String result = model.render();
+    metrics.phaseDone(Phase.RENDER, System.nanoTime() - started);
+    return result;
+  }
+
+  /**
+   * Announces the values that will be added to the top level of the {@link CssModel},
+   * so that a streaming model can tell which of them will be superseded by duplicates.
+   * This mirrors the top-level traversal in {@link #build()}.
+   */
+  private void expectValues() throws LessException {
+    Block block = stylesheet.block();
+    Directive charset = block.charset();
+    if (charset != null) {
+      model.expectValue(ctx.render(charset));
+    }
+    if (block.hasImports()) {
+      FlexList<Node> rules = block.rules();
+      int size = rules.size();
+      for (int i = 0; i < size; i++) {
+        Node node = rules.get(i);
+        if (node instanceof Import) {
+          model.expectValue(importValue((Import)node));
+        }
+      }
+    }
+    expectValues(block);
+  }
+
+  /**
+   * Announces the top-level values produced by the children of the given {@link Block}.
+   */
+  private void expectValues(Block block) throws LessException {
+    LessBlockRuleMerger ruleMerger = block.hasPropertyMergeModes() ? new LessBlockRuleMerger(ctx) : null;
+    FlexList<Node> rules = block.rules();
+
+    int size = rules.size();
+    for (int i = 0; i < size; i++) {
+      Node node = rules.get(i);
+      switch (node.type()) {
+
+        case BLOCK:
+          expectValues((Block)node);
+          break;
+
+        case COMMENT:
+        {
+          String comment = commentValue((Comment)node);
+          if (comment != null) {
+            model.expectComment(comment);
+          }
+          break;
+        }
+
+        case DETACHED_RULESET:
+          expectValues(((DetachedRuleset)node).block());
+          break;
+
+        case DIRECTIVE:
+        {
+          Directive directive = (Directive)node;
+          if (!directive.name().equals("@charset")) {
+            model.expectValue(ctx.render(directive));
+          }
+          break;
+        }
 
-    return model.render();
+        case RULE:
+          if (ruleMerger == null) {
+            model.expectValue(ruleValue((Rule)node));
+          } else {
+            ruleMerger.add((Rule)node);
+          }
+          break;
+
+        default:
+          break;
+      }
+    }
+
+    if (ruleMerger != null) {
+      for (Rule rule : ruleMerger.rules()) {
+        model.expectValue(ruleValue(rule));
+      }
+    }
   }
 
   /**
@@ -225,7 +349,10 @@ public class LessRenderer {
     FlexList<Node> rules = block.rules();
 
     int size = rules.size();
+    LessBudget budget = ctx.budget();
     for (int i = 0; i < size; i++) {
+      env.checkCancelled();
+      budget.output(model.length());
       Node node = rules.get(i);
       switch (node.type()) {
 
@@ -238,11 +365,13 @@ public class LessRenderer {
           break;
 
         case COMMENT:
-          Comment comment = (Comment)node;
-          if (comment.block() && (!opts.compress() || comment.hasBang())) {
-            model.comment(ctx.render(comment));
+        {
+          String comment = commentValue((Comment)node);
+          if (comment != null) {
+            model.comment(comment);
           }
           break;
+        }
 
         case DEFINITION:
           renderDefinition((Definition)node);
@@ -316,6 +445,7 @@ public class LessRenderer {
         renderRule(rule);
       }
     }
+    budget.output(model.length());
   }
 
   /**
@@ -346,6 +476,13 @@ public class LessRenderer {
    * Render an {@link Import}
    */
   private void renderImport(Import imp) throws LessException {
+    model.value(importValue(imp));
+  }
+
+  /**
+   * Render the value for an {@link Import}
+   */
+  private String importValue(Import imp) throws LessException {
     Buffer buf = new Buffer(0);
     buf.append("@import ");
     NodeRenderer.render(buf, imp.path());
@@ -354,7 +491,17 @@ public class LessRenderer {
       buf.append(' ');
       NodeRenderer.render(buf, features);
     }
-    model.value(buf.toString());
+    return buf.toString();
+  }
+
+  /**
+   * Render a {@link Comment}, returning null if it is omitted from the output.
+   */
+  private String commentValue(Comment comment) throws LessException {
+    if (comment.block() && (!opts.compress() || comment.hasBang())) {
+      return ctx.render(comment);
+    }
+    return null;
   }
 
   /**
@@ -397,15 +544,23 @@ public class LessRenderer {
       String line = (fileName != null ? fileName.toString() : "") + ":" + (rule.lineOffset() + 1);
       emitTrace("next rule defined at '" + line + "'");
     }
+    model.value(ruleValue(rule));
+  }
+
+  /**
+   * Render the value for a rule.
+   */
+  private String ruleValue(Rule rule) throws LessException {
     Buffer buf = ctx.acquireBuffer();
     NodeRenderer.render(buf, rule.property());
     buf.ruleSep();
-    NodeRenderer.render(buf, rule.value());
+    NodeRenderer.renderRuleValue(buf, rule.property(), rule.value());
     if (rule.important()) {
       buf.append(" !important");
     }
-    model.value(buf.toString());
+    String result = buf.toString();
     ctx.returnBuffer();
+    return result;
   }
 
   /**
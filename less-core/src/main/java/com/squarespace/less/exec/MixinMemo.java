@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.squarespace.less.LessException;
+import com.squarespace.less.core.Buffer;
+import com.squarespace.less.core.FlexList;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.MixinCallArgs;
+import com.squarespace.less.model.MixinParams;
+import com.squarespace.less.model.Node;
+
+
+/**
+ * Memoizes the results of pure mixin calls for the duration of one compile.
+ *
+ * A call is keyed by the original mixin, the evaluated call arguments and
+ * parameters, and the call's important flag.  Purity is established while the
+ * first call executes: every variable lookup made by its body must resolve
+ * either to the mixin's own scope (its bindings, body and nested blocks) or to
+ * the global scope reached through the mixin's closure, and the body must not call other mixins or detached
+ * rulesets.  Global definitions used by the body are recorded, and a later
+ * call only reuses the result if they still resolve to the same definitions.
+ */
+public class MixinMemo {
+
+  private final Map<Key, Entry> entries = new HashMap<>();
+
+  /**
+   * Calls being recorded, innermost last.
+   */
+  private final FlexList<Recording> recordings = new FlexList<>();
+
+  /**
+   * Builds the key for a call to the given original mixin.
+   */
+  public Key key(Node mixin, MixinCallArgs args, MixinParams params, boolean important) {
+    return new Key(mixin, args, params, important);
+  }
+
+  /**
+   * Returns the memoized result for the call, or null if there is none or the
+   * global definitions it depends on have changed.
+   */
+  public Entry get(Key key, ExecEnv env) throws LessException {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    Block global = env.frames().get(0);
+    for (int i = 0; i < entry.globalNames.size(); i++) {
+      if (global.resolveDefinition(entry.globalNames.get(i)) != entry.globalDefs.get(i)) {
+        return null;
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Starts recording a call.  The argument bindings must be the top frame of the
+   * environment.
+   */
+  public void begin(Key key, ExecEnv env) {
+    FlexList<Block> frames = env.frames();
+    recordings.push(new Recording(key, frames.last(), frames.size() - 1));
+  }
+
+  /**
+   * Finishes recording the innermost call, memoizing its result if the call
+   * was pure.  A null result indicates the mixin's guard evaluated to false.
+   */
+  public void end(Block result) {
+    Recording recording = recordings.pop();
+    if (recording.pure) {
+      entries.put(recording.key, new Entry(result, recording.globalNames, recording.globalDefs));
+    }
+  }
+
+  /**
+   * Abandons the innermost recording after an error.
+   */
+  public void abort() {
+    recordings.pop();
+  }
+
+  /**
+   * Marks all calls being recorded as impure.
+   */
+  public void impure() {
+    for (int i = 0; i < recordings.size(); i++) {
+      recordings.get(i).pure = false;
+    }
+  }
+
+  /**
+   * Checks a variable lookup made while calls are being recorded.  The definition
+   * is null if the lookup failed, otherwise {@code frame} is the index of the frame
+   * it was resolved in.
+   */
+  public void lookup(ExecEnv env, String name, int frame, Definition def) {
+    FlexList<Block> frames = env.frames();
+    for (int i = 0; i < recordings.size(); i++) {
+      Recording recording = recordings.get(i);
+      if (!recording.pure) {
+        continue;
+      }
+      if (def == null) {
+        recording.pure = false;
+
+      } else if (frame >= recording.base && frames.get(recording.base) == recording.bindings) {
+        // Resolved in the mixin's own scope.
+        continue;
+
+      } else if (frame > 0 && frames.get(frame) == frames.get(0)) {
+        // Resolved in the global scope captured by the mixin's closure. Had it
+        // been found at the bottom of the stack instead, the caller's frames
+        // were searched first and the result depends on the caller.
+        recording.globalNames.add(name);
+        recording.globalDefs.add(def);
+
+      } else {
+        recording.pure = false;
+      }
+    }
+  }
+
+  /**
+   * Memoized result of a call.
+   */
+  public static class Entry {
+
+    private final Block result;
+
+    private final List<String> globalNames;
+
+    private final List<Definition> globalDefs;
+
+    Entry(Block result, List<String> globalNames, List<Definition> globalDefs) {
+      this.result = result;
+      this.globalNames = globalNames;
+      this.globalDefs = globalDefs;
+    }
+
+    /**
+     * Rules produced by the call, or null if the mixin's guard was false. The
+     * block must not be modified.
+     */
+    public Block result() {
+      return result;
+    }
+
+  }
+
+  /**
+   * Identifies a call by its original mixin and evaluated arguments.  Nodes don't
+   * implement hashing, so the hash is derived from their representation, and
+   * equality is checked structurally.
+   */
+  public static class Key {
+
+    private final Node mixin;
+
+    private final MixinCallArgs args;
+
+    private final MixinParams params;
+
+    private final boolean important;
+
+    private final int hash;
+
+    Key(Node mixin, MixinCallArgs args, MixinParams params, boolean important) {
+      this.mixin = mixin;
+      this.args = args;
+      this.params = params;
+      this.important = important;
+
+      Buffer buf = new Buffer(0);
+      if (args != null) {
+        args.repr(buf);
+      }
+      params.repr(buf);
+      int result = System.identityHashCode(mixin);
+      result = 31 * result + buf.toString().hashCode();
+      this.hash = 31 * result + (important ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key)obj;
+      return mixin == other.mixin
+          && important == other.important
+          && hash == other.hash
+          && Objects.equals(args, other.args)
+          && params.equals(other.params);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+  }
+
+  private static class Recording {
+
+    private final Key key;
+
+    private final Block bindings;
+
+    private final int base;
+
+    private final List<String> globalNames = new ArrayList<>();
+
+    private final List<Definition> globalDefs = new ArrayList<>();
+
+    private boolean pure = true;
+
+    Recording(Key key, Block bindings, int base) {
+      this.key = key;
+      this.bindings = bindings;
+      this.base = base;
+    }
+
+  }
+
+}
@@ -25,6 +25,7 @@ import com.squarespace.less.model.Block;
 import com.squarespace.less.model.Mixin;
 import com.squarespace.less.model.MixinCall;
 import com.squarespace.less.model.MixinCallArgs;
+import com.squarespace.less.model.MixinIndex;
 import com.squarespace.less.model.MixinParams;
 import com.squarespace.less.model.Node;
 import com.squarespace.less.model.Ruleset;
@@ -89,26 +90,37 @@ public class MixinResolver {
       return false;
     }
 
-    // TODO: future mixin resolution optimization to cache ruleset/mixins in
-    // a separate field on the block to reduce size of these inner loops.
-    // this should improve execution times for large stylesheets with many
-    // imports.
-
+    // Larger blocks are indexed by mixin path, so only the rules whose
+    // paths are a prefix of the call path need to be checked.
     boolean matched = false;
-    int size = rules.size();
-    for (int i = 0; i < size; i++) {
-      Node node = rules.get(i);
-      if (node instanceof Ruleset) {
-        matched |= matchRuleset(index, (Ruleset)node);
-
-      } else if (node instanceof Mixin) {
-        matched |= matchMixin(index, (Mixin)node);
+    MixinIndex mixins = block.mixinIndex();
+    if (mixins != null) {
+      for (int i : mixins.candidates(callPath, index)) {
+        matched |= match(index, rules.get(i));
       }
+      return matched;
     }
 
+    int size = rules.size();
+    for (int i = 0; i < size; i++) {
+      matched |= match(index, rules.get(i));
+    }
     return matched;
   }
 
+  /**
+   * Match the {@link MixinCall}'s path against a single rule.
+   */
+  private boolean match(int index, Node node) throws LessException {
+    if (node instanceof Ruleset) {
+      return matchRuleset(index, (Ruleset)node);
+
+    } else if (node instanceof Mixin) {
+      return matchMixin(index, (Mixin)node);
+    }
+    return false;
+  }
+
   /**
    * Attempt to match the mixin call's path against a {@link Ruleset}
    */
@@ -120,7 +132,7 @@ public class MixinResolver {
     Ruleset original = (Ruleset)ruleset.original();
 
     /// Ignore recursive entries into ruleset mixins.
-    if (original.evaluating()) {
+    if (matcher.callEnv().context().evaluating(original)) {
       return false;
     }
 
@@ -171,7 +183,7 @@ public class MixinResolver {
     ExecEnv env = matcher.callEnv().copy();
 
     // Append the mixin definitions closure frames, if any.
-    ExecEnv defEnv = mixin.closure();
+    ExecEnv defEnv = env.context().closure(mixin.original());
     if (defEnv != null) {
       env.append(defEnv.frames().copy());
     }
@@ -16,7 +16,10 @@
 
 package com.squarespace.less.exec;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.squarespace.less.LessContext;
 import com.squarespace.less.core.Buffer;
@@ -30,6 +33,7 @@ import com.squarespace.less.model.BaseColor;
 import com.squarespace.less.model.Combinator;
 import com.squarespace.less.model.CombinatorType;
 import com.squarespace.less.model.Comment;
+import com.squarespace.less.model.Dimension;
 import com.squarespace.less.model.CompositeProperty;
 import com.squarespace.less.model.Directive;
 import com.squarespace.less.model.Expression;
@@ -38,6 +42,7 @@ import com.squarespace.less.model.Feature;
 import com.squarespace.less.model.Features;
 import com.squarespace.less.model.FunctionCall;
 import com.squarespace.less.model.Node;
+import com.squarespace.less.model.NodeType;
 import com.squarespace.less.model.Operation;
 import com.squarespace.less.model.Paren;
 import com.squarespace.less.model.Property;
@@ -48,6 +53,8 @@ import com.squarespace.less.model.SelectorPart;
 import com.squarespace.less.model.Selectors;
 import com.squarespace.less.model.Shorthand;
 import com.squarespace.less.model.TextElement;
+import com.squarespace.less.model.Unit;
+import com.squarespace.less.model.Units;
 import com.squarespace.less.model.Url;
 import com.squarespace.less.model.ValueElement;
 import com.squarespace.less.model.WildcardElement;
@@ -58,6 +65,15 @@ import com.squarespace.less.model.WildcardElement;
  */
 public class NodeRenderer {
 
+  /**
+   * Length units which may be dropped from a zero value.
+   */
+  private static final Set<Unit> LENGTH_UNITS = new HashSet<>(Arrays.asList(
+      Units.CM, Units.MM, Units.IN, Units.PX, Units.PT, Units.PC,
+      Units.CH, Units.EM, Units.EX, Units.REM,
+      Units.VH, Units.VW, Units.VMIN, Units.VMAX
+      ));
+
   private NodeRenderer() {
   }
 
@@ -315,11 +331,82 @@ public class NodeRenderer {
     }
   }
 
+  /**
+   * Renders the value of a rule.  When compressing, zero lengths at the top level
+   * of the value are emitted without their unit.  Values nested in function calls
+   * are left alone, since a unit is required inside calc(), as are flex and custom
+   * properties, where some browsers treat a unitless zero differently.
+   */
+  public static void renderRuleValue(Buffer buf, Node property, Node value) {
+    if (!buf.compress() || !stripZeroUnits(property)) {
+      render(buf, value);
+      return;
+    }
+    switch (value.type()) {
+      case DIMENSION:
+        renderZeroLength(buf, value);
+        break;
+
+      case EXPRESSION:
+        renderZeroLengths(buf, ((Expression)value).values(), " ");
+        break;
+
+      case EXPRESSION_LIST:
+        List<Node> expressions = ((ExpressionList)value).expressions();
+        int size = expressions.size();
+        for (int i = 0; i < size; i++) {
+          if (i > 0) {
+            buf.append(',');
+          }
+          Node expn = expressions.get(i);
+          if (expn.type() == NodeType.EXPRESSION) {
+            renderZeroLengths(buf, ((Expression)expn).values(), " ");
+          } else {
+            renderZeroLength(buf, expn);
+          }
+        }
+        break;
+
+      default:
+        render(buf, value);
+        break;
+    }
+  }
+
+  private static boolean stripZeroUnits(Node property) {
+    if (!(property instanceof Property)) {
+      return false;
+    }
+    String name = ((Property)property).name();
+    return !name.startsWith("--") && !name.endsWith("flex");
+  }
+
+  private static void renderZeroLengths(Buffer buf, List<Node> nodes, String sep) {
+    int size = nodes.size();
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        buf.append(sep);
+      }
+      renderZeroLength(buf, nodes.get(i));
+    }
+  }
+
+  private static void renderZeroLength(Buffer buf, Node node) {
+    if (node.type() == NodeType.DIMENSION) {
+      Dimension dim = (Dimension)node;
+      if (dim.value() == 0.0 && LENGTH_UNITS.contains(dim.unit())) {
+        buf.append('0');
+        return;
+      }
+    }
+    render(buf, node);
+  }
+
   /** Render a RULE node. */
   private static void renderImpl(Buffer buf, Rule rule) {
     render(buf, rule.property());
     buf.ruleSep();
-    render(buf, rule.value());
+    renderRuleValue(buf, rule.property(), rule.value());
     if (rule.important()) {
       buf.append(" !important");
     }
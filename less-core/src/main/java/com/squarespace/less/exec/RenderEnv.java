@@ -20,6 +20,8 @@ import java.util.List;
 
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
+import com.squarespace.less.LessMetrics;
+import com.squarespace.less.LessMetrics.Phase;
 import com.squarespace.less.core.FlexList;
 import com.squarespace.less.core.LessInternalException;
 import com.squarespace.less.model.BlockNode;
@@ -84,6 +86,17 @@ public class RenderEnv {
     this.frame = frame;
   }
 
+  /**
+   * Clears the render stack and extend indexes so the environment can be
+   * reused for another render.
+   */
+  public void reset() {
+    mediaExtendStack.reset();
+    frame = null;
+    globalExtendIndex = null;
+    depth = 0;
+  }
+
   /**
    * Returns the {@link LessContext}.
    */
@@ -98,6 +111,23 @@ public class RenderEnv {
     return frame;
   }
 
+  /**
+   * Checks whether the compile has been cancelled or has run past its deadline,
+   * capturing the blocks currently being rendered in the error's context.
+   */
+  public void checkCancelled() throws LessException {
+    try {
+      ctx.checkCancelled();
+    } catch (LessException e) {
+      for (RenderFrame curr = frame; curr != null; curr = curr.parent()) {
+        if (curr.blockNode() != null) {
+          e.push(curr.blockNode());
+        }
+      }
+      throw e;
+    }
+  }
+
   public void indexSelector(Selector selector) {
     if (!mediaExtendStack.isEmpty()) {
       mediaExtendStack.last().index(selector);
@@ -119,13 +149,16 @@ public class RenderEnv {
    * match the current Media-scope index (if any) followed by the global index.
    * It returns a list containing the original and generated selectors.
    */
-  public List<Selector> extend(Selectors selectors) {
+  public List<Selector> extend(Selectors selectors) throws LessException {
     List<Selector> extended = null;
 
     if (extendMatcher == null) {
-      extendMatcher = new ExtendMatcher();
+      extendMatcher = new ExtendMatcher(this);
     }
 
+    LessMetrics metrics = ctx.metrics();
+    long started = metrics == null ? 0 : System.nanoTime();
+
     if (!mediaExtendStack.isEmpty()) {
       extended = extendMatcher.extend(mediaExtendStack.last(), selectors, extended);
     }
@@ -134,6 +167,9 @@ public class RenderEnv {
       extended = extendMatcher.extend(globalExtendIndex, selectors, extended);
     }
 
+    if (metrics != null) {
+      metrics.phaseDone(Phase.EXTEND_MATCH, System.nanoTime() - started);
+    }
     return extended;
   }
 
@@ -181,7 +217,7 @@ public class RenderEnv {
     if (blockType.equals(NodeType.BLOCK_DIRECTIVE)) {
       frame.pushEmptySelectors();
     } else if (selectors != null) {
-      frame.mergeSelectors(selectors);
+      frame.mergeSelectors(selectors, ctx.budget());
     } else if (features != null) {
       frame.mergeFeatures(features);
     }
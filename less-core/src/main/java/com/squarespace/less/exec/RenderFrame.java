@@ -16,6 +16,8 @@
 
 package com.squarespace.less.exec;
 
+import com.squarespace.less.LessBudget;
+import com.squarespace.less.LessException;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.Constants;
 import com.squarespace.less.model.BlockNode;
@@ -111,6 +113,19 @@ public class RenderFrame {
     }
   }
 
+  /**
+   * Combines this set of {@link Selectors} with its parent's, charging the
+   * generated selectors to the budget.
+   */
+  public void mergeSelectors(Selectors current, LessBudget budget) throws LessException {
+    Selectors ancestors = (parent == null) ? Constants.EMPTY_SELECTORS : parent.selectors();
+    if (current == null || current.isEmpty()) {
+      this.selectors = ancestors;
+    } else {
+      this.selectors = SelectorUtils.combine(ancestors, current, budget);
+    }
+  }
+
   /**
    * Block directives act as a root scope, so prevent selector inheritance.
    */
@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.exec;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.squarespace.less.core.FlexList;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.BlockNode;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.Expression;
+import com.squarespace.less.model.ExpressionList;
+import com.squarespace.less.model.FunctionCall;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Operation;
+import com.squarespace.less.model.Paren;
+import com.squarespace.less.model.Quoted;
+import com.squarespace.less.model.Rule;
+import com.squarespace.less.model.Stylesheet;
+import com.squarespace.less.model.Variable;
+import com.squarespace.less.model.VariableSlot;
+
+
+/**
+ * Annotates the variable references in rule and definition values with the
+ * lexical address of the definition they refer to, so evaluation can skip the
+ * frame-by-frame search by name.  References inside selectors, features, guards
+ * and mixin arguments, to undefined variables, or to variables defined only by
+ * mixin calls are left unresolved and are looked up by name.
+ *
+ * The addresses are a cache: they are checked against the stack at each lookup,
+ * so a tree shared by several stylesheets, such as a cached import, resolves
+ * correctly no matter which stylesheet annotated it last.
+ */
+public class ScopeResolver {
+
+  /**
+   * Enclosing blocks, innermost first.
+   */
+  private Block[] scopes = new Block[0];
+
+  /**
+   * Position of the last definition of each name, for each enclosing block.
+   */
+  private Map<String, Integer>[] definitions = newMaps(0);
+
+  private ScopeResolver() {
+  }
+
+  /**
+   * Annotates all variable references in the parsed stylesheet.
+   */
+  public static void resolve(Stylesheet stylesheet) {
+    new ScopeResolver().resolveBlock(stylesheet.block());
+  }
+
+  private void resolveBlock(Block block) {
+    Block[] savedScopes = scopes;
+    Map<String, Integer>[] savedDefinitions = definitions;
+    int depth = savedScopes.length;
+    scopes = new Block[depth + 1];
+    definitions = newMaps(depth + 1);
+    scopes[0] = block;
+    definitions[0] = definitions(block);
+    System.arraycopy(savedScopes, 0, scopes, 1, depth);
+    System.arraycopy(savedDefinitions, 0, definitions, 1, depth);
+
+    FlexList<Node> rules = block.rules();
+    int size = rules.size();
+    for (int i = 0; i < size; i++) {
+      Node node = rules.get(i);
+      if (node instanceof BlockNode) {
+        resolveBlock(((BlockNode)node).block());
+
+      } else if (node instanceof Rule) {
+        resolveValue(((Rule)node).value());
+
+      } else if (node instanceof Definition) {
+        Node value = ((Definition)node).value();
+        if (value instanceof BlockNode) {
+          resolveBlock(((BlockNode)value).block());
+        } else {
+          resolveValue(value);
+        }
+      }
+    }
+
+    scopes = savedScopes;
+    definitions = savedDefinitions;
+  }
+
+  private void resolveValue(Node node) {
+    if (node == null) {
+      return;
+    }
+    switch (node.type()) {
+
+      case EXPRESSION:
+        resolveValues(((Expression)node).values());
+        break;
+
+      case EXPRESSION_LIST:
+        resolveValues(((ExpressionList)node).expressions());
+        break;
+
+      case FUNCTION_CALL:
+        resolveValues(((FunctionCall)node).args());
+        break;
+
+      case OPERATION:
+        resolveValue(((Operation)node).left());
+        resolveValue(((Operation)node).right());
+        break;
+
+      case PAREN:
+        resolveValue(((Paren)node).value());
+        break;
+
+      case QUOTED:
+        resolveValues(((Quoted)node).parts());
+        break;
+
+      case VARIABLE:
+        resolveVariable((Variable)node);
+        break;
+
+      default:
+        break;
+    }
+  }
+
+  private void resolveValues(List<Node> nodes) {
+    int size = nodes.size();
+    for (int i = 0; i < size; i++) {
+      resolveValue(nodes.get(i));
+    }
+  }
+
+  private void resolveVariable(Variable variable) {
+    String name = variable.name();
+    for (int i = 0; i < scopes.length; i++) {
+      Integer index = definitions[i].get(name);
+      if (index != null) {
+        variable.slot(new VariableSlot(scopes, i, index));
+        return;
+      }
+    }
+  }
+
+  /**
+   * Maps each name defined in the block to the position of its last definition.
+   */
+  private static Map<String, Integer> definitions(Block block) {
+    Map<String, Integer> result = null;
+    FlexList<Node> rules = block.rules();
+    int size = rules.size();
+    for (int i = 0; i < size; i++) {
+      Node node = rules.get(i);
+      if (node instanceof Definition) {
+        if (result == null) {
+          result = new HashMap<>();
+        }
+        result.put(((Definition)node).name(), i);
+      }
+    }
+    return result == null ? Collections.<String, Integer>emptyMap() : result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Integer>[] newMaps(int size) {
+    return (Map<String, Integer>[])new Map<?, ?>[size];
+  }
+
+}
@@ -22,6 +22,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import com.squarespace.less.LessBudget;
+import com.squarespace.less.LessException;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.CartesianProduct;
 import com.squarespace.less.model.Combinator;
@@ -63,47 +65,28 @@ public class SelectorUtils {
 
     Selectors result = new Selectors();
     for (Selector selector : current.selectors()) {
-      ExtendList extendList = selector.extendList();
-
-      // When no wildcard is present, the selector is prepended to the ancestors.
-      if (!selector.hasWildcard()) {
-        List<List<Selector>> inputs = new ArrayList<>(2);
-
-        Selector child = new Selector();
-        child.add(new Combinator(DESC));
-        for (SelectorPart part : selector.parts()) {
-          child.add(part);
-        }
-
-        inputs.add(ancestors.selectors());
-        inputs.add(Arrays.asList(child));
-        flatten(inputs, result, extendList);
-        continue;
-      }
-
-      // Otherwise, substitute the ancestors after each wildcard element found.
-      List<List<Selector>> inputs = new ArrayList<>();
-      Selector temp = new Selector();
-      for (SelectorPart elem : selector.parts()) {
-
-        // Replace each instance of the wildcard with the ancestor
-        // selectors.
-        if (elem instanceof WildcardElement) {
-          inputs.add(Arrays.asList(temp));
-          inputs.add(ancestors.selectors());
-          temp = new Selector();
-
-        } else {
-          temp.add(elem);
-        }
+      flatten(inputs(ancestors, selector), result, selector.extendList());
+    }
+    return result;
+  }
 
-      }
+  /**
+   * Combines the ancestor and current selectors, charging the generated selectors
+   * to the budget before each cartesian product is built.
+   */
+  public static Selectors combine(Selectors ancestors, Selectors current, LessBudget budget)
+      throws LessException {
+    if (ancestors.isEmpty()) {
+      return filter(current);
+    }
 
-      if (!temp.isEmpty()) {
-        inputs.add(Arrays.asList(temp));
-      }
+    if (current.isEmpty()) {
+      return filter(ancestors);
+    }
 
-      flatten(inputs, result, extendList);
+    Selectors result = new Selectors();
+    for (Selector selector : current.selectors()) {
+      flatten(inputs(ancestors, selector), result, selector.extendList(), budget);
     }
     return result;
   }
@@ -113,7 +96,22 @@ public class SelectorUtils {
    * selectors {@code result}.
    */
   public static void flatten(List<List<Selector>> selectors, Selectors result, ExtendList extendList) {
+    flatten(new CartesianProduct<>(selectors), result, extendList);
+  }
+
+  /**
+   * Generates a cartesian product from {@code selectors} and appends the flattened
+   * selectors {@code result}.  The size of the product is charged to the budget
+   * before the selectors are generated.
+   */
+  public static void flatten(List<List<Selector>> selectors, Selectors result, ExtendList extendList,
+      LessBudget budget) throws LessException {
     CartesianProduct<Selector> product = new CartesianProduct<>(selectors);
+    budget.selectors(product.size());
+    flatten(product, result, extendList);
+  }
+
+  private static void flatten(CartesianProduct<Selector> product, Selectors result, ExtendList extendList) {
     while (product.hasNext()) {
       Selector flat = new Selector();
       for (Selector tmp : product.next()) {
@@ -128,6 +126,49 @@ public class SelectorUtils {
     }
   }
 
+  /**
+   * Builds the lists whose cartesian product combines the selector with its ancestors.
+   */
+  private static List<List<Selector>> inputs(Selectors ancestors, Selector selector) {
+    // When no wildcard is present, the selector is prepended to the ancestors.
+    if (!selector.hasWildcard()) {
+      List<List<Selector>> inputs = new ArrayList<>(2);
+
+      Selector child = new Selector();
+      child.add(new Combinator(DESC));
+      for (SelectorPart part : selector.parts()) {
+        child.add(part);
+      }
+
+      inputs.add(ancestors.selectors());
+      inputs.add(Arrays.asList(child));
+      return inputs;
+    }
+
+    // Otherwise, substitute the ancestors after each wildcard element found.
+    List<List<Selector>> inputs = new ArrayList<>();
+    Selector temp = new Selector();
+    for (SelectorPart elem : selector.parts()) {
+
+      // Replace each instance of the wildcard with the ancestor
+      // selectors.
+      if (elem instanceof WildcardElement) {
+        inputs.add(Arrays.asList(temp));
+        inputs.add(ancestors.selectors());
+        temp = new Selector();
+
+      } else {
+        temp.add(elem);
+      }
+
+    }
+
+    if (!temp.isEmpty()) {
+      inputs.add(Arrays.asList(temp));
+    }
+    return inputs;
+  }
+
   /**
    * Remove unnecessary and redundant parts from each selector in the group.
    */
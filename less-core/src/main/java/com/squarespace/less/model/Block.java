@@ -72,11 +72,22 @@ public class Block extends BaseNode {
    */
   private static final byte FLAG_HAS_NESTED_EXTEND = 0x40;
 
+  /**
+   * Rules have been inserted or replaced, so positions no longer match
+   * those in the parsed block.
+   */
+  private static final byte FLAG_RULES_SHIFTED = (byte)0x80;
+
   /**
    * Initial capacity of the blocks array.
    */
   private static final int INITIAL_CAPACITY = 8;
 
+  /**
+   * Minimum number of rules before mixin lookups use an index instead of a scan.
+   */
+  private static final int MIXIN_INDEX_THRESHOLD = 16;
+
   /**
    * List of nodes contained within this block.
    */
@@ -94,12 +105,30 @@ public class Block extends BaseNode {
    */
   protected Map<String, Definition> variables;
 
+  /**
+   * Definitions indexed by their position in the rules, built along with
+   * the variable cache.
+   */
+  protected Definition[] slots;
+
+  /**
+   * Index of mixin and ruleset nodes, built on demand for larger blocks and
+   * discarded whenever rules are added or removed.  The index is immutable, so
+   * racing threads can at worst build it twice.
+   */
+  protected MixinIndex mixinIndex;
+
   /**
    * Initial flags controlling this block. On creation we need to build the
    * variable cache.
    */
   protected byte flags = FLAG_REBUILD_VARS;
 
+  /**
+   * Parsed block this block was copied from, or null if this is a parsed block.
+   */
+  protected Block original;
+
   /**
    * Constructs a block with the default initial capcity.
    */
@@ -117,9 +146,10 @@ public class Block extends BaseNode {
   /**
    * Private constructor, used by the {@link Block#copy()} method.
    */
-  private Block(FlexList<Node> rules, byte flags) {
+  private Block(FlexList<Node> rules, byte flags, Block original) {
     this.rules = rules;
     this.flags = flags;
+    this.original = original;
   }
 
   /**
@@ -141,6 +171,8 @@ public class Block extends BaseNode {
    */
   public void prependNode(Node node) {
     setFlags(node);
+    flags |= FLAG_RULES_SHIFTED;
+    mixinIndex = null;
     rules.splice(0, 0, new Node[] { node });
   }
 
@@ -149,6 +181,7 @@ public class Block extends BaseNode {
    */
   public void appendNode(Node node) {
     setFlags(node);
+    mixinIndex = null;
     rules.append(node);
   }
 
@@ -158,6 +191,7 @@ public class Block extends BaseNode {
    */
   public void appendBlock(Block block) {
     flags |= block.flags;
+    mixinIndex = null;
     rules.append(block.rules);
   }
 
@@ -175,6 +209,8 @@ public class Block extends BaseNode {
   public int splice(int start, int num, Block other) {
     FlexList<Node> otherRules = other.rules();
     rules.splice(start, num, otherRules);
+    flags |= FLAG_RULES_SHIFTED;
+    mixinIndex = null;
     return otherRules.size();
   }
 
@@ -206,6 +242,14 @@ public class Block extends BaseNode {
     return (flags & FLAG_HAS_IMPORTS) != 0;
   }
 
+  /**
+   * Indicates whether rules have been inserted ahead of, or in place of, the
+   * block's parsed rules, so {@link #resolveDefinition(int)} cannot be used.
+   */
+  public boolean rulesShifted() {
+    return (flags & FLAG_RULES_SHIFTED) != 0;
+  }
+
   /**
    * Indicate whether this block contains a {@link MixinCall} node.
    */
@@ -252,6 +296,40 @@ public class Block extends BaseNode {
     flags |= FLAG_REBUILD_VARS;
   }
 
+  /**
+   * Returns the index of this block's mixin and ruleset nodes, or null if the
+   * block is small enough to be scanned.
+   */
+  public MixinIndex mixinIndex() {
+    MixinIndex index = mixinIndex;
+    if (index == null && rules.size() >= MIXIN_INDEX_THRESHOLD) {
+      index = MixinIndex.build(rules);
+      mixinIndex = index;
+    }
+    return index;
+  }
+
+  /**
+   * Returns the parsed block this block was copied from, or this block
+   * if it was not copied.
+   */
+  public Block original() {
+    return original == null ? this : original;
+  }
+
+  /**
+   * Resolve the {@link Definition} at the given position in the rules.  This
+   * returns the same definition as {@link #resolveDefinition(String)} for the
+   * last definition of a name, provided no rules have been spliced into the
+   * block since it was parsed.
+   */
+  public Definition resolveDefinition(int index) {
+    if ((flags & FLAG_REBUILD_VARS) != 0) {
+      buildVariables();
+    }
+    return index < slots.length ? slots[index] : null;
+  }
+
   /**
    * Resolve a {@link Definition} with the given {@code name} against
    * the rules in this block.
@@ -274,22 +352,28 @@ public class Block extends BaseNode {
       variables.clear();
     }
     int size = rules.size();
+    if (slots == null || slots.length != size) {
+      slots = new Definition[size];
+    }
     for (int i = 0; i < size; i++) {
       Node node = rules.get(i);
       if (!node.type().equals(NodeType.DEFINITION)) {
+        slots[i] = null;
         continue;
       }
       Definition def = (Definition)node;
       variables.put(def.name(), def);
+      slots[i] = def;
     }
     flags &= ~FLAG_REBUILD_VARS;
   }
 
   /**
-   * Create a shallow copy of this block.
+   * Create a shallow copy of this block. The copy builds its own variable
+   * cache on demand, so the original block is never modified.
    */
   public Block copy() {
-    return new Block(rules.copy(), flags);
+    return new Block(rules.copy(), (byte)(flags | FLAG_REBUILD_VARS), original());
   }
 
   /**
@@ -299,6 +383,14 @@ public class Block extends BaseNode {
     flags |= block.flags;
   }
 
+  /**
+   * Sets this instance's flags by OR-ing with the given flags, as returned
+   * by {@link #flags()}.
+   */
+  public void orFlags(int flags) {
+    this.flags |= flags;
+  }
+
   /**
    * Debug method - collects the definitions inside this block.
    */
@@ -21,7 +21,6 @@ import static com.squarespace.less.core.LessUtils.safeEquals;
 import java.nio.file.Path;
 
 import com.squarespace.less.core.Buffer;
-import com.squarespace.less.exec.ExecEnv;
 
 
 /**
@@ -40,11 +39,6 @@ public abstract class BlockNode extends BaseNode {
    */
   protected BlockNode originalBlockNode;
 
-  /**
-   * Closure attached to this block node.
-   */
-  protected ExecEnv closure;
-
   /**
    * Indicates whether this block was marked important.
    */
@@ -93,20 +87,6 @@ public abstract class BlockNode extends BaseNode {
     originalBlockNode = this;
   }
 
-  /**
-   * Returns the closure environment attached to the block node's definition.
-   */
-  public ExecEnv closure() {
-    return closure;
-  }
-
-  /**
-   * Sets the closure on this block node definition.
-   */
-  public void closure(ExecEnv env) {
-    this.closure = env.copy();
-  }
-
   /**
    * Indicates whether this node is marked important.
    */
@@ -21,6 +21,7 @@ import static com.squarespace.less.core.LessUtils.safeEquals;
 
 import java.nio.file.Path;
 
+import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.LessInternalException;
@@ -69,11 +70,6 @@ public class Definition extends BaseNode {
    */
   protected final Node value;
 
-  /**
-   * Flag to detect circular references and raise an error.
-   */
-  protected boolean evaluating;
-
   /**
    * Flag indicating the definition was marked important.
    */
@@ -137,14 +133,6 @@ public class Definition extends BaseNode {
     return important;
   }
 
-  /**
-   * Indicates whether this definition is currently being evaluated. Helps
-   * detect and skip over circular references.
-   */
-  public boolean evaluating() {
-    return evaluating;
-  }
-
   public Path fileName() {
     return fileName;
   }
@@ -168,14 +156,20 @@ public class Definition extends BaseNode {
     // TODO: future pragma to detect and skip circular definitions,
     // looking in a higher scope. remove the following line.
     // see ExecEnv.resolveDefinition
-    if (evaluating) {
+    // Mark as 'evaluating' so that we can detect circular references.
+    // This is tracked on the context since the definition may be shared
+    // by concurrent compiles.
+    LessContext ctx = env.context();
+    if (!ctx.enter(this)) {
       throw new LessException(varCircularRef(env));
     }
 
-    // Mark as 'evaluating' so that we can detect circular references.
-    evaluating = true;
-    Node result = value.eval(env);
-    evaluating = false;
+    Node result;
+    try {
+      result = value.eval(env);
+    } finally {
+      ctx.exit(this);
+    }
     if (important) {
       env.setImportantFlag(true);
     }
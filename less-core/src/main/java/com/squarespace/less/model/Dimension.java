@@ -118,57 +118,67 @@ public class Dimension extends BaseNode {
       throw new LessException(invalidOperation(op, type(), node.type()));
     }
 
-    LessOptions opts = env.context().options();
     Dimension dim = (Dimension)node;
     Unit newUnit = (unit != null) ? unit : dim.unit;
+    return new Dimension(operate(env, op, value, unit, dim.value, dim.unit), newUnit);
+  }
+
+  /**
+   * Applies the operator to a pair of values with units, converting the right
+   * operand to the left's unit, and returns the resulting value.  The unit of
+   * the result is the left unit, or the right if the left has none.
+   */
+  static double operate(ExecEnv env, Operator op, double value0, Unit unit0, double value1, Unit unit1)
+      throws LessException {
+    LessOptions opts = env.context().options();
     double result = 0.0;
 
-    double factor = UnitConversions.factor(dim.unit, unit);
-    double scaled = dim.value;
+    double factor = UnitConversions.factor(unit1, unit0);
     if (factor == 0.0) {
-      if (dim.unit != Units.PERCENTAGE) {
+      if (unit1 != Units.PERCENTAGE) {
         // Emit a warning if we're converting between incompatible units
-        LessErrorInfo info = incompatibleUnits(unit, dim.unit);
+        LessErrorInfo info = incompatibleUnits(unit0, unit1);
         if (!opts.hideWarnings()) {
           env.addWarning(info.getMessage() + ".. stripping unit.");
         }
       }
       factor = 1.0;
     }
-    scaled = dim.value * factor;
+    double scaled = value1 * factor;
 
     switch (op) {
 
       case ADD:
-        result = value + scaled;
+        result = value0 + scaled;
         break;
 
       case DIVIDE:
         if (scaled == 0.0) {
-          LessErrorInfo info = ExecuteErrorMaker.divideByZero(this);
+          Dimension left = new Dimension(value0, unit0);
+          LessErrorInfo info = ExecuteErrorMaker.divideByZero(left);
           if (opts.strict()) {
             throw new LessException(info);
           } else if (!opts.hideWarnings()) {
-            env.addWarning(info.getMessage() + "..  using " + this.repr());
+            env.addWarning(info.getMessage() + "..  using " + left.repr());
           }
         } else {
-          result = value / scaled;
+          result = value0 / scaled;
         }
         break;
 
       case MULTIPLY:
-        result = value * scaled;
+        result = value0 * scaled;
         break;
 
       case SUBTRACT:
-        result = value - scaled;
+        result = value0 - scaled;
         break;
 
       default:
         throw new LessException(expectedMathOp(op));
     }
 
-    return new Dimension(result, newUnit);
+    return result;
   }
 
   @Override
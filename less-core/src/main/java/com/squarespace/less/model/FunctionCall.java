@@ -22,11 +22,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.squarespace.less.LessException;
+import com.squarespace.less.LessMetrics;
 import com.squarespace.less.core.Buffer;
 import com.squarespace.less.core.LessInternalException;
 import com.squarespace.less.core.LessUtils;
 import com.squarespace.less.exec.ExecEnv;
 import com.squarespace.less.exec.Function;
+import com.squarespace.less.exec.FunctionTable;
 
 
 /**
@@ -56,6 +58,12 @@ public class FunctionCall extends BaseNode {
    */
   protected final boolean noImplementation;
 
+  /**
+   * Function resolved by the most recent evaluation of this call.  Parsed trees
+   * are shared across threads, so the binding is immutable and replaced whole.
+   */
+  private volatile Binding binding;
+
   /**
    * Constructs a call to the function {@code name} with no arguments.
    */
@@ -95,6 +103,13 @@ public class FunctionCall extends BaseNode {
     return name;
   }
 
+  /**
+   * Indicates whether it is known the function has no implementation.
+   */
+  public boolean noImplementation() {
+    return noImplementation;
+  }
+
   /**
    * Returns the arguments to the function call.
    */
@@ -129,13 +144,29 @@ public class FunctionCall extends BaseNode {
     }
 
     // Check if this function is built-in.
-    Function func = env.context().findFunction(name);
+    Binding bound = bind(env);
+    Function func = bound.func;
     if (func != null) {
       // Invoke built-in function
-      List<Node> values = evalArgs(env);
       Node result = null;
-      func.spec().validate(env, func, values);
-      result = func.invoke(env, values);
+      int size = args == null ? 0 : args.size();
+      switch (size) {
+        case 1:
+        case 2:
+        case 3:
+          result = invokeFixed(env, bound, size);
+          break;
+
+        default:
+          List<Node> values = evalArgs(env);
+          if (!bound.validated) {
+            func.spec().validate(env, func, values);
+            validated(bound, size);
+          }
+          functionCalled(env);
+          result = func.invoke(env, values);
+          break;
+      }
       if (result != null) {
         return result;
       }
@@ -190,6 +221,68 @@ public class FunctionCall extends BaseNode {
     buf.decrIndent();
   }
 
+  /**
+   * Evaluates up to three arguments without building a list and calls the
+   * matching fixed-arity entry point of the function.
+   */
+  private Node invokeFixed(ExecEnv env, Binding bound, int size) throws LessException {
+    Function func = bound.func;
+    Node arg0 = evalArg(env, 0);
+    Node arg1 = size > 1 ? evalArg(env, 1) : null;
+    Node arg2 = size > 2 ? evalArg(env, 2) : null;
+    if (!bound.validated) {
+      func.spec().validate(env, func, size, arg0, arg1, arg2);
+      validated(bound, size);
+    }
+    functionCalled(env);
+    switch (size) {
+      case 1:
+        return func.invoke1(env, arg0);
+      case 2:
+        return func.invoke2(env, arg0, arg1);
+      default:
+        return func.invoke3(env, arg0, arg1, arg2);
+    }
+  }
+
+  /**
+   * Returns the binding for the current context's function table, resolving
+   * the function if the table has changed since the last call.
+   */
+  private Binding bind(ExecEnv env) {
+    FunctionTable table = env.context().functionTable();
+    Binding bound = binding;
+    if (bound == null || bound.table != table) {
+      Function func = table == null ? null : table.get(name);
+      bound = new Binding(table, func, false);
+      binding = bound;
+    }
+    return bound;
+  }
+
+  /**
+   * Records that the arguments passed validation.  Validation is skipped on later
+   * calls only when every argument is constant and the count raised no warning,
+   * since the outcome can then never differ.
+   */
+  private void validated(Binding bound, int size) {
+    if (!evaluate && bound.func.spec().accepts(size)) {
+      binding = new Binding(bound.table, bound.func, true);
+    }
+  }
+
+  private void functionCalled(ExecEnv env) {
+    LessMetrics metrics = env.context().metrics();
+    if (metrics != null) {
+      metrics.functionCall(name);
+    }
+  }
+
+  private Node evalArg(ExecEnv env, int index) throws LessException {
+    Node arg = args.get(index);
+    return arg.needsEval() ? arg.eval(env) : arg;
+  }
+
   /**
    * Evaluates the arguments to the function call.
    */
@@ -222,4 +315,24 @@ public class FunctionCall extends BaseNode {
     return super.hashCode();
   }
 
+  /**
+   * Function resolved from a particular {@link FunctionTable}, or null if the
+   * table has no function with this name.
+   */
+  private static class Binding {
+
+    private final FunctionTable table;
+
+    private final Function func;
+
+    private final boolean validated;
+
+    Binding(FunctionTable table, Function func, boolean validated) {
+      this.table = table;
+      this.func = func;
+      this.validated = validated;
+    }
+
+  }
+
 }
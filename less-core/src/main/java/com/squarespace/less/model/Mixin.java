@@ -54,12 +54,6 @@ public class Mixin extends BlockNode {
    */
   protected final Guard guard;
 
-  /**
-   * Number of times this mixin's body has been evaluated. Used to detect
-   * and limit recursion.
-   */
-  protected int entryCount;
-
   /**
    * Constructs a mixin with the given name, parameters and guard expression.
    */
@@ -84,7 +78,6 @@ public class Mixin extends BlockNode {
   public Mixin copy() {
     Mixin result = new Mixin(name, params, guard, block.copy());
     result.copyBase(this);
-    result.closure = closure;
     if (originalBlockNode != null) {
       result.originalBlockNode = originalBlockNode;
     }
@@ -112,27 +105,6 @@ public class Mixin extends BlockNode {
     return guard;
   }
 
-  /**
-   * Returns the number of times this mixin's body has been evaluated.
-   */
-  public int entryCount() {
-    return entryCount;
-  }
-
-  /**
-   * Begins evaluating the mixin's body.
-   */
-  public void enter() {
-    entryCount++;
-  }
-
-  /**
-   * Ends evaluating the mixin's body.
-   */
-  public void exit() {
-    entryCount--;
-  }
-
   /**
    * See {@link Node#type()}
    */
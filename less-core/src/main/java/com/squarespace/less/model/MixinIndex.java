@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.squarespace.less.core.FlexList;
+
+
+/**
+ * Index of the {@link Mixin} and {@link Ruleset} nodes in a {@link Block}, keyed
+ * by their mixin paths.  Given a mixin call path, it returns the positions of the
+ * rules whose paths are a prefix of the call path, avoiding a scan of every rule
+ * in the block for every mixin call.
+ *
+ * Rulesets whose selectors require evaluation may have a different path once
+ * evaluated, so they are always returned as candidates.  Evaluation replaces
+ * rules in place without changing their positions, so the index stays valid until
+ * rules are added or removed.
+ *
+ * Instances are immutable, so an index can be shared by threads evaluating the
+ * same parsed block.
+ */
+public final class MixinIndex {
+
+  private static final int[] EMPTY = new int[0];
+
+  /**
+   * Open-addressed table of mixin paths.
+   */
+  private final String[] keys;
+
+  /**
+   * Positions of the rules having the path at the same slot in {@link #keys}.
+   */
+  private final int[][] positions;
+
+  /**
+   * Positions of rulesets which must always be checked.
+   */
+  private final int[] dynamic;
+
+  /**
+   * Bit set of the key lengths present, with bit 63 covering all longer keys.
+   */
+  private final long lengths;
+
+  private final int maxLength;
+
+  private final int mask;
+
+  private MixinIndex(Map<String, List<Integer>> paths, List<Integer> dynamic) {
+    int capacity = 4;
+    while (capacity < paths.size() * 2) {
+      capacity <<= 1;
+    }
+    this.keys = new String[capacity];
+    this.positions = new int[capacity][];
+    this.mask = capacity - 1;
+    this.dynamic = toArray(dynamic);
+
+    long lengths = 0;
+    int maxLength = 0;
+    for (Map.Entry<String, List<Integer>> entry : paths.entrySet()) {
+      String key = entry.getKey();
+      int slot = slot(key.hashCode());
+      while (keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      positions[slot] = toArray(entry.getValue());
+      lengths |= lengthBit(key.length());
+      maxLength = Math.max(maxLength, key.length());
+    }
+    this.lengths = lengths;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Builds the index for the given rules.
+   */
+  public static MixinIndex build(FlexList<Node> rules) {
+    Map<String, List<Integer>> paths = new LinkedHashMap<>();
+    List<Integer> dynamic = new ArrayList<>();
+    int size = rules.size();
+    for (int i = 0; i < size; i++) {
+      Node node = rules.get(i);
+      if (node instanceof Mixin) {
+        add(paths, ((Mixin)node).name(), i);
+
+      } else if (node instanceof Ruleset) {
+        List<Selector> selectors = ((Ruleset)node).selectors().selectors();
+        boolean evaluate = false;
+        for (Selector selector : selectors) {
+          evaluate |= selector.needsEval();
+        }
+        if (evaluate) {
+          dynamic.add(i);
+          continue;
+        }
+        for (Selector selector : selectors) {
+          add(paths, selector.mixinPath(), i);
+        }
+      }
+    }
+    return new MixinIndex(paths, dynamic);
+  }
+
+  /**
+   * Returns the positions, in ascending order, of all rules which may match a
+   * call path starting at {@code index}.  The returned array must not be modified.
+   */
+  public int[] candidates(String callPath, int index) {
+    int[] result = dynamic;
+    int limit = Math.min(callPath.length(), index + maxLength);
+    int hash = 0;
+    for (int end = index; end < limit; end++) {
+      hash = 31 * hash + callPath.charAt(end);
+      int length = end - index + 1;
+      if ((lengths & lengthBit(length)) == 0) {
+        continue;
+      }
+
+      int[] found = find(callPath, index, length, hash);
+      if (found == null) {
+        continue;
+      }
+      result = result.length == 0 ? found : merge(result, found);
+    }
+    return result;
+  }
+
+  /**
+   * Locates the positions for the key equal to the region of the call path.
+   */
+  private int[] find(String callPath, int index, int length, int hash) {
+    int slot = slot(hash);
+    String key;
+    while ((key = keys[slot]) != null) {
+      if (key.length() == length && key.hashCode() == hash && callPath.regionMatches(index, key, 0, length)) {
+        return positions[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  private int slot(int hash) {
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private static long lengthBit(int length) {
+    return 1L << Math.min(length, 63);
+  }
+
+  private static void add(Map<String, List<Integer>> paths, String path, int position) {
+    if (path == null || path.isEmpty()) {
+      return;
+    }
+    List<Integer> list = paths.get(path);
+    if (list == null) {
+      list = new ArrayList<>(2);
+      paths.put(path, list);
+    }
+    if (list.isEmpty() || list.get(list.size() - 1) != position) {
+      list.add(position);
+    }
+  }
+
+  /**
+   * Merges two ascending arrays of positions, removing duplicates.
+   */
+  private static int[] merge(int[] a, int[] b) {
+    int[] result = new int[a.length + b.length];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < a.length || j < b.length) {
+      int next;
+      if (j == b.length || (i < a.length && a[i] <= b[j])) {
+        next = a[i++];
+      } else {
+        next = b[j++];
+      }
+      if (k == 0 || result[k - 1] != next) {
+        result[k++] = next;
+      }
+    }
+    return k == result.length ? result : Arrays.copyOf(result, k);
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    if (list.isEmpty()) {
+      return EMPTY;
+    }
+    int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+    return result;
+  }
+
+}
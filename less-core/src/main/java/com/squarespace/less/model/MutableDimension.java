@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.model;
+
+
+/**
+ * Value and unit of an intermediate result while an {@link Operation} tree is
+ * evaluated on primitive doubles.  Each context owns one instance, which is
+ * overwritten by every operation evaluated, so callers must read it immediately.
+ */
+public class MutableDimension {
+
+  double value;
+
+  Unit unit;
+
+}
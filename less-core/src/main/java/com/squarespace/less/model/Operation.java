@@ -101,6 +101,13 @@ public class Operation extends BaseNode {
     return requireStrictMath;
   }
 
+  /**
+   * Indicates whether this operation is inside a sub-expression.
+   */
+  public boolean isSubExpression() {
+    return isSubExpression;
+  }
+
   /**
    * Mark this operation as being inside a sub-expression.
    */
@@ -137,13 +144,41 @@ public class Operation extends BaseNode {
    */
   @Override
   public Node eval(ExecEnv env) throws LessException {
-    Node op0 = left.needsEval() ? left.eval(env) : left;
-    Node op1 = right.needsEval() ? right.eval(env) : right;
+    MutableDimension result = env.context().mutableDimension();
+    Node node = evalNumeric(env, result);
+    return node == null ? new Dimension(result.value, result.unit) : node;
+  }
+
+  /**
+   * Evaluates the operation on primitive doubles when both operands evaluate to
+   * dimensions, leaving the value and unit in the result and returning null.
+   * Nested operations are evaluated the same way, so only the outermost result
+   * is boxed.  If either operand is not a dimension, returns the node produced by
+   * operating on the operand nodes.
+   */
+  private Node evalNumeric(ExecEnv env, MutableDimension result) throws LessException {
+    Node op0 = operand(env, left, result);
+    double value0 = result.value;
+    Unit unit0 = result.unit;
+    Node op1 = operand(env, right, result);
 
     if (requireStrictMath && env.isStrictMath() && !isSubExpression) {
-      return new Operation(operator, op0, op1);
+      return new Operation(operator, box(op0, value0, unit0), box(op1, result.value, result.unit));
+    }
+
+    if (op0 == null && op1 == null) {
+      Unit unit1 = result.unit;
+      result.value = Dimension.operate(env, operator, value0, unit0, result.value, unit1);
+      result.unit = unit0 != null ? unit0 : unit1;
+      return null;
     }
+    return operate(env, box(op0, value0, unit0), box(op1, result.value, result.unit));
+  }
 
+  /**
+   * Applies the operator to the evaluated operand nodes.
+   */
+  private Node operate(ExecEnv env, Node op0, Node op1) throws LessException {
     // Check if we can cast the node to a friendlier type.
     op0 = cast(op0);
     op1 = cast(op1);
@@ -169,6 +204,35 @@ public class Operation extends BaseNode {
     return op0.operate(env, operator, op1);
   }
 
+  /**
+   * Evaluates an operand, leaving its value and unit in the result and returning
+   * null if it is a dimension, otherwise returning the evaluated node.
+   */
+  private static Node operand(ExecEnv env, Node node, MutableDimension result) throws LessException {
+    if (node instanceof Operation) {
+      node = ((Operation)node).evalNumeric(env, result);
+      if (node == null) {
+        return null;
+      }
+    } else if (node.needsEval()) {
+      node = node.eval(env);
+    }
+    if (node instanceof Dimension) {
+      Dimension dim = (Dimension)node;
+      result.value = dim.value;
+      result.unit = dim.unit;
+      return null;
+    }
+    return node;
+  }
+
+  /**
+   * Returns the node, or a dimension for the value and unit if the node is null.
+   */
+  private static Node box(Node node, double value, Unit unit) {
+    return node == null ? new Dimension(value, unit) : node;
+  }
+
   /**
    * See {@link Node#repr(Buffer)}
    */
@@ -50,6 +50,11 @@ public class Variable extends BaseNode {
    */
   protected final int flags;
 
+  /**
+   * Lexical address of the definition, if it could be computed.
+   */
+  protected VariableSlot slot;
+
   /**
    * Construct a variable reference with the given name.
    */
@@ -82,6 +87,20 @@ public class Variable extends BaseNode {
     return name;
   }
 
+  /**
+   * Returns the lexical address of the definition, or null.
+   */
+  public VariableSlot slot() {
+    return slot;
+  }
+
+  /**
+   * Sets the lexical address of the definition.
+   */
+  public void slot(VariableSlot slot) {
+    this.slot = slot;
+  }
+
   /**
    * Indicates whether this is an indirect reference.
    */
@@ -143,7 +162,7 @@ public class Variable extends BaseNode {
    */
   @Override
   public Node eval(ExecEnv env) throws LessException {
-    Definition def = env.resolveDefinition(name);
+    Definition def = env.resolveDefinition(name, slot);
     if (def == null) {
       throw new LessException(varUndefined(name));
     }
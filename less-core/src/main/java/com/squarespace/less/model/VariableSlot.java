@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.model;
+
+
+/**
+ * Lexical address of the {@link Definition} a {@link Variable} refers to,
+ * computed after the parse from the blocks enclosing the reference.  The
+ * address is only used while the stack frames are copies of the same blocks,
+ * otherwise the variable is resolved by name.
+ */
+public final class VariableSlot {
+
+  private final Block[] scopes;
+
+  private final int depth;
+
+  private final int index;
+
+  /**
+   * Constructs an address for the definition at position {@code index} in
+   * the rules of {@code scopes[depth]}.  The scopes are the enclosing parsed
+   * blocks, innermost first.
+   */
+  public VariableSlot(Block[] scopes, int depth, int index) {
+    this.scopes = scopes;
+    this.depth = depth;
+    this.index = index;
+  }
+
+  /**
+   * Enclosing parsed blocks, innermost first.  Only the first
+   * {@code depth + 1} are part of the address.
+   */
+  public Block scope(int i) {
+    return scopes[i];
+  }
+
+  /**
+   * Number of frames between the reference and the defining block.
+   */
+  public int depth() {
+    return depth;
+  }
+
+  /**
+   * Position of the definition in the defining block's rules.
+   */
+  public int index() {
+    return index;
+  }
+
+}
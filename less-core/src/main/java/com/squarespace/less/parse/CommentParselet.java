@@ -59,7 +59,7 @@ public class CommentParselet implements Parselet {
       end = stm.index - pattern.length();
     }
 
-    return stm.context().nodeBuilder().buildComment(stm.raw.substring(start, end), block, ruleLevel);
+    return stm.context().nodeBuilder().buildComment(stm.raw.subSequence(start, end).toString(), block, ruleLevel);
   }
 
 }
@@ -100,7 +100,7 @@ public class FunctionCallParselet implements Parselet {
         stm.seek(1);
         ch = stm.peek();
       }
-      String url = stm.raw().substring(start, stm.position());
+      String url = stm.raw().subSequence(start, stm.position()).toString();
       value = new Anonymous(url.trim());
     }
     stm.skipWs();
@@ -18,17 +18,36 @@ package com.squarespace.less.parse;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.squarespace.less.FilesystemLessLoader;
+import com.squarespace.less.ImportCache;
+import com.squarespace.less.ImportCache.Dependency;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
 import com.squarespace.less.LessLoader;
+import com.squarespace.less.LessMetrics;
+import com.squarespace.less.LessMetrics.Phase;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.LessStats;
+import com.squarespace.less.core.FlexList;
+import com.squarespace.less.exec.ConstantFolder;
 import com.squarespace.less.exec.ImportRecord;
+import com.squarespace.less.model.Block;
 import com.squarespace.less.model.Import;
 import com.squarespace.less.model.Node;
 import com.squarespace.less.model.Quoted;
@@ -37,6 +56,13 @@ import com.squarespace.less.model.Url;
 
 /**
  * Handles resolution of import paths.
+ *
+ * When the context has an import executor, the statically-known imports in each
+ * source are resolved and loaded on the executor as soon as the source is pushed
+ * onto the parser, and the same is done for the imports of each loaded file.  The
+ * parse still consumes them in source order, waiting only for those not yet loaded.
+ * A prefetch that fails is retried synchronously, so errors are reported exactly as
+ * without prefetching.
  */
 public class Importer {
 
@@ -46,6 +72,28 @@ public class Importer {
 
   private final Map<Path, ImportRecord> importRecords = new HashMap<>();
 
+  /**
+   * Fingerprints of all files in-lined into this compile, in the order they
+   * were imported.
+   */
+  private final Map<Path, Long> dependencies = new LinkedHashMap<>();
+
+  /**
+   * Imports currently being parsed which will be added to the import cache,
+   * innermost last.
+   */
+  private final FlexList<Recording> recordings = new FlexList<>();
+
+  /**
+   * Resolutions of prefetched imports, keyed by root path and raw path.
+   */
+  private final ConcurrentMap<String, CompletableFuture<Path>> resolutions = new ConcurrentHashMap<>();
+
+  /**
+   * Loads of prefetched imports, keyed by resolved path.
+   */
+  private final ConcurrentMap<Path, CompletableFuture<CharSequence>> sources = new ConcurrentHashMap<>();
+
   private final LessContext context;
 
   private final LessLoader loader;
@@ -59,15 +107,61 @@ public class Importer {
     this.loader = (loader == null) ? new FilesystemLessLoader() : loader;
   }
 
+  /**
+   * Clears the imports and prefetched sources recorded by the last compile.
+   */
+  public void reset() {
+    importRecords.clear();
+    dependencies.clear();
+    recordings.reset();
+    resolutions.clear();
+    sources.clear();
+  }
+
+  /**
+   * Returns the loader used to read imported files.
+   */
+  public LessLoader loader() {
+    return loader;
+  }
+
   /**
    * Resolve the path and determine if it can be loaded. Returns the resolved
    * path or null if no valid path could be resolved.
    */
   public Path resolvePath(Import importNode) throws LessException {
     String rawPath = renderImportPath(importNode);
+    if (rawPath != null) {
+      CompletableFuture<Path> resolution = resolutions.get(key(importNode.rootPath(), rawPath));
+      if (resolution != null) {
+        LessStats stats = context.stats();
+        long started = stats.now();
+        try {
+          return resolution.join();
+        } catch (CompletionException e) {
+          // Resolve again below
+        } finally {
+          stats.diskWaitDone(started);
+        }
+      }
+    }
     return resolve(importNode.rootPath(), rawPath);
   }
 
+  /**
+   * Starts resolving and loading the statically-known imports in the source on
+   * the context's import executor, if any.
+   */
+  public void prefetch(CharSequence source, Path rootPath) {
+    Executor executor = context.importExecutor();
+    if (executor == null) {
+      return;
+    }
+    for (String rawPath : scanImports(source)) {
+      prefetch(rootPath, rawPath, executor);
+    }
+  }
+
   /**
    * Records that an import occurred for a given path. This is used to enforce
    * the "once" directive globally.
@@ -76,17 +170,168 @@ public class Importer {
     importRecords.put(path, new ImportRecord(path, null, importNode.once()));
   }
 
+  /**
+   * Records that the source of an imported file was in-lined into this compile.
+   */
+  public void recordSource(Path path, long fingerprint) {
+    dependencies.put(path, fingerprint);
+  }
+
+  /**
+   * Returns the fingerprints of all files in-lined into this compile so far,
+   * keyed by path, in the order they were imported.
+   */
+  public Map<Path, Long> dependencies() {
+    return dependencies;
+  }
+
   /**
    * Load the source from the {@link LessLoader}.
    */
-  public String loadSource(Path path) throws LessException {
-    return loader.load(path);
+  public CharSequence loadSource(Path path) throws LessException {
+    LessStats stats = context.stats();
+    long started = stats.now();
+    CharSequence source = null;
+    CompletableFuture<CharSequence> pending = sources.get(path);
+    if (pending != null) {
+      try {
+        source = pending.join();
+      } catch (CompletionException e) {
+        // Load again below
+      }
+    }
+    if (source == null) {
+      source = loader.loadChars(path);
+    }
+    context.budget().imported(source.length());
+    stats.diskWaitDone(started);
+    LessMetrics metrics = context.metrics();
+    if (metrics != null) {
+      metrics.phaseDone(Phase.IMPORT_IO, stats.now() - started);
+    }
+    return source;
+  }
+
+  /**
+   * Indicates whether parsed imports will be added to the import cache.
+   */
+  public boolean cacheEnabled() {
+    return context.importCache() != null && !context.options().tracing();
+  }
+
+  /**
+   * Returns the cached parse of the import at the given path, or null if it is
+   * not cached or the cached parse cannot be used by this compile.  On a hit, the
+   * nested imports that were in-lined into the cached parse are recorded exactly
+   * as if the file had been parsed again.
+   *
+   * On a miss, the caller must parse the file onto a new block and pass it to
+   * {@link #cacheImport(Block, boolean)}.
+   */
+  public Block cachedImport(Import importNode, Path path, CharSequence source, long fingerprint,
+      LessParser parser) throws LessException {
+    if (!cacheEnabled()) {
+      return null;
+    }
+
+    int depth = context.importDepth();
+    addDependency(new Dependency(path, fingerprint, importNode.once()), depth + 1);
+
+    ImportCache.Entry entry = context.importCache().get(path, fingerprint);
+    if (entry != null && reusable(entry, parser)) {
+      for (Dependency dependency : entry.dependencies()) {
+        importRecords.put(dependency.path(), new ImportRecord(dependency.path(), null, dependency.onlyOnce()));
+        recordSource(dependency.path(), dependency.fingerprint());
+        addDependency(dependency, depth + 1 + entry.depth());
+      }
+      context.stats().importDepth(depth + 1 + entry.depth());
+      context.stats().importCacheHit();
+      return entry.block();
+    }
+
+    context.stats().importCacheMiss();
+    recordings.push(new Recording(path, fingerprint, source.length(), depth));
+    return null;
+  }
+
+  /**
+   * Adds the parse of the innermost import which missed the cache. Parses which
+   * deferred the evaluation of imports, or which depend on imports recorded before
+   * the parse started, are not cached.
+   */
+  public void cacheImport(Block block, boolean deferred) {
+    Recording recording = recordings.pop();
+    if (deferred || !recording.cacheable) {
+      return;
+    }
+    // Cached blocks must not be modified once shared, so fold them first.
+    if (context.options().foldConstants()) {
+      ConstantFolder.fold(block, context);
+    }
+    int depth = recording.maxDepth - recording.baseDepth - 1;
+    context.importCache().put(new ImportCache.Entry(recording.path, recording.fingerprint, block,
+        recording.dependencies, depth, recording.weight, context.options(), context.functionTable()));
   }
 
   /**
    * Indicate whether the import for the given path should be suppressed.
    */
   public boolean shouldSuppressImport(Path path) {
+    if (!suppressed(path)) {
+      return false;
+    }
+
+    // The suppression depends on imports outside the recorded parse, so
+    // the result can't be reused by other compiles.
+    for (int i = 0; i < recordings.size(); i++) {
+      Recording recording = recordings.get(i);
+      if (!recording.paths.contains(path)) {
+        recording.cacheable = false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Indicates whether the cached entry produces the same result as parsing
+   * the file in the current state of this compile.
+   */
+  private boolean reusable(ImportCache.Entry entry, LessParser parser) throws LessException {
+    LessOptions opts = context.options();
+    if (!entry.compatible(opts, context.functionTable()) || parser.parsing(entry.path())) {
+      return false;
+    }
+    if (context.importDepth() + entry.depth() > opts.importRecursionLimit()) {
+      return false;
+    }
+    for (Dependency dependency : entry.dependencies()) {
+      Path path = dependency.path();
+      if (suppressed(path) || parser.parsing(path)) {
+        return false;
+      }
+      if (ImportCache.fingerprint(loadSource(path)) != dependency.fingerprint()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds an in-lined import to all recorded parses in progress.
+   */
+  private void addDependency(Dependency dependency, int depth) {
+    for (int i = 0; i < recordings.size(); i++) {
+      Recording recording = recordings.get(i);
+      recording.dependencies.add(dependency);
+      recording.paths.add(dependency.path());
+      recording.maxDepth = Math.max(recording.maxDepth, depth);
+    }
+  }
+
+  /**
+   * Indicates whether an import of the given path would be suppressed.
+   */
+  private boolean suppressed(Path path) {
     ImportRecord record = importRecords.get(path);
     if (record != null) {
       // We need to suppress this import if one of the following is true:
@@ -100,6 +345,165 @@ public class Importer {
     return false;
   }
 
+  /**
+   * Resolves the import on the executor, then loads the file it resolves to.
+   * Each import is resolved at most once.
+   */
+  private void prefetch(final Path rootPath, final String rawPath, final Executor executor) {
+    final CompletableFuture<Path> resolution = new CompletableFuture<>();
+    if (resolutions.putIfAbsent(key(rootPath, rawPath), resolution) != null) {
+      return;
+    }
+
+    // The load is started before the resolution completes, so it is pending
+    // by the time the parse finds the resolved path.  If the task cannot run,
+    // the resolution fails so the parse does not wait on it.
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Path path = resolve(rootPath, rawPath);
+            if (path != null) {
+              fetch(path, executor);
+            }
+            resolution.complete(path);
+          } catch (RuntimeException e) {
+            resolution.completeExceptionally(e);
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      resolution.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Loads the file on the executor, then prefetches its imports.  Each file
+   * is loaded at most once.
+   */
+  private void fetch(final Path path, final Executor executor) {
+    final CompletableFuture<CharSequence> source = new CompletableFuture<>();
+    if (sources.putIfAbsent(path, source) != null) {
+      return;
+    }
+    try {
+      loader.loadAsync(path, executor).whenComplete(new BiConsumer<CharSequence, Throwable>() {
+        @Override
+        public void accept(CharSequence raw, Throwable error) {
+          if (error != null) {
+            source.completeExceptionally(error);
+            return;
+          }
+          source.complete(raw);
+          Path parent = path.getParent();
+          prefetch(raw, parent == null ? Paths.get(".") : parent);
+        }
+      });
+    } catch (RuntimeException e) {
+      source.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Scans the source for imports whose paths are quoted strings without
+   * interpolation, skipping comments and other strings.  Returns the raw path
+   * of each import which would be loaded.
+   */
+  static List<String> scanImports(CharSequence source) {
+    List<String> result = new ArrayList<>();
+    int len = source.length();
+    int i = 0;
+    while (i < len) {
+      char ch = source.charAt(i);
+      if (ch == '/' && i + 1 < len && source.charAt(i + 1) == '*') {
+        i = skipTo(source, i + 2, "*/");
+
+      } else if (ch == '/' && i + 1 < len && source.charAt(i + 1) == '/') {
+        i = skipTo(source, i + 2, "\n");
+
+      } else if (ch == '"' || ch == '\'') {
+        i = skipString(source, i);
+
+      } else if (ch == '@' && regionMatches(source, i, "@import")) {
+        i += 7;
+        if (regionMatches(source, i, "-once")) {
+          i += 5;
+        }
+        while (i < len && Character.isWhitespace(source.charAt(i))) {
+          i++;
+        }
+        if (i < len && (source.charAt(i) == '"' || source.charAt(i) == '\'')) {
+          int end = skipString(source, i);
+          String raw = source.subSequence(i + 1, Math.max(i + 1, end - 1)).toString();
+          if (raw.indexOf('\\') == -1 && !raw.contains("@{")) {
+            String path = importPath(raw);
+            if (path != null) {
+              result.add(path);
+            }
+          }
+          i = end;
+        }
+
+      } else {
+        i++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the index following the string which starts at the given index.
+   */
+  private static int skipString(CharSequence source, int start) {
+    char delim = source.charAt(start);
+    int len = source.length();
+    int i = start + 1;
+    while (i < len) {
+      char ch = source.charAt(i);
+      if (ch == '\\') {
+        i += 2;
+        continue;
+      }
+      i++;
+      if (ch == delim) {
+        break;
+      }
+    }
+    return Math.min(i, len);
+  }
+
+  /**
+   * Returns the index following the first occurrence of the delimiter at or
+   * after the given index, or the length of the source if it does not occur.
+   */
+  private static int skipTo(CharSequence source, int start, String delim) {
+    int limit = source.length() - delim.length();
+    for (int i = start; i <= limit; i++) {
+      if (regionMatches(source, i, delim)) {
+        return i + delim.length();
+      }
+    }
+    return source.length();
+  }
+
+  private static boolean regionMatches(CharSequence source, int start, String str) {
+    int len = str.length();
+    if (start + len > source.length()) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      if (source.charAt(start + i) != str.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String key(Path rootPath, String rawPath) {
+    return rootPath + "\u0000" + rawPath;
+  }
+
   /**
    * Resolve the path and determine if it can be loaded. Returns the resolved
    * path or null if no valid path could be resolved.
@@ -155,6 +559,14 @@ public class Importer {
     }
 
     path = context.render(node);
+    return importPath(path);
+  }
+
+  /**
+   * Appends the optional ".less" extension to the path, returning null if
+   * the path refers to a CSS file which is not in-lined.
+   */
+  private static String importPath(String path) {
     Matcher matcher = IMPORT_EXT.matcher(path);
     if (!matcher.matches()) {
       // Append optional ".less" extension
@@ -168,4 +580,36 @@ public class Importer {
     return path;
   }
 
+  /**
+   * Tracks the nested imports in-lined during the parse of an import, so the
+   * parse can be cached along with its dependencies.
+   */
+  private static class Recording {
+
+    private final Path path;
+
+    private final long fingerprint;
+
+    private final long weight;
+
+    private final int baseDepth;
+
+    private final List<Dependency> dependencies = new ArrayList<>();
+
+    private final Set<Path> paths = new HashSet<>();
+
+    private int maxDepth;
+
+    private boolean cacheable = true;
+
+    Recording(Path path, long fingerprint, long weight, int baseDepth) {
+      this.path = path;
+      this.fingerprint = fingerprint;
+      this.weight = weight;
+      this.baseDepth = baseDepth;
+      this.maxDepth = baseDepth + 1;
+    }
+
+  }
+
 }
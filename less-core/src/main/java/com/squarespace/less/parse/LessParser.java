@@ -101,7 +101,7 @@ public class LessParser {
    * Top-level parse entry point.  Parses the given string and file path
    * and appends it to the current global block.
    */
-  public void parse(String raw, Path filePath) throws LessException {
+  public void parse(CharSequence raw, Path filePath) throws LessException {
     LessStream stream = push(raw, filePath, parseEnv);
     Block block = (Block)stream.parse(Parselets.PRIMARY);
 
@@ -118,10 +118,24 @@ public class LessParser {
     rootBlock.appendBlock(block);
   }
 
+  /**
+   * Indicates whether the stream for the given path is currently being parsed.
+   */
+  public boolean parsing(Path filePath) {
+    return streamPaths.contains(filePath);
+  }
+
+  /**
+   * Returns the number of streams whose blocks have been deferred for evaluation.
+   */
+  public int deferredCount() {
+    return deferreds.size();
+  }
+
   /**
    * Push a stream onto the stack, typically to process an {@link Import} statement.
    */
-  public LessStream push(String raw, Path filePath, ExecEnv env) throws LessException {
+  public LessStream push(CharSequence raw, Path filePath, ExecEnv env) throws LessException {
     // Make sure we're not recursing through the same import file.
     if (this.streamPaths.contains(filePath)) {
       LessStream current = this.streams.last();
@@ -142,6 +156,7 @@ public class LessParser {
     LessStream stream = null;
     stream = new LessStream(this, raw, filePath, env);
     this.streams.push(stream);
+    context.importer().prefetch(raw, stream.rootPath());
 
     return stream;
   }
@@ -252,9 +267,9 @@ public class LessParser {
     /**
      * Input source for the active stream when this closure was deferred.
      */
-    private final String raw;
+    private final CharSequence raw;
 
-    Deferred(List<ExecEnv> envs, String raw) {
+    Deferred(List<ExecEnv> envs, CharSequence raw) {
       this.envs = envs;
       this.raw = raw;
     }
@@ -23,7 +23,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
 
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
@@ -40,26 +39,6 @@ import com.squarespace.compiler.match.Recognizers.Recognizer;
  */
 public class LessStream extends Stream {
 
-  private final Matcher matcherAttributeKey;
-
-  private final Matcher matcherAttributeOp;
-
-  private final Matcher matcherDirective;
-
-  private final Matcher matcherKeyword;
-
-  private final Matcher matcherMixinName;
-
-  private final Matcher matcherOpacity;
-
-  private final Matcher matcherProperty;
-
-  private final Matcher matcherRatio;
-
-  private final Matcher matcherShorthand;
-
-  private final Matcher matcherUnicodeRange;
-
   private final LessParser parser;
 
   private final Path path;
@@ -92,15 +71,15 @@ public class LessStream extends Stream {
   // Special mode for 'font' rules.
   private boolean requireStrictMath;
 
-  public LessStream(LessParser parser, String raw) {
+  public LessStream(LessParser parser, CharSequence raw) {
     this(parser, raw, null);
   }
 
-  public LessStream(LessParser parser, String raw, Path path) {
+  public LessStream(LessParser parser, CharSequence raw, Path path) {
     this(parser, raw, null, null);
   }
 
-  public LessStream(LessParser parser, String raw, Path path, ExecEnv env) {
+  public LessStream(LessParser parser, CharSequence raw, Path path, ExecEnv env) {
     super(raw);
     this.parser = parser;
     this.path = (path == null) ? Constants.DEFAULT_PATH : path;
@@ -109,17 +88,6 @@ public class LessStream extends Stream {
     this.rootPath = (parent == null) ? Paths.get(".") : parent;
     this.fileName = this.path.getFileName();
     this.parseEnv = (env == null) ? new ExecEnv(parser.context()) : env;
-
-    this.matcherAttributeKey = Patterns.ATTRIBUTE_KEY.matcher(raw);
-    this.matcherAttributeOp = Patterns.ATTRIBUTE_OP.matcher(raw);
-    this.matcherDirective = Patterns.DIRECTIVE.matcher(raw);
-    this.matcherKeyword = Patterns.KEYWORD.matcher(raw);
-    this.matcherMixinName = Patterns.MIXIN_NAME.matcher(raw);
-    this.matcherOpacity = Patterns.OPACITY.matcher(raw);
-    this.matcherProperty = Patterns.PROPERTY.matcher(raw);
-    this.matcherRatio = Patterns.RATIO.matcher(raw);
-    this.matcherShorthand = Patterns.SHORTHAND.matcher(raw);
-    this.matcherUnicodeRange = Patterns.UNICODE_DESCRIPTOR.matcher(raw);
   }
 
   public LessException parseError(LessException exc) {
@@ -231,11 +199,11 @@ public class LessStream extends Stream {
   }
 
   public boolean matchAttributeKey() {
-    return finish(match(matcherAttributeKey));
+    return finish(match(RecognizerPatterns.ATTRIBUTE_KEY));
   }
 
   public boolean matchAttributeOp() {
-    return finish(match(matcherAttributeOp));
+    return finish(match(RecognizerPatterns.ATTRIBUTE_OP));
   }
 
   public boolean matchConditionOp() {
@@ -265,7 +233,7 @@ public class LessStream extends Stream {
   }
 
   public boolean matchDirective() {
-    return finish(match(matcherDirective));
+    return finish(match(RecognizerPatterns.DIRECTIVE));
   }
 
   public boolean matchElement0() {
@@ -312,11 +280,11 @@ public class LessStream extends Stream {
   }
 
   public boolean matchKeyword() {
-    return finish(match(matcherKeyword));
+    return finish(match(RecognizerPatterns.KEYWORD));
   }
 
   public boolean matchMixinName() {
-    return finish(match(matcherMixinName));
+    return finish(match(RecognizerPatterns.MIXIN_NAME));
   }
 
   public boolean matchNot() {
@@ -324,19 +292,19 @@ public class LessStream extends Stream {
   }
 
   public boolean matchOpacity() {
-    return finish(match(matcherOpacity));
+    return finish(match(RecognizerPatterns.OPACITY));
   }
 
   public boolean matchProperty() {
-    return finish(match(matcherProperty));
+    return finish(match(RecognizerPatterns.PROPERTY));
   }
 
   public boolean matchRatio() {
-    return finish(match(matcherRatio));
+    return finish(match(RecognizerPatterns.RATIO));
   }
 
   public boolean matchUnicodeRange() {
-    return finish(match(matcherUnicodeRange));
+    return finish(match(RecognizerPatterns.UNICODE_RANGE));
   }
 
   public boolean matchUrlStart() {
@@ -352,21 +320,11 @@ public class LessStream extends Stream {
   }
 
   public boolean peekShorthand() {
-    return peek(matcherShorthand);
+    return peek(RecognizerPatterns.SHORTHAND);
   }
 
-  private boolean peek(Matcher matcher) {
-    matcher.region(index, length);
-    return matcher.lookingAt();
-  }
-
-  private boolean match(Matcher matcher) {
-    matcher.region(index, length);
-    boolean matched = matcher.lookingAt();
-    if (matched) {
-      matchEnd = matcher.end();
-    }
-    return matched;
+  private boolean peek(Recognizer recognizer) {
+    return recognizer.match(raw, index, length) > index;
   }
 
   private boolean match(Recognizer recognizer) {
@@ -394,7 +352,7 @@ public class LessStream extends Stream {
     tokenPosition.index = start;
     tokenPosition.lineOffset = lineOffset;
     tokenPosition.charOffset = charOffset;
-    token = raw.substring(start, end);
+    token = raw.subSequence(start, end).toString();
   }
 
 }
@@ -34,7 +34,7 @@ public class ParseUtils {
    * Build a user-readable parser error message, showing the exact context for
    * the error. We append this to the given exception inside a ParseError node.
    */
-  public static LessException parseError(LessException exc, Path filePath, String raw, int index) {
+  public static LessException parseError(LessException exc, Path filePath, CharSequence raw, int index) {
     Stream stm = new Stream(raw);
     List<int[]> offsets = new ArrayList<>();
 
@@ -70,14 +70,14 @@ public class ParseUtils {
           int leftpos = Math.max(errpos - skip, pos[0]);
           charPos -= leftpos - pos[0] - 4;
           buf.append("... ");
-          buf.append(raw.substring(leftpos, Math.min(leftpos + WINDOW_SIZE, pos[1])));
+          buf.append(raw.subSequence(leftpos, Math.min(leftpos + WINDOW_SIZE, pos[1])).toString());
 
         } else {
-          buf.append(raw.substring(pos[0], pos[1]));
+          buf.append(raw.subSequence(pos[0], pos[1]).toString());
         }
 
       } else {
-        buf.append(compressString(raw.substring(pos[0], pos[1])));
+        buf.append(compressString(raw.subSequence(pos[0], pos[1]).toString()));
       }
     }
 
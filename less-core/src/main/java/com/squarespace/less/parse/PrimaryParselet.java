@@ -20,6 +20,7 @@ import static com.squarespace.less.parse.Parselets.PRIMARY_SUB;
 
 import java.nio.file.Path;
 
+import com.squarespace.less.ImportCache;
 import com.squarespace.less.LessException;
 import com.squarespace.less.exec.ExecEnv;
 import com.squarespace.less.model.Block;
@@ -132,13 +133,29 @@ public class PrimaryParselet implements Parselet {
       parentBlock.prependNode(new ImportMarker(importNode, true));
     }
 
-    // Push a new stream onto the stack and parse it.
     importer.recordImport(importNode, path);
-    String source = importer.loadSource(path);
-    LessStream childStream = parser.push(source, path, execEnv);
-    parseBlock(parentBlock, childStream);
-    childStream.checkComplete();
-    parser.pop();
+    CharSequence source = importer.loadSource(path);
+    long fingerprint = ImportCache.fingerprint(source);
+    importer.recordSource(path, fingerprint);
+
+    // Splice in the cached parse of the file, if any. Otherwise push a new
+    // stream onto the stack and parse it. When caching, the rules are parsed
+    // onto a separate block so they can be shared with later compiles.
+    Block block = importer.cachedImport(importNode, path, source, fingerprint, parser);
+    if (block == null) {
+      block = importer.cacheEnabled() ? new Block() : parentBlock;
+      int deferreds = parser.deferredCount();
+      LessStream childStream = parser.push(source, path, execEnv);
+      parseBlock(block, childStream);
+      childStream.checkComplete();
+      parser.pop();
+      if (block != parentBlock) {
+        importer.cacheImport(block, parser.deferredCount() != deferreds);
+      }
+    }
+    if (block != parentBlock) {
+      parentBlock.appendBlock(block);
+    }
 
     // Pop the media block, if any.
     if (wrapMedia) {
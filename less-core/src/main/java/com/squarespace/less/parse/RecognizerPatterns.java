@@ -16,7 +16,10 @@
 
 package com.squarespace.less.parse;
 
+import static com.squarespace.less.core.CharClass.DASH;
+import static com.squarespace.less.core.CharClass.DIGIT;
 import static com.squarespace.less.core.CharClass.LOWERCASE;
+import static com.squarespace.less.core.CharClass.UNDERSCORE;
 import static com.squarespace.less.core.CharClass.UPPERCASE;
 import static com.squarespace.compiler.match.Recognizers.any;
 import static com.squarespace.compiler.match.Recognizers.cardinality;
@@ -65,6 +68,8 @@ public class RecognizerPatterns {
 
   public static final Recognizer DIMENSION_VALUE = buildDimensionValue();
 
+  public static final Recognizer DIRECTIVE = buildDirective();
+
   public static final Recognizer ELEMENT0 = buildElement0();
 
   public static final Recognizer ELEMENT1 = buildElement1();
@@ -83,8 +88,22 @@ public class RecognizerPatterns {
 
   public static final Recognizer IMPORTANT = buildImportant();
 
+  public static final Recognizer KEYWORD = buildKeyword();
+
+  public static final Recognizer MIXIN_NAME = buildMixinName();
+
   public static final Recognizer NOT = literal("not");
 
+  public static final Recognizer OPACITY = buildOpacity();
+
+  public static final Recognizer PROPERTY = buildProperty();
+
+  public static final Recognizer RATIO = sequence(digits(), characters('/'), digits());
+
+  public static final Recognizer SHORTHAND = buildShorthand();
+
+  public static final Recognizer UNICODE_RANGE = buildUnicodeRange();
+
   public static final Recognizer URLSTART = buildUrlStart();
 
   public static final Recognizer WHEN = literal("when");
@@ -159,6 +178,13 @@ public class RecognizerPatterns {
     return sequence(zeroOrOne(characters('-', '+')), decimal());
   }
 
+  /**
+   * Regular expression  "@[a-z-]+"
+   */
+  private static Recognizer buildDirective() {
+    return sequence(characters('@'), oneOrMore(charClass(LOWERCASE | DASH)));
+  }
+
   /**
    * Regular expression  "(?:\\d+\\.\\d+|\\d+)%"
    */
@@ -176,20 +202,23 @@ public class RecognizerPatterns {
   private static Recognizer buildElement1() {
     Recognizer prefix = choice(zeroOrOne(characters('.', '#')), zeroOrMore(characters(':')));
 
-    Recognizer suffix = oneOrMore(choice(
-        worddash(),
-        notAscii(),
-        sequence(
-            characters('\\'),
-            choice(
-                sequence(cardinality(hexdigit(), 1, 6), zeroOrOne(characters(' '))),
-                notHexdigit()
-                )
-            )
-        ));
+    Recognizer suffix = oneOrMore(choice(worddash(), notAscii(), buildEscape()));
     return sequence(prefix, suffix);
   }
 
+  /**
+   * Regular expression  "\\\\(?:[A-Fa-f0-9]{1,6} ?|[^A-Fa-f0-9])"
+   */
+  private static Recognizer buildEscape() {
+    return sequence(
+        characters('\\'),
+        choice(
+            sequence(cardinality(hexdigit(), 1, 6), zeroOrOne(characters(' '))),
+            notHexdigit()
+            )
+        );
+  }
+
   /**
    * Regular expression  "\\([^)(@]+\\)"
    */
@@ -234,6 +263,54 @@ public class RecognizerPatterns {
     return sequence(characters('!'), zeroOrMore(characters(' ')), literal("important"));
   }
 
+  /**
+   * Regular expression  "[_A-Za-z-][\\w-]*"
+   */
+  private static Recognizer buildKeyword() {
+    return sequence(charClass(LOWERCASE | UPPERCASE | UNDERSCORE | DASH), zeroOrMore(worddash()));
+  }
+
+  /**
+   * Regular expression  "[#.](?:[\\w-]|\\\\(?:[A-Fa-f0-9]{1,6} ?|[^A-Fa-f0-9]))+"
+   */
+  private static Recognizer buildMixinName() {
+    return sequence(characters('#', '.'), oneOrMore(choice(worddash(), buildEscape())));
+  }
+
+  /**
+   * Regular expression  "opacity="   case-insensitive
+   */
+  private static Recognizer buildOpacity() {
+    return sequence(literalIgnoreCase("opacity"), characters('='));
+  }
+
+  /**
+   * Regular expression  "\\*?-?[_a-z0-9-]+"
+   *
+   * The optional dash is subsumed by the character class that follows it.
+   */
+  private static Recognizer buildProperty() {
+    return sequence(zeroOrOne(characters('*')), oneOrMore(charClass(LOWERCASE | DIGIT | UNDERSCORE | DASH)));
+  }
+
+  /**
+   * Regular expression  "[@\\w.%-]+\\/[@\\w.-]+"
+   */
+  private static Recognizer buildShorthand() {
+    return sequence(
+        oneOrMore(choice(word(), characters('@', '.', '%', '-'))),
+        characters('/'),
+        oneOrMore(choice(word(), characters('@', '.', '-'))));
+  }
+
+  /**
+   * Regular expression  "U\\+[A-Fa-f0-9?]+(\\-[A-Fa-f0-9?]+)?"
+   */
+  private static Recognizer buildUnicodeRange() {
+    Recognizer hexwild = oneOrMore(choice(hexdigit(), characters('?')));
+    return sequence(literal("U+"), hexwild, zeroOrOne(sequence(characters('-'), hexwild)));
+  }
+
   /**
    * Regular expression  "url\\s*\\("
    */
@@ -241,4 +318,17 @@ public class RecognizerPatterns {
     return sequence(literal("url"), zeroOrMore(whitespace()), characters('('));
   }
 
+  /**
+   * Matches the string ignoring the case of ASCII letters.
+   */
+  private static Recognizer literalIgnoreCase(String str) {
+    int len = str.length();
+    Recognizer[] chars = new Recognizer[len];
+    for (int i = 0; i < len; i++) {
+      char ch = str.charAt(i);
+      chars[i] = characters(Character.toLowerCase(ch), Character.toUpperCase(ch));
+    }
+    return sequence(chars);
+  }
+
 }
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.parse;
+
+
+/**
+ * Constants for the binary snapshot format written by {@link SnapshotWriter}
+ * and read by {@link SnapshotReader}.
+ *
+ * A snapshot starts with a header holding the magic number and format version,
+ * followed by a table of all strings used in the tree, and then the tree itself
+ * in pre-order.  Each node is encoded as a tag, its position, and the fields
+ * specific to its type.  Integers are encoded as unsigned variable-length
+ * quantities, 7 bits per byte.
+ *
+ * Any change to the encoding of a node, or to the ordinals of the enums
+ * it stores, must increment {@link #VERSION} so older snapshots are rejected.
+ */
+final class SnapshotFormat {
+
+  /**
+   * Magic number identifying a snapshot, "LESB".
+   */
+  static final int MAGIC = 0x4c455342;
+
+  /**
+   * Current version of the format.
+   */
+  static final int VERSION = 1;
+
+  /**
+   * Encodes a null string or node.
+   */
+  static final int NULL = 0;
+
+  // Node tags
+
+  static final byte ALPHA = 1;
+
+  static final byte ANONYMOUS = 2;
+
+  static final byte ARGUMENT = 3;
+
+  static final byte ASSIGNMENT = 4;
+
+  static final byte ATTRIBUTE_ELEMENT = 5;
+
+  static final byte BLOCK = 6;
+
+  static final byte BLOCK_DIRECTIVE = 7;
+
+  static final byte COMBINATOR = 8;
+
+  static final byte COMMENT = 9;
+
+  static final byte COMPOSITE_PROPERTY = 10;
+
+  static final byte CONDITION = 11;
+
+  static final byte DEFINITION = 12;
+
+  static final byte DETACHED_RULESET = 13;
+
+  static final byte DIMENSION = 14;
+
+  static final byte DIRECTIVE = 15;
+
+  static final byte EXPRESSION = 16;
+
+  static final byte EXPRESSION_LIST = 17;
+
+  static final byte EXTEND = 18;
+
+  static final byte EXTEND_LIST = 19;
+
+  static final byte FALSE = 20;
+
+  static final byte FEATURE = 21;
+
+  static final byte FEATURES = 22;
+
+  static final byte FUNCTION_CALL = 23;
+
+  static final byte GENERIC_BLOCK = 24;
+
+  static final byte GUARD = 25;
+
+  static final byte HSL_COLOR = 26;
+
+  static final byte IMPORT = 27;
+
+  static final byte IMPORT_MARKER = 28;
+
+  static final byte KEYWORD = 29;
+
+  static final byte KEYWORD_COLOR = 30;
+
+  static final byte MEDIA = 31;
+
+  static final byte MIXIN = 32;
+
+  static final byte MIXIN_ARGS = 33;
+
+  static final byte MIXIN_CALL = 34;
+
+  static final byte MIXIN_PARAMS = 35;
+
+  static final byte OPERATION = 36;
+
+  static final byte PARAMETER = 37;
+
+  static final byte PAREN = 38;
+
+  static final byte PARSE_ERROR = 39;
+
+  static final byte PROPERTY = 40;
+
+  static final byte QUOTED = 41;
+
+  static final byte RATIO = 42;
+
+  static final byte RGB_COLOR = 43;
+
+  static final byte RULE = 44;
+
+  static final byte RULESET = 45;
+
+  static final byte SELECTOR = 46;
+
+  static final byte SELECTORS = 47;
+
+  static final byte SHORTHAND = 48;
+
+  static final byte STYLESHEET = 49;
+
+  static final byte TEXT_ELEMENT = 50;
+
+  static final byte TRUE = 51;
+
+  static final byte UNICODE_RANGE = 52;
+
+  static final byte URL = 53;
+
+  static final byte VALUE_ELEMENT = 54;
+
+  static final byte VARIABLE = 55;
+
+  static final byte WILDCARD_ELEMENT = 56;
+
+  // Flags for block nodes
+
+  static final int BLOCK_NODE_IMPORTANT = 0x01;
+
+  // Flags for rgb colors
+
+  static final int COLOR_FROM_KEYWORD = 0x01;
+
+  static final int COLOR_FORCE_HEX = 0x02;
+
+  private SnapshotFormat() {
+  }
+
+}
@@ -0,0 +1,764 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.parse;
+
+import static com.squarespace.less.parse.SnapshotFormat.BLOCK_NODE_IMPORTANT;
+import static com.squarespace.less.parse.SnapshotFormat.COLOR_FORCE_HEX;
+import static com.squarespace.less.parse.SnapshotFormat.COLOR_FROM_KEYWORD;
+import static com.squarespace.less.parse.SnapshotFormat.NULL;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.squarespace.less.NodeBuilder;
+import com.squarespace.less.model.Alpha;
+import com.squarespace.less.model.Anonymous;
+import com.squarespace.less.model.Argument;
+import com.squarespace.less.model.Assignment;
+import com.squarespace.less.model.AttributeElement;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.BlockNode;
+import com.squarespace.less.model.Combinator;
+import com.squarespace.less.model.CombinatorType;
+import com.squarespace.less.model.Comment;
+import com.squarespace.less.model.CompositeProperty;
+import com.squarespace.less.model.Condition;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.DetachedRuleset;
+import com.squarespace.less.model.Dimension;
+import com.squarespace.less.model.Directive;
+import com.squarespace.less.model.Expression;
+import com.squarespace.less.model.ExpressionList;
+import com.squarespace.less.model.Extend;
+import com.squarespace.less.model.ExtendList;
+import com.squarespace.less.model.False;
+import com.squarespace.less.model.Feature;
+import com.squarespace.less.model.Features;
+import com.squarespace.less.model.FunctionCall;
+import com.squarespace.less.model.GenericBlock;
+import com.squarespace.less.model.Guard;
+import com.squarespace.less.model.HSLColor;
+import com.squarespace.less.model.Import;
+import com.squarespace.less.model.ImportMarker;
+import com.squarespace.less.model.Keyword;
+import com.squarespace.less.model.KeywordColor;
+import com.squarespace.less.model.MixinCall;
+import com.squarespace.less.model.MixinCallArgs;
+import com.squarespace.less.model.MixinParams;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Operation;
+import com.squarespace.less.model.Operator;
+import com.squarespace.less.model.Parameter;
+import com.squarespace.less.model.Paren;
+import com.squarespace.less.model.ParseError;
+import com.squarespace.less.model.Property;
+import com.squarespace.less.model.PropertyMergeMode;
+import com.squarespace.less.model.Quoted;
+import com.squarespace.less.model.RGBColor;
+import com.squarespace.less.model.Ratio;
+import com.squarespace.less.model.Rule;
+import com.squarespace.less.model.Selector;
+import com.squarespace.less.model.SelectorPart;
+import com.squarespace.less.model.Selectors;
+import com.squarespace.less.model.Shorthand;
+import com.squarespace.less.model.Stylesheet;
+import com.squarespace.less.model.TextElement;
+import com.squarespace.less.model.True;
+import com.squarespace.less.model.UnicodeRange;
+import com.squarespace.less.model.Unit;
+import com.squarespace.less.model.Url;
+import com.squarespace.less.model.ValueElement;
+import com.squarespace.less.model.WildcardElement;
+
+
+/**
+ * Rebuilds a tree from the binary snapshot format written by {@link SnapshotWriter}.
+ * Nodes are constructed through the {@link NodeBuilder} wherever the parser does so,
+ * so the result is equivalent to parsing the original source.
+ *
+ * The buffer may be a memory-mapped file.  Reading advances the position of the
+ * given buffer, so a buffer shared between threads should be duplicated first.
+ */
+public class SnapshotReader {
+
+  private static final CombinatorType[] COMBINATOR_TYPES = CombinatorType.values();
+
+  private static final Operator[] OPERATORS = Operator.values();
+
+  private static final PropertyMergeMode[] MERGE_MODES = PropertyMergeMode.values();
+
+  private final ByteBuffer buffer;
+
+  private final NodeBuilder builder;
+
+  /**
+   * String table, starting at index 1 since 0 encodes null.
+   */
+  private String[] strings;
+
+  /**
+   * Paths parsed from the string table, on first use.
+   */
+  private Path[] paths;
+
+  private SnapshotReader(ByteBuffer buffer, NodeBuilder builder) {
+    this.buffer = buffer;
+    this.builder = builder;
+  }
+
+  /**
+   * Reads a tree from the snapshot data.
+   */
+  public static Node read(byte[] data, NodeBuilder builder) throws IOException {
+    return read(ByteBuffer.wrap(data), builder);
+  }
+
+  /**
+   * Reads a tree from the buffer, starting at its current position.
+   *
+   * @throws IOException if the data is not a snapshot, was written by an
+   *     incompatible version of the format, or is corrupt.
+   */
+  public static Node read(ByteBuffer buffer, NodeBuilder builder) throws IOException {
+    SnapshotReader reader = new SnapshotReader(buffer, builder);
+    try {
+      reader.readHeader();
+      return reader.readNode();
+
+    } catch (BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+      throw new IOException("Snapshot is corrupt", e);
+    }
+  }
+
+  private void readHeader() throws IOException {
+    if (buffer.remaining() < 4 || buffer.getInt() != SnapshotFormat.MAGIC) {
+      throw new IOException("Data is not a snapshot");
+    }
+    int version = readVarint();
+    if (version != SnapshotFormat.VERSION) {
+      throw new IOException("Snapshot has format version " + version + ", expected " + SnapshotFormat.VERSION);
+    }
+
+    int count = readVarint();
+    strings = new String[count + 1];
+    paths = new Path[count + 1];
+    byte[] scratch = null;
+    for (int i = 1; i <= count; i++) {
+      int length = readVarint();
+      if (buffer.hasArray()) {
+        int position = buffer.position();
+        strings[i] = new String(buffer.array(), buffer.arrayOffset() + position, length, StandardCharsets.UTF_8);
+        buffer.position(position + length);
+      } else {
+        if (scratch == null || scratch.length < length) {
+          scratch = new byte[Math.max(length, 256)];
+        }
+        buffer.get(scratch, 0, length);
+        strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+      }
+    }
+  }
+
+  private Node readNode() throws IOException {
+    byte tag = buffer.get();
+    if (tag == NULL) {
+      return null;
+    }
+    int lineOffset = readVarint();
+    int charOffset = readVarint();
+    Node node = null;
+
+    switch (tag) {
+
+      case SnapshotFormat.BLOCK:
+      case SnapshotFormat.BLOCK_DIRECTIVE:
+      case SnapshotFormat.DETACHED_RULESET:
+      case SnapshotFormat.GENERIC_BLOCK:
+      case SnapshotFormat.MEDIA:
+      case SnapshotFormat.MIXIN:
+      case SnapshotFormat.RULESET:
+      case SnapshotFormat.STYLESHEET:
+        node = readBlockGroup(tag);
+        break;
+
+      case SnapshotFormat.ARGUMENT:
+      case SnapshotFormat.COMMENT:
+      case SnapshotFormat.DEFINITION:
+      case SnapshotFormat.DIRECTIVE:
+      case SnapshotFormat.FEATURE:
+      case SnapshotFormat.FEATURES:
+      case SnapshotFormat.IMPORT:
+      case SnapshotFormat.IMPORT_MARKER:
+      case SnapshotFormat.MIXIN_ARGS:
+      case SnapshotFormat.MIXIN_CALL:
+      case SnapshotFormat.MIXIN_PARAMS:
+      case SnapshotFormat.PARAMETER:
+      case SnapshotFormat.PARSE_ERROR:
+      case SnapshotFormat.RULE:
+        node = readRuleGroup(tag);
+        break;
+
+      case SnapshotFormat.ATTRIBUTE_ELEMENT:
+      case SnapshotFormat.COMBINATOR:
+      case SnapshotFormat.CONDITION:
+      case SnapshotFormat.EXTEND:
+      case SnapshotFormat.EXTEND_LIST:
+      case SnapshotFormat.GUARD:
+      case SnapshotFormat.SELECTOR:
+      case SnapshotFormat.SELECTORS:
+      case SnapshotFormat.TEXT_ELEMENT:
+      case SnapshotFormat.VALUE_ELEMENT:
+      case SnapshotFormat.WILDCARD_ELEMENT:
+        node = readSelectorGroup(tag);
+        break;
+
+      case SnapshotFormat.ALPHA:
+      case SnapshotFormat.ANONYMOUS:
+      case SnapshotFormat.ASSIGNMENT:
+      case SnapshotFormat.COMPOSITE_PROPERTY:
+      case SnapshotFormat.DIMENSION:
+      case SnapshotFormat.EXPRESSION:
+      case SnapshotFormat.EXPRESSION_LIST:
+      case SnapshotFormat.FALSE:
+      case SnapshotFormat.FUNCTION_CALL:
+      case SnapshotFormat.HSL_COLOR:
+      case SnapshotFormat.KEYWORD:
+      case SnapshotFormat.KEYWORD_COLOR:
+      case SnapshotFormat.OPERATION:
+      case SnapshotFormat.PAREN:
+      case SnapshotFormat.PROPERTY:
+      case SnapshotFormat.QUOTED:
+      case SnapshotFormat.RATIO:
+      case SnapshotFormat.RGB_COLOR:
+      case SnapshotFormat.SHORTHAND:
+      case SnapshotFormat.TRUE:
+      case SnapshotFormat.UNICODE_RANGE:
+      case SnapshotFormat.URL:
+      case SnapshotFormat.VARIABLE:
+        node = readValueGroup(tag);
+        break;
+
+      default:
+        throw new IOException("Snapshot is corrupt: unknown node tag " + tag);
+    }
+
+    node.setLineOffset(lineOffset);
+    node.setCharOffset(charOffset);
+    return node;
+  }
+
+  /**
+   * Reads blocks and the nodes that own them.
+   */
+  private Node readBlockGroup(byte tag) throws IOException {
+    switch (tag) {
+
+      case SnapshotFormat.BLOCK:
+      {
+        int flags = readVarint();
+        Directive charset = (Directive)readNode();
+        int size = readVarint();
+        Block block = new Block(Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+          block.appendNode(readNode());
+        }
+        block.charset(charset);
+        block.orFlags(flags);
+        return block;
+      }
+
+      case SnapshotFormat.BLOCK_DIRECTIVE:
+      {
+        String name = readString();
+        int flags = readVarint();
+        Path fileName = readPath();
+        return finishBlockNode(builder.buildBlockDirective(name, readBlock()), flags, fileName);
+      }
+
+      case SnapshotFormat.DETACHED_RULESET:
+      {
+        int flags = readVarint();
+        Path fileName = readPath();
+        return finishBlockNode(new DetachedRuleset(readBlock()), flags, fileName);
+      }
+
+      case SnapshotFormat.GENERIC_BLOCK:
+      {
+        int flags = readVarint();
+        Path fileName = readPath();
+        return finishBlockNode(new GenericBlock(readBlock()), flags, fileName);
+      }
+
+      case SnapshotFormat.MEDIA:
+      {
+        Features features = (Features)readNode();
+        int flags = readVarint();
+        Path fileName = readPath();
+        return finishBlockNode(builder.buildMedia(features, readBlock()), flags, fileName);
+      }
+
+      case SnapshotFormat.MIXIN:
+      {
+        String name = readString();
+        MixinParams params = (MixinParams)readNode();
+        Guard guard = (Guard)readNode();
+        int flags = readVarint();
+        Path fileName = readPath();
+        return finishBlockNode(builder.buildMixin(name, params, guard, readBlock()), flags, fileName);
+      }
+
+      case SnapshotFormat.RULESET:
+      {
+        Selectors selectors = (Selectors)readNode();
+        int flags = readVarint();
+        Path fileName = readPath();
+        return finishBlockNode(builder.buildRuleset(selectors, readBlock()), flags, fileName);
+      }
+
+      case SnapshotFormat.STYLESHEET:
+      {
+        int flags = readVarint();
+        Path fileName = readPath();
+        return finishBlockNode(builder.buildStylesheet(readBlock()), flags, fileName);
+      }
+
+      default:
+        throw new IOException("Snapshot is corrupt: unknown node tag " + tag);
+    }
+  }
+
+  /**
+   * Reads rules, directives and mixin calls, along with their parts.
+   */
+  private Node readRuleGroup(byte tag) throws IOException {
+    switch (tag) {
+
+      case SnapshotFormat.ARGUMENT:
+      {
+        String name = readString();
+        return new Argument(name, readNode());
+      }
+
+      case SnapshotFormat.COMMENT:
+      {
+        String body = readString();
+        boolean block = readBoolean();
+        return builder.buildComment(body, block, readBoolean());
+      }
+
+      case SnapshotFormat.DEFINITION:
+      {
+        String name = readString();
+        Node value = readNode();
+        Definition definition = builder.buildDefinition(name, value, readBoolean());
+        definition.fileName(readPath());
+        return definition;
+      }
+
+      case SnapshotFormat.DIRECTIVE:
+      {
+        String name = readString();
+        Directive directive = builder.buildDirective(name, readNode());
+        directive.fileName(readPath());
+        return directive;
+      }
+
+      case SnapshotFormat.FEATURE:
+      {
+        Node property = readNode();
+        return new Feature(property, readNode());
+      }
+
+      case SnapshotFormat.FEATURES:
+      {
+        Features features = new Features();
+        int size = readVarint();
+        for (int i = 0; i < size; i++) {
+          features.add(readNode());
+        }
+        return features;
+      }
+
+      case SnapshotFormat.IMPORT:
+      {
+        Node path = readNode();
+        Features features = (Features)readNode();
+        Import imp = new Import(path, features, readBoolean());
+        imp.rootPath(readPath());
+        imp.fileName(readPath());
+        imp.parseOffset(readVarint());
+        return imp;
+      }
+
+      case SnapshotFormat.IMPORT_MARKER:
+      {
+        Import imp = (Import)readNode();
+        return new ImportMarker(imp, readBoolean());
+      }
+
+      case SnapshotFormat.MIXIN_ARGS:
+      {
+        MixinCallArgs args = new MixinCallArgs((char)readVarint());
+        int size = readVarint();
+        for (int i = 0; i < size; i++) {
+          args.add((Argument)readNode());
+        }
+        return args;
+      }
+
+      case SnapshotFormat.MIXIN_CALL:
+      {
+        Selector selector = (Selector)readNode();
+        MixinCallArgs args = (MixinCallArgs)readNode();
+        MixinCall call = builder.buildMixinCall(selector, args, readBoolean());
+        call.fileName(readPath());
+        return call;
+      }
+
+      case SnapshotFormat.MIXIN_PARAMS:
+      {
+        MixinParams params = new MixinParams();
+        int size = readVarint();
+        for (int i = 0; i < size; i++) {
+          params.add((Parameter)readNode());
+        }
+        return params;
+      }
+
+      case SnapshotFormat.PARAMETER:
+      {
+        String name = readString();
+        Node value = readNode();
+        return readBoolean() ? builder.buildParameter(name, true) : builder.buildParameter(name, value);
+      }
+
+      case SnapshotFormat.PARSE_ERROR:
+      {
+        ParseError error = new ParseError();
+        error.filePath(readPath());
+        error.errorMessage(readString());
+        return error;
+      }
+
+      case SnapshotFormat.RULE:
+      {
+        Node property = readNode();
+        Node value = readNode();
+        Rule rule = builder.buildRule(property, value, readBoolean());
+        rule.fileName(readPath());
+        return rule;
+      }
+
+      default:
+        throw new IOException("Snapshot is corrupt: unknown node tag " + tag);
+    }
+  }
+
+  /**
+   * Reads selectors, their parts, and guards.
+   */
+  private Node readSelectorGroup(byte tag) throws IOException {
+    switch (tag) {
+
+      case SnapshotFormat.ATTRIBUTE_ELEMENT:
+      {
+        AttributeElement element = new AttributeElement();
+        int size = readVarint();
+        for (int i = 0; i < size; i++) {
+          element.add(readNode());
+        }
+        return element;
+      }
+
+      case SnapshotFormat.COMBINATOR:
+        return new Combinator(COMBINATOR_TYPES[readVarint()]);
+
+      case SnapshotFormat.CONDITION:
+      {
+        Operator operator = OPERATORS[readVarint()];
+        Node left = readNode();
+        Node right = readNode();
+        return new Condition(operator, left, right, readBoolean());
+      }
+
+      case SnapshotFormat.EXTEND:
+      {
+        Selector target = (Selector)readNode();
+        return new Extend(target, readBoolean());
+      }
+
+      case SnapshotFormat.EXTEND_LIST:
+      {
+        ExtendList list = new ExtendList(readBoolean());
+        int size = readVarint();
+        for (int i = 0; i < size; i++) {
+          list.add((Extend)readNode());
+        }
+        return list;
+      }
+
+      case SnapshotFormat.GUARD:
+      {
+        Guard guard = new Guard();
+        int size = readVarint();
+        for (int i = 0; i < size; i++) {
+          guard.add((Condition)readNode());
+        }
+        return guard;
+      }
+
+      case SnapshotFormat.SELECTOR:
+      {
+        Selector selector = builder.buildSelector();
+        int size = readVarint();
+        for (int i = 0; i < size; i++) {
+          selector.add((SelectorPart)readNode());
+        }
+        ExtendList extendList = (ExtendList)readNode();
+        if (extendList != null) {
+          selector.extendList(extendList);
+        }
+        selector.guard((Guard)readNode());
+        return selector;
+      }
+
+      case SnapshotFormat.SELECTORS:
+      {
+        Selectors selectors = new Selectors();
+        int size = readVarint();
+        for (int i = 0; i < size; i++) {
+          selectors.add((Selector)readNode());
+        }
+        return selectors;
+      }
+
+      case SnapshotFormat.TEXT_ELEMENT:
+        return new TextElement(readString());
+
+      case SnapshotFormat.VALUE_ELEMENT:
+        return new ValueElement(readNode());
+
+      case SnapshotFormat.WILDCARD_ELEMENT:
+        return new WildcardElement();
+
+      default:
+        throw new IOException("Snapshot is corrupt: unknown node tag " + tag);
+    }
+  }
+
+  /**
+   * Reads values and expressions.
+   */
+  private Node readValueGroup(byte tag) throws IOException {
+    switch (tag) {
+
+      case SnapshotFormat.ALPHA:
+        return new Alpha(readNode());
+
+      case SnapshotFormat.ANONYMOUS:
+        return new Anonymous(readString());
+
+      case SnapshotFormat.ASSIGNMENT:
+      {
+        String name = readString();
+        return new Assignment(name, readNode());
+      }
+
+      case SnapshotFormat.COMPOSITE_PROPERTY:
+      {
+        List<Node> segments = readNodes();
+        return new CompositeProperty(segments, MERGE_MODES[readVarint()]);
+      }
+
+      case SnapshotFormat.DIMENSION:
+      {
+        double value = buffer.getDouble();
+        String unit = readString();
+        return new Dimension(value, unit == null ? null : Unit.get(unit));
+      }
+
+      case SnapshotFormat.EXPRESSION:
+      {
+        Expression expression = new Expression();
+        int size = readVarint();
+        for (int i = 0; i < size; i++) {
+          expression.add(readNode());
+        }
+        return expression;
+      }
+
+      case SnapshotFormat.EXPRESSION_LIST:
+        return new ExpressionList(readNodes());
+
+      case SnapshotFormat.FALSE:
+        return new False();
+
+      case SnapshotFormat.FUNCTION_CALL:
+      {
+        String name = readString();
+        List<Node> args = readNodes();
+        return new FunctionCall(name, args, readBoolean());
+      }
+
+      case SnapshotFormat.HSL_COLOR:
+      {
+        double hue = buffer.getDouble();
+        double saturation = buffer.getDouble();
+        double lightness = buffer.getDouble();
+        return new HSLColor(hue, saturation, lightness, buffer.getDouble());
+      }
+
+      case SnapshotFormat.KEYWORD:
+        return new Keyword(readString());
+
+      case SnapshotFormat.KEYWORD_COLOR:
+      {
+        String keyword = readString();
+        int red = readVarint();
+        int green = readVarint();
+        return new KeywordColor(keyword, red, green, readVarint());
+      }
+
+      case SnapshotFormat.OPERATION:
+      {
+        Operator operator = OPERATORS[readVarint()];
+        Node left = readNode();
+        Operation operation = builder.buildOperation(operator, left, readNode());
+        operation.setSubExpression(readBoolean());
+        operation.setRequireStrictMath(readBoolean());
+        return operation;
+      }
+
+      case SnapshotFormat.PAREN:
+        return new Paren(readNode());
+
+      case SnapshotFormat.PROPERTY:
+      {
+        String name = readString();
+        return new Property(name, MERGE_MODES[readVarint()]);
+      }
+
+      case SnapshotFormat.QUOTED:
+      {
+        char delim = (char)readVarint();
+        boolean escaped = readBoolean();
+        return new Quoted(delim, escaped, readNodes());
+      }
+
+      case SnapshotFormat.RATIO:
+        return new Ratio(readString());
+
+      case SnapshotFormat.RGB_COLOR:
+      {
+        int red = readVarint();
+        int green = readVarint();
+        int blue = readVarint();
+        double alpha = buffer.getDouble();
+        int flags = readVarint();
+        RGBColor color = new RGBColor(red, green, blue, alpha, (flags & COLOR_FROM_KEYWORD) != 0);
+        color.forceHex((flags & COLOR_FORCE_HEX) != 0);
+        return color;
+      }
+
+      case SnapshotFormat.SHORTHAND:
+      {
+        Node left = readNode();
+        return new Shorthand(left, readNode());
+      }
+
+      case SnapshotFormat.TRUE:
+        return new True();
+
+      case SnapshotFormat.UNICODE_RANGE:
+        return new UnicodeRange(readString());
+
+      case SnapshotFormat.URL:
+        return new Url(readNode());
+
+      case SnapshotFormat.VARIABLE:
+      {
+        String name = readString();
+        boolean curly = readBoolean();
+        return builder.buildVariable(name, curly, readBoolean());
+      }
+
+      default:
+        throw new IOException("Snapshot is corrupt: unknown node tag " + tag);
+    }
+  }
+
+  private Block readBlock() throws IOException {
+    return (Block)readNode();
+  }
+
+  private static Node finishBlockNode(BlockNode node, int flags, Path fileName) {
+    if ((flags & BLOCK_NODE_IMPORTANT) != 0) {
+      node.markImportant();
+    }
+    node.fileName(fileName);
+    return node;
+  }
+
+  private List<Node> readNodes() throws IOException {
+    int size = readVarint();
+    List<Node> nodes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      nodes.add(readNode());
+    }
+    return nodes;
+  }
+
+  private boolean readBoolean() {
+    return buffer.get() != 0;
+  }
+
+  private String readString() {
+    return strings[readVarint()];
+  }
+
+  private Path readPath() {
+    int index = readVarint();
+    if (index == NULL) {
+      return null;
+    }
+    Path path = paths[index];
+    if (path == null) {
+      path = Paths.get(strings[index]);
+      paths[index] = path;
+    }
+    return path;
+  }
+
+  private int readVarint() {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+}
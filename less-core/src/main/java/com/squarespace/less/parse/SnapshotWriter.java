@@ -0,0 +1,824 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.parse;
+
+import static com.squarespace.less.parse.SnapshotFormat.BLOCK_NODE_IMPORTANT;
+import static com.squarespace.less.parse.SnapshotFormat.COLOR_FORCE_HEX;
+import static com.squarespace.less.parse.SnapshotFormat.COLOR_FROM_KEYWORD;
+import static com.squarespace.less.parse.SnapshotFormat.NULL;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.squarespace.less.core.FlexList;
+import com.squarespace.less.core.LessInternalException;
+import com.squarespace.less.model.Alpha;
+import com.squarespace.less.model.Anonymous;
+import com.squarespace.less.model.Argument;
+import com.squarespace.less.model.Assignment;
+import com.squarespace.less.model.AttributeElement;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.BlockDirective;
+import com.squarespace.less.model.BlockNode;
+import com.squarespace.less.model.Combinator;
+import com.squarespace.less.model.Comment;
+import com.squarespace.less.model.CompositeProperty;
+import com.squarespace.less.model.Condition;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.Dimension;
+import com.squarespace.less.model.Directive;
+import com.squarespace.less.model.Expression;
+import com.squarespace.less.model.ExpressionList;
+import com.squarespace.less.model.Extend;
+import com.squarespace.less.model.ExtendList;
+import com.squarespace.less.model.Feature;
+import com.squarespace.less.model.Features;
+import com.squarespace.less.model.FunctionCall;
+import com.squarespace.less.model.Guard;
+import com.squarespace.less.model.HSLColor;
+import com.squarespace.less.model.Import;
+import com.squarespace.less.model.ImportMarker;
+import com.squarespace.less.model.Keyword;
+import com.squarespace.less.model.KeywordColor;
+import com.squarespace.less.model.Media;
+import com.squarespace.less.model.Mixin;
+import com.squarespace.less.model.MixinCall;
+import com.squarespace.less.model.MixinCallArgs;
+import com.squarespace.less.model.MixinParams;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Operation;
+import com.squarespace.less.model.Parameter;
+import com.squarespace.less.model.Paren;
+import com.squarespace.less.model.ParseError;
+import com.squarespace.less.model.Property;
+import com.squarespace.less.model.Quoted;
+import com.squarespace.less.model.RGBColor;
+import com.squarespace.less.model.Ratio;
+import com.squarespace.less.model.Rule;
+import com.squarespace.less.model.Ruleset;
+import com.squarespace.less.model.Selector;
+import com.squarespace.less.model.Selectors;
+import com.squarespace.less.model.Shorthand;
+import com.squarespace.less.model.Stylesheet;
+import com.squarespace.less.model.TextElement;
+import com.squarespace.less.model.UnicodeRange;
+import com.squarespace.less.model.Unit;
+import com.squarespace.less.model.Url;
+import com.squarespace.less.model.ValueElement;
+import com.squarespace.less.model.Variable;
+
+
+/**
+ * Encodes a parsed tree into the binary snapshot format, so it can be stored
+ * and later rebuilt by {@link SnapshotReader} without parsing the source again.
+ *
+ * Positions, file names and block flags are preserved.  User data attached to
+ * nodes is not.  Nodes which are shared by several parents, such as the rules
+ * of an import cached by the {@link com.squarespace.less.ImportCache}, are
+ * written once for each parent.
+ */
+public class SnapshotWriter {
+
+  private static final int INITIAL_CAPACITY = 4096;
+
+  /**
+   * Indices of the strings in the table, starting at 1 since 0 encodes null.
+   */
+  private final Map<String, Integer> stringIndex = new HashMap<>();
+
+  private final List<String> strings = new ArrayList<>();
+
+  private final ByteOutput body = new ByteOutput(INITIAL_CAPACITY);
+
+  private SnapshotWriter() {
+  }
+
+  /**
+   * Encodes the tree rooted at the given node.
+   */
+  public static byte[] write(Node root) {
+    SnapshotWriter writer = new SnapshotWriter();
+    writer.writeNode(root);
+    return writer.finish();
+  }
+
+  /**
+   * Encodes the tree rooted at the given node to the stream.
+   */
+  public static void write(Node root, OutputStream out) throws IOException {
+    out.write(write(root));
+  }
+
+  /**
+   * Assembles the header, string table and body.
+   */
+  private byte[] finish() {
+    ByteOutput out = new ByteOutput(body.size + strings.size() * 16 + 16);
+    out.writeInt(SnapshotFormat.MAGIC);
+    out.writeVarint(SnapshotFormat.VERSION);
+    out.writeVarint(strings.size());
+    for (String str : strings) {
+      byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+      out.writeVarint(bytes.length);
+      out.write(bytes, 0, bytes.length);
+    }
+    out.write(body.buf, 0, body.size);
+    return out.toByteArray();
+  }
+
+  private void writeNode(Node node) {
+    if (node == null) {
+      body.writeByte(NULL);
+      return;
+    }
+
+    switch (node.type()) {
+
+      case BLOCK:
+      case BLOCK_DIRECTIVE:
+      case DETACHED_RULESET:
+      case GENERIC_BLOCK:
+      case MEDIA:
+      case MIXIN:
+      case RULESET:
+      case STYLESHEET:
+        writeBlockGroup(node);
+        break;
+
+      case ARGUMENT:
+      case COMMENT:
+      case DEFINITION:
+      case DIRECTIVE:
+      case FEATURE:
+      case FEATURES:
+      case IMPORT:
+      case IMPORT_MARKER:
+      case MIXIN_ARGS:
+      case MIXIN_CALL:
+      case MIXIN_PARAMS:
+      case PARAMETER:
+      case PARSE_ERROR:
+      case RULE:
+        writeRuleGroup(node);
+        break;
+
+      case ATTRIBUTE_ELEMENT:
+      case COMBINATOR:
+      case CONDITION:
+      case EXTEND:
+      case EXTEND_LIST:
+      case GUARD:
+      case SELECTOR:
+      case SELECTORS:
+      case TEXT_ELEMENT:
+      case VALUE_ELEMENT:
+      case WILDCARD_ELEMENT:
+        writeSelectorGroup(node);
+        break;
+
+      case ALPHA:
+      case ANONYMOUS:
+      case ASSIGNMENT:
+      case COLOR:
+      case COMPOSITE_PROPERTY:
+      case DIMENSION:
+      case EXPRESSION:
+      case EXPRESSION_LIST:
+      case FALSE:
+      case FUNCTION_CALL:
+      case KEYWORD:
+      case OPERATION:
+      case PAREN:
+      case PROPERTY:
+      case QUOTED:
+      case RATIO:
+      case SHORTHAND:
+      case TRUE:
+      case UNICODE_RANGE:
+      case URL:
+      case VARIABLE:
+        writeValueGroup(node);
+        break;
+
+      default:
+        throw new LessInternalException("Serious error: cannot write node of type " + node.type()
+            + " to a snapshot");
+    }
+  }
+
+  /**
+   * Writes blocks and the nodes that own them.
+   */
+  private void writeBlockGroup(Node node) {
+    switch (node.type()) {
+
+      case BLOCK:
+      {
+        Block block = (Block)node;
+        start(SnapshotFormat.BLOCK, node);
+        body.writeVarint(block.flags());
+        writeNode(block.charset());
+        FlexList<Node> rules = block.rules();
+        int size = rules.size();
+        body.writeVarint(size);
+        for (int i = 0; i < size; i++) {
+          writeNode(rules.get(i));
+        }
+        break;
+      }
+
+      case BLOCK_DIRECTIVE:
+        start(SnapshotFormat.BLOCK_DIRECTIVE, node);
+        writeString(((BlockDirective)node).name());
+        writeBlockNode((BlockNode)node);
+        break;
+
+      case DETACHED_RULESET:
+        start(SnapshotFormat.DETACHED_RULESET, node);
+        writeBlockNode((BlockNode)node);
+        break;
+
+      case GENERIC_BLOCK:
+        start(SnapshotFormat.GENERIC_BLOCK, node);
+        writeBlockNode((BlockNode)node);
+        break;
+
+      case MEDIA:
+        start(SnapshotFormat.MEDIA, node);
+        writeNode(((Media)node).features());
+        writeBlockNode((BlockNode)node);
+        break;
+
+      case MIXIN:
+      {
+        Mixin mixin = (Mixin)node;
+        start(SnapshotFormat.MIXIN, node);
+        writeString(mixin.name());
+        writeNode(mixin.params());
+        writeNode(mixin.guard());
+        writeBlockNode(mixin);
+        break;
+      }
+
+      case RULESET:
+        start(SnapshotFormat.RULESET, node);
+        writeNode(((Ruleset)node).selectors());
+        writeBlockNode((BlockNode)node);
+        break;
+
+      case STYLESHEET:
+        start(SnapshotFormat.STYLESHEET, node);
+        writeBlockNode((Stylesheet)node);
+        break;
+
+      default:
+        throw new LessInternalException("Serious error: cannot write node of type " + node.type()
+            + " to a snapshot");
+    }
+  }
+
+  /**
+   * Writes rules, directives and mixin calls, along with their parts.
+   */
+  private void writeRuleGroup(Node node) {
+    switch (node.type()) {
+
+      case ARGUMENT:
+      {
+        Argument argument = (Argument)node;
+        start(SnapshotFormat.ARGUMENT, node);
+        writeString(argument.name());
+        writeNode(argument.value());
+        break;
+      }
+
+      case COMMENT:
+      {
+        Comment comment = (Comment)node;
+        start(SnapshotFormat.COMMENT, node);
+        writeString(comment.body());
+        writeBoolean(comment.block());
+        writeBoolean(comment.newline());
+        break;
+      }
+
+      case DEFINITION:
+      {
+        Definition definition = (Definition)node;
+        start(SnapshotFormat.DEFINITION, node);
+        writeString(definition.name());
+        writeNode(definition.value());
+        writeBoolean(definition.important());
+        writePath(definition.fileName());
+        break;
+      }
+
+      case DIRECTIVE:
+      {
+        Directive directive = (Directive)node;
+        start(SnapshotFormat.DIRECTIVE, node);
+        writeString(directive.name());
+        writeNode(directive.value());
+        writePath(directive.fileName());
+        break;
+      }
+
+      case FEATURE:
+      {
+        Feature feature = (Feature)node;
+        start(SnapshotFormat.FEATURE, node);
+        writeNode(feature.property());
+        writeNode(feature.value());
+        break;
+      }
+
+      case FEATURES:
+        start(SnapshotFormat.FEATURES, node);
+        writeNodes(((Features)node).features());
+        break;
+
+      case IMPORT:
+      {
+        Import imp = (Import)node;
+        start(SnapshotFormat.IMPORT, node);
+        writeNode(imp.path());
+        writeNode(imp.features());
+        writeBoolean(imp.once());
+        writePath(imp.rootPath());
+        writePath(imp.fileName());
+        body.writeVarint(imp.parseOffset());
+        break;
+      }
+
+      case IMPORT_MARKER:
+      {
+        ImportMarker marker = (ImportMarker)node;
+        start(SnapshotFormat.IMPORT_MARKER, node);
+        writeNode(marker.importStatement());
+        writeBoolean(marker.beginning());
+        break;
+      }
+
+      case MIXIN_ARGS:
+      {
+        MixinCallArgs args = (MixinCallArgs)node;
+        start(SnapshotFormat.MIXIN_ARGS, node);
+        body.writeVarint(args.delim());
+        writeNodes(args.args());
+        break;
+      }
+
+      case MIXIN_CALL:
+      {
+        MixinCall call = (MixinCall)node;
+        start(SnapshotFormat.MIXIN_CALL, node);
+        writeNode(call.selector());
+        writeNode(call.args());
+        writeBoolean(call.important());
+        writePath(call.fileName());
+        break;
+      }
+
+      case MIXIN_PARAMS:
+        start(SnapshotFormat.MIXIN_PARAMS, node);
+        writeNodes(((MixinParams)node).params());
+        break;
+
+      case PARAMETER:
+      {
+        Parameter parameter = (Parameter)node;
+        start(SnapshotFormat.PARAMETER, node);
+        writeString(parameter.name());
+        writeNode(parameter.value());
+        writeBoolean(parameter.variadic());
+        break;
+      }
+
+      case PARSE_ERROR:
+      {
+        ParseError error = (ParseError)node;
+        start(SnapshotFormat.PARSE_ERROR, node);
+        writePath(error.filePath());
+        writeString(error.errorMessage());
+        break;
+      }
+
+      case RULE:
+      {
+        Rule rule = (Rule)node;
+        start(SnapshotFormat.RULE, node);
+        writeNode(rule.property());
+        writeNode(rule.value());
+        writeBoolean(rule.important());
+        writePath(rule.fileName());
+        break;
+      }
+
+      default:
+        throw new LessInternalException("Serious error: cannot write node of type " + node.type()
+            + " to a snapshot");
+    }
+  }
+
+  /**
+   * Writes selectors, their parts, and guards.
+   */
+  private void writeSelectorGroup(Node node) {
+    switch (node.type()) {
+
+      case ATTRIBUTE_ELEMENT:
+        start(SnapshotFormat.ATTRIBUTE_ELEMENT, node);
+        writeNodes(((AttributeElement)node).parts());
+        break;
+
+      case COMBINATOR:
+        start(SnapshotFormat.COMBINATOR, node);
+        body.writeVarint(((Combinator)node).combinatorType().ordinal());
+        break;
+
+      case CONDITION:
+      {
+        Condition condition = (Condition)node;
+        start(SnapshotFormat.CONDITION, node);
+        body.writeVarint(condition.operator().ordinal());
+        writeNode(condition.left());
+        writeNode(condition.right());
+        writeBoolean(condition.negate());
+        break;
+      }
+
+      case EXTEND:
+      {
+        Extend extend = (Extend)node;
+        start(SnapshotFormat.EXTEND, node);
+        writeNode(extend.targetSelector());
+        writeBoolean(extend.matchAll());
+        break;
+      }
+
+      case EXTEND_LIST:
+      {
+        ExtendList extendList = (ExtendList)node;
+        start(SnapshotFormat.EXTEND_LIST, node);
+        writeBoolean(extendList.atRuleLevel());
+        writeNodes(extendList.values());
+        break;
+      }
+
+      case GUARD:
+        start(SnapshotFormat.GUARD, node);
+        writeNodes(((Guard)node).conditions());
+        break;
+
+      case SELECTOR:
+      {
+        Selector selector = (Selector)node;
+        start(SnapshotFormat.SELECTOR, node);
+        writeNodes(selector.parts());
+        writeNode(selector.extendList());
+        writeNode(selector.guard());
+        break;
+      }
+
+      case SELECTORS:
+        start(SnapshotFormat.SELECTORS, node);
+        writeNodes(((Selectors)node).selectors());
+        break;
+
+      case TEXT_ELEMENT:
+        start(SnapshotFormat.TEXT_ELEMENT, node);
+        writeString(((TextElement)node).name());
+        break;
+
+      case VALUE_ELEMENT:
+        start(SnapshotFormat.VALUE_ELEMENT, node);
+        writeNode(((ValueElement)node).value());
+        break;
+
+      case WILDCARD_ELEMENT:
+        start(SnapshotFormat.WILDCARD_ELEMENT, node);
+        break;
+
+      default:
+        throw new LessInternalException("Serious error: cannot write node of type " + node.type()
+            + " to a snapshot");
+    }
+  }
+
+  /**
+   * Writes values and expressions.
+   */
+  private void writeValueGroup(Node node) {
+    switch (node.type()) {
+
+      case ALPHA:
+        start(SnapshotFormat.ALPHA, node);
+        writeNode(((Alpha)node).value());
+        break;
+
+      case ANONYMOUS:
+        start(SnapshotFormat.ANONYMOUS, node);
+        writeString(((Anonymous)node).value());
+        break;
+
+      case ASSIGNMENT:
+      {
+        Assignment assignment = (Assignment)node;
+        start(SnapshotFormat.ASSIGNMENT, node);
+        writeString(assignment.name());
+        writeNode(assignment.value());
+        break;
+      }
+
+      case COLOR:
+        writeColor(node);
+        break;
+
+      case COMPOSITE_PROPERTY:
+      {
+        CompositeProperty property = (CompositeProperty)node;
+        start(SnapshotFormat.COMPOSITE_PROPERTY, node);
+        writeNodes(property.segments());
+        body.writeVarint(property.mergeMode().ordinal());
+        break;
+      }
+
+      case DIMENSION:
+      {
+        Dimension dimension = (Dimension)node;
+        Unit unit = dimension.unit();
+        start(SnapshotFormat.DIMENSION, node);
+        body.writeDouble(dimension.value());
+        writeString(unit == null ? null : unit.repr());
+        break;
+      }
+
+      case EXPRESSION:
+        start(SnapshotFormat.EXPRESSION, node);
+        writeNodes(((Expression)node).values());
+        break;
+
+      case EXPRESSION_LIST:
+        start(SnapshotFormat.EXPRESSION_LIST, node);
+        writeNodes(((ExpressionList)node).expressions());
+        break;
+
+      case FALSE:
+        start(SnapshotFormat.FALSE, node);
+        break;
+
+      case FUNCTION_CALL:
+      {
+        FunctionCall call = (FunctionCall)node;
+        start(SnapshotFormat.FUNCTION_CALL, node);
+        writeString(call.name());
+        writeNodes(call.args());
+        writeBoolean(call.noImplementation());
+        break;
+      }
+
+      case KEYWORD:
+        start(SnapshotFormat.KEYWORD, node);
+        writeString(((Keyword)node).value());
+        break;
+
+      case OPERATION:
+      {
+        Operation operation = (Operation)node;
+        start(SnapshotFormat.OPERATION, node);
+        body.writeVarint(operation.operator().ordinal());
+        writeNode(operation.left());
+        writeNode(operation.right());
+        writeBoolean(operation.isSubExpression());
+        writeBoolean(operation.requiresStrictMath());
+        break;
+      }
+
+      case PAREN:
+        start(SnapshotFormat.PAREN, node);
+        writeNode(((Paren)node).value());
+        break;
+
+      case PROPERTY:
+      {
+        Property property = (Property)node;
+        start(SnapshotFormat.PROPERTY, node);
+        writeString(property.name());
+        body.writeVarint(property.mergeMode().ordinal());
+        break;
+      }
+
+      case QUOTED:
+      {
+        Quoted quoted = (Quoted)node;
+        start(SnapshotFormat.QUOTED, node);
+        body.writeVarint(quoted.delimiter());
+        writeBoolean(quoted.escaped());
+        writeNodes(quoted.parts());
+        break;
+      }
+
+      case RATIO:
+        start(SnapshotFormat.RATIO, node);
+        writeString(((Ratio)node).value());
+        break;
+
+      case SHORTHAND:
+      {
+        Shorthand shorthand = (Shorthand)node;
+        start(SnapshotFormat.SHORTHAND, node);
+        writeNode(shorthand.left());
+        writeNode(shorthand.right());
+        break;
+      }
+
+      case TRUE:
+        start(SnapshotFormat.TRUE, node);
+        break;
+
+      case UNICODE_RANGE:
+        start(SnapshotFormat.UNICODE_RANGE, node);
+        writeString(((UnicodeRange)node).value());
+        break;
+
+      case URL:
+        start(SnapshotFormat.URL, node);
+        writeNode(((Url)node).value());
+        break;
+
+      case VARIABLE:
+      {
+        Variable variable = (Variable)node;
+        start(SnapshotFormat.VARIABLE, node);
+        writeString(variable.indirect() ? "@" + variable.name() : variable.name());
+        writeBoolean(variable.curly());
+        writeBoolean(variable.ruleset());
+        break;
+      }
+
+      default:
+        throw new LessInternalException("Serious error: cannot write node of type " + node.type()
+            + " to a snapshot");
+    }
+  }
+
+  private void writeColor(Node node) {
+    if (node instanceof KeywordColor) {
+      KeywordColor color = (KeywordColor)node;
+      start(SnapshotFormat.KEYWORD_COLOR, node);
+      writeString(color.keyword());
+      body.writeVarint(color.red());
+      body.writeVarint(color.green());
+      body.writeVarint(color.blue());
+
+    } else if (node instanceof RGBColor) {
+      RGBColor color = (RGBColor)node;
+      start(SnapshotFormat.RGB_COLOR, node);
+      body.writeVarint(color.red());
+      body.writeVarint(color.green());
+      body.writeVarint(color.blue());
+      body.writeDouble(color.alpha());
+      body.writeVarint((color.fromKeyword() ? COLOR_FROM_KEYWORD : 0) | (color.forceHex() ? COLOR_FORCE_HEX : 0));
+
+    } else if (node instanceof HSLColor) {
+      HSLColor color = (HSLColor)node;
+      start(SnapshotFormat.HSL_COLOR, node);
+      body.writeDouble(color.hue() / 360.0);
+      body.writeDouble(color.saturation());
+      body.writeDouble(color.lightness());
+      body.writeDouble(color.alpha());
+
+    } else {
+      throw new LessInternalException("Serious error: cannot write color " + node.getClass() + " to a snapshot");
+    }
+  }
+
+  /**
+   * Writes the fields common to all block nodes, followed by the block.
+   */
+  private void writeBlockNode(BlockNode node) {
+    body.writeVarint(node.important() ? BLOCK_NODE_IMPORTANT : 0);
+    writePath(node.fileName());
+    writeNode(node.block());
+  }
+
+  /**
+   * Writes the tag and position of a node.
+   */
+  private void start(byte tag, Node node) {
+    body.writeByte(tag);
+    body.writeVarint(node.lineOffset());
+    body.writeVarint(node.charOffset());
+  }
+
+  private void writeNodes(List<? extends Node> nodes) {
+    int size = nodes == null ? 0 : nodes.size();
+    body.writeVarint(size);
+    for (int i = 0; i < size; i++) {
+      writeNode(nodes.get(i));
+    }
+  }
+
+  private void writeBoolean(boolean value) {
+    body.writeByte(value ? 1 : 0);
+  }
+
+  private void writePath(Path path) {
+    writeString(path == null ? null : path.toString());
+  }
+
+  private void writeString(String value) {
+    if (value == null) {
+      body.writeVarint(NULL);
+      return;
+    }
+    Integer index = stringIndex.get(value);
+    if (index == null) {
+      strings.add(value);
+      index = strings.size();
+      stringIndex.put(value, index);
+    }
+    body.writeVarint(index);
+  }
+
+  /**
+   * Growable byte array with methods to write the primitive encodings.
+   */
+  private static class ByteOutput {
+
+    private byte[] buf;
+
+    private int size;
+
+    ByteOutput(int capacity) {
+      this.buf = new byte[capacity];
+    }
+
+    void writeByte(int value) {
+      ensure(1);
+      buf[size++] = (byte)value;
+    }
+
+    void writeVarint(int value) {
+      ensure(5);
+      while ((value & ~0x7f) != 0) {
+        buf[size++] = (byte)((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      buf[size++] = (byte)value;
+    }
+
+    void writeInt(int value) {
+      ensure(4);
+      buf[size++] = (byte)(value >>> 24);
+      buf[size++] = (byte)(value >>> 16);
+      buf[size++] = (byte)(value >>> 8);
+      buf[size++] = (byte)value;
+    }
+
+    void writeDouble(double value) {
+      long bits = Double.doubleToLongBits(value);
+      writeInt((int)(bits >>> 32));
+      writeInt((int)bits);
+    }
+
+    void write(byte[] bytes, int offset, int length) {
+      ensure(length);
+      System.arraycopy(bytes, offset, buf, size, length);
+      size += length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buf, size);
+    }
+
+    private void ensure(int length) {
+      if (size + length > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + length));
+      }
+    }
+
+  }
+
+}
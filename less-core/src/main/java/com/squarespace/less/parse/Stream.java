@@ -24,13 +24,14 @@ import com.squarespace.less.core.Chars;
 
 
 /**
- * Wraps a String and provides an interface for interacting with the sequence of characters.
+ * Wraps a {@link CharSequence} and provides an interface for interacting with the sequence
+ * of characters.  The sequence may be a String or a view over a memory-mapped file.
  */
 public class Stream {
 
   protected static final boolean DEBUG = false;
 
-  protected final String raw;
+  protected final CharSequence raw;
 
   protected final int length;
 
@@ -48,7 +49,7 @@ public class Stream {
    */
   protected int charOffset;
 
-  public Stream(String raw) {
+  public Stream(CharSequence raw) {
     this.raw = raw;
     this.length = raw.length();
   }
@@ -68,7 +69,7 @@ public class Stream {
           index, length, lineOffset, charOffset, esc);
   }
 
-  public String raw() {
+  public CharSequence raw() {
     return raw;
   }
 
@@ -228,11 +229,11 @@ public class Stream {
 
   @Override
   public String toString() {
-    return "Stream(\"" + StringEscapeUtils.escapeJava(raw.substring(index)) + "\")";
+    return "Stream(\"" + StringEscapeUtils.escapeJava(raw.subSequence(index, length).toString()) + "\")";
   }
 
   public String furthest() {
-    return raw.substring(Math.min(furthest, length - 1));
+    return raw.subSequence(Math.min(furthest, length - 1), length).toString();
   }
 
   private void consume(char ch) {
@@ -33,7 +33,7 @@ import com.squarespace.less.model.RGBColor;
  */
 public class ColorBlendingFunctions implements Registry<Function> {
 
-  public static final Function AVERAGE = new Function("average", "cc") {
+  public static final Function AVERAGE = new Function("average", "cc", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor c1 = rgb(args.get(0));
@@ -45,7 +45,7 @@ public class ColorBlendingFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function DIFFERENCE = new Function("difference", "cc") {
+  public static final Function DIFFERENCE = new Function("difference", "cc", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor c1 = rgb(args.get(0));
@@ -57,7 +57,7 @@ public class ColorBlendingFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function EXCLUSION = new Function("exclusion", "cc") {
+  public static final Function EXCLUSION = new Function("exclusion", "cc", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor c1 = rgb(args.get(0));
@@ -69,7 +69,7 @@ public class ColorBlendingFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function HARDLIGHT = new Function("hardlight", "cc") {
+  public static final Function HARDLIGHT = new Function("hardlight", "cc", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor c1 = rgb(args.get(0));
@@ -81,7 +81,7 @@ public class ColorBlendingFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function MULTIPLY = new Function("multiply", "cc") {
+  public static final Function MULTIPLY = new Function("multiply", "cc", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor c1 = rgb(args.get(0));
@@ -93,7 +93,7 @@ public class ColorBlendingFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function NEGATION = new Function("negation", "cc") {
+  public static final Function NEGATION = new Function("negation", "cc", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor c1 = rgb(args.get(0));
@@ -105,7 +105,7 @@ public class ColorBlendingFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function OVERLAY = new Function("overlay", "cc") {
+  public static final Function OVERLAY = new Function("overlay", "cc", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor c1 = rgb(args.get(0));
@@ -117,7 +117,7 @@ public class ColorBlendingFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function SCREEN = new Function("screen", "cc") {
+  public static final Function SCREEN = new Function("screen", "cc", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor c1 = rgb(args.get(0));
@@ -129,7 +129,7 @@ public class ColorBlendingFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function SOFTLIGHT = new Function("softlight", "cc") {
+  public static final Function SOFTLIGHT = new Function("softlight", "cc", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor c1 = rgb(args.get(0));
@@ -35,7 +35,7 @@ import com.squarespace.less.model.Units;
  */
 public class ColorChannelFunctions implements Registry<Function> {
 
-  public static final Function ALPHA = new Function("alpha", "c") {
+  public static final Function ALPHA = new Function("alpha", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor color = rgb(args.get(0));
@@ -43,7 +43,7 @@ public class ColorChannelFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function BLUE = new Function("blue", "c") {
+  public static final Function BLUE = new Function("blue", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor color = rgb(args.get(0));
@@ -51,7 +51,7 @@ public class ColorChannelFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function GREEN = new Function("green", "c") {
+  public static final Function GREEN = new Function("green", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor color = rgb(args.get(0));
@@ -59,28 +59,28 @@ public class ColorChannelFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function HUE = new Function("hue", "c") {
+  public static final Function HUE = new Function("hue", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return new Dimension(hsl(args.get(0)).hue());
     }
   };
 
-  public static final Function LIGHTNESS = new Function("lightness", "c") {
+  public static final Function LIGHTNESS = new Function("lightness", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return new Dimension(Math.round(hsl(args.get(0)).lightness() * 100.0), Units.PERCENTAGE);
     }
   };
 
-  public static final Function LUMA = new Function("luma", "c") {
+  public static final Function LUMA = new Function("luma", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return new Dimension(Math.round(rgb(args.get(0)).luma() * 100.0), Units.PERCENTAGE);
     }
   };
 
-  public static final Function RED = new Function("red", "c") {
+  public static final Function RED = new Function("red", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor color = rgb(args.get(0));
@@ -88,7 +88,7 @@ public class ColorChannelFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function SATURATION = new Function("saturation", "c") {
+  public static final Function SATURATION = new Function("saturation", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return new Dimension(Math.round(hsl(args.get(0)).saturation() * 100.0), Units.PERCENTAGE);
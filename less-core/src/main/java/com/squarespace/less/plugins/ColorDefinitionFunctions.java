@@ -34,7 +34,7 @@ import com.squarespace.less.model.RGBColor;
  */
 public class ColorDefinitionFunctions implements Registry<Function> {
 
-  public static final Function RGB = new Function("rgb", "ppp") {
+  public static final Function RGB = new Function("rgb", "ppp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double red = scaled(args.get(0), 256);
@@ -44,7 +44,7 @@ public class ColorDefinitionFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function RGBA = new Function("rgba", "pppp") {
+  public static final Function RGBA = new Function("rgba", "pppp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double red = scaled(args.get(0), 256);
@@ -55,7 +55,7 @@ public class ColorDefinitionFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function ARGB = new Function("argb", "c") {
+  public static final Function ARGB = new Function("argb", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       RGBColor color = rgb(args.get(0));
@@ -63,7 +63,7 @@ public class ColorDefinitionFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function HSL = new Function("hsl", "ppp") {
+  public static final Function HSL = new Function("hsl", "ppp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double hue = percent(args.get(0));
@@ -73,7 +73,7 @@ public class ColorDefinitionFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function HSLA = new Function("hsla", "pppp") {
+  public static final Function HSLA = new Function("hsla", "pppp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double hue = percent(args.get(0));
@@ -84,7 +84,7 @@ public class ColorDefinitionFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function HSV = new Function("hsv", "ppp") {
+  public static final Function HSV = new Function("hsv", "ppp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double hue = percent(args.get(0));
@@ -94,7 +94,7 @@ public class ColorDefinitionFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function HSVA = new Function("hsva", "pppp") {
+  public static final Function HSVA = new Function("hsva", "pppp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double hue = percent(args.get(0));
@@ -38,7 +38,7 @@ import com.squarespace.less.model.Units;
  */
 public class ColorOperationsFunctions implements Registry<Function> {
 
-  public static final Function CONTRAST = new Function("contrast", "*:ccp") {
+  public static final Function CONTRAST = new Function("contrast", "*:ccp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Node arg = args.get(0);
@@ -60,105 +60,162 @@ public class ColorOperationsFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function DARKEN = new Function("darken", "cp") {
+  public static final Function DARKEN = new Function("darken", "cp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      HSLColor hsl = hsl(args.get(0));
-      double value = number(args.get(1)) * 0.01;
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      HSLColor hsl = hsl(arg0);
+      double value = number(arg1) * 0.01;
       return new HSLColor(hsl.hue() / 360.0, hsl.saturation(), hsl.lightness() - value, hsl.alpha());
     }
   };
 
-  public static final Function DESATURATE = new Function("desaturate", "cp") {
+  public static final Function DESATURATE = new Function("desaturate", "cp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      HSLColor hsl = hsl(args.get(0));
-      double value = number(args.get(1)) * 0.01;
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      HSLColor hsl = hsl(arg0);
+      double value = number(arg1) * 0.01;
       return new HSLColor(hsl.hue() / 360.0, hsl.saturation() - value, hsl.lightness(), hsl.alpha());
     }
   };
 
-  public static final Function FADE = new Function("fade", "cp") {
+  public static final Function FADE = new Function("fade", "cp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      RGBColor rgb = rgb(args.get(0));
-      double alpha = number(args.get(1)) * 0.01;
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      RGBColor rgb = rgb(arg0);
+      double alpha = number(arg1) * 0.01;
       return new RGBColor(rgb.red(), rgb.green(), rgb.blue(), alpha);
     }
   };
 
-  public static final Function FADEIN = new Function("fadein", "cp") {
+  public static final Function FADEIN = new Function("fadein", "cp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      RGBColor rgb = rgb(args.get(0));
-      double amount = number(args.get(1)) * 0.01;
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      RGBColor rgb = rgb(arg0);
+      double amount = number(arg1) * 0.01;
       return new RGBColor(rgb.red(), rgb.green(), rgb.blue(), rgb.alpha() + amount);
     }
   };
 
-  public static final Function FADEOUT = new Function("fadeout", "cp") {
+  public static final Function FADEOUT = new Function("fadeout", "cp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      RGBColor rgb = rgb(args.get(0));
-      double amount = number(args.get(1)) * 0.01;
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      RGBColor rgb = rgb(arg0);
+      double amount = number(arg1) * 0.01;
       return new RGBColor(rgb.red(), rgb.green(), rgb.blue(), rgb.alpha() - amount);
     }
   };
 
-  public static final Function GREYSCALE = new Function("greyscale", "c") {
+  public static final Function GREYSCALE = new Function("greyscale", "c", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      HSLColor hsl = hsl(args.get(0));
+      return invoke1(env, args.get(0));
+    }
+
+    @Override
+    public Node invoke1(ExecEnv env, Node arg0) throws LessException {
+      HSLColor hsl = hsl(arg0);
       return new HSLColor(hsl.hue() / 360.0, 0, hsl.lightness(), hsl.alpha());
     }
   };
 
-  public static final Function LIGHTEN = new Function("lighten", "cp") {
+  public static final Function LIGHTEN = new Function("lighten", "cp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      HSLColor hsl = hsl(args.get(0));
-      double value = number(args.get(1)) * 0.01;
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      HSLColor hsl = hsl(arg0);
+      double value = number(arg1) * 0.01;
       return new HSLColor(hsl.hue() / 360.0, hsl.saturation(), hsl.lightness() + value, hsl.alpha());
     }
   };
 
-  public static final Function MIX = new Function("mix", "cc:d") {
+  public static final Function MIX = new Function("mix", "cc:d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      RGBColor c1 = rgb(args.get(0));
-      RGBColor c2 = rgb(args.get(1));
-      double weight = 0.5;
       if (args.size() == 3) {
-        weight = number(args.get(2)) / 100.0;
+        return invoke3(env, args.get(0), args.get(1), args.get(2));
       }
-      return ColorOperationsFunctions.mix(c1, c2, weight);
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      return ColorOperationsFunctions.mix(rgb(arg0), rgb(arg1), 0.5);
+    }
+
+    @Override
+    public Node invoke3(ExecEnv env, Node arg0, Node arg1, Node arg2) throws LessException {
+      return ColorOperationsFunctions.mix(rgb(arg0), rgb(arg1), number(arg2) / 100.0);
     }
   };
 
-  public static final Function SATURATE = new Function("saturate", "cp") {
+  public static final Function SATURATE = new Function("saturate", "cp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      HSLColor hsl = hsl(args.get(0));
-      double value = number(args.get(1)) * 0.01;
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      HSLColor hsl = hsl(arg0);
+      double value = number(arg1) * 0.01;
       return new HSLColor(hsl.hue() / 360.0, hsl.saturation() + value, hsl.lightness(), hsl.alpha());
     }
   };
 
   // Deprecated from upstream
-  public static final Function SHADE = new Function("shade", "cd") {
+  public static final Function SHADE = new Function("shade", "cd", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      RGBColor c1 = rgb(args.get(0));
-      Dimension dim = (Dimension)args.get(1);
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      RGBColor c1 = rgb(arg0);
+      Dimension dim = (Dimension)arg1;
       return mix(Colors.BLACK, c1, dim.value() / 100.0);
     }
   };
 
-  public static final Function SPIN = new Function("spin", "cp") {
+  public static final Function SPIN = new Function("spin", "cp", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      HSLColor hsl = hsl(args.get(0));
-      Dimension amount = (Dimension)args.get(1);
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      HSLColor hsl = hsl(arg0);
+      Dimension amount = (Dimension)arg1;
       double value = amount.value();
       if (Units.PERCENTAGE.equals(amount.unit())) {
         value = (value / 100.0) * 360;
@@ -171,11 +228,16 @@ public class ColorOperationsFunctions implements Registry<Function> {
   };
 
   // Deprecated from upstream
-  public static final Function TINT = new Function("tint", "cd") {
+  public static final Function TINT = new Function("tint", "cd", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
-      RGBColor c1 = rgb(args.get(0));
-      Dimension dim = (Dimension)args.get(1);
+      return invoke2(env, args.get(0), args.get(1));
+    }
+
+    @Override
+    public Node invoke2(ExecEnv env, Node arg0, Node arg1) throws LessException {
+      RGBColor c1 = rgb(arg0);
+      Dimension dim = (Dimension)arg1;
       double weight = dim.value() / 100.0;
       return mix(Colors.WHITE, c1, weight);
     }
@@ -34,7 +34,7 @@ import com.squarespace.less.model.Node;
  */
 public class ListFunctions implements Registry<Function> {
 
-  public static final Function LENGTH = new Function("length", "*.") {
+  public static final Function LENGTH = new Function("length", "*.", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Node arg = args.get(0);
@@ -53,7 +53,7 @@ public class ListFunctions implements Registry<Function> {
    * TODO: revisit this to ensure the behavior is properly documented somewhere.
    * - phensley
    */
-  public static final Function EXTRACT = new Function("extract", "**.") {
+  public static final Function EXTRACT = new Function("extract", "**.", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Node arg1 = args.get(0);
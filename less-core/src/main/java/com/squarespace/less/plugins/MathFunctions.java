@@ -37,14 +37,14 @@ import com.squarespace.less.model.Units;
 public class MathFunctions implements Registry<Function> {
 
 
-  public static final Function ABS = new Function("abs", "d") {
+  public static final Function ABS = new Function("abs", "d", true) {
     public Node invoke(ExecEnv env, java.util.List<Node> args) throws LessException {
       Dimension dim = (Dimension)args.get(0);
       return new Dimension(Math.abs(dim.value()), dim.unit());
     }
   };
 
-  public static final Function ASIN = new Function("asin", "d") {
+  public static final Function ASIN = new Function("asin", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double value = Math.asin(((Dimension)args.get(0)).value());
@@ -52,7 +52,7 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function ACOS = new Function("acos", "d") {
+  public static final Function ACOS = new Function("acos", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double value = Math.acos(((Dimension)args.get(0)).value());
@@ -60,7 +60,7 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function ATAN = new Function("atan", "d") {
+  public static final Function ATAN = new Function("atan", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double value = Math.atan(((Dimension)args.get(0)).value());
@@ -68,7 +68,7 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function CEIL = new Function("ceil", "d") {
+  public static final Function CEIL = new Function("ceil", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension dim = (Dimension)args.get(0);
@@ -76,14 +76,14 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function COS = new Function("cos", "d") {
+  public static final Function COS = new Function("cos", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return trigResult(TrigFunction.COS, args.get(0));
     }
   };
 
-  public static final Function FLOOR = new Function("floor", "d") {
+  public static final Function FLOOR = new Function("floor", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension dim = (Dimension)args.get(0);
@@ -91,7 +91,7 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function MAX = new Function("max", "*.") {
+  public static final Function MAX = new Function("max", "*.", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension result = calculateMinOrMax(args, false);
@@ -99,7 +99,7 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function MIN = new Function("min", "*.") {
+  public static final Function MIN = new Function("min", "*.", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Node result = calculateMinOrMax(args, true);
@@ -107,7 +107,7 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function MOD = new Function("mod", "dd") {
+  public static final Function MOD = new Function("mod", "dd", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension dividend = (Dimension)args.get(0);
@@ -120,7 +120,7 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function PERCENTAGE = new Function("percentage", "d") {
+  public static final Function PERCENTAGE = new Function("percentage", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension dim = (Dimension)args.get(0);
@@ -128,14 +128,14 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function PI = new Function("pi", "") {
+  public static final Function PI = new Function("pi", "", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return new Dimension(Math.PI);
     }
   };
 
-  public static final Function POW = new Function("pow", "dd") {
+  public static final Function POW = new Function("pow", "dd", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension base = (Dimension)args.get(0);
@@ -145,7 +145,7 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function ROUND = new Function("round", "d:n") {
+  public static final Function ROUND = new Function("round", "d:n", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       double places = 0.0;
@@ -159,14 +159,14 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function SIN = new Function("sin", "d") {
+  public static final Function SIN = new Function("sin", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return trigResult(TrigFunction.SIN, args.get(0));
     }
   };
 
-  public static final Function SQRT = new Function("sqrt", "d") {
+  public static final Function SQRT = new Function("sqrt", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension dim = (Dimension)args.get(0);
@@ -174,7 +174,7 @@ public class MathFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function TAN = new Function("tan", "d") {
+  public static final Function TAN = new Function("tan", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return trigResult(TrigFunction.TAN, args.get(0));
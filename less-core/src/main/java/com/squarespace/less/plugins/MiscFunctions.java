@@ -54,7 +54,7 @@ public class MiscFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function CONVERT = new Function("convert", "d*") {
+  public static final Function CONVERT = new Function("convert", "d*", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension dim = (Dimension)args.get(0);
@@ -68,7 +68,7 @@ public class MiscFunctions implements Registry<Function> {
 
   // TODO: DEFAULT (? maybe a special, since only used in guard expressions)
 
-  public static final Function GET_UNIT = new Function("get-unit", "d") {
+  public static final Function GET_UNIT = new Function("get-unit", "d", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension dim = (Dimension)args.get(0);
@@ -84,7 +84,7 @@ public class MiscFunctions implements Registry<Function> {
 
   // TODO: SVG-GRADIENT
 
-  public static final Function UNIT = new Function("unit", "d:*") {
+  public static final Function UNIT = new Function("unit", "d:*", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Dimension dim = (Dimension)args.get(0);
@@ -44,7 +44,7 @@ import com.squarespace.less.model.Url;
  */
 public class TypeFunctions implements Registry<Function> {
 
-  public static final Function ISCOLOR = new Function("iscolor", "*") {
+  public static final Function ISCOLOR = new Function("iscolor", "*", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return (args.get(0) instanceof BaseColor) ? TRUE : FALSE;
@@ -53,7 +53,7 @@ public class TypeFunctions implements Registry<Function> {
 
   public static final Function ISEM = new DimensionUnitFunction("isem", Units.EM);
 
-  public static final Function ISKEYWORD = new Function("iskeyword", "*") {
+  public static final Function ISKEYWORD = new Function("iskeyword", "*", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       switch (args.get(0).type()) {
@@ -67,7 +67,7 @@ public class TypeFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function ISNUMBER = new Function("isnumber", "*") {
+  public static final Function ISNUMBER = new Function("isnumber", "*", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return (args.get(0) instanceof Dimension) ? TRUE : FALSE;
@@ -80,14 +80,14 @@ public class TypeFunctions implements Registry<Function> {
 
   // TODO: ISRULESET
 
-  public static final Function ISSTRING = new Function("isstring", "*") {
+  public static final Function ISSTRING = new Function("isstring", "*", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return (args.get(0) instanceof Quoted) ? TRUE : FALSE;
     }
   };
 
-  public static final Function ISUNIT = new Function("isunit", "**") {
+  public static final Function ISUNIT = new Function("isunit", "**", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       Node arg = args.get(0);
@@ -117,7 +117,7 @@ public class TypeFunctions implements Registry<Function> {
     }
   };
 
-  public static final Function ISURL = new Function("isurl", "*") {
+  public static final Function ISURL = new Function("isurl", "*", true) {
     @Override
     public Node invoke(ExecEnv env, List<Node> args) throws LessException {
       return (args.get(0) instanceof Url) ? TRUE : FALSE;
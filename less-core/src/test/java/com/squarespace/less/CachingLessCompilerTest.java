@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import static com.squarespace.less.core.SyntaxErrorMaker.importError;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+
+public class CachingLessCompilerTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  private static final String SOURCE = "@import 'b.less'; .a { color: @color; }";
+
+  @Test
+  public void testHits() throws LessException {
+    Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("b.less"), "@import 'c.less'; .b { width: 1px; }");
+    files.put(path("c.less"), "@color: red;");
+
+    CachingLessCompiler compiler = new CachingLessCompiler(COMPILER);
+    LessOptions opts = new LessOptions(true);
+    assertEquals(compiler.compile(SOURCE, context(opts, files), path("a.less")), ".b{width:1px}.a{color:red}");
+    assertEquals(compiler.compile(SOURCE, context(opts, files), path("a.less")), ".b{width:1px}.a{color:red}");
+    assertEquals(compiler.misses(), 1);
+    assertEquals(compiler.hits(), 1);
+    assertEquals(compiler.size(), 1);
+
+    // Different source, path or options are separate entries
+    compiler.compile(SOURCE + " ", context(opts, files), path("a.less"));
+    compiler.compile(SOURCE, context(opts, files), path("x.less"));
+    assertEquals(compiler.compile(SOURCE, context(new LessOptions(false), files), path("a.less")),
+        ".b {\n  width: 1px;\n}\n.a {\n  color: red;\n}\n");
+    assertEquals(compiler.misses(), 4);
+    assertEquals(compiler.size(), 4);
+
+    // Changing a nested import invalidates the entry
+    files.put(path("c.less"), "@color: blue;");
+    assertEquals(compiler.compile(SOURCE, context(opts, files), path("a.less")), ".b{width:1px}.a{color:blue}");
+    assertEquals(compiler.misses(), 5);
+    assertEquals(compiler.compile(SOURCE, context(opts, files), path("a.less")), ".b{width:1px}.a{color:blue}");
+    assertEquals(compiler.hits(), 2);
+  }
+
+  @Test
+  public void testErrors() throws LessException {
+    Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("b.less"), ".b { color: @missing; }");
+
+    CachingLessCompiler compiler = new CachingLessCompiler(COMPILER);
+    LessOptions opts = new LessOptions(true);
+    for (int i = 0; i < 2; i++) {
+      try {
+        compiler.compile(SOURCE, context(opts, files), path("a.less"));
+        fail("expected an error");
+      } catch (LessException e) {
+        // expected
+      }
+    }
+    assertEquals(compiler.misses(), 2);
+    assertEquals(compiler.size(), 0);
+  }
+
+  @Test
+  public void testEviction() throws LessException {
+    Map<Path, String> files = new ConcurrentHashMap<>();
+    LessOptions opts = new LessOptions(true);
+
+    // Bounded by the number of entries
+    CachingLessCompiler compiler = new CachingLessCompiler(COMPILER, 2, 1000);
+    compiler.compile(".a{x:1}", context(opts, files));
+    compiler.compile(".b{x:1}", context(opts, files));
+    compiler.compile(".a{x:1}", context(opts, files));
+    compiler.compile(".c{x:1}", context(opts, files));
+    assertEquals(compiler.size(), 2);
+    assertEquals(compiler.evictions(), 1);
+    compiler.compile(".a{x:1}", context(opts, files));
+    assertEquals(compiler.hits(), 2);
+
+    // Bounded by the total size of the outputs
+    compiler = new CachingLessCompiler(COMPILER, 100, 16);
+    compiler.compile(".a{x:1}", context(opts, files));
+    compiler.compile(".b{x:1}", context(opts, files));
+    compiler.compile(".c{x:1}", context(opts, files));
+    compiler.compile(".d{x:1}", context(opts, files));
+    assertEquals(compiler.size(), 2);
+    assertEquals(compiler.weight(), 14);
+    assertEquals(compiler.evictions(), 2);
+
+    // Outputs heavier than the maximum are not cached
+    compiler.compile(".abcdefghijklmnopq{x:1}", context(opts, files));
+    assertEquals(compiler.size(), 2);
+  }
+
+  @Test
+  public void testCoalescing() throws Exception {
+    final int threads = 8;
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("b.less"), "@color: red;");
+    final LessLoader loader = new HashMapLessLoader(files) {
+      @Override
+      public String load(Path path) throws LessException {
+        // Hold the first compile until every request is waiting on it.
+        if (loads.getAndIncrement() == 0) {
+          try {
+            release.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.load(path);
+      }
+    };
+
+    final CachingLessCompiler compiler = new CachingLessCompiler(COMPILER);
+    final LessOptions opts = new LessOptions(true);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            LessContext ctx = new LessContext(opts, loader);
+            ctx.setFunctionTable(COMPILER.functionTable());
+            return compiler.compile(SOURCE, ctx, path("a.less"));
+          }
+        }));
+      }
+
+      long deadline = System.currentTimeMillis() + 10000;
+      while (compiler.coalesced() < threads - 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      release.countDown();
+      for (Future<String> result : results) {
+        assertEquals(result.get(), ".a{color:red}");
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(compiler.misses(), threads);
+    assertEquals(compiler.coalesced(), threads - 1);
+    assertEquals(compiler.size(), 1);
+
+    // One load by the compile, and one by each waiter checking the import
+    assertTrue(loads.get() <= threads, "loads " + loads.get());
+  }
+
+  @Test
+  public void testCoalescedFailure() throws Exception {
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Map<Path, String> files = new ConcurrentHashMap<>();
+    files.put(path("b.less"), "@color: red;");
+    final LessLoader failing = new HashMapLessLoader(files) {
+      @Override
+      public String load(Path path) throws LessException {
+        // Hold the first compile until the second is waiting on it, then fail.
+        loading.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        throw new LessException(importError(path, "File cannot be read"));
+      }
+    };
+
+    final CachingLessCompiler compiler = new CachingLessCompiler(COMPILER);
+    final LessOptions opts = new LessOptions(true);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<String> first = executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          LessContext ctx = new LessContext(opts, failing);
+          ctx.setFunctionTable(COMPILER.functionTable());
+          return compiler.compile(SOURCE, ctx, path("a.less"));
+        }
+      });
+      assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+      Future<String> second = executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return compiler.compile(SOURCE, context(opts, files), path("a.less"));
+        }
+      });
+      long deadline = System.currentTimeMillis() + 10000;
+      while (compiler.coalesced() < 1 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      release.countDown();
+
+      // The waiter does not inherit the error from the other loader
+      try {
+        first.get();
+        fail("expected an error");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof LessException);
+      }
+      assertEquals(second.get(), ".a{color:red}");
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(compiler.coalesced(), 1);
+  }
+
+  private static LessContext context(LessOptions opts, Map<Path, String> files) {
+    LessContext ctx = new LessContext(opts, new HashMapLessLoader(files));
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+  private static Path path(String name) {
+    return Paths.get(name).toAbsolutePath().normalize();
+  }
+
+}
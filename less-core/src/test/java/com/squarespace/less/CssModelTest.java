@@ -50,4 +50,77 @@ public class CssModelTest {
     Assert.assertEquals(model.render(), expected);
   }
 
+  @Test
+  public void testDuplicates() {
+    LessOptions opts = new LessOptions(true);
+    CssModel model = new CssModel(new LessContext(opts));
+
+    model.push(NodeType.RULESET);
+    model.header(".foo");
+    model.header(".bar");
+    model.header(".foo");
+    model.value("color:red");
+    model.value("margin:0");
+    model.comment("/*color:red*/");
+    model.value("color:red");
+    model.pop();
+
+    model.push(NodeType.RULESET);
+    model.header(".baz");
+    StringBuilder expected = new StringBuilder(".foo,.bar{margin:0;/*color:red*/color:red}.baz{");
+    for (int i = 0; i < 100; i++) {
+      model.value("z" + i + ":1");
+    }
+    for (int i = 0; i < 100; i += 2) {
+      model.value("z" + i + ":1");
+    }
+    for (int i = 1; i < 100; i += 2) {
+      expected.append('z').append(i).append(":1;");
+    }
+    for (int i = 0; i < 100; i += 2) {
+      expected.append('z').append(i).append(":1").append(i < 98 ? ";" : "}");
+    }
+    model.pop();
+    Assert.assertEquals(model.render(), expected.toString());
+  }
+
+  @Test
+  public void testStreaming() throws Exception {
+    LessOptions opts = new LessOptions(true);
+    StringBuilder out = new StringBuilder();
+    CssModel model = new CssModel(new LessContext(opts), out);
+    model.expectValue("@import 'a.css'");
+    model.expectValue("@import 'a.css'");
+
+    model.value("@import 'a.css'");
+    model.push(NodeType.RULESET);
+    model.header(".foo");
+    model.value("color:white");
+    model.pop();
+
+    // The last top-level block is held back until it can no longer be merged.
+    Assert.assertEquals(out.toString(), "");
+
+    model.push(NodeType.RULESET);
+    model.header(".bar");
+    model.push(NodeType.MEDIA);
+    model.header("@media print");
+    model.push(NodeType.RULESET);
+    model.header(".bar");
+    model.value("color:black");
+    model.pop();
+    model.pop();
+    Assert.assertEquals(out.toString(), "");
+
+    model.value("color:red");
+    model.pop();
+    Assert.assertEquals(out.toString(), ".foo{color:white}.bar{color:red}");
+
+    model.value("@import 'a.css'");
+    model.value("@import 'b.css'");
+    model.finish();
+    Assert.assertEquals(out.toString(), ".foo{color:white}.bar{color:red}@media print{.bar{color:black}}"
+        + "@import 'a.css';@import 'b.css'");
+  }
+
 }
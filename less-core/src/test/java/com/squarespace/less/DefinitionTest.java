@@ -18,11 +18,14 @@ package com.squarespace.less;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.fail;
 
 import org.testng.annotations.Test;
 
 import com.squarespace.less.core.LessHarness;
 import com.squarespace.less.core.LessTestBase;
+import com.squarespace.less.exec.ExecEnv;
+import com.squarespace.less.model.Definition;
 import com.squarespace.less.model.Units;
 import com.squarespace.less.parse.Parselets;
 
@@ -51,4 +54,20 @@ public class DefinitionTest extends LessTestBase {
     h.parseEquals("@bpMedium: 1000px;", def("@bpMedium", dim(1000, Units.PX)));
   }
 
+  @Test
+  public void testFailedDereference() {
+    Definition def = def("@a", var("@undefined"));
+    ExecEnv env = new ExecEnv(new LessContext());
+
+    // A failed evaluation must not leave the definition marked as evaluating.
+    for (int i = 0; i < 2; i++) {
+      try {
+        def.dereference(env);
+        fail("Expected LessException");
+      } catch (LessException e) {
+        assertEquals(e.primaryError().type(), ExecuteErrorType.VAR_UNDEFINED);
+      }
+    }
+  }
+
 }
@@ -17,13 +17,23 @@
 package com.squarespace.less;
 
 import static com.squarespace.less.model.Units.PX;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
 
 import org.testng.annotations.Test;
 
 import com.squarespace.less.core.LessHarness;
 import com.squarespace.less.core.LessTestBase;
+import com.squarespace.less.exec.ExecEnv;
+import com.squarespace.less.exec.Function;
+import com.squarespace.less.exec.FunctionTable;
+import com.squarespace.less.model.Anonymous;
 import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Stylesheet;
 import com.squarespace.less.parse.Parselets;
+import com.squarespace.less.plugins.DummyFunctions;
 
 
 public class FunctionCallTest extends LessTestBase {
@@ -43,4 +53,65 @@ public class FunctionCallTest extends LessTestBase {
     h.parseEquals("name(foo=1, bar=2px)", call("name", foo1, bar2px));
   }
 
+  @Test
+  public void testFixedArity() throws LessException {
+    LessHarness h = new LessHarness(Parselets.FUNCTION_CALL);
+
+    // Fixed-arity calls of functions which only implement the list form.
+    h.evalEquals("dummy3(1, 2, 3)", dim(6));
+    h.evalEquals("dummy3(1, 2 + 2, 3)", dim(8));
+    h.evalEquals("mix(#fff, #000)", color("#808080"));
+    h.evalEquals("mix(#fff, #000, 25%)", color("#404040"));
+  }
+
+  @Test
+  public void testRebindsPerFunctionTable() throws LessException {
+    FunctionTable first = table(constant("foo", "first"));
+    FunctionTable second = table(constant("foo", "second"));
+    LessCompiler compiler = new LessCompiler(first);
+    Stylesheet sheet = compiler.parse(".a { x: foo(1); }", context(first));
+
+    assertEquals(compiler.render(sheet, context(first)), ".a {\n  x: first;\n}\n");
+    assertEquals(compiler.render(sheet, context(second)), ".a {\n  x: second;\n}\n");
+    assertEquals(compiler.render(sheet, context(new FunctionTable())), ".a {\n  x: foo(1);\n}\n");
+    assertEquals(compiler.render(sheet, context(first)), ".a {\n  x: first;\n}\n");
+  }
+
+  @Test
+  public void testWarningsEveryCompile() throws LessException {
+    FunctionTable table = table(DummyFunctions.DUMMY3);
+    LessCompiler compiler = new LessCompiler(table);
+    Stylesheet sheet = compiler.parse(".a { x: dummy3(1, 2, 3, 4); }", context(table));
+
+    // Arguments never change, but the warning must be emitted by each compile.
+    for (int i = 0; i < 3; i++) {
+      String result = compiler.render(sheet, context(table));
+      assertTrue(result.contains("ignoring additional args"), result);
+    }
+  }
+
+  private static LessContext context(FunctionTable table) {
+    LessOptions opts = new LessOptions();
+    opts.strict(false);
+    opts.hideWarnings(false);
+    LessContext ctx = new LessContext(opts);
+    ctx.setFunctionTable(table);
+    return ctx;
+  }
+
+  private static FunctionTable table(Function func) {
+    FunctionTable table = new FunctionTable();
+    table.registerSymbol(func);
+    return table;
+  }
+
+  private static Function constant(String name, final String value) {
+    return new Function(name, "*") {
+      @Override
+      public Node invoke(ExecEnv env, List<Node> args) throws LessException {
+        return new Anonymous(value);
+      }
+    };
+  }
+
 }
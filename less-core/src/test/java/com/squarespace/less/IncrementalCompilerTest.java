@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+
+public class IncrementalCompilerTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testChanges() throws LessException {
+    Map<Path, String> files = new HashMap<>();
+    files.put(path("a.less"), "@import 'b.less'; .a { color: @color; }");
+    files.put(path("b.less"), "@import 'c.less'; .b { width: @width; }");
+    files.put(path("c.less"), "@color: red; @width: 1px;");
+    files.put(path("d.less"), "@import 'c.less'; .d { width: @width; }");
+    files.put(path("e.less"), ".e { color: blue; }");
+
+    IncrementalCompiler compiler = newCompiler(files);
+    assertEquals(compiler.compile(path("a.less")), ".b{width:1px}.a{color:red}");
+    assertEquals(compiler.compile(path("d.less")), ".d{width:1px}");
+    assertEquals(compiler.compile(path("e.less")), ".e{color:blue}");
+
+    ImportGraph graph = compiler.graph();
+    assertEquals(graph.imports(path("a.less")), set(path("b.less"), path("c.less")));
+    assertEquals(graph.dependents(path("c.less")), set(path("a.less"), path("d.less")));
+    assertEquals(graph.imports(path("e.less")), Collections.emptySet());
+
+    // Unmodified files don't affect any roots
+    assertTrue(compiler.changed(Arrays.asList(path("c.less"), path("e.less"))).isEmpty());
+
+    files.put(path("c.less"), "@color: green; @width: 2px;");
+    assertEquals(compiler.changed(Arrays.asList(path("c.less"))), set(path("a.less"), path("d.less")));
+    assertEquals(compiler.compile(path("a.less")), ".b{width:2px}.a{color:green}");
+    assertEquals(compiler.compile(path("d.less")), ".d{width:2px}");
+
+    // Only the changed import is parsed, the other reuses the cached parse
+    files.put(path("b.less"), "@import 'c.less'; .b { height: @width; }");
+    assertEquals(compiler.changed(Arrays.asList(path("b.less"))), set(path("a.less")));
+    assertEquals(compiler.compile(path("a.less")), ".b{height:2px}.a{color:green}");
+    assertEquals(compiler.lastStats().importCacheHits(), 1);
+    assertEquals(compiler.lastStats().importCacheMisses(), 1);
+
+    // Roots which are unaffected reuse their parse
+    assertEquals(compiler.compile(path("e.less")), ".e{color:blue}");
+    assertEquals(compiler.lastStats().parseTimeMs(), 0.0);
+  }
+
+  @Test
+  public void testFailedParse() throws LessException {
+    Map<Path, String> files = new HashMap<>();
+    files.put(path("a.less"), "@import 'b.less'; .a { color: @color; }");
+    files.put(path("b.less"), "@color: red; .b {");
+
+    IncrementalCompiler compiler = newCompiler(files);
+    try {
+      compiler.compile(path("a.less"));
+      throw new AssertionError("expected a parse error");
+    } catch (LessException e) {
+      // expected
+    }
+
+    files.put(path("b.less"), "@color: red;");
+    assertEquals(compiler.changed(Arrays.asList(path("b.less"))), set(path("a.less")));
+    assertEquals(compiler.compile(path("a.less")), ".a{color:red}");
+  }
+
+  private static IncrementalCompiler newCompiler(Map<Path, String> files) {
+    LessOptions opts = new LessOptions(true);
+    return new IncrementalCompiler(COMPILER, opts, new HashMapLessLoader(files), new ImportCache());
+  }
+
+  private static Set<Path> set(Path... paths) {
+    return new LinkedHashSet<>(Arrays.asList(paths));
+  }
+
+  private static Path path(String path) {
+    return Paths.get(path).toAbsolutePath().normalize();
+  }
+
+}
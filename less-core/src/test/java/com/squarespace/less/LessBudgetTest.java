@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+
+public class LessBudgetTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testMixinCalls() throws LessException {
+    String source = ".m() { x: 1; } .a { .m(); .m(); .m(); }";
+    LessContext ctx = context();
+    ctx.budget().mixinCallLimit(3);
+    assertEquals(COMPILER.compile(source, ctx), ".a{x:1}");
+    assertEquals(ctx.budget().mixinCalls(), 3);
+
+    ctx = context();
+    ctx.budget().mixinCallLimit(2);
+    assertExceeded(source, ctx, "mixin calls");
+  }
+
+  @Test
+  public void testEvaluatedNodes() throws LessException {
+    String source = ".a { x: 1; y: 2; z: 3; }";
+    LessContext ctx = context();
+    assertEquals(COMPILER.compile(source, ctx), ".a{x:1;y:2;z:3}");
+    assertEquals(ctx.budget().evaluatedNodes(), 4);
+
+    ctx = context();
+    ctx.budget().evaluatedNodeLimit(3);
+    assertExceeded(source, ctx, "evaluated rules");
+  }
+
+  @Test
+  public void testSelectors() throws LessException {
+    String source = ".a, .b, .c { .d, .e { & + & { x: 1; } } }";
+    LessContext ctx = context();
+    COMPILER.compile(source, ctx);
+    // 6 nested and 36 from the wildcards, combined once while indexing
+    // extends and again while rendering
+    assertEquals(ctx.budget().selectors(), 84);
+
+    ctx = context();
+    ctx.budget().selectorLimit(41);
+    assertExceeded(source, ctx, "generated selectors");
+  }
+
+  @Test
+  public void testOutput() throws LessException {
+    String source = ".a { x: 1; y: 2; } .b { z: 3; }";
+    LessContext ctx = context();
+    ctx.budget().outputLimit(13);
+    assertEquals(COMPILER.compile(source, ctx), ".a{x:1;y:2}.b{z:3}");
+
+    ctx = context();
+    ctx.budget().outputLimit(12);
+    assertExceeded(source, ctx, "output characters");
+  }
+
+  @Test
+  public void testImports() throws LessException {
+    Map<Path, String> files = new HashMap<>();
+    files.put(path("b.less"), "@import 'c.less'; .b { x: 1; }");
+    files.put(path("c.less"), ".c { y: 2; }");
+    String source = "@import 'b.less';";
+
+    LessContext ctx = context(files);
+    assertEquals(COMPILER.compile(source, ctx, path("a.less")), ".c{y:2}.b{x:1}");
+    assertEquals(ctx.budget().imported(), 42);
+
+    ctx = context(files);
+    ctx.budget().importLimit(41);
+    try {
+      COMPILER.compile(source, ctx, path("a.less"));
+      fail("Expected BUDGET_EXCEEDED");
+    } catch (LessException e) {
+      assertEquals(e.primaryError().type(), ExecuteErrorType.BUDGET_EXCEEDED);
+    }
+  }
+
+  private static void assertExceeded(String source, LessContext ctx, String resource) {
+    try {
+      COMPILER.compile(source, ctx);
+      fail("Expected BUDGET_EXCEEDED");
+    } catch (LessException e) {
+      LessErrorInfo info = e.primaryError();
+      assertEquals(info.type(), ExecuteErrorType.BUDGET_EXCEEDED);
+      assertEquals(info.getMessage().contains(resource), true, info.getMessage());
+    }
+  }
+
+  private static LessContext context() {
+    return context(new HashMap<Path, String>());
+  }
+
+  private static LessContext context(Map<Path, String> files) {
+    LessContext ctx = new LessContext(new LessOptions(true), new HashMapLessLoader(files));
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+  private static Path path(String name) {
+    return Paths.get(name).toAbsolutePath().normalize();
+  }
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.exec.LessSuiteBase;
+
+
+/**
+ * Verifies that pooled contexts produce the same output as new contexts.
+ */
+public class LessContextPoolTest extends LessSuiteBase {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testReuse() throws LessException {
+    LessContextPool pool = new LessContextPool(new LessOptions(true), null, COMPILER.functionTable());
+    LessContext ctx = pool.acquire();
+    ctx.budget().mixinCallLimit(10);
+    assertEquals(COMPILER.compile(".m() { x: 1; } .a { .m(); }", ctx), ".a{x:1}");
+    assertEquals(ctx.budget().mixinCalls(), 1);
+    pool.release(ctx);
+    assertEquals(pool.idle(), 1);
+
+    LessContext reused = pool.acquire();
+    assertSame(reused, ctx);
+    assertEquals(pool.idle(), 0);
+    assertEquals(reused.budget().mixinCalls(), 0);
+    assertEquals(reused.budget().mixinCallLimit(), 10);
+    assertEquals(reused.stats().parseTimeMs(), 0.0);
+    assertEquals(COMPILER.compile(".b { y: 2; }", reused), ".b{y:2}");
+
+    // A second context is created while the first is in use
+    assertNotSame(pool.acquire(), reused);
+  }
+
+  @Test
+  public void testReuseAfterError() throws LessException {
+    LessContextPool pool = new LessContextPool(new LessOptions(true), null, COMPILER.functionTable());
+    LessContext ctx = pool.acquire();
+    ctx.setDeadline(1, TimeUnit.MINUTES);
+    ctx.cancel();
+    try {
+      COMPILER.compile(".a { .b { color: red; } }", ctx);
+      fail("expected COMPILE_CANCELLED");
+    } catch (LessException e) {
+      assertEquals(e.primaryError().type(), ExecuteErrorType.COMPILE_CANCELLED);
+    }
+    pool.release(ctx);
+
+    ctx = pool.acquire();
+    assertFalse(ctx.cancelled());
+    try {
+      COMPILER.compile(".a { .b { color: @missing; } }", ctx);
+      fail("expected VAR_UNDEFINED");
+    } catch (LessException e) {
+      assertEquals(e.primaryError().type(), ExecuteErrorType.VAR_UNDEFINED);
+    }
+    pool.release(ctx);
+
+    ctx = pool.acquire();
+    assertEquals(COMPILER.compile(".a { .b { color: red; } }", ctx), ".a .b{color:red}");
+  }
+
+  @Test
+  public void testSuite() throws Exception {
+    final Path lessRoot = testSuiteRoot().resolve("less");
+    final Path cssRoot = testSuiteRoot().resolve("css");
+    LessOptions opts = new LessOptions();
+    opts.addImportPath(lessRoot.toString());
+    final LessContextPool pool = new LessContextPool(opts, null, COMPILER.functionTable());
+
+    // Compile the suite twice with the pool on a single worker thread,
+    // alternating between rendering to a string and streaming.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      for (int i = 0; i < 2; i++) {
+        final boolean streaming = i == 1;
+        executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (Path lessPath : LessUtils.getMatchingFiles(lessRoot, GLOB_LESS)) {
+              String source = LessUtils.readFile(lessPath);
+              String[] parts = lessPath.getFileName().toString().split("\\.(?=[^\\.]+$)");
+              Path cssPath = cssRoot.resolve(parts[0] + ".css").normalize();
+              if (source.contains("strict=false") || !cssPath.toFile().exists()) {
+                continue;
+              }
+              LessContext ctx = pool.acquire();
+              try {
+                String actual = null;
+                if (streaming) {
+                  StringBuilder buf = new StringBuilder();
+                  COMPILER.compile(source, ctx, null, buf);
+                  actual = buf.toString();
+                } else {
+                  actual = COMPILER.compile(source, ctx);
+                }
+                assertEquals(actual, LessUtils.readFile(cssPath), lessPath.getFileName().toString());
+              } finally {
+                pool.release(ctx);
+              }
+            }
+            assertEquals(pool.idle(), 1);
+            return null;
+          }
+        }).get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessMetrics.Phase;
+
+
+public class LessMetricsTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testCollector() throws LessException {
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("vars.less"), "@color: #123; @size: 10px;");
+    LessOptions opts = new LessOptions();
+    opts.compress(true);
+    LessContext ctx = new LessContext(opts, new HashMapLessLoader(map));
+    ctx.setFunctionTable(COMPILER.functionTable());
+    LessMetricsCollector metrics = new LessMetricsCollector();
+    ctx.setMetrics(metrics);
+
+    String source = "@import 'vars.less';\n"
+        + ".mixin(@a) { width: percentage(@a); }\n"
+        + ".a { .mixin(0.5); color: darken(@color, 5%); }\n"
+        + ".b:extend(.a) { height: @size; .mixin(0.25); }\n";
+    String result = COMPILER.compile(source, ctx, path("main.less"));
+    assertEquals(result, ".a,.b{width:50%;color:#0b1520}.b{height:10px;width:25%}");
+
+    for (Phase phase : new Phase[] { Phase.PARSE, Phase.IMPORT_IO, Phase.MIXIN_RESOLUTION,
+        Phase.EVALUATION, Phase.EXTEND_INDEX, Phase.EXTEND_MATCH, Phase.RENDER }) {
+      assertTrue(metrics.count(phase) > 0, phase.name());
+    }
+    assertEquals(metrics.count(Phase.PARSE), 1);
+    assertEquals(metrics.count(Phase.IMPORT_IO), 1);
+    assertEquals(metrics.mixinCalls(), 2);
+    assertEquals(metrics.functionCalls().get("percentage"), (Long)2L);
+    assertEquals(metrics.functionCalls().get("darken"), (Long)1L);
+    assertTrue(metrics.variableLookups() >= 4);
+    assertTrue(metrics.framesScanned() >= metrics.variableLookups());
+
+    metrics.reset();
+    assertEquals(metrics.mixinCalls(), 0);
+    assertTrue(metrics.functionCalls().isEmpty());
+  }
+
+  private static Path path(String path) {
+    return Paths.get(path).toAbsolutePath().normalize();
+  }
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.squarespace.less.core.Buffer;
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.exec.LessSuiteBase;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Rule;
+import com.squarespace.less.model.Ruleset;
+import com.squarespace.less.model.Stylesheet;
+import com.squarespace.less.parse.SnapshotReader;
+import com.squarespace.less.parse.SnapshotWriter;
+
+
+/**
+ * Verifies that trees rebuilt from snapshots are identical to the parsed trees.
+ */
+public class LessSnapshotTest extends LessSuiteBase {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  /**
+   * Temporary file or directory created by the current test.
+   */
+  private Path tempPath;
+
+  @AfterMethod
+  public void tearDown() throws IOException {
+    if (tempPath != null) {
+      deleteRecursively(tempPath);
+      tempPath = null;
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Path lessRoot = testSuiteRoot().resolve("less");
+    int count = 0;
+    for (Path lessPath : LessUtils.getMatchingFiles(lessRoot, GLOB_LESS)) {
+      String source = LessUtils.readFile(lessPath);
+      if (source.contains("strict=false")) {
+        continue;
+      }
+      String name = lessPath.getFileName().toString();
+      Stylesheet parsed = COMPILER.parse(source, newContext(lessRoot), lessPath);
+      Stylesheet rebuilt = roundTrip(parsed);
+
+      assertEquals(modelRepr(rebuilt), modelRepr(parsed), name);
+      assertEquals(rebuilt.repr(), parsed.repr(), name);
+      assertEquals(COMPILER.render(rebuilt, newContext(lessRoot)),
+          COMPILER.render(parsed, newContext(lessRoot)), name);
+      count++;
+    }
+    assertTrue(count > 0);
+  }
+
+  @Test
+  public void testFileNames() throws Exception {
+    Path path = Paths.get("/styles/main.less");
+    Stylesheet parsed = COMPILER.parse(".a { color: red; }", newContext(path.getParent()), path);
+    Stylesheet rebuilt = roundTrip(parsed);
+
+    Rule expected = (Rule)((Ruleset)parsed.block().rules().get(0)).block().rules().get(0);
+    Rule actual = (Rule)((Ruleset)rebuilt.block().rules().get(0)).block().rules().get(0);
+    assertEquals(actual.fileName(), expected.fileName());
+    assertEquals(actual.lineOffset(), expected.lineOffset());
+    assertEquals(actual.charOffset(), expected.charOffset());
+    assertEquals(rebuilt.block().flags(), parsed.block().flags());
+  }
+
+  @Test
+  public void testNodeBuilder() throws Exception {
+    Stylesheet parsed = COMPILER.parse(".a { color: red; width: 1px; }", newContext(Paths.get(".")));
+    byte[] data = SnapshotWriter.write(parsed);
+
+    CountingNodeBuilder builder = new CountingNodeBuilder();
+    SnapshotReader.read(data, builder);
+    assertEquals(builder.rules, 2);
+  }
+
+  @Test
+  public void testSnapshotFile() throws Exception {
+    Path dir = Files.createTempDirectory("less-snapshot-test");
+    tempPath = dir;
+    Path file = dir.resolve("libraries.snapshot");
+    Path mixins = Paths.get("/lib/mixins.less");
+    Path colors = Paths.get("/lib/colors.less");
+    String mixinsSource = ".m(@a) { width: @a; }";
+    String colorsSource = "@primary: #fff;";
+    Stylesheet mixinsSheet = COMPILER.parse(mixinsSource, newContext(dir), mixins);
+    Stylesheet colorsSheet = COMPILER.parse(colorsSource, newContext(dir), colors);
+
+    LessSnapshot.Builder builder = new LessSnapshot.Builder();
+    builder.add(mixins, ImportCache.fingerprint(mixinsSource), mixinsSheet);
+    builder.add(colors, ImportCache.fingerprint(colorsSource), colorsSheet);
+    builder.write(file);
+
+    LessSnapshot snapshot = LessSnapshot.open(file);
+    assertEquals(snapshot.paths().size(), 2);
+    assertEquals(snapshot.fingerprint(colors), (Long)ImportCache.fingerprint(colorsSource));
+
+    DefaultNodeBuilder nodeBuilder = new DefaultNodeBuilder();
+    Node node = snapshot.get(mixins, ImportCache.fingerprint(mixinsSource), nodeBuilder);
+    assertEquals(modelRepr(node), modelRepr(mixinsSheet));
+    node = snapshot.get(colors, ImportCache.fingerprint(colorsSource), nodeBuilder);
+    assertEquals(modelRepr(node), modelRepr(colorsSheet));
+
+    // Stale and unknown entries are not returned.
+    assertNull(snapshot.get(colors, ImportCache.fingerprint("@primary: #000;"), nodeBuilder));
+    assertNull(snapshot.get(Paths.get("/lib/other.less"), 0, nodeBuilder));
+
+    // Rewriting the file does not disturb the open snapshot.
+    new LessSnapshot.Builder().add(colors, 1, colorsSheet).write(file);
+    node = snapshot.get(mixins, ImportCache.fingerprint(mixinsSource), nodeBuilder);
+    assertEquals(modelRepr(node), modelRepr(mixinsSheet));
+    assertEquals(LessSnapshot.open(file).paths().size(), 1);
+  }
+
+  @Test
+  public void testRejectVersion() throws Exception {
+    Path file = Files.createTempFile("less-snapshot-test", ".snapshot");
+    tempPath = file;
+    Stylesheet sheet = COMPILER.parse(".a { color: red; }", newContext(file.getParent()));
+    new LessSnapshot.Builder().add(file, 1, sheet).write(file);
+
+    byte[] data = Files.readAllBytes(file);
+    data[7]++;
+    Files.write(file, data);
+    try {
+      LessSnapshot.open(file);
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("version"));
+    }
+
+    data = SnapshotWriter.write(sheet);
+    data[4]++;
+    try {
+      SnapshotReader.read(data, new DefaultNodeBuilder());
+      fail("Expected IOException");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("version"));
+    }
+  }
+
+  private static void deleteRecursively(Path root) throws IOException {
+    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Files.delete(file);
+        return FileVisitResult.CONTINUE;
+      }
+
+      @Override
+      public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+        Files.delete(dir);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static Stylesheet roundTrip(Stylesheet sheet) throws IOException {
+    return (Stylesheet)SnapshotReader.read(SnapshotWriter.write(sheet), new DefaultNodeBuilder());
+  }
+
+  private static String modelRepr(Node node) {
+    Buffer buf = new Buffer(2);
+    node.modelRepr(buf);
+    return buf.toString();
+  }
+
+  private static LessContext newContext(Path importRoot) {
+    LessOptions opts = new LessOptions();
+    opts.addImportPath(importRoot.toString());
+    LessContext ctx = new LessContext(opts);
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+  private static class CountingNodeBuilder extends DefaultNodeBuilder {
+
+    private int rules;
+
+    @Override
+    public Rule buildRule(Node property, Node value, boolean important) {
+      rules++;
+      return super.buildRule(property, value, important);
+    }
+
+  }
+
+}
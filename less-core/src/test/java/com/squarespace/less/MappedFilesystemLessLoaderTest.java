@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.squarespace.less.core.ByteCharSequence;
+
+
+public class MappedFilesystemLessLoaderTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  private Path root;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    root = Files.createTempDirectory("less-mapped-test");
+    root.toFile().deleteOnExit();
+  }
+
+  @Test
+  public void testAscii() throws Exception {
+    Path path = write("a.less", ".a { color: red; }\n.b { width: 1px; }\n");
+    CharSequence chars = new MappedFilesystemLessLoader(0).loadChars(path);
+    assertTrue(chars instanceof ByteCharSequence);
+    assertEquals(chars.toString(), ".a { color: red; }\n.b { width: 1px; }\n");
+    assertEquals(chars.subSequence(5, 16).toString(), "color: red;");
+    assertEquals(chars.subSequence(5, 16).subSequence(7, 10).toString(), "red");
+  }
+
+  @Test
+  public void testUnicode() throws Exception {
+    String source = ".a:before { content: \"é中\"; }\n";
+    Path path = write("a.less", source);
+    CharSequence chars = new MappedFilesystemLessLoader(0).loadChars(path);
+    assertEquals(chars.toString(), source);
+    assertEquals(compile(path, new MappedFilesystemLessLoader(0)), compile(path, new FilesystemLessLoader()));
+  }
+
+  @Test
+  public void testThreshold() throws Exception {
+    Path path = write("a.less", ".a { color: red; }");
+    CharSequence chars = new MappedFilesystemLessLoader(1024).loadChars(path);
+    assertTrue(chars instanceof String);
+  }
+
+  @Test
+  public void testImports() throws Exception {
+    write("b.less", "@color: red;\n.b { width: 1px; }\n");
+    Path path = write("a.less", "@import 'b.less';\n.a { color: @color; }\n");
+    assertEquals(compile(path, new MappedFilesystemLessLoader(0)), ".b{width:1px}.a{color:red}");
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    write("b.less", ".b {\n  width: 1px;\n  .c {\n}\n");
+    Path path = write("a.less", "@import 'b.less';\n");
+    String expected = error(path, new FilesystemLessLoader());
+    assertEquals(error(path, new MappedFilesystemLessLoader(0)), expected);
+
+    try {
+      new MappedFilesystemLessLoader(0).loadChars(root.resolve("missing.less"));
+      fail("expected LessException");
+    } catch (LessException e) {
+      assertTrue(e.getMessage().contains("File cannot be found"));
+    }
+  }
+
+  private Path write(String name, String source) throws IOException {
+    Path path = Files.write(root.resolve(name), source.getBytes(StandardCharsets.UTF_8));
+    path.toFile().deleteOnExit();
+    return path;
+  }
+
+  private String compile(Path path, LessLoader loader) throws LessException {
+    LessContext ctx = new LessContext(new LessOptions(true), loader);
+    return COMPILER.compile(loader.loadChars(path), ctx, path);
+  }
+
+  private String error(Path path, LessLoader loader) {
+    try {
+      compile(path, loader);
+      fail("expected LessException");
+      return null;
+    } catch (LessException e) {
+      return e.getMessage();
+    }
+  }
+
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less;
+
+import static org.testng.Assert.assertEquals;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.core.LessTestBase;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.MixinIndex;
+
+
+public class MixinIndexTest extends LessTestBase {
+
+  @Test
+  public void testCandidates() {
+    Block block = block(
+        mixin(".a"),
+        rule(prop("color"), anon("red")),
+        ruleset(selector(element(".a"), element(".b"))),
+        mixin(".ab"),
+        ruleset(selector(element("#ns"))),
+        ruleset(selector(element(var("@x", true)))),
+        mixin(".a"));
+    MixinIndex index = MixinIndex.build(block.rules());
+
+    assertCandidates(index, ".a", 0, 0, 5, 6);
+    assertCandidates(index, ".a.b", 0, 0, 2, 5, 6);
+    assertCandidates(index, ".ab", 0, 0, 3, 5, 6);
+    assertCandidates(index, "#ns.a", 0, 4, 5);
+    assertCandidates(index, "#ns.a", 3, 0, 5, 6);
+    assertCandidates(index, ".c", 0, 5);
+  }
+
+  @Test
+  public void testInvalidate() {
+    Block block = block();
+    for (int i = 0; i < 20; i++) {
+      block.appendNode(mixin(".m" + i));
+    }
+    MixinIndex index = block.mixinIndex();
+    assertEquals(block.mixinIndex(), index);
+    assertCandidates(index, ".m19", 0, 1, 19);
+
+    block.appendNode(mixin(".m1"));
+    assertCandidates(block.mixinIndex(), ".m1", 0, 1, 20);
+  }
+
+  private static void assertCandidates(MixinIndex index, String callPath, int start, int... expected) {
+    assertEquals(index.candidates(callPath, start), expected, callPath);
+  }
+
+}
@@ -68,6 +68,11 @@ public class OperationTest extends LessTestBase {
     h.evalEquals("1 + blue + #010101", color("#0202ff"));
     h.evalEquals("1 * #123 * 1", color("#123"));
     h.evalEquals("#000 + red + blue", color("#f0f"));
+
+    // color mixed with nested numeric operations
+    h.evalEquals("(1 + 1) * #111", color("#222"));
+    h.evalEquals("#111 * (3 - 1)", color("#222"));
+    h.evalEquals("(#111 + 1) * (1 + 1)", color("#242424"));
   }
 
   @Test
@@ -94,6 +99,7 @@ public class OperationTest extends LessTestBase {
     h.evalEquals("-7 - -3 - -1", dim(-3));
     h.evalEquals("12 / 3", dim(4));
     h.evalEquals("(-(10)) * (-(100)) * (-(1000))", dim(-1000000));
+    h.evalEquals("(2px + 1) * (3 - 1) + (10 / (4 / 2))", dim(11, PX));
 
     // variables
     h.evalEquals("@ten * 2", dim(20));
@@ -114,6 +120,7 @@ public class OperationTest extends LessTestBase {
     // unit conversions with variables
     h.evalEquals("1px + @tenIN + @tenPX", dim(971, PX));
     h.evalEquals("@tenIN + 48px", dim(10.5, IN));
+    h.evalEquals("(@two * @tenPX) + (@ten * (@two - 1))", dim(30, PX));
 
     // incomplete, ignored trailing operators
     h.evalEquals("1+2*", dim(3));
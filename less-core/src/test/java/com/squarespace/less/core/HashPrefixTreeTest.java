@@ -99,7 +99,7 @@ public class HashPrefixTreeTest extends LessTestBase {
     tree.insert(key("b", "c", "d")).append(3);
 
     // Search for a key that will cover many of the entries in the tree.
-    Set<Integer> filter = new HashSet<>();
+    IntSet filter = new IntSet();
     List<String> key = key("a", "b", "c", "d");
     List<HPTMatch<Integer>> matches = tree.searchSubsequences(key, filter);
     for (HPTMatch<Integer> match : matches) {
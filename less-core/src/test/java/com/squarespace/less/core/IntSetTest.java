@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.core;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+
+public class IntSetTest {
+
+  @Test
+  public void testBasics() {
+    IntSet set = new IntSet();
+    assertTrue(set.isEmpty());
+    assertTrue(set.add(0));
+    assertTrue(set.add(17));
+    assertFalse(set.add(17));
+    assertEquals(set.size(), 2);
+    assertTrue(set.contains(0));
+    assertTrue(set.contains(17));
+    assertFalse(set.contains(1));
+
+    set.clear();
+    assertTrue(set.isEmpty());
+    assertFalse(set.contains(0));
+    assertFalse(set.contains(17));
+  }
+
+  @Test
+  public void testGrowth() {
+    Random random = new Random(1309);
+    Set<Integer> expected = new HashSet<>();
+    IntSet set = new IntSet(4);
+    for (int i = 0; i < 5000; i++) {
+      int value = random.nextInt(20000);
+      assertEquals(set.add(value), expected.add(value));
+    }
+    assertEquals(set.size(), expected.size());
+    for (int i = 0; i < 20000; i++) {
+      assertEquals(set.contains(i), expected.contains(i));
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testNegative() {
+    new IntSet().add(-1);
+  }
+
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.ExecuteErrorType;
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.model.Stylesheet;
+
+
+/**
+ * Verifies that compiles stop at their deadline or when cancelled.
+ */
+public class CancellationTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  /**
+   * Each call doubles the work, so this would run for a very long time.
+   */
+  private static final String EXPONENTIAL = ".m(@n) when (@n > 0) { .m(@n - 1); .m(@n - 1); x: @n; }\n"
+      + ".a { .b { .m(40); } }\n";
+
+  @Test
+  public void testDeadline() throws LessException {
+    LessContext ctx = context();
+    ctx.setDeadline(100, TimeUnit.MILLISECONDS);
+    long started = System.nanoTime();
+    try {
+      COMPILER.compile(EXPONENTIAL, ctx);
+      fail("expected DEADLINE_EXCEEDED");
+    } catch (LessException e) {
+      assertEquals(e.primaryError().type(), ExecuteErrorType.DEADLINE_EXCEEDED);
+      assertFalse(e.errorContext().isEmpty());
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    assertTrue(elapsed < 5000, "compile took " + elapsed + "ms to stop");
+  }
+
+  @Test
+  public void testNoDeadline() throws LessException {
+    LessContext ctx = context();
+    ctx.setDeadline(1, TimeUnit.MINUTES);
+    ctx.setDeadline(0, TimeUnit.MILLISECONDS);
+    assertEquals(COMPILER.compile(".m(@n) when (@n > 0) { .m(@n - 1); x: @n; }\n.a { .m(2); }", ctx),
+        ".a {\n  x: 1;\n  x: 2;\n}\n");
+  }
+
+  @Test
+  public void testCancelled() throws LessException {
+    LessContext ctx = context();
+    ctx.cancel();
+    assertTrue(ctx.cancelled());
+    try {
+      COMPILER.compile(".a { color: red; }", ctx);
+      fail("expected COMPILE_CANCELLED");
+    } catch (LessException e) {
+      assertEquals(e.primaryError().type(), ExecuteErrorType.COMPILE_CANCELLED);
+    }
+  }
+
+  @Test
+  public void testCancelledDuringRender() throws LessException {
+    LessContext ctx = context();
+    Stylesheet expanded = COMPILER.expand(COMPILER.parse(".a { .b { color: red; } }", ctx), ctx);
+    ctx.cancel();
+    try {
+      LessRenderer.render(ctx, expanded);
+      fail("expected COMPILE_CANCELLED");
+    } catch (LessException e) {
+      assertEquals(e.primaryError().type(), ExecuteErrorType.COMPILE_CANCELLED);
+      assertEquals(e.errorContext().peekFirst(), expanded);
+    }
+  }
+
+  @Test
+  public void testCancelFromAnotherThread() throws Exception {
+    final LessContext ctx = context();
+    Thread canceller = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          // fall through
+        }
+        ctx.cancel();
+      }
+    };
+    canceller.start();
+    try {
+      COMPILER.compile(EXPONENTIAL, ctx);
+      fail("expected COMPILE_CANCELLED");
+    } catch (LessException e) {
+      assertEquals(e.primaryError().type(), ExecuteErrorType.COMPILE_CANCELLED);
+      assertFalse(e.errorContext().isEmpty());
+    } finally {
+      canceller.join();
+    }
+  }
+
+  private static LessContext context() {
+    LessContext ctx = new LessContext();
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.model.BaseColor;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.Dimension;
+import com.squarespace.less.model.FunctionCall;
+import com.squarespace.less.model.Node;
+import com.squarespace.less.model.Operation;
+import com.squarespace.less.model.Rule;
+import com.squarespace.less.model.Ruleset;
+import com.squarespace.less.model.Stylesheet;
+
+
+/**
+ * Verifies that folded stylesheets produce the same output as evaluating them.
+ */
+public class ConstantFolderTest extends LessSuiteBase {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testFolding() throws LessException {
+    String source = "@w: (960px / 12);\n"
+        + ".a { width: (960px / 12); color: darken(#336699, 10%); p: percentage(0.5); "
+        + "q: e('x'); m: @w * (1 + 2); }\n";
+    Stylesheet sheet = COMPILER.parse(source, context(true));
+    Block block = sheet.block();
+    assertTrue(((Definition)block.rules().get(0)).value() instanceof Dimension);
+
+    Block ruleset = ((Ruleset)block.rules().get(1)).block();
+    assertTrue(value(ruleset, 0) instanceof Dimension);
+    assertTrue(value(ruleset, 1) instanceof BaseColor);
+    assertTrue(value(ruleset, 2) instanceof Dimension);
+
+    // Impure functions and variables are left for the evaluator
+    assertTrue(value(ruleset, 3) instanceof FunctionCall);
+    Operation operation = (Operation)value(ruleset, 4);
+    assertTrue(operation.right() instanceof Dimension);
+
+    String expected = ".a{width:80px;color:#264c73;p:50%;q:x;m:240px}";
+    assertEquals(COMPILER.render(sheet, context(true)), expected);
+    assertEquals(COMPILER.compile(source, context(false)), expected);
+  }
+
+  @Test
+  public void testErrors() {
+    // Operations which raise errors or warnings are not folded, so they are
+    // reported by the evaluator.
+    String[] sources = new String[] {
+      ".a { x: 1px / 0; }",
+      ".a { x: 1px + #fff; }",
+      ".a { x: 1px + 1s; }",
+      ".a { x: percentage(1px, 2px); }",
+      ".a { x: darken(1px, 10%); }"
+    };
+    for (String source : sources) {
+      assertEquals(compile(source, null, true), compile(source, null, false), source);
+    }
+  }
+
+  @Test
+  public void testSuite() throws Exception {
+    Path lessRoot = testSuiteRoot().resolve("less");
+    for (Path lessPath : LessUtils.getMatchingFiles(lessRoot, GLOB_LESS)) {
+      String source = LessUtils.readFile(lessPath);
+      if (source.contains("strict=false")) {
+        continue;
+      }
+      String name = lessPath.getFileName().toString();
+      assertEquals(compile(source, lessRoot, true), compile(source, lessRoot, false), name);
+    }
+  }
+
+  private static Node value(Block block, int index) {
+    return ((Rule)block.rules().get(index)).value();
+  }
+
+  private static String compile(String source, Path importRoot, boolean fold) {
+    LessContext ctx = context(fold);
+    if (importRoot != null) {
+      ctx.options().addImportPath(importRoot.toString());
+    }
+    try {
+      return COMPILER.compile(source, ctx);
+    } catch (LessException e) {
+      return "error: " + e.getMessage();
+    }
+  }
+
+  private static LessContext context(boolean fold) {
+    LessOptions opts = new LessOptions(true);
+    opts.foldConstants(fold);
+    LessContext ctx = new LessContext(opts);
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessOptions;
+
+
+/**
+ * Verifies the size-reducing rules applied to compressed output.
+ */
+public class CssOptimizerTest {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testMergeable() {
+    assertTrue(CssOptimizer.mergeable(".a .b > c"));
+    assertTrue(CssOptimizer.mergeable("a:hover::before"));
+    assertTrue(CssOptimizer.mergeable(".a:not(.b:first-child)"));
+    assertTrue(CssOptimizer.mergeable("a[href^='http:']"));
+    assertTrue(CssOptimizer.mergeable(".md\\:flex"));
+
+    assertFalse(CssOptimizer.mergeable("::-moz-selection"));
+    assertFalse(CssOptimizer.mergeable("::selection"));
+    assertFalse(CssOptimizer.mergeable("a:focus-visible"));
+  }
+
+  @Test
+  public void testOverrideKey() {
+    assertEquals(CssOptimizer.overrideKey("color:red"), "color:#");
+    assertEquals(CssOptimizer.overrideKey("color:#abc !important"), "color:#");
+    assertEquals(CssOptimizer.overrideKey("margin:0 1px/2em,auto"), "margin:<number> <length>/<length>,auto");
+    assertEquals(CssOptimizer.overrideKey("width:10vw"), "width:<number>vw");
+    assertEquals(CssOptimizer.overrideKey("color:#abcd"), "color:#abcd");
+
+    assertNull(CssOptimizer.overrideKey("background:rgba(0,0,0,.5)"));
+    assertNull(CssOptimizer.overrideKey("display:-webkit-box"));
+    assertNull(CssOptimizer.overrideKey("font-family:\"a b\""));
+    assertNull(CssOptimizer.overrideKey("*zoom:1"));
+    assertNull(CssOptimizer.overrideKey("@import url(a.css)"));
+  }
+
+  @Test
+  public void testOverridden() throws Exception {
+    assertCompiles(".a { color: red; margin: 1px; color: #333; margin: 2em; }", ".a{color:#333;margin:2em}");
+    assertCompiles(".a { color: #fff !important; color: #000; }", ".a{color:#fff !important;color:#000}");
+    assertCompiles(".a { color: #fff; color: #000 !important; }", ".a{color:#000 !important}");
+
+    // Fallbacks are kept
+    assertCompiles(".a { display: -webkit-box; display: flex; }", ".a{display:-webkit-box;display:flex}");
+    assertCompiles(".a { color: red; color: rgba(0, 0, 0, .5); }", ".a{color:red;color:rgba(0,0,0,.5)}");
+    assertCompiles(".a { width: 10px; width: 10vw; }", ".a{width:10px;width:10vw}");
+  }
+
+  @Test
+  public void testMergeRulesets() throws Exception {
+    assertCompiles(".a { x: 1; } .b { x: 1; } .a { x: 1; }", ".a,.b{x:1}");
+    assertCompiles(".a { x: 1; } .b { x: 2; } .c { x: 1; }", ".a{x:1}.b{x:2}.c{x:1}");
+    assertCompiles("@media print { .a { x: 1; } .b { x: 1; } }", "@media print{.a,.b{x:1}}");
+    assertCompiles("::-moz-selection { x: 1; } ::selection { x: 1; }", "::-moz-selection{x:1}::selection{x:1}");
+    assertCompiles("@font-face { x: 1; } @font-face { x: 1; }", "@font-face{x:1}@font-face{x:1}");
+  }
+
+  @Test
+  public void testMergeMedia() throws Exception {
+    assertCompiles(".a { @media print { x: 1; } } .b { @media print { y: 2; } }", "@media print{.a{x:1}.b{y:2}}");
+    assertCompiles(".a { @media print { x: 1; } } .b { y: 2; @media print { y: 2; } }",
+        "@media print{.a{x:1}}.b{y:2}@media print{.b{y:2}}");
+    assertCompiles("@media print { .a { x: 1; } } @media screen { .b { x: 1; } }",
+        "@media print{.a{x:1}}@media screen{.b{x:1}}");
+  }
+
+  @Test
+  public void testZeroUnits() throws Exception {
+    assertCompiles(".a { margin: 0px 0em 1px; top: -0px; x: 0%, 0s 0px; }", ".a{margin:0 0 1px;top:0;x:0%,0s 0}");
+    assertCompiles(".a { flex: 1 1 0px; --x: 0px; y: foo(0px); }", ".a{flex:1 1 0px;--x:0px;y:foo(0px)}");
+  }
+
+  private static void assertCompiles(String source, String expected) throws Exception {
+    assertEquals(COMPILER.compile(source, context()), expected);
+
+    // Output written as blocks are completed must be the same
+    StringBuilder out = new StringBuilder();
+    COMPILER.compile(source, context(), null, out);
+    assertEquals(out.toString(), expected);
+  }
+
+  private static LessContext context() {
+    LessContext ctx = new LessContext(new LessOptions(true));
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+}
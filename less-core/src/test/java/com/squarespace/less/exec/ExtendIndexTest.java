@@ -37,7 +37,7 @@ import com.squarespace.less.parse.Parselets;
 public class ExtendIndexTest extends LessTestBase {
 
   @Test
-  public void testBasicSearch() {
+  public void testBasicSearch() throws LessException {
 
     ExtendList list = new ExtendList(false);
 
@@ -61,7 +61,7 @@ public class ExtendIndexTest extends LessTestBase {
   }
 
   @Test
-  public void testCombinatorPrefix() {
+  public void testCombinatorPrefix() throws LessException {
     ExtendList list = new ExtendList(false);
 
     Selector selector = selector(element(".a"), comb(CHILD), element(".b"));
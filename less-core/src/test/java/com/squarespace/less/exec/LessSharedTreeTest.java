@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.model.Stylesheet;
+
+
+/**
+ * Verifies that a parsed stylesheet is left untouched by evaluation, and can be
+ * rendered by many threads at once.
+ */
+public class LessSharedTreeTest extends LessSuiteBase {
+
+  private static final int THREADS = 4;
+
+  private static final int ITERATIONS = 3;
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testConcurrentRender() throws Exception {
+    Path rootPath = testSuiteRoot();
+    Path lessRoot = rootPath.resolve("less");
+    Path cssRoot = rootPath.resolve("css");
+
+    List<String> names = new ArrayList<>();
+    List<Stylesheet> sheets = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    for (Path lessPath : LessUtils.getMatchingFiles(lessRoot, GLOB_LESS)) {
+      String source = LessUtils.readFile(lessPath);
+      if (source.contains("strict=false")) {
+        continue;
+      }
+      String[] parts = lessPath.getFileName().toString().split("\\.(?=[^\\.]+$)");
+      Path cssPath = cssRoot.resolve(parts[0] + ".css").normalize();
+      if (!cssPath.toFile().exists()) {
+        continue;
+      }
+      names.add(lessPath.getFileName().toString());
+      sheets.add(COMPILER.parse(source, newContext(lessRoot)));
+      expected.add(LessUtils.readFile(cssPath));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(executor.submit(new Renderer(sheets, lessRoot)));
+      }
+      for (Future<List<String>> future : futures) {
+        List<String> actual = future.get();
+        for (int i = 0; i < names.size(); i++) {
+          assertEquals(actual.get(i), expected.get(i), names.get(i));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static LessContext newContext(Path importRoot) {
+    LessOptions opts = new LessOptions();
+    opts.addImportPath(importRoot.toString());
+    LessContext ctx = new LessContext(opts);
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+  private static class Renderer implements Callable<List<String>> {
+
+    private final List<Stylesheet> sheets;
+
+    private final Path importRoot;
+
+    Renderer(List<Stylesheet> sheets, Path importRoot) {
+      this.sheets = sheets;
+      this.importRoot = importRoot;
+    }
+
+    @Override
+    public List<String> call() throws LessException, IOException {
+      List<String> result = null;
+      for (int i = 0; i < ITERATIONS; i++) {
+        result = new ArrayList<>();
+        for (Stylesheet sheet : sheets) {
+          result.add(COMPILER.render(sheet, newContext(importRoot)));
+        }
+      }
+      return result;
+    }
+
+  }
+
+}
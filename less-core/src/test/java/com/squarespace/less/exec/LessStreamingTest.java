@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.model.Stylesheet;
+
+
+/**
+ * Verifies that streaming output to a sink matches the output rendered to a string.
+ */
+public class LessStreamingTest extends LessSuiteBase {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testDuplicates() throws Exception {
+    String source = "@charset 'utf-8';\n"
+        + "@import url('a.css');\n"
+        + "/* sep */\n"
+        + ".a { color: red; }\n"
+        + "/* sep */\n"
+        + ".b { color: blue; @media print { color: black; } }\n"
+        + "@namespace foo;\n"
+        + "/* sep */\n"
+        + "@namespace foo;\n"
+        + ".c { color: green; }\n";
+    assertStreaming(source, false);
+    assertStreaming(source, true);
+  }
+
+  @Test
+  public void testSuite() throws Exception {
+    Path lessRoot = testSuiteRoot().resolve("less");
+    for (Path lessPath : LessUtils.getMatchingFiles(lessRoot, GLOB_LESS)) {
+      String source = LessUtils.readFile(lessPath);
+      if (source.contains("strict=false")) {
+        continue;
+      }
+      String name = lessPath.getFileName().toString();
+      for (boolean compress : new boolean[] { false, true }) {
+        Stylesheet sheet = parse(source, lessRoot);
+        String expected;
+        try {
+          expected = COMPILER.render(sheet, context(compress, lessRoot));
+        } catch (LessException e) {
+          continue;
+        }
+        StringBuilder out = new StringBuilder();
+        COMPILER.render(sheet, context(compress, lessRoot), out);
+        assertEquals(out.toString(), expected, name);
+      }
+    }
+  }
+
+  private static void assertStreaming(String source, boolean compress) throws Exception {
+    String expected = COMPILER.compile(source, context(compress, null));
+    StringBuilder out = new StringBuilder();
+    COMPILER.compile(source, context(compress, null), null, out);
+    assertEquals(out.toString(), expected);
+  }
+
+  private static LessContext context(boolean compress, Path importRoot) {
+    LessOptions opts = new LessOptions(compress);
+    if (importRoot != null) {
+      opts.addImportPath(importRoot.toString());
+    }
+    LessContext ctx = new LessContext(opts);
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+}
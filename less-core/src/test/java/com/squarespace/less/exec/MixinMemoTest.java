@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.core.LessUtils;
+
+
+/**
+ * Verifies that memoized mixin calls produce the same output as executing them.
+ */
+public class MixinMemoTest extends LessSuiteBase {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testPureMixin() throws LessException {
+    LessContext ctx = context(true);
+    String source = "@base: 2px;\n"
+        + ".box(@w; @h: 1px) { width: @w; height: @h; border: @base; .inner { x: @w * 2; } }\n"
+        + ".a { .box(10px); }\n"
+        + ".b { .box(10px); }\n"
+        + ".c { .box(10px; 1px); }\n"
+        + ".d { .box(20px); }\n";
+    String expected = ".a{width:10px;height:1px;border:2px}.a .inner{x:20px}"
+        + ".b{width:10px;height:1px;border:2px}.b .inner{x:20px}"
+        + ".c{width:10px;height:1px;border:2px}.c .inner{x:20px}"
+        + ".d{width:20px;height:1px;border:2px}.d .inner{x:40px}";
+    assertEquals(COMPILER.compile(source, ctx), expected);
+    assertEquals(ctx.stats().mixinMemoMisses(), 3);
+    assertEquals(ctx.stats().mixinMemoHits(), 1);
+    assertEquals(COMPILER.compile(source, context(false)), expected);
+  }
+
+  @Test
+  public void testGuards() throws LessException {
+    LessContext ctx = context(true);
+    String source = ".m(@a) when (@a > 1) { big: @a; }\n"
+        + ".m(@a) when (@a <= 1) { small: @a; }\n"
+        + ".a { .m(2); .m(1); }\n"
+        + ".b { .m(2); .m(1); }\n";
+    assertEquals(COMPILER.compile(source, ctx), ".a,.b{big:2;small:1}");
+    assertEquals(ctx.stats().mixinMemoMisses(), 4);
+    assertEquals(ctx.stats().mixinMemoHits(), 4);
+  }
+
+  @Test
+  public void testImpureMixin() throws LessException {
+    LessContext ctx = context(true);
+    String source = ".m() { color: @c; }\n"
+        + ".n() { .m(); }\n"
+        + ".a { @c: red; .m(); .n(); }\n"
+        + ".b { @c: blue; .m(); .n(); }\n";
+    assertEquals(COMPILER.compile(source, ctx), ".a{color:red}.b{color:blue}");
+    assertEquals(ctx.stats().mixinMemoHits(), 0);
+  }
+
+  @Test
+  public void testCallerScope() throws LessException {
+    // Mixin is called before its closure is captured, so variables are
+    // resolved against the caller's scope.
+    LessContext ctx = context(true);
+    String source = ".a { .m(); }\n"
+        + ".b { @c: blue; .m(); }\n"
+        + ".m() { color: @c; }\n"
+        + "@c: red;\n";
+    assertEquals(COMPILER.compile(source, ctx), ".a{color:red}.b{color:blue}");
+    assertEquals(ctx.stats().mixinMemoHits(), 0);
+  }
+
+  @Test
+  public void testSuite() throws Exception {
+    Path rootPath = testSuiteRoot();
+    Path lessRoot = rootPath.resolve("less");
+    for (Path lessPath : LessUtils.getMatchingFiles(lessRoot, GLOB_LESS)) {
+      String source = LessUtils.readFile(lessPath);
+      if (source.contains("strict=false")) {
+        continue;
+      }
+      String name = lessPath.getFileName().toString();
+      String expected = compile(source, lessRoot, false);
+      assertEquals(compile(source, lessRoot, true), expected, name);
+    }
+  }
+
+  private static String compile(String source, Path importRoot, boolean memoize) {
+    LessContext ctx = context(memoize);
+    ctx.options().addImportPath(importRoot.toString());
+    try {
+      return COMPILER.compile(source, ctx);
+    } catch (LessException e) {
+      return "error: " + e.getMessage();
+    }
+  }
+
+  private static LessContext context(boolean memoize) {
+    LessOptions opts = new LessOptions(true);
+    opts.memoizeMixins(memoize);
+    LessContext ctx = new LessContext(opts);
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+}
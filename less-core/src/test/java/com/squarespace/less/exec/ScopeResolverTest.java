@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2017 SQUARESPACE, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.squarespace.less.exec;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.file.Path;
+
+import org.testng.annotations.Test;
+
+import com.squarespace.less.LessCompiler;
+import com.squarespace.less.LessContext;
+import com.squarespace.less.LessException;
+import com.squarespace.less.LessOptions;
+import com.squarespace.less.core.LessUtils;
+import com.squarespace.less.model.Block;
+import com.squarespace.less.model.Definition;
+import com.squarespace.less.model.Rule;
+import com.squarespace.less.model.Ruleset;
+import com.squarespace.less.model.Stylesheet;
+import com.squarespace.less.model.Variable;
+import com.squarespace.less.parse.LessParser;
+
+
+/**
+ * Verifies that variables resolved by lexical slot evaluate the same as
+ * variables looked up by name.
+ */
+public class ScopeResolverTest extends LessSuiteBase {
+
+  private static final LessCompiler COMPILER = new LessCompiler();
+
+  @Test
+  public void testSlots() throws LessException {
+    Stylesheet sheet = COMPILER.parse("@a: 1; .b { @a: 2; @c: @a; x: @a; y: @d; }", context());
+    Block block = ((Ruleset)sheet.block().rules().get(1)).block();
+    Variable c = (Variable)((Definition)block.rules().get(1)).value();
+    Variable x = (Variable)((Rule)block.rules().get(2)).value();
+    Variable y = (Variable)((Rule)block.rules().get(3)).value();
+
+    assertNotNull(c.slot());
+    assertEquals(c.slot().depth(), 0);
+    assertEquals(c.slot().index(), 0);
+    assertEquals(x.slot().depth(), 0);
+    assertEquals(x.slot().scope(0), block);
+    assertEquals(x.slot().scope(1), sheet.block());
+    assertNull(y.slot());
+  }
+
+  @Test
+  public void testScoping() throws LessException {
+    // Shadowing, last definition wins
+    assertCompiles("@a: 1; .b { @a: 2; x: @a; } .c { x: @a; @a: 3; @a: 4; }", ".b{x:2}.c{x:4}");
+
+    // Definitions are lazy, so are evaluated in the scope that references them
+    assertCompiles(".a { @b: 1; @a: @b; .c { @b: 2; x: @a; } }", ".a .c{x:2}");
+
+    // Variables defined by mixin calls shadow the enclosing scopes
+    assertCompiles("@a: 1; .m() { @a: 2; } .b { .m(); x: @a; } .c { x: @a; }", ".b{x:2}.c{x:1}");
+    assertCompiles("@a: 1; .m() { @b: @a; } .b { @a: 2; .c { .m(); x: @b; } }", ".b .c{x:1}");
+
+    // Rulesets called as mixins resolve against their closure
+    assertCompiles("@a: 1; .r { x: @a; } .b { @a: 2; .r; }", ".r,.b{x:1}");
+    assertCompiles("@a: 1; .m(@a) { x: @a; y: @b; @b: @a; } .b { .m(3); }", ".b{x:3;y:3}");
+
+    // Detached rulesets
+    assertCompiles("@a: 1; @r: { x: @a; @a: 2; }; .b { @r(); }", ".b{x:2}");
+  }
+
+  @Test
+  public void testTracing() throws LessException {
+    // Tracing inserts markers ahead of the rules of each mixin call.
+    String[] sources = new String[] {
+      ".m() { @a: 1px; @b: 2px; width: @b; } .x { .m(); }",
+      ".r { @a: 1px; @b: 2px; width: @b; } .x { .r; }"
+    };
+    for (String source : sources) {
+      LessContext ctx = context();
+      ctx.options().tracing(true);
+      String result = COMPILER.compile(source, ctx);
+      assertTrue(result.contains(".x{/*"), result);
+      assertTrue(result.contains("width:2px"), result);
+    }
+  }
+
+  @Test
+  public void testSuite() throws Exception {
+    Path lessRoot = testSuiteRoot().resolve("less");
+    for (Path lessPath : LessUtils.getMatchingFiles(lessRoot, GLOB_LESS)) {
+      String source = LessUtils.readFile(lessPath);
+      if (source.contains("strict=false")) {
+        continue;
+      }
+      String name = lessPath.getFileName().toString();
+      assertEquals(compile(source, lessRoot, true), compile(source, lessRoot, false), name);
+    }
+  }
+
+  private static void assertCompiles(String source, String expected) throws LessException {
+    assertEquals(COMPILER.compile(source, context()), expected);
+  }
+
+  private static String compile(String source, Path importRoot, boolean resolve) {
+    LessContext ctx = context();
+    ctx.options().addImportPath(importRoot.toString());
+    try {
+      LessParser parser = new LessParser(ctx);
+      parser.parse(source, null);
+      Stylesheet sheet = parser.stylesheet();
+      if (resolve) {
+        ScopeResolver.resolve(sheet);
+      }
+      return COMPILER.render(sheet, ctx);
+    } catch (LessException e) {
+      return "error: " + e.getMessage();
+    }
+  }
+
+  private static LessContext context() {
+    LessContext ctx = new LessContext(new LessOptions(true));
+    ctx.setFunctionTable(COMPILER.functionTable());
+    return ctx;
+  }
+
+}
@@ -24,20 +24,29 @@ import static org.testng.Assert.fail;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.testng.annotations.Test;
 
 import com.squarespace.less.HashMapLessLoader;
+import com.squarespace.less.ImportCache;
 import com.squarespace.less.LessCompiler;
 import com.squarespace.less.LessContext;
 import com.squarespace.less.LessException;
 import com.squarespace.less.LessLoader;
 import com.squarespace.less.LessOptions;
+import com.squarespace.less.LessStats;
 import com.squarespace.less.core.LessTestBase;
+import com.squarespace.less.exec.FunctionTable;
+import com.squarespace.less.model.Block;
 import com.squarespace.less.model.Import;
 
 
@@ -194,6 +203,154 @@ public class ImporterTest extends LessTestBase {
     }
   }
 
+  @Test
+  public void testImportCache() throws LessException {
+    ImportCache cache = new ImportCache();
+    Map<Path, String> map = buildMap();
+    String source = "@import 'base.less'; .ruleset { color: @color; font-size: @size; }";
+    String expected = ".child{font-size:12px}.ruleset{color:#abc;font-size:12px}";
+
+    LessStats stats = compileCached(cache, map, source, expected);
+    assertEquals(stats.importCacheHits(), 0);
+    assertEquals(stats.importCacheMisses(), 2);
+    assertEquals(cache.size(), 2);
+
+    // Outermost import is found in the cache, with its nested import
+    stats = compileCached(cache, map, source, expected);
+    assertEquals(stats.importCacheHits(), 1);
+    assertEquals(stats.importCacheMisses(), 0);
+
+    // Changing a nested import invalidates the outer import
+    map.put(path("child.less"), ".child { font-size: 14px; }\n@size: 14px;");
+    stats = compileCached(cache, map, source, ".child{font-size:14px}.ruleset{color:#abc;font-size:14px}");
+    assertEquals(stats.importCacheHits(), 0);
+    assertEquals(stats.importCacheMisses(), 2);
+
+    // Nested import which was already imported once is suppressed, so
+    // the cached parse of the outer import cannot be used
+    source = "@import 'child.less'; @import 'base.less'; .ruleset { color: @color; }";
+    stats = compileCached(cache, map, source, ".child{font-size:14px}.ruleset{color:#abc}");
+    assertEquals(stats.importCacheHits(), 1);
+    assertEquals(stats.importCacheMisses(), 1);
+  }
+
+  @Test
+  public void testImportCacheFunctionTable() throws LessException {
+    ImportCache cache = new ImportCache();
+    Map<Path, String> map = new HashMap<>();
+    map.put(path("a.less"), ".a { width: percentage(0.5); }");
+    String source = "@import 'a.less';";
+
+    LessOptions opts = buildOptions();
+    opts.foldConstants(true);
+    LessContext ctx = new LessContext(opts, new HashMapLessLoader(map));
+    ctx.setFunctionTable(COMPILER.functionTable());
+    ctx.setImportCache(cache);
+    assertEquals(COMPILER.compile(source, ctx, path("foo.less")), ".a{width:50%}");
+
+    // Block folded through another table is not reused
+    ctx = new LessContext(opts, new HashMapLessLoader(map));
+    ctx.setFunctionTable(new FunctionTable());
+    ctx.setImportCache(cache);
+    assertEquals(COMPILER.compile(source, ctx, path("foo.less")), ".a{width:percentage(.5)}");
+    assertEquals(ctx.stats().importCacheHits(), 0);
+    assertEquals(ctx.stats().importCacheMisses(), 1);
+  }
+
+  @Test
+  public void testImportCacheEviction() {
+    ImportCache cache = new ImportCache(10);
+    cache.put(entry("a.less", 4));
+    cache.put(entry("b.less", 4));
+    assertTrue(cache.get(path("a.less"), 1) != null);
+    cache.put(entry("c.less", 4));
+
+    // Least-recently used entry is evicted
+    assertEquals(cache.size(), 2);
+    assertEquals(cache.weight(), 8);
+    assertEquals(cache.evictions(), 1);
+    assertEquals(cache.get(path("b.less"), 1), null);
+    assertTrue(cache.get(path("a.less"), 1) != null);
+
+    // Stale fingerprint is a miss
+    assertEquals(cache.get(path("c.less"), 2), null);
+    assertEquals(cache.size(), 1);
+  }
+
+  @Test
+  public void testScanImports() {
+    String source = "@import 'a';\n@import-once \"b.less\" screen;\n"
+        + "/* @import 'c'; */ // @import 'd';\n"
+        + ".x { content: \"@import 'e'\"; }\n"
+        + "@import url(f.less); @import 'g.css'; @import '@{h}'; @import'i';";
+    assertEquals(Importer.scanImports(source), Arrays.asList("a.less", "b.less", "i.less"));
+  }
+
+  @Test
+  public void testPrefetch() throws Exception {
+    Map<Path, String> map = new HashMap<>();
+    String source = "@import 'a'; @import 'b'; @import 'c'; .x { color: @c; }";
+    for (String name : new String[] { "a", "b", "c" }) {
+      map.put(path(name + ".less"), "@import '" + name + "1'; @import '" + name + "2';");
+      map.put(path(name + "1.less"), "." + name + "1 { width: 1px; }");
+      map.put(path(name + "2.less"), "." + name + "2 { width: 2px; } @" + name + ": red;");
+    }
+
+    // Loads take 50ms each, so 9 files take at least 450ms when loaded in turn
+    SlowLoader loader = new SlowLoader(map, 50);
+    ExecutorService executor = Executors.newFixedThreadPool(9);
+    try {
+      LessContext ctx = new LessContext(buildOptions(), loader);
+      ctx.setFunctionTable(COMPILER.functionTable());
+      ctx.setImportExecutor(executor);
+      String result = COMPILER.compile(source, ctx, path("foo.less"));
+
+      LessContext syncCtx = new LessContext(buildOptions(), new HashMapLessLoader(map));
+      syncCtx.setFunctionTable(COMPILER.functionTable());
+      assertEquals(result, COMPILER.compile(source, syncCtx, path("foo.less")));
+
+      assertEquals(loader.loads.size(), 9);
+      assertFalse(loader.threads.contains(Thread.currentThread().getName()));
+      assertTrue(ctx.stats().diskWaitTimeMs() < 400, "waited " + ctx.stats().diskWaitTimeMs());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testPrefetchErrors() throws Exception {
+    Map<Path, String> map = buildMap();
+    String source = "@import 'missing'; .x { color: red; }";
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      LessContext ctx = new LessContext(buildOptions(), new HashMapLessLoader(map));
+      ctx.setFunctionTable(COMPILER.functionTable());
+      ctx.setImportExecutor(executor);
+      String result = COMPILER.compile(source, ctx, path("foo.less"));
+
+      LessContext syncCtx = new LessContext(buildOptions(), new HashMapLessLoader(map));
+      syncCtx.setFunctionTable(COMPILER.functionTable());
+      assertEquals(result, COMPILER.compile(source, syncCtx, path("foo.less")));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static LessStats compileCached(ImportCache cache, Map<Path, String> map, String source,
+      String expected) throws LessException {
+    LessContext ctx = new LessContext(buildOptions(), new HashMapLessLoader(map));
+    ctx.setFunctionTable(COMPILER.functionTable());
+    ctx.setImportCache(cache);
+    String result = COMPILER.compile(source, ctx, path("foo.less"));
+    assertEquals(result, expected);
+    return ctx.stats();
+  }
+
+  private static ImportCache.Entry entry(String path, int weight) {
+    List<ImportCache.Dependency> dependencies = Collections.emptyList();
+    return new ImportCache.Entry(path(path), 1, new Block(), dependencies, 0, weight, new LessOptions());
+  }
+
   private static Path path(String path) {
     return Paths.get(path).toAbsolutePath().normalize();
   }
@@ -228,6 +385,33 @@ public class ImporterTest extends LessTestBase {
     return new LessContext(options, loader);
   }
 
+  private static class SlowLoader extends HashMapLessLoader {
+
+    private final Set<Path> loads = Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+
+    private final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final long delayMs;
+
+    SlowLoader(Map<Path, String> storage, long delayMs) {
+      super(storage);
+      this.delayMs = delayMs;
+    }
+
+    @Override
+    public String load(Path path) throws LessException {
+      loads.add(path);
+      threads.add(Thread.currentThread().getName());
+      try {
+        Thread.sleep(delayMs);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return super.load(path);
+    }
+
+  }
+
   private static class TestLoader implements LessLoader {
 
     private final Set<Path> pathSet = new HashSet<>();
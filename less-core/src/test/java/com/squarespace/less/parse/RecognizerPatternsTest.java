@@ -26,6 +26,9 @@ import static com.squarespace.less.parse.RecognizerPatterns.ELEMENT1;
 import static com.squarespace.compiler.match.Recognizers.FAIL;
 import static org.testng.Assert.assertEquals;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 import org.testng.annotations.Test;
 
 import com.squarespace.compiler.match.Recognizers.Recognizer;
@@ -138,6 +141,110 @@ public class RecognizerPatternsTest {
     assertEquals(FAIL, match(RecognizerPatterns.HEXCOLOR, "#12"));
   }
 
+  @Test
+  public void testDirective() {
+    assertEquals(6, match(RecognizerPatterns.DIRECTIVE, "@media screen"));
+    assertEquals(18, match(RecognizerPatterns.DIRECTIVE, "@-webkit-keyframes "));
+
+    assertEquals(FAIL, match(RecognizerPatterns.DIRECTIVE, "@"));
+    assertEquals(FAIL, match(RecognizerPatterns.DIRECTIVE, "@Media"));
+  }
+
+  @Test
+  public void testKeyword() {
+    assertEquals(5, match(RecognizerPatterns.KEYWORD, "solid 1px"));
+    assertEquals(12, match(RecognizerPatterns.KEYWORD, "-moz-box_1-a;"));
+
+    assertEquals(FAIL, match(RecognizerPatterns.KEYWORD, "1px"));
+  }
+
+  @Test
+  public void testMixinName() {
+    assertEquals(7, match(RecognizerPatterns.MIXIN_NAME, ".mixin-(1)"));
+    assertEquals(6, match(RecognizerPatterns.MIXIN_NAME, "#ns\\:a > .b"));
+    assertEquals(9, match(RecognizerPatterns.MIXIN_NAME, ".a\\31 23b"));
+
+    assertEquals(FAIL, match(RecognizerPatterns.MIXIN_NAME, ".@{name}"));
+  }
+
+  @Test
+  public void testOpacity() {
+    assertEquals(8, match(RecognizerPatterns.OPACITY, "opacity=50"));
+    assertEquals(8, match(RecognizerPatterns.OPACITY, "Opacity=50"));
+
+    assertEquals(FAIL, match(RecognizerPatterns.OPACITY, "opacity: 50"));
+  }
+
+  @Test
+  public void testProperty() {
+    assertEquals(5, match(RecognizerPatterns.PROPERTY, "color: red"));
+    assertEquals(5, match(RecognizerPatterns.PROPERTY, "*zoom: 1"));
+    assertEquals(1, match(RecognizerPatterns.PROPERTY, "-"));
+    assertEquals(12, match(RecognizerPatterns.PROPERTY, "-webkit-box2:"));
+
+    assertEquals(FAIL, match(RecognizerPatterns.PROPERTY, "Color"));
+  }
+
+  @Test
+  public void testRatio() {
+    assertEquals(4, match(RecognizerPatterns.RATIO, "16/9"));
+
+    assertEquals(FAIL, match(RecognizerPatterns.RATIO, "16/"));
+  }
+
+  @Test
+  public void testShorthand() {
+    assertEquals(8, match(RecognizerPatterns.SHORTHAND, "12px/1.5 serif"));
+    assertEquals(7, match(RecognizerPatterns.SHORTHAND, "@a/@b-c"));
+
+    assertEquals(FAIL, match(RecognizerPatterns.SHORTHAND, "12px /1.5"));
+  }
+
+  @Test
+  public void testUnicodeRange() {
+    assertEquals(6, match(RecognizerPatterns.UNICODE_RANGE, "U+0-7F"));
+    assertEquals(5, match(RecognizerPatterns.UNICODE_RANGE, "U+4??, U+0025"));
+    assertEquals(3, match(RecognizerPatterns.UNICODE_RANGE, "U+a-"));
+
+    assertEquals(FAIL, match(RecognizerPatterns.UNICODE_RANGE, "u+0025"));
+  }
+
+  /**
+   * The recognizers must match exactly what the regular expressions they
+   * replaced matched, at every position of the input.
+   */
+  @Test
+  public void testEquivalentToRegex() {
+    String[] inputs = new String[] {
+      "@media screen and (max-width: 100px) { .a { color: red; } }",
+      ".mixin(@a; @b: 2) when (iscolor(@c)) { -webkit-box-shadow: 1px 2px #fff !important; }",
+      "#ns > .m\\31 23\\:x(); *zoom: 1; filter: alpha(Opacity=50); font: 12px/1.5 @family;",
+      "[data-foo|=\"bar\"] { unicode-range: U+0-7F, U+4??; aspect-ratio: 16/9; _hack: -1; }",
+      "--x: y; @-moz-document url-prefix() { a:b_c-d e\\ f } \u00e9l\u00e8ve: ok;"
+    };
+    check(Patterns.ATTRIBUTE_KEY, RecognizerPatterns.ATTRIBUTE_KEY, inputs);
+    check(Patterns.ATTRIBUTE_OP, RecognizerPatterns.ATTRIBUTE_OP, inputs);
+    check(Patterns.DIRECTIVE, RecognizerPatterns.DIRECTIVE, inputs);
+    check(Patterns.KEYWORD, RecognizerPatterns.KEYWORD, inputs);
+    check(Patterns.MIXIN_NAME, RecognizerPatterns.MIXIN_NAME, inputs);
+    check(Patterns.OPACITY, RecognizerPatterns.OPACITY, inputs);
+    check(Patterns.PROPERTY, RecognizerPatterns.PROPERTY, inputs);
+    check(Patterns.RATIO, RecognizerPatterns.RATIO, inputs);
+    check(Patterns.SHORTHAND, RecognizerPatterns.SHORTHAND, inputs);
+    check(Patterns.UNICODE_DESCRIPTOR, RecognizerPatterns.UNICODE_RANGE, inputs);
+  }
+
+  private void check(Pattern pattern, Recognizer recognizer, String[] inputs) {
+    for (String input : inputs) {
+      Matcher matcher = pattern.matcher(input);
+      for (int i = 0; i < input.length(); i++) {
+        matcher.region(i, input.length());
+        int expected = matcher.lookingAt() ? matcher.end() : FAIL;
+        assertEquals(match(recognizer, i, input), expected, pattern + " at " + i + " of " + input);
+      }
+    }
+  }
+
   private int match(Recognizer pattern, String str) {
     return match(pattern, 0, str);
   }